@@ -0,0 +1,147 @@
+package com.mapbox.mapboxsdk.util;
+
+import com.mapbox.mapboxsdk.overlay.Marker;
+import com.mapbox.mapboxsdk.overlay.PathOverlay;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+import junit.framework.TestCase;
+
+public class GeoJSONStreamParserTest extends TestCase {
+
+    private List<Object> objects;
+    private GeoJSONStreamParser parser;
+
+    public void setUp() throws Exception {
+        super.setUp();
+        objects = new ArrayList<Object>();
+        parser = new GeoJSONStreamParser(null, new GeoJSONStreamParser.UIObjectHandler() {
+            @Override
+            public void onUIObject(final Object uiObject) {
+                objects.add(uiObject);
+            }
+        });
+    }
+
+    private int parse(final String json) throws IOException {
+        return parser.parse(new StringReader(json));
+    }
+
+    private static String feature(final String geometry, final String properties) {
+        return "{\"type\": \"Feature\", \"geometry\": " + geometry
+                + ", \"properties\": " + properties + "}";
+    }
+
+    public void testPoint() throws Exception {
+        assertEquals(1, parse("{\"type\": \"FeatureCollection\", \"features\": ["
+                + feature("{\"type\": \"Point\", \"coordinates\": [-122.42, 37.77]}",
+                "{\"title\": \"San Francisco\", \"description\": \"Fog\", \"pop\": 1}")
+                + "]}"));
+        assertEquals(1, objects.size());
+        final Marker marker = (Marker) objects.get(0);
+        assertEquals("San Francisco", marker.getTitle());
+        assertEquals("Fog", marker.getDescription());
+        assertEquals(37.77, marker.getPoint().getLatitude(), 0);
+        assertEquals(-122.42, marker.getPoint().getLongitude(), 0);
+    }
+
+    public void testPropertiesAsOptString() throws Exception {
+        parse(feature("{\"type\": \"Point\", \"coordinates\": [1, 2]}",
+                "{\"title\": 42, \"description\": {\"nested\": [true]}}"));
+        final Marker marker = (Marker) objects.get(0);
+        assertEquals("42", marker.getTitle());
+        assertEquals("", marker.getDescription());
+    }
+
+    public void testSingleFeatureWithAltitude() throws Exception {
+        assertEquals(1, parse(feature(
+                "{\"coordinates\": [1.5e1, -2.5, 100], \"type\": \"Point\"}", "{}")));
+        final Marker marker = (Marker) objects.get(0);
+        assertEquals(-2.5, marker.getPoint().getLatitude(), 0);
+        assertEquals(15.0, marker.getPoint().getLongitude(), 0);
+    }
+
+    public void testMultiPoint() throws Exception {
+        parse(feature("{\"type\": \"MultiPoint\", \"coordinates\": [[1, 2], [3, 4], [5, 6]]}",
+                "{\"title\": \"t\"}"));
+        assertEquals(3, objects.size());
+        for (final Object object : objects) {
+            assertEquals("t", ((Marker) object).getTitle());
+        }
+        assertEquals(6.0, ((Marker) objects.get(2)).getPoint().getLatitude(), 0);
+    }
+
+    public void testLineStrings() throws Exception {
+        parse("{\"features\": ["
+                + feature("{\"type\": \"LineString\", \"coordinates\": [[0, 0], [1, 1], [2, 0]]}",
+                "null")
+                + ", " + feature("{\"type\": \"MultiLineString\", \"coordinates\":"
+                + " [[[0, 0], [1, 1]], [[2, 2], [3, 3], [4, 4], [5, 5]]]}", "{}")
+                + "]}");
+        assertEquals(3, objects.size());
+        assertEquals(3, ((PathOverlay) objects.get(0)).getNumberOfPoints());
+        assertEquals(2, ((PathOverlay) objects.get(1)).getNumberOfPoints());
+        assertEquals(4, ((PathOverlay) objects.get(2)).getNumberOfPoints());
+    }
+
+    public void testPolygons() throws Exception {
+        final String outer = "[[0, 0], [10, 0], [10, 10], [0, 10], [0, 0]]";
+        final String hole = "[[2, 2], [2, 4], [4, 4], [4, 2], [2, 2]]";
+        parse("{\"features\": ["
+                + feature("{\"type\": \"Polygon\", \"coordinates\": [" + outer + ", " + hole
+                + "]}", "{}")
+                + ", " + feature("{\"type\": \"MultiPolygon\", \"coordinates\": [[" + outer
+                + "], [" + outer + ", " + hole + "]]}", "{}")
+                + "]}");
+        assertEquals(2, objects.size());
+        assertEquals(10, ((PathOverlay) objects.get(0)).getNumberOfPoints());
+        assertEquals(15, ((PathOverlay) objects.get(1)).getNumberOfPoints());
+    }
+
+    public void testUnsupportedAndMismatchedGeometries() throws Exception {
+        assertEquals(4, parse("{\"features\": ["
+                + feature("{\"type\": \"GeometryCollection\", \"geometries\": []}", "{}")
+                + ", " + feature("{\"type\": \"Point\", \"coordinates\": [[1, 2]]}", "{}")
+                + ", " + feature("null", "{}")
+                + ", " + feature("{\"type\": \"LineString\", \"coordinates\": []}", "{}")
+                + ", 42]}"));
+        // an empty line is still a line
+        assertEquals(1, objects.size());
+        assertEquals(0, ((PathOverlay) objects.get(0)).getNumberOfPoints());
+    }
+
+    public void testUnknownMembersAreSkipped() throws Exception {
+        assertEquals(1, parse("{\"bbox\": [0, 0, 1, 1], \"crs\": {\"type\": \"name\"},"
+                + " \"features\": [{\"id\": \"a\\u0062c\", \"extra\": [[{}], \"\\\"]\"],"
+                + " \"geometry\": {\"type\": \"Point\", \"bbox\": [1, 2, 1, 2],"
+                + " \"coordinates\": [1, 2]}}], \"foo\": null}"));
+        assertEquals(1, objects.size());
+    }
+
+    public void testNotAnObject() throws Exception {
+        assertEquals(0, parse("[1, 2, 3]"));
+        assertEquals(0, objects.size());
+    }
+
+    public void testMalformedInput() throws Exception {
+        final String[] malformed = {
+                "",
+                "{\"features\": [",
+                "{\"features\": [" + feature("{\"type\": \"Point\", \"coordinates\": [1, ]}", "{}")
+                        + "]}",
+                "{\"features\": [" + feature("{\"type\": \"Point\", \"coordinates\": [1, 2]}", "{}")
+                        + ",]}",
+                "{\"type\": \"Feature\", \"geometry\": {\"coordinates\": [1, \"a\"]}}",
+                "{\"features\": [] \"type\": \"FeatureCollection\"}"
+        };
+        for (final String json : malformed) {
+            try {
+                parse(json);
+                fail("Expected a syntax error for " + json);
+            } catch (IOException e) {
+                // expected
+            }
+        }
+    }
+}
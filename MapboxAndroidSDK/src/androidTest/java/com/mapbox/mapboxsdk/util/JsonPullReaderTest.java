@@ -0,0 +1,249 @@
+package com.mapbox.mapboxsdk.util;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import junit.framework.TestCase;
+
+public class JsonPullReaderTest extends TestCase {
+
+    private static JsonPullReader reader(final String json) {
+        return new JsonPullReader(new StringReader(json));
+    }
+
+    /**
+     * Hands out one character per read, so that every token crosses a buffer refill.
+     */
+    private static JsonPullReader trickleReader(final String json) {
+        return new JsonPullReader(new Reader() {
+            private int mPos;
+
+            @Override
+            public int read(final char[] buffer, final int offset, final int count) {
+                if (mPos == json.length()) {
+                    return -1;
+                }
+                buffer[offset] = json.charAt(mPos++);
+                return 1;
+            }
+
+            @Override
+            public void close() {
+            }
+        });
+    }
+
+    private static double readDouble(final String literal) throws IOException {
+        final JsonPullReader reader = reader("[" + literal + "]");
+        reader.beginArray();
+        final double value = reader.nextDouble();
+        reader.endArray();
+        return value;
+    }
+
+    private static String readString(final String literal) throws IOException {
+        final JsonPullReader reader = reader("[" + literal + "]");
+        reader.beginArray();
+        final String value = reader.nextString();
+        reader.endArray();
+        return value;
+    }
+
+    private static void assertMalformed(final String json) {
+        final JsonPullReader reader = reader(json);
+        try {
+            reader.skipValue();
+            assertEquals(JsonPullReader.Token.END_DOCUMENT, reader.peek());
+            fail("Expected a syntax error for " + json);
+        } catch (IOException e) {
+            // expected
+        }
+    }
+
+    public void testIntegers() throws Exception {
+        assertEquals(0.0, readDouble("0"));
+        assertEquals(42.0, readDouble("42"));
+        assertEquals(-42.0, readDouble("-42"));
+        assertEquals(9007199254740993.0, readDouble("9007199254740993"));
+    }
+
+    public void testFractions() throws Exception {
+        assertEquals(0.1, readDouble("0.1"));
+        assertEquals(-122.4194155, readDouble("-122.4194155"));
+        assertEquals(37.774929, readDouble("37.774929"));
+        assertEquals(1.0E-23, readDouble("0.00000000000000000000001"));
+        assertEquals(0.30000000000000004, readDouble("0.30000000000000004"));
+    }
+
+    public void testNegativeZero() throws Exception {
+        final double value = readDouble("-0.0");
+        assertEquals(Double.doubleToLongBits(-0.0), Double.doubleToLongBits(value));
+    }
+
+    public void testExponents() throws Exception {
+        assertEquals(1.0E5, readDouble("1e5"));
+        assertEquals(1.0E5, readDouble("1E5"));
+        assertEquals(1.0E5, readDouble("1e+5"));
+        assertEquals(-2.5E-3, readDouble("-2.5e-3"));
+        assertEquals(1.0E300, readDouble("1e300"));
+    }
+
+    public void testNumberInString() throws Exception {
+        assertEquals(12.5, readDouble("\"12.5\""));
+    }
+
+    public void testNumberAsString() throws Exception {
+        assertEquals("-1.5e3", readString("-1.5e3"));
+        assertEquals("true", readString("true"));
+    }
+
+    public void testMalformedNumbers() throws Exception {
+        final String[] malformed = {"-", "--1", "1.2.3", "1e", "1ee5", "\"abc\""};
+        for (final String literal : malformed) {
+            try {
+                readDouble(literal);
+                fail("Expected a syntax error for " + literal);
+            } catch (IOException e) {
+                // expected
+            }
+        }
+    }
+
+    public void testStringEscapes() throws Exception {
+        assertEquals("a\"b", readString("\"a\\\"b\""));
+        assertEquals("a\\b", readString("\"a\\\\b\""));
+        assertEquals("a/b", readString("\"a\\/b\""));
+        assertEquals("\b\f\n\r\t", readString("\"\\b\\f\\n\\r\\t\""));
+    }
+
+    public void testUnicodeEscapes() throws Exception {
+        assertEquals("\u00e9", readString("\"\\u00e9\""));
+        assertEquals("\u00E9", readString("\"\\u00E9\""));
+        assertEquals("caf\u00e9 \u2603", readString("\"caf\\u00e9 \\u2603\""));
+        // a surrogate pair is two escapes
+        assertEquals("\ud83d\ude00", readString("\"\\ud83d\\ude00\""));
+        assertEquals("\u00e9", readString("\"\u00e9\""));
+    }
+
+    public void testMalformedUnicodeEscapes() throws Exception {
+        final String[] malformed = {"\"\\u00g9\"", "\"\\u00\""};
+        for (final String literal : malformed) {
+            try {
+                readString(literal);
+                fail("Expected a syntax error for " + literal);
+            } catch (IOException e) {
+                // expected
+            }
+        }
+    }
+
+    public void testStringLongerThanBuffer() throws Exception {
+        final StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 20000; i++) {
+            sb.append((char) ('a' + i % 26));
+            if (i % 1000 == 0) {
+                sb.append("\\n");
+            }
+        }
+        final String expected = sb.toString().replace("\\n", "\n");
+        assertEquals(expected, readString("\"" + sb + "\""));
+    }
+
+    public void testNestedArraysAndObjects() throws Exception {
+        final String json = " { \"a\" : [ 1 , [ 2, 3 ], { \"b\": null, \"c\": [] } ],"
+                + " \"d\": {}, \"e\": true, \"f\": false } ";
+        for (final JsonPullReader reader : new JsonPullReader[] {reader(json), trickleReader(json)}) {
+            reader.beginObject();
+            assertEquals("a", reader.nextName());
+            reader.beginArray();
+            assertEquals(1.0, reader.nextDouble());
+            reader.beginArray();
+            assertEquals(2.0, reader.nextDouble());
+            assertEquals(3.0, reader.nextDouble());
+            assertFalse(reader.hasNext());
+            reader.endArray();
+            reader.beginObject();
+            assertEquals("b", reader.nextName());
+            assertEquals(JsonPullReader.Token.NULL, reader.peek());
+            reader.nextNull();
+            assertEquals("c", reader.nextName());
+            reader.beginArray();
+            assertFalse(reader.hasNext());
+            reader.endArray();
+            reader.endObject();
+            reader.endArray();
+            assertEquals("d", reader.nextName());
+            reader.beginObject();
+            reader.endObject();
+            assertEquals("e", reader.nextName());
+            assertTrue(reader.nextBoolean());
+            assertEquals("f", reader.nextName());
+            assertFalse(reader.nextBoolean());
+            reader.endObject();
+            assertEquals(JsonPullReader.Token.END_DOCUMENT, reader.peek());
+        }
+    }
+
+    public void testDeepNesting() throws Exception {
+        final StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 100; i++) {
+            sb.append("[");
+        }
+        for (int i = 0; i < 100; i++) {
+            sb.append("]");
+        }
+        final JsonPullReader reader = reader(sb.toString());
+        for (int i = 0; i < 100; i++) {
+            reader.beginArray();
+        }
+        for (int i = 0; i < 100; i++) {
+            reader.endArray();
+        }
+        assertEquals(JsonPullReader.Token.END_DOCUMENT, reader.peek());
+    }
+
+    public void testSkipValue() throws Exception {
+        final JsonPullReader reader = trickleReader(
+                "{\"skip\": {\"a\": [1, \"x\\\"]\", {\"b\": [true, null]}], \"c\": -1e-3},"
+                        + " \"keep\": \"value\"}");
+        reader.beginObject();
+        assertEquals("skip", reader.nextName());
+        reader.skipValue();
+        assertEquals("keep", reader.nextName());
+        assertEquals("value", reader.nextString());
+        reader.endObject();
+        assertEquals(JsonPullReader.Token.END_DOCUMENT, reader.peek());
+    }
+
+    public void testMalformedDocuments() throws Exception {
+        assertMalformed("");
+        assertMalformed("[1,]");
+        assertMalformed("[1 2]");
+        assertMalformed("[1");
+        assertMalformed("{\"a\" 1}");
+        assertMalformed("{\"a\": 1,}");
+        assertMalformed("{a: 1}");
+        assertMalformed("{\"a\": 1");
+        assertMalformed("\"unterminated");
+        assertMalformed("[1] [2]");
+        assertMalformed("[#]");
+    }
+
+    public void testWrongToken() throws Exception {
+        final JsonPullReader reader = reader("[\"a\"]");
+        reader.beginArray();
+        try {
+            reader.beginObject();
+            fail("Expected a syntax error");
+        } catch (IOException e) {
+            // expected
+        }
+        try {
+            reader.nextBoolean();
+            fail("Expected a syntax error");
+        } catch (IOException e) {
+            // expected
+        }
+        assertEquals("a", reader.nextString());
+    }
+}
@@ -0,0 +1,100 @@
+package com.mapbox.mapboxsdk.util;
+
+import java.util.HashMap;
+import java.util.Random;
+import junit.framework.TestCase;
+
+public class LongIntMapTest extends TestCase {
+
+    public void testPutGetRemove() throws Exception {
+        final LongIntMap map = new LongIntMap();
+        assertTrue(map.isEmpty());
+        map.put(1, 10);
+        map.put(-1, 0);
+        map.put(Long.MIN_VALUE, -10);
+        assertEquals(3, map.size());
+        assertEquals(10, map.get(1));
+        assertEquals(-10, map.get(Long.MIN_VALUE));
+
+        // a key stored with 0 is there, a missing one reads as the default
+        assertTrue(map.containsKey(-1));
+        assertEquals(0, map.get(-1, 7));
+        assertFalse(map.containsKey(2));
+        assertEquals(0, map.get(2));
+        assertEquals(7, map.get(2, 7));
+
+        map.put(1, 11);
+        assertEquals(3, map.size());
+        assertEquals(11, map.get(1));
+
+        assertTrue(map.remove(1));
+        assertFalse(map.remove(1));
+        assertEquals(-1, map.get(1, -1));
+        assertEquals(2, map.size());
+
+        map.clear();
+        assertTrue(map.isEmpty());
+        assertFalse(map.containsKey(-1));
+    }
+
+    public void testGrowth() throws Exception {
+        final LongIntMap map = new LongIntMap(0);
+        for (int i = 0; i < 10000; i++) {
+            // OSM ids are mostly large and sequential
+            map.put(3000000000L + i, i);
+        }
+        assertEquals(10000, map.size());
+        for (int i = 0; i < 10000; i++) {
+            assertEquals(i, map.get(3000000000L + i, -1));
+        }
+        assertFalse(map.containsKey(3000000000L + 10000));
+    }
+
+    public void testCollisions() throws Exception {
+        final long[] keys = new long[5];
+        final int bucket = LongObjectMap.hash(0) & 7;
+        int found = 0;
+        for (long key = 0; found < keys.length; key++) {
+            if ((LongObjectMap.hash(key) & 7) == bucket) {
+                keys[found++] = key;
+            }
+        }
+        final LongIntMap map = new LongIntMap(4);
+        for (int i = 0; i < keys.length; i++) {
+            map.put(keys[i], i);
+        }
+        for (int i = 0; i < keys.length; i++) {
+            assertEquals(i, map.get(keys[i], -1));
+        }
+        // removing from the middle of the probe run must leave the rest reachable
+        assertTrue(map.remove(keys[1]));
+        assertTrue(map.remove(keys[3]));
+        assertEquals(-1, map.get(keys[1], -1));
+        assertEquals(-1, map.get(keys[3], -1));
+        assertEquals(0, map.get(keys[0], -1));
+        assertEquals(2, map.get(keys[2], -1));
+        assertEquals(4, map.get(keys[4], -1));
+        assertEquals(3, map.size());
+    }
+
+    public void testRandomAgainstHashMap() throws Exception {
+        final Random random = new Random(42);
+        final LongIntMap map = new LongIntMap();
+        final HashMap<Long, Integer> expected = new HashMap<Long, Integer>();
+        for (int i = 0; i < 50000; i++) {
+            // a small key range, so that puts and removes hit the same keys
+            final long key = random.nextInt(2000) - 1000;
+            if (random.nextInt(3) == 0) {
+                assertEquals(expected.remove(key) != null, map.remove(key));
+            } else {
+                expected.put(key, i);
+                map.put(key, i);
+            }
+            assertEquals(expected.size(), map.size());
+        }
+        for (long key = -1000; key < 1000; key++) {
+            final Integer value = expected.get(key);
+            assertEquals(value != null ? value : -1, map.get(key, -1));
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package com.mapbox.mapboxsdk.util;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Random;
+import junit.framework.TestCase;
+
+public class LongObjectMapTest extends TestCase {
+
+    /**
+     * @return keys which all land in the same bucket of a map with the given capacity
+     */
+    private static long[] collidingKeys(final int count, final int capacity) {
+        final long[] keys = new long[count];
+        final int bucket = LongObjectMap.hash(0) & (capacity - 1);
+        int found = 0;
+        for (long key = 0; found < count; key++) {
+            if ((LongObjectMap.hash(key) & (capacity - 1)) == bucket) {
+                keys[found++] = key;
+            }
+        }
+        return keys;
+    }
+
+    public void testPutGetRemove() throws Exception {
+        final LongObjectMap<String> map = new LongObjectMap<String>();
+        assertTrue(map.isEmpty());
+        assertNull(map.put(1, "a"));
+        assertNull(map.put(-1, "b"));
+        assertNull(map.put(Long.MIN_VALUE, "c"));
+        assertNull(map.put(Long.MAX_VALUE, "d"));
+        assertEquals(4, map.size());
+        assertEquals("a", map.get(1));
+        assertEquals("b", map.get(-1));
+        assertEquals("c", map.get(Long.MIN_VALUE));
+        assertEquals("d", map.get(Long.MAX_VALUE));
+        assertNull(map.get(0));
+        assertFalse(map.containsKey(0));
+
+        assertEquals("a", map.put(1, "e"));
+        assertEquals(4, map.size());
+        assertEquals("e", map.get(1));
+
+        assertEquals("e", map.remove(1));
+        assertNull(map.remove(1));
+        assertFalse(map.containsKey(1));
+        assertEquals(3, map.size());
+
+        map.clear();
+        assertTrue(map.isEmpty());
+        assertNull(map.get(-1));
+    }
+
+    public void testNullValue() throws Exception {
+        try {
+            new LongObjectMap<String>().put(1, null);
+            fail("Expected null to be refused");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+
+    public void testGrowth() throws Exception {
+        final LongObjectMap<Long> map = new LongObjectMap<Long>();
+        for (long key = 0; key < 10000; key++) {
+            map.put(key << 32, key);
+        }
+        assertEquals(10000, map.size());
+        for (long key = 0; key < 10000; key++) {
+            assertEquals(Long.valueOf(key), map.get(key << 32));
+        }
+        assertNull(map.get(10000L << 32));
+
+        final List<Long> values = new ArrayList<Long>();
+        map.values(values);
+        Collections.sort(values);
+        assertEquals(10000, values.size());
+        for (int i = 0; i < values.size(); i++) {
+            assertEquals(Long.valueOf(i), values.get(i));
+        }
+    }
+
+    public void testCollisions() throws Exception {
+        final long[] keys = collidingKeys(5, 8);
+        final LongObjectMap<Long> map = new LongObjectMap<Long>(4);
+        for (final long key : keys) {
+            map.put(key, key);
+        }
+        for (final long key : keys) {
+            assertEquals(Long.valueOf(key), map.get(key));
+        }
+        // removing from the middle of the probe run must leave the rest reachable
+        assertEquals(Long.valueOf(keys[1]), map.remove(keys[1]));
+        assertEquals(Long.valueOf(keys[3]), map.remove(keys[3]));
+        assertNull(map.get(keys[1]));
+        assertNull(map.get(keys[3]));
+        assertEquals(Long.valueOf(keys[0]), map.get(keys[0]));
+        assertEquals(Long.valueOf(keys[2]), map.get(keys[2]));
+        assertEquals(Long.valueOf(keys[4]), map.get(keys[4]));
+        assertEquals(3, map.size());
+    }
+
+    public void testRandomAgainstHashMap() throws Exception {
+        final Random random = new Random(42);
+        final LongObjectMap<Integer> map = new LongObjectMap<Integer>();
+        final HashMap<Long, Integer> expected = new HashMap<Long, Integer>();
+        for (int i = 0; i < 50000; i++) {
+            // a small key range, so that puts and removes hit the same keys
+            final long key = random.nextInt(2000) - 1000;
+            if (random.nextInt(3) == 0) {
+                assertEquals(expected.remove(key), map.remove(key));
+            } else {
+                assertEquals(expected.put(key, i), map.put(key, i));
+            }
+            assertEquals(expected.size(), map.size());
+        }
+        for (long key = -1000; key < 1000; key++) {
+            assertEquals(expected.get(key), map.get(key));
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package com.spatialdev.osm.model;
+
+import android.test.InstrumentationTestCase;
+
+import java.io.InputStream;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Parses the same files as OSMXmlParserTest and OSMXmlParserTestWithRelation
+ * in compact mode, and checks that the data set reads the same as a regular one.
+ */
+public class OSMXmlParserCompactTest extends InstrumentationTestCase {
+
+    private OSMDataSet ds;
+    private OSMDataSet regular;
+    private OSMDataSet relationDs;
+    private OSMDataSet relationRegular;
+
+    public void setUp() throws Exception {
+        super.setUp();
+        ds = parse("test/osm/spatialdev_small.osm", true);
+        regular = parse("test/osm/spatialdev_small.osm", false);
+        relationDs = parse("test/osm/ballard_relation.osm", true);
+        relationRegular = parse("test/osm/ballard_relation.osm", false);
+    }
+
+    private OSMDataSet parse(String fileName, boolean compact) throws Exception {
+        InputStream in = getInstrumentation().getTargetContext().getResources().getAssets().open(fileName);
+        return OSMXmlParser.parseFromInputStream(in, compact);
+    }
+
+    public void testIsCompact() throws Exception {
+        assertTrue(ds.isCompact());
+        assertFalse(regular.isCompact());
+    }
+
+    public void testCounts() throws Exception {
+        assertEquals(83, ds.getNodeCount());
+        assertEquals(10, ds.getWayCount());
+        assertEquals(0, ds.getRelationCount());
+        assertEquals(1, ds.getStandaloneNodesCount());
+        assertEquals(7, ds.getClosedWaysCount());
+        assertEquals(3, ds.getOpenWaysCount());
+    }
+
+    public void testLinkedNodes() throws Exception {
+        OSMWay w = ds.getWays().get(Long.valueOf(178540022));
+        assertEquals(0, w.getUnlinkedNodesCount());
+        assertEquals(12, w.getLinkedNodesCount());
+        OSMWay r = regular.getWays().get(Long.valueOf(178540022));
+        for (int i = 0; i < r.getLinkedNodesCount(); i++) {
+            assertEquals(r.getNodeLat(i), w.getNodeLat(i));
+            assertEquals(r.getNodeLng(i), w.getNodeLng(i));
+        }
+    }
+
+    public void testNodesMatchRegularParse() throws Exception {
+        assertNodesMatch(regular, ds);
+        assertNodesMatch(relationRegular, relationDs);
+    }
+
+    public void testNodesViewInParseOrder() throws Exception {
+        Map<Long, OSMNode> nodes = ds.getNodes();
+        assertEquals(regular.getNodes().keySet().toString(), nodes.keySet().toString());
+        assertNull(nodes.get(Long.valueOf(-1)));
+        assertFalse(nodes.containsKey("178540022"));
+    }
+
+    public void testTaggedNodeIsKept() throws Exception {
+        OSMNode standalone = ds.getStandaloneNodes().get(0);
+        assertTrue(standalone.getTagCount() > 0);
+        // nodes with tags are objects for good, so edits stick
+        assertSame(standalone, ds.getNodes().get(standalone.getId()));
+    }
+
+    public void testRelations() throws Exception {
+        assertEquals(345, relationDs.getNodeCount());
+        assertEquals(51, relationDs.getWayCount());
+        assertEquals(5, relationDs.getRelationCount());
+        assertEquals(0, relationDs.getStandaloneNodesCount());
+        assertEquals(21, relationDs.getClosedWaysCount());
+        assertEquals(30, relationDs.getOpenWaysCount());
+
+        OSMWay w = relationDs.getWays().get((long)305197030);
+        List<OSMRelation> rels = w.getRelations();
+        assertEquals(1, rels.size());
+        assertEquals("Burke-Gilman Trail", rels.get(0).getTags().get("name"));
+    }
+
+    private static void assertNodesMatch(OSMDataSet expected, OSMDataSet actual) {
+        Map<Long, OSMNode> actualNodes = actual.getNodes();
+        assertEquals(expected.getNodeCount(), actualNodes.size());
+        for (OSMNode e : expected.getNodes().values()) {
+            OSMNode a = actualNodes.get(e.getId());
+            assertNotNull("node " + e.getId(), a);
+            assertEquals(e.getId(), a.getId());
+            assertEquals(e.getLat(), a.getLat());
+            assertEquals(e.getLng(), a.getLng());
+            assertEquals(e.getTags(), a.getTags());
+        }
+    }
+}
@@ -8,7 +8,8 @@ import com.mapbox.mapboxsdk.geometry.LatLng;
 public interface ClusterItem {
 
     /**
-     * The position of this marker. This must always return the same value.
+     * The position of this marker. This must always return the same value while an algorithm
+     * holds it, the item is removed and added again to move it.
      */
     LatLng getPosition();
 }
\ No newline at end of file
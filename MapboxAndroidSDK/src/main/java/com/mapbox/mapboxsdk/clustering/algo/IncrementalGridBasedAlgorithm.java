@@ -0,0 +1,231 @@
+package com.mapbox.mapboxsdk.clustering.algo;
+
+import com.mapbox.mapboxsdk.clustering.Cluster;
+import com.mapbox.mapboxsdk.clustering.ClusterItem;
+import com.mapbox.mapboxsdk.clustering.geometry.Point;
+import com.mapbox.mapboxsdk.clustering.projection.SphericalMercatorProjection;
+import com.mapbox.mapboxsdk.util.LongObjectMap;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A clustering algorithm that groups items into the cells of a grid whose cells are
+ * {@link #MAX_DISTANCE_AT_ZOOM} wide at each zoom level, and that keeps its clusters up to date
+ * as items are added, removed or moved instead of computing them again from scratch.
+ * <p/>
+ * The clusters of the most recently used zoom levels are kept. Adding, removing or moving an
+ * item takes constant time per kept zoom level and only marks the cells it leaves or enters as
+ * changed; the next call to {@link #getClusters(double)} rebuilds the clusters of those cells
+ * alone.
+ * <p/>
+ * Clusters have the center of the first element of their cell.
+ */
+public class IncrementalGridBasedAlgorithm<T extends ClusterItem> implements Algorithm<T> {
+    public static final int MAX_DISTANCE_AT_ZOOM = 100; // essentially 100 dp.
+
+    /**
+     * Number of zoom levels whose clusters are kept.
+     */
+    private static final int MAX_CACHED_ZOOM_LEVELS = 5;
+
+    private static final int MAX_ZOOM = 22;
+
+    private static final SphericalMercatorProjection PROJECTION = new SphericalMercatorProjection(1);
+
+    /**
+     * The items, in the order they were added, and their projected points.
+     * Any access should be synchronized on mItems.
+     */
+    private final LinkedHashMap<T, Point> mItems = new LinkedHashMap<T, Point>();
+
+    /**
+     * The grids of the zoom levels in use, least recently used first.
+     * Any access should be synchronized on mItems.
+     */
+    private final LinkedHashMap<Integer, Grid<T>> mGrids =
+            new LinkedHashMap<Integer, Grid<T>>(MAX_CACHED_ZOOM_LEVELS + 1, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(final Map.Entry<Integer, Grid<T>> eldest) {
+                    return size() > MAX_CACHED_ZOOM_LEVELS;
+                }
+            };
+
+    @Override
+    public void addItem(T item) {
+        final Point point = PROJECTION.toPoint(item.getPosition());
+        synchronized (mItems) {
+            if (mItems.containsKey(item)) {
+                return;
+            }
+            mItems.put(item, point);
+            for (Grid<T> grid : mGrids.values()) {
+                grid.add(item, point);
+            }
+        }
+    }
+
+    @Override
+    public void addItems(Collection<T> items) {
+        for (T item : items) {
+            addItem(item);
+        }
+    }
+
+    @Override
+    public void clearItems() {
+        synchronized (mItems) {
+            mItems.clear();
+            mGrids.clear();
+        }
+    }
+
+    @Override
+    public void removeItem(T item) {
+        synchronized (mItems) {
+            final Point point = mItems.remove(item);
+            if (point == null) {
+                return;
+            }
+            for (Grid<T> grid : mGrids.values()) {
+                grid.remove(item, point);
+            }
+        }
+    }
+
+    /**
+     * Moves an item already added to its current position, which only touches the cells it
+     * leaves and enters.
+     */
+    public void updateItem(T item) {
+        final Point point = PROJECTION.toPoint(item.getPosition());
+        synchronized (mItems) {
+            final Point previous = mItems.get(item);
+            if (previous == null) {
+                return;
+            }
+            mItems.put(item, point);
+            for (Grid<T> grid : mGrids.values()) {
+                grid.remove(item, previous);
+                grid.add(item, point);
+            }
+        }
+    }
+
+    @Override
+    public Set<? extends Cluster<T>> getClusters(double zoom) {
+        final int discreteZoom = Math.max(0, Math.min(MAX_ZOOM, (int) zoom));
+        synchronized (mItems) {
+            Grid<T> grid = mGrids.get(discreteZoom);
+            if (grid == null) {
+                grid = new Grid<T>(MAX_DISTANCE_AT_ZOOM / Math.pow(2, discreteZoom) / 256);
+                for (Map.Entry<T, Point> entry : mItems.entrySet()) {
+                    grid.add(entry.getKey(), entry.getValue());
+                }
+                mGrids.put(discreteZoom, grid);
+            }
+            return grid.getClusters();
+        }
+    }
+
+    @Override
+    public Collection<T> getItems() {
+        synchronized (mItems) {
+            return new ArrayList<T>(mItems.keySet());
+        }
+    }
+
+    /**
+     * The items of one zoom level, grouped by grid cell, and their clusters.
+     */
+    private static class Grid<T extends ClusterItem> {
+        private final double mSpan;
+        private final LongObjectMap<Cell<T>> mCells = new LongObjectMap<Cell<T>>();
+        private final List<Cell<T>> mChangedCells = new ArrayList<Cell<T>>();
+        private final Set<Cluster<T>> mClusters = new HashSet<Cluster<T>>();
+
+        private Grid(double span) {
+            mSpan = span;
+        }
+
+        private long cellKey(Point point) {
+            // casting saturates, so points at the poles end up in the outermost cells
+            final int x = (int) Math.floor(point.x / mSpan);
+            final int y = (int) Math.floor(point.y / mSpan);
+            return ((long) x << 32) | (y & 0xffffffffL);
+        }
+
+        private void add(T item, Point point) {
+            final long key = cellKey(point);
+            Cell<T> cell = mCells.get(key);
+            if (cell == null) {
+                cell = new Cell<T>(key);
+                mCells.put(key, cell);
+            }
+            cell.mItems.add(item);
+            changed(cell);
+        }
+
+        private void remove(T item, Point point) {
+            final Cell<T> cell = mCells.get(cellKey(point));
+            if (cell != null && cell.mItems.remove(item)) {
+                changed(cell);
+            }
+        }
+
+        private void changed(Cell<T> cell) {
+            if (!cell.mChanged) {
+                cell.mChanged = true;
+                mChangedCells.add(cell);
+            }
+        }
+
+        /**
+         * Rebuild the clusters of the cells that changed since the last call.
+         *
+         * @return a copy of the clusters of this zoom level
+         */
+        private Set<Cluster<T>> getClusters() {
+            for (Cell<T> cell : mChangedCells) {
+                cell.mChanged = false;
+                if (cell.mCluster != null) {
+                    mClusters.remove(cell.mCluster);
+                    cell.mCluster = null;
+                }
+                if (cell.mItems.isEmpty()) {
+                    mCells.remove(cell.mKey);
+                    continue;
+                }
+                final Iterator<T> items = cell.mItems.iterator();
+                final T first = items.next();
+                final StaticCluster<T> cluster = new StaticCluster<T>(first.getPosition());
+                cluster.add(first);
+                while (items.hasNext()) {
+                    cluster.add(items.next());
+                }
+                cell.mCluster = cluster;
+                mClusters.add(cluster);
+            }
+            mChangedCells.clear();
+            return new HashSet<Cluster<T>>(mClusters);
+        }
+    }
+
+    private static class Cell<T extends ClusterItem> {
+        private final long mKey;
+        private final LinkedHashSet<T> mItems = new LinkedHashSet<T>();
+        private StaticCluster<T> mCluster;
+        private boolean mChanged;
+
+        private Cell(long key) {
+            mKey = key;
+        }
+    }
+}
@@ -14,6 +14,7 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -37,7 +38,7 @@ public class NonHierarchicalDistanceBasedAlgorithm<T extends ClusterItem> implem
     /**
      * Any modifications should be synchronized on mQuadTree.
      */
-    private final Collection<QuadItem<T>> mItems = new ArrayList<QuadItem<T>>();
+    private final Map<T, QuadItem<T>> mItems = new LinkedHashMap<T, QuadItem<T>>();
 
     /**
      * Any modifications should be synchronized on mQuadTree.
@@ -50,7 +51,10 @@ public class NonHierarchicalDistanceBasedAlgorithm<T extends ClusterItem> implem
     public void addItem(T item) {
         final QuadItem<T> quadItem = new QuadItem<T>(item);
         synchronized (mQuadTree) {
-            mItems.add(quadItem);
+            final QuadItem<T> previous = mItems.put(item, quadItem);
+            if (previous != null) {
+                mQuadTree.remove(previous);
+            }
             mQuadTree.add(quadItem);
         }
     }
@@ -72,8 +76,12 @@ public class NonHierarchicalDistanceBasedAlgorithm<T extends ClusterItem> implem
 
     @Override
     public void removeItem(T item) {
-        // TODO: delegate QuadItem#hashCode and QuadItem#equals to its item.
-        throw new UnsupportedOperationException("NonHierarchicalDistanceBasedAlgorithm.remove not implemented");
+        synchronized (mQuadTree) {
+            final QuadItem<T> quadItem = mItems.remove(item);
+            if (quadItem != null) {
+                mQuadTree.remove(quadItem);
+            }
+        }
     }
 
     @Override
@@ -88,7 +96,7 @@ public class NonHierarchicalDistanceBasedAlgorithm<T extends ClusterItem> implem
         final Map<QuadItem<T>, StaticCluster<T>> itemToCluster = new HashMap<QuadItem<T>, StaticCluster<T>>();
 
         synchronized (mQuadTree) {
-            for (QuadItem<T> candidate : mItems) {
+            for (QuadItem<T> candidate : mItems.values()) {
                 if (visitedCandidates.contains(candidate)) {
                     // Candidate is already part of another cluster.
                     continue;
@@ -132,9 +140,7 @@ public class NonHierarchicalDistanceBasedAlgorithm<T extends ClusterItem> implem
     public Collection<T> getItems() {
         final List<T> items = new ArrayList<T>();
         synchronized (mQuadTree) {
-            for (QuadItem<T> quadItem : mItems) {
-                items.add(quadItem.mClusterItem);
-            }
+            items.addAll(mItems.keySet());
         }
         return items;
     }
@@ -13,6 +13,10 @@ import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 /**
  * Optimistically fetch clusters for adjacent zoom levels, caching them as necessary.
+ * <p/>
+ * Any change to the items evicts every cached zoom level, since a single item can change the
+ * clusters of all of them. Items that change often are better clustered with
+ * {@link IncrementalGridBasedAlgorithm}, which updates only the cells they touch.
  */
 public class PreCachingAlgorithmDecorator<T extends ClusterItem> implements Algorithm<T> {
     private final Algorithm<T> mAlgorithm;
@@ -47,6 +51,15 @@ public class PreCachingAlgorithmDecorator<T extends ClusterItem> implements Algo
         clearCache();
     }
 
+    /**
+     * Moves an item already added to its current position.
+     */
+    public void updateItem(T item) {
+        mAlgorithm.removeItem(item);
+        mAlgorithm.addItem(item);
+        clearCache();
+    }
+
     private void clearCache() {
         mCache.evictAll();
     }
@@ -162,7 +162,7 @@ public class OfflineMapDatabase implements MapboxConstants {
         return res;
     }
 
-    private SQLiteDatabase database() {
+    private synchronized SQLiteDatabase database() {
         if (db == null) {
             db = OfflineDatabaseManager.getOfflineDatabaseManager(context).getOfflineDatabaseHandlerForMapId(mapID).getReadableDatabase();
         }
@@ -172,7 +172,7 @@ public class OfflineMapDatabase implements MapboxConstants {
         return db;
     }
 
-    public void closeDatabase() {
+    public synchronized void closeDatabase() {
         if (db != null && db.isOpen()) {
             db.close();
         }
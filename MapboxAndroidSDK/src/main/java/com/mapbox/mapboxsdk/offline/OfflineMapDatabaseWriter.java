@@ -0,0 +1,224 @@
+package com.mapbox.mapboxsdk.offline;
+
+import android.database.SQLException;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+import android.os.Process;
+import android.util.Log;
+import java.util.ArrayDeque;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Write-behind stage between the download workers and the offline map database. Downloaded
+ * resources are queued in memory and committed by a single writer thread, many per transaction,
+ * so that the cost of a commit (and its fsync) is paid once per batch instead of once per tile.
+ * <p/>
+ * Memory is bounded: when too many resources or bytes are waiting to be written, the download
+ * workers calling {@link #write(String, byte[])} block until the writer has caught up.
+ */
+class OfflineMapDatabaseWriter implements Runnable {
+
+    private static final String TAG = "OfflineMapDatabaseWriter";
+
+    /**
+     * How long the writer waits for a batch to fill up before committing what it has.
+     */
+    private static final long MAXIMUM_BATCH_DELAY_MS = 500;
+
+    private static final String INSERT_RESOURCE = "INSERT OR REPLACE INTO "
+            + OfflineDatabaseHandler.TABLE_RESOURCES + " ("
+            + OfflineDatabaseHandler.FIELD_RESOURCES_URL + ", "
+            + OfflineDatabaseHandler.FIELD_RESOURCES_DATA + ", "
+            + OfflineDatabaseHandler.FIELD_RESOURCES_STATUS + ") VALUES (?, ?, 200);";
+
+    /**
+     * Notified on the writer thread.
+     */
+    interface Callback {
+        void onResourcesWritten(int count);
+
+        /**
+         * @param count the number of resources which couldn't be written
+         */
+        void onWriteError(Throwable error, int count);
+    }
+
+    private final SQLiteDatabase mDatabase;
+    private final int mBatchSize;
+    private final int mMaximumPendingCount;
+    private final long mMaximumPendingBytes;
+    private final Callback mCallback;
+
+    private final ReentrantLock mLock = new ReentrantLock();
+    private final Condition mNotEmpty = mLock.newCondition();
+    private final Condition mNotFull = mLock.newCondition();
+    private final ArrayDeque<PendingResource> mPending = new ArrayDeque<PendingResource>();
+    private long mPendingBytes;
+    private boolean mClosed;
+    private boolean mShuttingDown;
+    private Thread mThread;
+
+    OfflineMapDatabaseWriter(final SQLiteDatabase database, final int batchSize,
+                             final long maximumPendingBytes, final Callback callback) {
+        mDatabase = database;
+        mBatchSize = Math.max(1, batchSize);
+        mMaximumPendingCount = 2 * mBatchSize;
+        mMaximumPendingBytes = maximumPendingBytes;
+        mCallback = callback;
+    }
+
+    void start() {
+        mThread = new Thread(this, TAG);
+        mThread.start();
+    }
+
+    /**
+     * Queue a downloaded resource for writing, blocking while the queue is full.
+     *
+     * @param url the url of the resource
+     * @param data the content of the resource
+     * @return false if the writer was closed and the resource dropped
+     * @throws InterruptedException if interrupted while waiting for room in the queue
+     */
+    boolean write(final String url, final byte[] data) throws InterruptedException {
+        mLock.lockInterruptibly();
+        try {
+            // a resource larger than the byte budget is still accepted once the queue is empty
+            while (!mClosed && !mShuttingDown && !mPending.isEmpty()
+                    && (mPending.size() >= mMaximumPendingCount
+                    || mPendingBytes + data.length > mMaximumPendingBytes)) {
+                mNotFull.await();
+            }
+            if (mClosed || mShuttingDown) {
+                return false;
+            }
+            mPending.add(new PendingResource(url, data));
+            mPendingBytes += data.length;
+            if (mPending.size() >= mBatchSize) {
+                mNotEmpty.signal();
+            }
+            return true;
+        } finally {
+            mLock.unlock();
+        }
+    }
+
+    /**
+     * Stop the writer. Resources still queued are dropped, they stay marked as not downloaded in
+     * the database.
+     */
+    void close() {
+        mLock.lock();
+        try {
+            mClosed = true;
+            mPending.clear();
+            mPendingBytes = 0;
+            mNotEmpty.signalAll();
+            mNotFull.signalAll();
+        } finally {
+            mLock.unlock();
+        }
+    }
+
+    /**
+     * Stop the writer once the resources still queued are written, and wait for its thread to
+     * end, so that the database can be closed. Resources written from now on are dropped. Not to
+     * be called on the writer thread.
+     *
+     * @throws InterruptedException if interrupted while waiting for the writer thread
+     */
+    void shutdown() throws InterruptedException {
+        mLock.lock();
+        try {
+            mShuttingDown = true;
+            mNotEmpty.signalAll();
+            mNotFull.signalAll();
+        } finally {
+            mLock.unlock();
+        }
+        if (mThread != null) {
+            mThread.join();
+        }
+    }
+
+    @Override
+    public void run() {
+        Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+        final SQLiteStatement insert = mDatabase.compileStatement(INSERT_RESOURCE);
+        try {
+            PendingResource[] batch;
+            while ((batch = takeBatch()) != null) {
+                try {
+                    writeBatch(insert, batch);
+                } catch (SQLException e) {
+                    Log.e(TAG, "Failed to write " + batch.length + " resources", e);
+                    mCallback.onWriteError(e, batch.length);
+                    continue;
+                }
+                mCallback.onResourcesWritten(batch.length);
+            }
+        } catch (InterruptedException e) {
+            Log.w(TAG, "Interrupted, resources still queued are dropped");
+            close();
+        } finally {
+            insert.close();
+        }
+    }
+
+    /**
+     * Wait for a full batch, or for whatever is queued after {@link #MAXIMUM_BATCH_DELAY_MS}.
+     *
+     * @return the batch, or null once the writer is closed, or shut down and drained
+     */
+    private PendingResource[] takeBatch() throws InterruptedException {
+        mLock.lockInterruptibly();
+        try {
+            while (!mClosed && !mShuttingDown && mPending.isEmpty()) {
+                mNotEmpty.await();
+            }
+            long remaining = TimeUnit.MILLISECONDS.toNanos(MAXIMUM_BATCH_DELAY_MS);
+            while (!mClosed && !mShuttingDown && mPending.size() < mBatchSize && remaining > 0) {
+                remaining = mNotEmpty.awaitNanos(remaining);
+            }
+            if (mClosed || mPending.isEmpty()) {
+                return null;
+            }
+            final PendingResource[] batch = new PendingResource[Math.min(mBatchSize, mPending.size())];
+            for (int i = 0; i < batch.length; i++) {
+                batch[i] = mPending.poll();
+                mPendingBytes -= batch[i].data.length;
+            }
+            mNotFull.signalAll();
+            return batch;
+        } finally {
+            mLock.unlock();
+        }
+    }
+
+    private void writeBatch(final SQLiteStatement insert, final PendingResource[] batch) {
+        mDatabase.beginTransaction();
+        try {
+            for (final PendingResource resource : batch) {
+                insert.bindString(1, resource.url);
+                insert.bindBlob(2, resource.data);
+                insert.executeInsert();
+                insert.clearBindings();
+            }
+            mDatabase.setTransactionSuccessful();
+        } finally {
+            mDatabase.endTransaction();
+        }
+    }
+
+    private static final class PendingResource {
+        final String url;
+        final byte[] data;
+
+        PendingResource(final String url, final byte[] data) {
+            this.url = url;
+            this.data = data;
+        }
+    }
+}
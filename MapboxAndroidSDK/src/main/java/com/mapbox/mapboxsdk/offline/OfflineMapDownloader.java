@@ -6,6 +6,7 @@ import android.content.ContextWrapper;
 import android.database.Cursor;
 import android.database.sqlite.SQLiteDatabase;
 import android.os.AsyncTask;
+import android.os.SystemClock;
 import android.text.TextUtils;
 import android.util.Log;
 import com.mapbox.mapboxsdk.constants.MapboxConstants;
@@ -42,6 +43,10 @@ public class OfflineMapDownloader implements MapboxConstants {
 
     private static OfflineMapDownloader offlineMapDownloader;
 
+    private static final int DEFAULT_WRITE_BATCH_SIZE = 256;
+    private static final long DEFAULT_MAXIMUM_PENDING_WRITE_BYTES = 8 * 1024 * 1024;
+    private static final long DEFAULT_PROGRESS_UPDATE_INTERVAL_MS = 250;
+
     private ArrayList<OfflineMapDownloaderListener> listeners;
 
     private Context context;
@@ -162,8 +167,15 @@ public class OfflineMapDownloader implements MapboxConstants {
     private int maximumZ;
     private MBXOfflineMapDownloaderState state;
     private int totalFilesWritten;
+    private int totalFilesFailedToWrite;
     private int totalFilesExpectedToWrite;
 
+    private volatile OfflineMapDatabaseWriter databaseWriter;
+    private int writeBatchSize = DEFAULT_WRITE_BATCH_SIZE;
+    private long maximumPendingWriteBytes = DEFAULT_MAXIMUM_PENDING_WRITE_BYTES;
+    private long progressUpdateIntervalMs = DEFAULT_PROGRESS_UPDATE_INTERVAL_MS;
+    private long lastProgressUpdateTime;
+
 
     private ArrayList<OfflineMapDatabase> mutableOfflineMapDatabases;
 
@@ -219,6 +231,35 @@ public class OfflineMapDownloader implements MapboxConstants {
         return listeners.remove(listener);
     }
 
+    /**
+     * Set how many downloaded files are written to the database in a single transaction. Takes
+     * effect with the next download job.
+     *
+     * @param batchSize the number of files per transaction
+     */
+    public void setWriteBatchSize(int batchSize) {
+        this.writeBatchSize = batchSize;
+    }
+
+    /**
+     * Set how many bytes of downloaded files may wait to be written to the database before
+     * downloads are held back. Takes effect with the next download job.
+     *
+     * @param maximumPendingWriteBytes the number of bytes
+     */
+    public void setMaximumPendingWriteBytes(long maximumPendingWriteBytes) {
+        this.maximumPendingWriteBytes = maximumPendingWriteBytes;
+    }
+
+    /**
+     * Set the minimum time between two progress updates sent to the listeners.
+     *
+     * @param intervalMs the interval in milliseconds
+     */
+    public void setProgressUpdateInterval(long intervalMs) {
+        this.progressUpdateIntervalMs = intervalMs;
+    }
+
 /*
     Delegate Notifications
 */
@@ -351,6 +392,21 @@ public class OfflineMapDownloader implements MapboxConstants {
             return;
         }
 
+        databaseWriter = new OfflineMapDatabaseWriter(database(), writeBatchSize, maximumPendingWriteBytes,
+                new OfflineMapDatabaseWriter.Callback() {
+                    @Override
+                    public void onResourcesWritten(int count) {
+                        sqliteDidSaveDownloadedData(count, 0);
+                    }
+
+                    @Override
+                    public void onWriteError(Throwable error, int count) {
+                        notifyDelegateOfSqliteError(error);
+                        sqliteDidSaveDownloadedData(0, count);
+                    }
+                });
+        databaseWriter.start();
+
         OfflineMapDownloadTaskManager manager = new OfflineMapDownloadTaskManager(urlIter, 8);
         manager.start();
     }
@@ -375,66 +431,73 @@ public class OfflineMapDownloader implements MapboxConstants {
             return;
         }
 
-        // Open the database read-write and multi-threaded. The slightly obscure c-style variable names here and below are
-        // used to stay consistent with the sqlite documentaion.
-        // Continue by inserting an image blob into the data table
+        // Hand the data over to the database writer, which commits it along with other files in a
+        // single transaction. This blocks while the writer has too much data waiting.
         //
-        SQLiteDatabase db = database();
-        db.beginTransaction();
-
-//      String query2 = "INSERT INTO data(value) VALUES(?);";
-        ContentValues values = new ContentValues();
-        values.put(OfflineDatabaseHandler.FIELD_RESOURCES_URL, url);
-        values.put(OfflineDatabaseHandler.FIELD_RESOURCES_DATA, data);
-        values.put(OfflineDatabaseHandler.FIELD_RESOURCES_STATUS, 200);
-        db.replace(OfflineDatabaseHandler.TABLE_RESOURCES, null, values);
-
-        db.setTransactionSuccessful();
-        db.endTransaction();
-
-/*
-        if(error)
-        {
-            // Oops, that didn't work. Notify the delegate.
-            //
-            [self notifyDelegateOfSqliteError:error];
+        final OfflineMapDatabaseWriter writer = databaseWriter;
+        if (writer == null) {
+            Log.w(TAG, "sqliteSaveDownloadedData() called with no download job running.  Return.");
+            return;
         }
-        else
-        {
-*/
-        // Update the progress
-        //
-        this.totalFilesWritten += 1;
-        notifyDelegateOfProgress();
-        Log.d(TAG, "totalFilesWritten = " + this.totalFilesWritten + "; totalFilesExpectedToWrite = " + this.totalFilesExpectedToWrite);
+        try {
+            writer.write(url, data);
+        } catch (InterruptedException e) {
+            Log.w(TAG, "Interrupted while waiting to save " + url);
+            Thread.currentThread().interrupt();
+        }
+    }
 
-        // If all the downloads are done, clean up and notify the delegate
+    /**
+     * Called on the database writer thread once files have been committed to the database, or
+     * failed to be. Failed files keep their NULL status and are downloaded again when the job is
+     * restarted, but they still count towards the end of this one.
+     *
+     * @param count the number of files written
+     * @param failed the number of files which couldn't be written
+     */
+    private void sqliteDidSaveDownloadedData(int count, int failed) {
+        // Update the progress, at most once per progress update interval
         //
-        if (this.totalFilesWritten >= this.totalFilesExpectedToWrite) {
-            finishUpDownloadProcess();
-        }
-/*
+        final boolean wasDone = this.totalFilesWritten + this.totalFilesFailedToWrite >= this.totalFilesExpectedToWrite;
+        this.totalFilesWritten += count;
+        this.totalFilesFailedToWrite += failed;
+        final boolean done = this.totalFilesWritten + this.totalFilesFailedToWrite >= this.totalFilesExpectedToWrite;
+        final long now = SystemClock.elapsedRealtime();
+        if (done || now - lastProgressUpdateTime >= progressUpdateIntervalMs) {
+            lastProgressUpdateTime = now;
+            notifyDelegateOfProgress();
+            Log.d(TAG, "totalFilesWritten = " + this.totalFilesWritten + "; totalFilesExpectedToWrite = " + this.totalFilesExpectedToWrite);
         }
-*/
 
-        // If this was the last of a batch of urls in the data session's download queue, and there are more urls
-        // to be downloaded, get another batch of urls from the database and keep working.
+        // If all the downloads are done, clean up and notify the delegate. The writer is still
+        // running on this thread, so it is shut down from another one once it has drained.
         //
-/*
-        if(activeDataSessionTasks > 0)
-        {
-            _activeDataSessionTasks -= 1;
-        }
-        if(_activeDataSessionTasks == 0 && _totalFilesWritten < _totalFilesExpectedToWrite)
-        {
-            [self startDownloading];
+        if (done && !wasDone) {
+            final OfflineMapDatabaseWriter writer = databaseWriter;
+            new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        if (writer != null) {
+                            writer.shutdown();
+                        }
+                    } catch (InterruptedException e) {
+                        Log.w(TAG, "Interrupted while waiting for the database writer to finish");
+                        Thread.currentThread().interrupt();
+                    }
+                    finishUpDownloadProcess();
+                }
+            }, TAG).start();
         }
-*/
     }
 
     private void finishUpDownloadProcess() {
         if (this.state == MBXOfflineMapDownloaderState.MBXOfflineMapDownloaderStateRunning) {
             Log.i(TAG, "Just finished downloading all materials.  Persist the OfflineMapDatabase, change the state, and call it a day.");
+            if (databaseWriter != null) {
+                databaseWriter.close();
+                databaseWriter = null;
+            }
             // This is what to do when we've downloaded all the files
             //
             // Populate OfflineMapDatabase object and persist it
@@ -516,6 +579,7 @@ public class OfflineMapDownloader implements MapboxConstants {
         cursor.moveToFirst();
         this.totalFilesExpectedToWrite = cursor.getInt(0);
         this.totalFilesWritten = cursor.getInt(1);
+        this.totalFilesFailedToWrite = 0;
         cursor.close();
         success = true;
 
@@ -563,6 +627,7 @@ public class OfflineMapDownloader implements MapboxConstants {
         db.endTransaction();
         this.totalFilesExpectedToWrite = urlStrings.size() + generator.getURLCount();
         this.totalFilesWritten = 0;
+        this.totalFilesFailedToWrite = 0;
         success = true;
 /*
         // Open the database read-write and multi-threaded. The slightly obscure c-style variable names here and below are
@@ -703,7 +768,12 @@ public class OfflineMapDownloader implements MapboxConstants {
                         }
 
                         BufferedReader rd = new BufferedReader(new InputStreamReader(conn.getInputStream(), Charset.forName("UTF-8")));
-                        String jsonText = DataLoadingUtils.readAll(rd);
+                        String jsonText;
+                        try {
+                            jsonText = DataLoadingUtils.readAll(rd);
+                        } finally {
+                            rd.close();
+                        }
 
                         // The marker geojson was successfully retrieved, so parse it for marker icons. Note that we shouldn't
                         // try to save it here, because it may already be in the download queue and saving it twice will mess
@@ -3,10 +3,9 @@ package com.mapbox.mapboxsdk.overlay;
 import android.os.AsyncTask;
 import android.text.TextUtils;
 import android.util.Log;
-import com.cocoahero.android.geojson.FeatureCollection;
 import com.mapbox.mapboxsdk.util.DataLoadingUtils;
+import com.mapbox.mapboxsdk.util.GeoJSONStreamParser;
 import com.mapbox.mapboxsdk.views.MapView;
-import java.io.InputStream;
 import java.util.ArrayList;
 
 public class GeoJSONPainter {
@@ -28,27 +27,39 @@ public class GeoJSONPainter {
     }
 
     /**
-     * Class that generates markers from formats such as GeoJSON
+     * Class that generates markers from formats such as GeoJSON. Features are read one at a time
+     * and handed to the map in batches while the rest of the document is still being read.
      */
-    private class LoadAndDisplay extends AsyncTask<String, Void, ArrayList<Object>> {
-        @Override
-        protected ArrayList<Object> doInBackground(String... params) {
-            InputStream is;
-            String jsonText;
-            ArrayList<Object> uiObjects = new ArrayList<Object>();
+    private class LoadAndDisplay extends AsyncTask<String, Object, Void> {
+        private static final int BATCH_SIZE = 100;
 
+        @Override
+        protected Void doInBackground(String... params) {
+            final ArrayList<Object> batch = new ArrayList<Object>(BATCH_SIZE);
             try {
-                FeatureCollection parsed = DataLoadingUtils.loadGeoJSONFromUrl(params[0]);
-                uiObjects = DataLoadingUtils.createUIObjectsFromGeoJSONObjects(parsed, markerIcon);
+                DataLoadingUtils.loadUIObjectsFromGeoJSONUrl(params[0], markerIcon,
+                        new GeoJSONStreamParser.UIObjectHandler() {
+                            @Override
+                            public void onUIObject(Object uiObject) {
+                                batch.add(uiObject);
+                                if (batch.size() >= BATCH_SIZE) {
+                                    publishProgress(batch.toArray());
+                                    batch.clear();
+                                }
+                            }
+                        });
             } catch (Exception e) {
                 Log.e(TAG, "Error loading / parsing GeoJSON: " + e.toString());
                 e.printStackTrace();
             }
-            return uiObjects;
+            if (!batch.isEmpty()) {
+                publishProgress(batch.toArray());
+            }
+            return null;
         }
 
         @Override
-        protected void onPostExecute(ArrayList<Object> objects) {
+        protected void onProgressUpdate(Object... objects) {
             // Back on the Main Thread so add new UI Objects and refresh map
             for (Object obj : objects) {
                 if (obj instanceof Marker) {
@@ -57,7 +68,7 @@ public class GeoJSONPainter {
                     mapView.getOverlays().add((PathOverlay) obj);
                 }
             }
-            if (objects.size() > 0) {
+            if (objects.length > 0) {
                 mapView.invalidate();
             }
         }
@@ -7,12 +7,14 @@ import android.os.AsyncTask;
 import android.os.Environment;
 import android.util.Log;
 import com.mapbox.mapboxsdk.constants.MapboxConstants;
+import com.mapbox.mapboxsdk.tileprovider.util.StreamUtils;
 import com.mapbox.mapboxsdk.util.BitmapUtils;
 import com.mapbox.mapboxsdk.util.MapboxUtils;
 import com.mapbox.mapboxsdk.util.NetworkUtils;
 import com.mapbox.mapboxsdk.util.constants.UtilConstants;
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
 import java.net.HttpURLConnection;
 import java.net.URL;
 import java.util.ArrayList;
@@ -214,7 +216,12 @@ public class Icon implements MapboxConstants {
                     // Note, sIconCache cannot be null..
 
                     BitmapFactory.Options opts = BitmapUtils.getBitmapOptions(context.getResources().getDisplayMetrics());
-                    result = sIconCache.put(this.url, connection.getInputStream(), opts);
+                    InputStream is = connection.getInputStream();
+                    try {
+                        result = sIconCache.put(this.url, is, opts);
+                    } finally {
+                        StreamUtils.closeStream(is);
+                    }
                 } catch (IOException e) {
                     Log.e(TAG, "doInBackground: Unable to fetch icon from: " + this.url);
                 }
@@ -11,6 +11,8 @@ import android.os.AsyncTask;
 import android.view.MotionEvent;
 
 import com.mapbox.mapboxsdk.clustering.Cluster;
+import com.mapbox.mapboxsdk.clustering.algo.Algorithm;
+import com.mapbox.mapboxsdk.clustering.algo.IncrementalGridBasedAlgorithm;
 import com.mapbox.mapboxsdk.clustering.algo.NonHierarchicalDistanceBasedAlgorithm;
 import com.mapbox.mapboxsdk.clustering.algo.PreCachingAlgorithmDecorator;
 import com.mapbox.mapboxsdk.events.MapListener;
@@ -25,6 +27,8 @@ import com.mapbox.mapboxsdk.views.util.Projection;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Set;
 
@@ -53,7 +57,14 @@ public abstract class ItemizedOverlay extends SafeDrawOverlay implements Overlay
     private CalculateClusterTask mCalculateClusterTask;
     private float mMinZoomForClustering = 22;
 
-    private PreCachingAlgorithmDecorator<Marker> mAlgorithm;
+    private Algorithm<Marker> mAlgorithm;
+
+    /**
+     * The items the clustering algorithm holds, so that populate() only tells it of the items
+     * added or removed since the last call. The spare set is reused to build the next one.
+     */
+    private Set<Marker> mClusteredItems = Collections.newSetFromMap(new IdentityHashMap<Marker, Boolean>());
+    private Set<Marker> mSpareClusteredItems = Collections.newSetFromMap(new IdentityHashMap<Marker, Boolean>());
 
 
     /**
@@ -168,14 +179,42 @@ public abstract class ItemizedOverlay extends SafeDrawOverlay implements Overlay
      */
     protected void populate() {
         final int size = size();
-        mAlgorithm.clearItems();
+        final Set<Marker> previousItems = mClusteredItems;
+        final Set<Marker> items = mSpareClusteredItems;
         mInternalItemList.clear();
         mInternalItemList.ensureCapacity(size);
         for (int a = 0; a < size; a++) {
-            mInternalItemList.add(createItem(a));
+            final Marker item = createItem(a);
+            mInternalItemList.add(item);
+            if (items.add(item) && !previousItems.remove(item)) {
+                mAlgorithm.addItem(item);
+            }
+        }
+        // whatever is left was removed
+        for (Marker item : previousItems) {
+            mAlgorithm.removeItem(item);
         }
-        mAlgorithm.addItems(mInternalItemList);
+        previousItems.clear();
+        mClusteredItems = items;
+        mSpareClusteredItems = previousItems;
+    }
 
+    /**
+     * Called by a marker of this overlay when its position has changed.
+     */
+    void onItemPointChanged(final Marker item) {
+        if (!mClusteredItems.contains(item)) {
+            return;
+        }
+        final Algorithm<Marker> algorithm = mAlgorithm;
+        if (algorithm instanceof IncrementalGridBasedAlgorithm) {
+            ((IncrementalGridBasedAlgorithm<Marker>) algorithm).updateItem(item);
+        } else if (algorithm instanceof PreCachingAlgorithmDecorator) {
+            ((PreCachingAlgorithmDecorator<Marker>) algorithm).updateItem(item);
+        } else {
+            algorithm.removeItem(item);
+            algorithm.addItem(item);
+        }
     }
 
     /**
@@ -358,6 +397,31 @@ public abstract class ItemizedOverlay extends SafeDrawOverlay implements Overlay
         mMinZoomForClustering = minZoom;
     }
 
+    /**
+     * Cluster markers by the grid cells of each zoom level instead of by distance. Adding,
+     * removing or moving a marker then only updates the cells it leaves and enters, which
+     * suits large or often changing sets of markers, though clusters follow the cell
+     * boundaries rather than where the markers are. The default distance based clustering
+     * computes the clusters of a zoom level again after any change.
+     *
+     * @param incremental true to use {@link IncrementalGridBasedAlgorithm}, false for the
+     *                    default distance based clustering
+     */
+    public void setIncrementalClustering(final boolean incremental) {
+        if (incremental == mAlgorithm instanceof IncrementalGridBasedAlgorithm) {
+            return;
+        }
+        final Algorithm<Marker> algorithm = incremental
+                ? new IncrementalGridBasedAlgorithm<Marker>()
+                : new PreCachingAlgorithmDecorator<>(new NonHierarchicalDistanceBasedAlgorithm<Marker>());
+        algorithm.addItems(new ArrayList<>(mClusteredItems));
+        mAlgorithm = algorithm;
+    }
+
+    public boolean isIncrementalClustering() {
+        return mAlgorithm instanceof IncrementalGridBasedAlgorithm;
+    }
+
     public void onScroll(ScrollEvent event) {
 
     }
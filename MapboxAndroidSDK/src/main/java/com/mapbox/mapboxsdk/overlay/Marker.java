@@ -223,6 +223,9 @@ public class Marker implements MapViewConstants, ClusterItem {
      */
     public void setPoint(LatLng point) {
         mLatLng = point;
+        if (mParentHolder != null) {
+            mParentHolder.onItemPointChanged(this);
+        }
         invalidate();
     }
 
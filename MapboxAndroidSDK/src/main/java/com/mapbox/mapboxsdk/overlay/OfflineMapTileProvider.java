@@ -1,61 +1,38 @@
 package com.mapbox.mapboxsdk.overlay;
 
 import android.content.Context;
-import android.graphics.drawable.BitmapDrawable;
-import android.graphics.drawable.Drawable;
 import com.mapbox.mapboxsdk.constants.MapboxConstants;
-import com.mapbox.mapboxsdk.exceptions.OfflineDatabaseException;
 import com.mapbox.mapboxsdk.offline.OfflineMapDatabase;
-import com.mapbox.mapboxsdk.tileprovider.MapTile;
-import com.mapbox.mapboxsdk.tileprovider.MapTileLayerBase;
-import com.mapbox.mapboxsdk.util.MapboxUtils;
-import java.io.ByteArrayInputStream;
+import com.mapbox.mapboxsdk.tileprovider.MapTileLayerArray;
+import com.mapbox.mapboxsdk.tileprovider.modules.OfflineMapDatabaseProvider;
+import com.mapbox.mapboxsdk.tileprovider.util.SimpleRegisterReceiver;
 
-import uk.co.senab.bitmapcache.CacheableBitmapDrawable;
-
-public class OfflineMapTileProvider extends MapTileLayerBase implements MapboxConstants {
+/**
+ * A tile provider for the tiles of an {@link OfflineMapDatabase}. Tiles found in the memory cache
+ * are drawn right away, the others are read from the database and decoded by an
+ * {@link OfflineMapDatabaseProvider} in the background, and the map is redrawn as they arrive.
+ */
+public class OfflineMapTileProvider extends MapTileLayerArray implements MapboxConstants {
 
     private static final String TAG = "OfflineMapTileProvider";
 
     private OfflineMapDatabase offlineMapDatabase = null;
 
     public OfflineMapTileProvider(Context context, OfflineMapDatabase offlineMapDatabase) {
-        super(context, null);
+        super(context, null, new SimpleRegisterReceiver(context));
         this.offlineMapDatabase = offlineMapDatabase;
-    }
-
-    @Override
-    public Drawable getMapTile(MapTile pTile, boolean allowRemote) {
-        try {
-            CacheableBitmapDrawable cacheable = mTileCache.getMapTile(pTile);
-            if (cacheable != null) {
-                return cacheable;
-            }
 
-            // Build URL to match url in database
-            String url = MapboxUtils.getMapTileURL(context, offlineMapDatabase.getMapID(), pTile.getZ(), pTile.getX(), pTile.getY(), offlineMapDatabase.getImageQuality());
-            byte[] data = offlineMapDatabase.dataForURL(url);
-
-            if (data == null || data.length == 0) {
-                // No data found, just return null so that default gray screen is displayed.
-                return null;
-            }
-
-            // Return the tile image
-            BitmapDrawable drawable = new BitmapDrawable(context.getResources(), new ByteArrayInputStream(data));
-            return mTileCache.putTile(pTile, drawable);
-        } catch (OfflineDatabaseException e) {
-            e.printStackTrace();
+        final OfflineMapDatabaseProvider provider =
+                new OfflineMapDatabaseProvider(context, offlineMapDatabase, mTileCache);
+        mCacheKey = provider.getCacheKey();
+        synchronized (mTileProviderList) {
+            mTileProviderList.add(provider);
         }
-
-        return null;
     }
 
     @Override
     public void detach() {
-        if (getTileSource() != null) {
-            getTileSource().detach();
-        }
+        super.detach();
         if (offlineMapDatabase != null) {
             offlineMapDatabase.closeDatabase();
         }
@@ -94,6 +94,10 @@ public class TilesOverlay extends SafeDrawOverlay {
         this.mTileProvider.detach();
     }
 
+    public MapTileLayerBase getTileProvider() {
+        return mTileProvider;
+    }
+
     public float getMinimumZoomLevel() {
         return mTileProvider.getMinimumZoomLevel();
     }
@@ -204,8 +208,14 @@ public class TilesOverlay extends SafeDrawOverlay {
         public void initializeLoop(final float pZoomLevel, final int pTileSizePx) {
 
             final int roundedZoom = (int) Math.floor(pZoomLevel);
+            final int mapTileUpperBound = 1 << roundedZoom;
+            // while animating, requests are ranked against the viewport the animation goes to
+            if (!isAnimating) {
+                mTileProvider.setViewport(roundedZoom,
+                        GeometryMath.mod(center.x, mapTileUpperBound),
+                        GeometryMath.mod(center.y, mapTileUpperBound), getRadius());
+            }
             if (roundedZoom != pZoomLevel) {
-                final int mapTileUpperBound = 1 << roundedZoom;
                 mCurrentZoomFactor =
                         (float) Projection.mapSize(pZoomLevel) / mapTileUpperBound / pTileSizePx;
             } else {
@@ -324,6 +334,43 @@ public class TilesOverlay extends SafeDrawOverlay {
         }
     }
 
+    /**
+     * Requests the tiles of a viewport which isn't displayed yet, such as the one a zoom
+     * animation ends on, so they load while the animation runs. Pending requests are ranked
+     * against this viewport until the animation ends.
+     *
+     * @param pZoomLevel the zoom level of the viewport
+     * @param pViewPort the viewport, as returned by
+     *                  {@link GeometryMath#viewPortRectForTileDrawing(float, Projection, Rect)}
+     */
+    public void requestTiles(final float pZoomLevel, final Rect pViewPort) {
+        if (mTileProvider.hasNoSource()) {
+            return;
+        }
+        mRequestTileLooper.loop(null, mTileProvider.getCacheKey(), pZoomLevel,
+                Projection.getTileSize(), pViewPort, null);
+    }
+
+    private final TileLooper mRequestTileLooper = new TileLooper() {
+        @Override
+        public void initializeLoop(final float pZoomLevel, final int pTileSizePx) {
+            final int roundedZoom = (int) Math.floor(pZoomLevel);
+            final int mapTileUpperBound = 1 << roundedZoom;
+            mTileProvider.setViewport(roundedZoom, GeometryMath.mod(center.x, mapTileUpperBound),
+                    GeometryMath.mod(center.y, mapTileUpperBound), getRadius());
+        }
+
+        @Override
+        public void handleTile(final Canvas pCanvas, final String pCacheKey, final int pTileSizePx,
+                               final MapTile pTile, final int pX, final int pY, final Rect pClipRect) {
+            final Drawable drawable = mTileProvider.getMapTile(pTile, true);
+            if (drawable instanceof CacheableBitmapDrawable) {
+                // released by finalizeLoop()
+                mBeingUsedDrawables.add((CacheableBitmapDrawable) drawable);
+            }
+        }
+    };
+
     /**
      * Recreate the cache using scaled versions of the tiles currently in it
      *
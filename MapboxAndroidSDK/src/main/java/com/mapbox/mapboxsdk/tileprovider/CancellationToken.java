@@ -0,0 +1,56 @@
+package com.mapbox.mapboxsdk.tileprovider;
+
+/**
+ * Lets a tile request be cancelled while it is being loaded. The thread loading the tile sets
+ * what cancelling it means for the step it is at, such as closing the connection or stopping the
+ * decoder, and checks {@link #isCancelled()} between steps; {@link #cancel()} can be called from
+ * any thread.
+ */
+public class CancellationToken {
+
+    private boolean mCancelled;
+    private Runnable mCancelAction;
+
+    public synchronized boolean isCancelled() {
+        return mCancelled;
+    }
+
+    /**
+     * Cancels the request and runs the current cancel action, if any.
+     *
+     * @return true if the request wasn't cancelled already
+     */
+    public boolean cancel() {
+        final Runnable action;
+        synchronized (this) {
+            if (mCancelled) {
+                return false;
+            }
+            mCancelled = true;
+            action = mCancelAction;
+            mCancelAction = null;
+        }
+        if (action != null) {
+            action.run();
+        }
+        return true;
+    }
+
+    /**
+     * Sets what cancelling the request does for the step being run, replacing the previous one.
+     * If the request is cancelled already, the action is run right away.
+     *
+     * @param action the action, or null once the step is over
+     */
+    public void setCancelAction(final Runnable action) {
+        synchronized (this) {
+            if (!mCancelled) {
+                mCancelAction = action;
+                return;
+            }
+        }
+        if (action != null) {
+            action.run();
+        }
+    }
+}
@@ -0,0 +1,18 @@
+package com.mapbox.mapboxsdk.tileprovider;
+
+/**
+ * A callback which tells dropped requests apart from failed ones. Callbacks which don't
+ * implement it are told of a dropped request through
+ * {@link #mapTileRequestFailed(MapTileRequestState)}, with
+ * {@link NegativeTileCache#REASON_UNKNOWN} as the failure reason.
+ */
+public interface IMapTileRequestDroppedCallback extends IMapTileProviderCallback {
+
+    /**
+     * The map tile request was dropped because the tile isn't wanted anymore, e.g. its zoom level
+     * was left. This isn't a failure: the tile may be requested again later.
+     *
+     * @param aState a state object
+     */
+    void mapTileRequestDropped(MapTileRequestState aState);
+}
@@ -5,6 +5,8 @@ import com.mapbox.mapboxsdk.constants.GeoConstants;
 import com.mapbox.mapboxsdk.constants.MapboxConstants;
 import com.mapbox.mapboxsdk.geometry.BoundingBox;
 import com.mapbox.mapboxsdk.tileprovider.constants.TileLayerConstants;
+import com.mapbox.mapboxsdk.util.LongObjectMap;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * A map tile is distributed using the observer pattern. The tile is delivered by a tile provider
@@ -19,21 +21,35 @@ public class MapTile implements GeoConstants, MapboxConstants, TileLayerConstant
     public static final int MAPTILE_SUCCESS_ID = 0;
     public static final int MAPTILE_FAIL_ID = MAPTILE_SUCCESS_ID + 1;
 
-    // This class must be immutable because it's used as the key in the cache hash map
-    // (ie all the fields are final).
+    // Layout of the packed identity returned by getKey(): the layer id in the top bits, then the
+    // zoom level, then x and y, which is enough for every zoom level up to MAXIMUM_ZOOMLEVEL.
+    private static final int COORDINATE_BITS = 23;
+    private static final int ZOOM_BITS = 5;
+    private static final int LAYER_BITS = 64 - ZOOM_BITS - 2 * COORDINATE_BITS;
+    private static final long COORDINATE_MASK = (1L << COORDINATE_BITS) - 1;
+    private static final long ZOOM_MASK = (1L << ZOOM_BITS) - 1;
+    private static final long LAYER_MASK = (1L << LAYER_BITS) - 1;
+
+    // Read without locking, written under the class lock so that ids are handed out in order
+    private static final ConcurrentHashMap<String, Integer> LAYER_IDS =
+            new ConcurrentHashMap<String, Integer>();
+
+    // For lat/lng bounds calculation
+    private static final double TILE_SIZE = DEFAULT_TILE_SIZE;
+    private static final double ORIGIN_SHIFT = 2 * Math.PI * RADIUS_EARTH_METERS / 2.0;
+    private static final double INITIAL_RESOLUTION = 2 * Math.PI * RADIUS_EARTH_METERS / TILE_SIZE;
+
+    // The identity of this class must be immutable because it's used as the key in the cache
+    // hash maps. The strings are only built when first asked for.
     private final int x;
     private final int y;
     private final int z;
-    private final String path;
-    private final String cacheKey;
-    private final int code;
+    private final long key;
+    private final String layerCacheKey;
+    private String path;
+    private String cacheKey;
     private Rect mTileRect;
 
-    // For lat/lng bounds calculation
-    private double tileSize = DEFAULT_TILE_SIZE;
-    private double originShift = 2 * Math.PI * RADIUS_EARTH_METERS / 2.0;
-    private double initialResolution = 2 * Math.PI * RADIUS_EARTH_METERS / tileSize;
-
     public MapTile(final int az, final int ax, final int ay) {
         this("", az, ax, ay);
     }
@@ -42,9 +58,52 @@ public class MapTile implements GeoConstants, MapboxConstants, TileLayerConstant
         this.z = az;
         this.x = ax;
         this.y = ay;
-        this.path = (new StringBuilder()).append(z).append('/').append(x).append('/').append(y).toString();
-        this.cacheKey = aCacheKey + "/" + path;
-        this.code = ((17 * (37 + z)) * (37 * x)) * (37 + y);
+        this.layerCacheKey = aCacheKey;
+        this.key = key(layerIdFor(aCacheKey), az, ax, ay);
+    }
+
+    /**
+     * Get the small integer standing for a tile layer cache key in packed tile keys. Ids are
+     * handed out the first time a cache key is seen and never change afterwards.
+     *
+     * @param aCacheKey the cache key of a tile layer
+     * @return the id of the layer
+     * @throws IllegalStateException if all the ids which fit in a key are taken, as tiles of
+     *         different layers would then get the same keys
+     */
+    public static int layerIdFor(final String aCacheKey) {
+        final String cacheKey = aCacheKey == null ? "" : aCacheKey;
+        final Integer id = LAYER_IDS.get(cacheKey);
+        return id != null ? id : newLayerId(cacheKey);
+    }
+
+    private static synchronized int newLayerId(final String aCacheKey) {
+        Integer id = LAYER_IDS.get(aCacheKey);
+        if (id == null) {
+            if (LAYER_IDS.size() > LAYER_MASK) {
+                throw new IllegalStateException("Too many tile layers, at most " + (LAYER_MASK + 1)
+                        + " cache keys can be told apart: " + aCacheKey);
+            }
+            id = LAYER_IDS.size();
+            LAYER_IDS.put(aCacheKey, id);
+        }
+        return id;
+    }
+
+    /**
+     * Pack the identity of a tile into a single long, as returned by {@link #getKey()}.
+     *
+     * @param aLayerId the id of the layer, from {@link #layerIdFor(String)}
+     * @param az the zoom level
+     * @param ax the x index of the tile
+     * @param ay the y index of the tile
+     * @return the packed key
+     */
+    public static long key(final int aLayerId, final int az, final int ax, final int ay) {
+        return ((aLayerId & LAYER_MASK) << (ZOOM_BITS + 2 * COORDINATE_BITS))
+                | ((az & ZOOM_MASK) << (2 * COORDINATE_BITS))
+                | ((ax & COORDINATE_MASK) << COORDINATE_BITS)
+                | (ay & COORDINATE_MASK);
     }
 
     public int getZ() {
@@ -59,17 +118,34 @@ public class MapTile implements GeoConstants, MapboxConstants, TileLayerConstant
         return y;
     }
 
+    /**
+     * Get the identity of this tile, its layer and its coordinates, packed into a long. Two tiles
+     * are equal if and only if their keys are equal, so the key can stand for the tile in
+     * primitive-keyed maps.
+     *
+     * @return the packed key
+     */
+    public long getKey() {
+        return key;
+    }
+
     public String getPath() {
+        if (path == null) {
+            path = (new StringBuilder()).append(z).append('/').append(x).append('/').append(y).toString();
+        }
         return path;
     }
 
     public String getCacheKey() {
+        if (cacheKey == null) {
+            cacheKey = layerCacheKey + "/" + getPath();
+        }
         return cacheKey;
     }
 
     @Override
     public String toString() {
-        return path;
+        return getPath();
     }
 
     @Override
@@ -84,16 +160,28 @@ public class MapTile implements GeoConstants, MapboxConstants, TileLayerConstant
             return false;
         }
         final MapTile rhs = (MapTile) obj;
-        return z == rhs.z && x == rhs.x && y == rhs.y;
+        return key == rhs.key;
     }
 
     @Override
     public int hashCode() {
-        return this.code;
+        return LongObjectMap.hash(key);
     }
 
+    /**
+     * Sets the rectangle the tile is drawn at, in map coordinates. The rectangle is copied, as
+     * the one passed in is usually reused for the next tile.
+     *
+     * @param rect the rectangle, or null if the tile isn't drawn
+     */
     public void setTileRect(final Rect rect) {
-        mTileRect = rect;
+        if (rect == null) {
+            mTileRect = null;
+        } else if (mTileRect == null) {
+            mTileRect = new Rect(rect);
+        } else {
+            mTileRect.set(rect);
+        }
     }
 
     public final Rect getTileRect() {
@@ -111,24 +199,24 @@ public class MapTile implements GeoConstants, MapboxConstants, TileLayerConstant
 
     private double[] TileBounds(int tx, int ty, int zoom) {
         // Returns bounds of the given tile in EPSG:900913 coordinates
-        double[] wn = PixelsToMeters(tx * tileSize, ty * tileSize, zoom);
-        double[] es = PixelsToMeters((tx + 1) * tileSize, (ty + 1) * tileSize, zoom);
+        double[] wn = PixelsToMeters(tx * TILE_SIZE, ty * TILE_SIZE, zoom);
+        double[] es = PixelsToMeters((tx + 1) * TILE_SIZE, (ty + 1) * TILE_SIZE, zoom);
         return new double[]{wn[0], wn[1], es[0], es[1]};
     }
 
     private double[] PixelsToMeters(double px, double py, double zoom) {
         // Converts pixel coordinates in given zoom level of pyramid to EPSG:900913
         double res = Resolution(zoom);
-        double mx = px * res - originShift;
-        double my = py * res - originShift;
+        double mx = px * res - ORIGIN_SHIFT;
+        double my = py * res - ORIGIN_SHIFT;
 
         return new double[]{mx, my};
     }
 
     private double[] MetersToLatLon(double mx, double my) {
         // Converts XY point from Spherical Mercator EPSG:900913 to lat/lon in WGS84 Datum
-        double lon = (mx / originShift) * 180.0;
-        double lat = (my / originShift) * 180.0;
+        double lon = (mx / ORIGIN_SHIFT) * 180.0;
+        double lat = (my / ORIGIN_SHIFT) * 180.0;
         lat = -180 / Math.PI * (2 * Math.atan(Math.exp(lat * Math.PI / 180.0)) - Math.PI / 2.0);
 
         return new double[]{lat, lon};
@@ -136,6 +224,6 @@ public class MapTile implements GeoConstants, MapboxConstants, TileLayerConstant
 
     private double Resolution(double zoom) {
         // Resolution (meters/pixel) for given zoom level (measured at Equator)
-        return initialResolution / Math.pow(2, zoom);
+        return INITIAL_RESOLUTION / Math.pow(2, zoom);
     }
 }
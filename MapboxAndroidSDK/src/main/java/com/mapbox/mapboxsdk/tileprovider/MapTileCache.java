@@ -16,6 +16,7 @@ import java.io.File;
 import java.io.InputStream;
 
 import uk.co.senab.bitmapcache.BitmapLruCache;
+import uk.co.senab.bitmapcache.ByteArrayPool;
 import uk.co.senab.bitmapcache.CacheableBitmapDrawable;
 
 /**
@@ -102,10 +103,109 @@ public class MapTileCache implements TileLayerConstants {
         return getCache().put(getCacheKey(aTile), inputStream, decodeOpts);
     }
 
+    /**
+     * Caches a tile from its encoded image, which is decoded straight from the array and written
+     * to disk as it is, along with what the server said about it.
+     *
+     * @param data the array holding the encoded image
+     * @param length the number of bytes of the image, from the start of the array
+     * @param metadata the metadata of the tile, or null
+     * @param decodeOpts the options to decode the image with, or null
+     */
+    public CacheableBitmapDrawable putTileData(final MapTile aTile, final byte[] data,
+                                               final int length, final TileMetadata metadata,
+                                               final BitmapFactory.Options decodeOpts) {
+        return getCache().put(getCacheKey(aTile), data, 0, length, decodeOpts,
+                metadata != null ? metadata.toString() : null);
+    }
+
+    /**
+     * Gets one of the images a composite tile is made of from the disk cache, by its URL,
+     * unless it has expired.
+     *
+     * @param decodeOpts the options to decode the image with, or null
+     * @return the image, or null if it isn't cached or has expired
+     */
+    public Bitmap getComponentBitmap(final String url, final BitmapFactory.Options decodeOpts) {
+        final String serialized = getCache().getMetadataFromDiskCache(url);
+        if (serialized == null) {
+            return null;
+        }
+        final TileMetadata metadata = TileMetadata.parse(serialized);
+        if (metadata != null && metadata.isExpired()) {
+            return null;
+        }
+        return getCache().decodeFromDiskCache(url, decodeOpts);
+    }
+
+    /**
+     * Writes one of the images a composite tile is made of to the disk cache, by its URL, as
+     * it was downloaded. It isn't kept in memory, only the composite tile is.
+     *
+     * @param data the array holding the encoded image
+     * @param length the number of bytes of the image, from the start of the array
+     * @param metadata the metadata of the image, or null
+     */
+    public void putComponentData(final String url, final byte[] data, final int length,
+                                 final TileMetadata metadata) {
+        getCache().putInDiskCache(url, data, 0, length,
+                metadata != null ? metadata.toString() : null);
+    }
+
+    /**
+     * @return the pool of buffers to read encoded tiles into
+     */
+    public ByteArrayPool getByteArrayPool() {
+        return getCache().getByteArrayPool();
+    }
+
     public CacheableBitmapDrawable putTileBitmap(final MapTile aTile, final Bitmap bitmap) {
         return getCache().put(getCacheKey(aTile), bitmap);
     }
 
+    /**
+     * Caches a tile in memory and on disk, along with what the server said about it.
+     *
+     * @param metadata the metadata of the tile, or null
+     */
+    public CacheableBitmapDrawable putTileBitmap(final MapTile aTile, final Bitmap bitmap,
+                                                 final TileMetadata metadata) {
+        return getCache().put(getCacheKey(aTile), bitmap, Bitmap.CompressFormat.PNG, 100,
+                metadata != null ? metadata.toString() : null);
+    }
+
+    /**
+     * Reads what the server said about a tile in the disk cache. Not to be called from the main
+     * thread.
+     *
+     * @return the metadata, or null if the tile isn't on disk or was stored without any
+     */
+    public TileMetadata getTileMetadata(final MapTile aTile) {
+        if (!getCache().isDiskCacheEnabled()) {
+            return null;
+        }
+        return TileMetadata.parse(getCache().getMetadataFromDiskCache(getCacheKey(aTile)));
+    }
+
+    /**
+     * Updates what the server said about a tile in the disk cache, e.g. once it confirmed the
+     * tile didn't change. Not to be called from the main thread.
+     */
+    public void putTileMetadata(final MapTile aTile, final TileMetadata metadata) {
+        if (metadata != null && getCache().isDiskCacheEnabled()) {
+            getCache().putMetadataInDiskCache(getCacheKey(aTile), metadata.toString());
+        }
+    }
+
+    /**
+     * Whether a tile in the disk cache is past the lifetime the server gave it and should be
+     * checked again. Not to be called from the main thread.
+     */
+    public boolean isTileExpired(final MapTile aTile) {
+        final TileMetadata metadata = getTileMetadata(aTile);
+        return metadata != null && metadata.isExpired();
+    }
+
     public CacheableBitmapDrawable putTile(final MapTile aTile, final Drawable aDrawable) {
         if (aDrawable != null && aDrawable instanceof BitmapDrawable) {
             String key = getCacheKey(aTile);
@@ -163,6 +263,10 @@ public class MapTileCache implements TileLayerConstants {
         return getCache().contains(getCacheKey(aTile));
     }
 
+    public boolean containsTileInMemory(final MapTile aTile) {
+        return getCache().containsInMemoryCache(getCacheKey(aTile));
+    }
+
     public boolean containsTileInDiskCache(final MapTile aTile) {
         return getCache().isDiskCacheEnabled() && getCache().containsInDiskCache(getCacheKey(aTile));
     }
@@ -193,10 +297,24 @@ public class MapTileCache implements TileLayerConstants {
         return getCache().getBitmapFromRemoved(width, height);
     }
 
+    /**
+     * Hands a bitmap which is no longer used, and isn't part of any cached tile, to the bitmap
+     * pool so that its memory can be reused by later decodes.
+     */
+    public void putBitmapInPool(final Bitmap bitmap) {
+        getCache().putInBitmapPool(bitmap);
+    }
+
     public Bitmap decodeBitmap(final byte[] data, final BitmapFactory.Options opts) {
         return getCache().decodeBitmap(new BitmapLruCache.ByteArrayInputStreamProvider(data), opts);
     }
 
+    public Bitmap decodeBitmap(final byte[] data, final int length,
+                               final BitmapFactory.Options opts) {
+        return getCache().decodeBitmap(
+                new BitmapLruCache.ByteArrayInputStreamProvider(data, 0, length), opts);
+    }
+
     public Bitmap decodeBitmap(final BitmapLruCache.InputStreamProvider ip,
                                final BitmapFactory.Options opts) {
         return getCache().decodeBitmap(ip, opts);
@@ -8,9 +8,9 @@ import com.mapbox.mapboxsdk.tileprovider.modules.MapTileModuleLayerBase;
 import com.mapbox.mapboxsdk.tileprovider.modules.NetworkAvailabilityCheck;
 import com.mapbox.mapboxsdk.tileprovider.tilesource.ITileLayer;
 import com.mapbox.mapboxsdk.util.BitmapUtils;
+import com.mapbox.mapboxsdk.util.LongObjectMap;
 import java.util.ArrayList;
 import java.util.Collections;
-import java.util.HashMap;
 import java.util.List;
 import uk.co.senab.bitmapcache.CacheableBitmapDrawable;
 
@@ -32,11 +32,23 @@ import uk.co.senab.bitmapcache.CacheableBitmapDrawable;
  */
 public class MapTileLayerArray extends MapTileLayerBase {
 
-    protected final HashMap<MapTile, MapTileRequestState> mWorking;
+    /**
+     * The requests going through the provider chain, by {@link MapTile#getKey()}.
+     */
+    protected final LongObjectMap<MapTileRequestState> mWorking;
+
+    /**
+     * The prefetch requests which may still be cancelled. Any access should be synchronized on
+     * mWorking.
+     */
+    private final ArrayList<MapTileRequestState> mPrefetches;
 
     protected final List<MapTileModuleLayerBase> mTileProviderList;
 
-    protected final List<MapTile> mUnaccessibleTiles;
+    /**
+     * The tiles which failed to load recently and shouldn't be requested again yet.
+     */
+    protected final NegativeTileCache mNegativeTiles;
 
     protected final NetworkAvailabilityCheck mNetworkAvailabilityCheck;
 
@@ -61,8 +73,9 @@ public class MapTileLayerArray extends MapTileLayerBase {
                              final MapTileModuleLayerBase[] pTileProviderArray) {
         super(context, pTileSource);
 
-        mWorking = new HashMap<MapTile, MapTileRequestState>();
-        mUnaccessibleTiles = new ArrayList<MapTile>();
+        mWorking = new LongObjectMap<MapTileRequestState>();
+        mPrefetches = new ArrayList<MapTileRequestState>();
+        mNegativeTiles = new NegativeTileCache();
 
         mNetworkAvailabilityCheck = new NetworkAvailabilityCheck(context);
 
@@ -87,6 +100,26 @@ public class MapTileLayerArray extends MapTileLayerBase {
 
         synchronized (mWorking) {
             mWorking.clear();
+            mPrefetches.clear();
+        }
+    }
+
+    @Override
+    public void setViewport(final int pZoom, final int pCenterX, final int pCenterY,
+            final int pRadius) {
+        synchronized (mTileProviderList) {
+            for (final MapTileModuleLayerBase tileProvider : mTileProviderList) {
+                tileProvider.setViewport(pZoom, pCenterX, pCenterY, pRadius);
+            }
+        }
+    }
+
+    @Override
+    public void setTileRequestCancelGracePeriod(final long pGracePeriodMs) {
+        synchronized (mTileProviderList) {
+            for (final MapTileModuleLayerBase tileProvider : mTileProviderList) {
+                tileProvider.setCancelGracePeriod(pGracePeriodMs);
+            }
         }
     }
 
@@ -95,20 +128,17 @@ public class MapTileLayerArray extends MapTileLayerBase {
     }
 
     /**
-     * Checks whether this tile is unavailable and the system is offline.
+     * Checks whether this tile failed to load recently, and shouldn't be requested again yet.
+     * Tiles which failed because the system was offline are requested again once it isn't.
      *
      * @param pTile the tile in question
      * @return whether the tile is unavailable
      */
     private boolean tileUnavailable(final MapTile pTile) {
-        if (mUnaccessibleTiles.size() > 0) {
-            if (networkAvailable() || !useDataConnection()) {
-                mUnaccessibleTiles.clear();
-            } else if (mUnaccessibleTiles.contains(pTile)) {
-                return true;
-            }
+        if (mNegativeTiles.hasOffline() && (networkAvailable() || !useDataConnection())) {
+            mNegativeTiles.removeOffline();
         }
-        return false;
+        return mNegativeTiles.isBlocked(pTile);
     }
 
     @Override
@@ -127,54 +157,110 @@ public class MapTileLayerArray extends MapTileLayerBase {
             return tileDrawable;
         } else if (allowRemote) {
 //            Log.d(TAG, "Tile not found in memory so will load from remote.");
-            boolean alreadyInProgress = false;
-            synchronized (mWorking) {
-                alreadyInProgress = mWorking.containsKey(pTile);
-            }
-
-            if (!alreadyInProgress) {
-//                Log.d(TAG, "MapTileLayerArray.getMapTile() requested but not in cache, trying from async providers: " + pTile);
+            requestMapTile(pTile, false);
+            return tileDrawable;
+        }
+/*
+        else
+        {
+//            Log.w(TAG, "Tile not found in memory, and not allowed to load from remote source.");
+        }
+*/
+        return null;
+    }
 
-                final MapTileRequestState state;
+    @Override
+    public boolean prefetchMapTile(final MapTile pTile) {
+        if (tileUnavailable(pTile) || mTileCache.containsTileInMemory(pTile)) {
+            return false;
+        }
+        return requestMapTile(pTile, true);
+    }
 
-                synchronized (mTileProviderList) {
-                    final MapTileModuleLayerBase[] providerArray = new MapTileModuleLayerBase[mTileProviderList.size()];
-                    state = new MapTileRequestState(pTile, mTileProviderList.toArray(providerArray), this);
-                }
+    @Override
+    public void cancelPrefetches() {
+        final ArrayList<MapTileRequestState> prefetches;
+        synchronized (mWorking) {
+            if (mPrefetches.isEmpty()) {
+                return;
+            }
+            prefetches = new ArrayList<MapTileRequestState>(mPrefetches);
+            mPrefetches.clear();
+        }
 
-                synchronized (mWorking) {
-                    // Check again
-                    alreadyInProgress = mWorking.containsKey(pTile);
-                    if (alreadyInProgress) {
-                        return null;
+        for (final MapTileRequestState state : prefetches) {
+            // Requests which were displayed since, or are being loaded already, carry on
+            final MapTileModuleLayerBase provider = state.getCurrentProvider();
+            if (!state.isPrefetch() || provider == null || !provider.cancelPending(state)) {
+                continue;
+            }
+            synchronized (mWorking) {
+                if (state.isPrefetch()) {
+                    if (mWorking.get(state.getMapTile().getKey()) == state) {
+                        mWorking.remove(state.getMapTile().getKey());
                     }
-                    mWorking.put(pTile, state);
+                    continue;
                 }
+            }
+            // Displayed while it was being cancelled
+            provider.loadMapTileAsync(state);
+        }
+    }
 
-                final MapTileModuleLayerBase provider = findNextAppropriateProvider(state);
-                if (provider != null) {
-                    provider.loadMapTileAsync(state);
-                } else {
-                    mapTileRequestFailed(state);
+    /**
+     * Sends a tile through the provider chain unless it is already on its way.
+     *
+     * @param pTile the tile to load
+     * @param prefetch whether the tile is only loaded ahead of being displayed
+     * @return true if a request was started
+     */
+    private boolean requestMapTile(final MapTile pTile, final boolean prefetch) {
+        synchronized (mWorking) {
+            final MapTileRequestState working = mWorking.get(pTile.getKey());
+            if (working != null) {
+                if (!prefetch) {
+                    // The tile is displayed now, so it is no longer loaded after the others
+                    working.setPrefetch(false);
                 }
+                return false;
             }
-            return tileDrawable;
         }
-/*
-        else
-        {
-//            Log.w(TAG, "Tile not found in memory, and not allowed to load from remote source.");
+
+//        Log.d(TAG, "MapTileLayerArray.getMapTile() requested but not in cache, trying from async providers: " + pTile);
+
+        final MapTileRequestState state;
+
+        synchronized (mTileProviderList) {
+            final MapTileModuleLayerBase[] providerArray = new MapTileModuleLayerBase[mTileProviderList.size()];
+            state = new MapTileRequestState(pTile, mTileProviderList.toArray(providerArray), this);
         }
-*/
-        return null;
+        state.setPrefetch(prefetch);
+
+        synchronized (mWorking) {
+            // Check again
+            if (mWorking.containsKey(pTile.getKey())) {
+                return false;
+            }
+            mWorking.put(pTile.getKey(), state);
+            if (prefetch) {
+                mPrefetches.add(state);
+            }
+        }
+
+        final MapTileModuleLayerBase provider = findNextAppropriateProvider(state);
+        if (provider != null) {
+            provider.loadMapTileAsync(state);
+        } else {
+            mapTileRequestFailed(state);
+        }
+        return true;
     }
 
     @Override
     public void mapTileRequestCompleted(final MapTileRequestState aState,
                                         final Drawable aDrawable) {
-        synchronized (mWorking) {
-            mWorking.remove(aState.getMapTile());
-        }
+        finished(aState);
+        mNegativeTiles.remove(aState.getMapTile());
         super.mapTileRequestCompleted(aState, aDrawable);
     }
 
@@ -184,30 +270,48 @@ public class MapTileLayerArray extends MapTileLayerBase {
         if (nextProvider != null) {
             nextProvider.loadMapTileAsync(aState);
         } else {
-            synchronized (mWorking) {
-                mWorking.remove(aState.getMapTile());
-            }
-            if (!networkAvailable()) {
-                mUnaccessibleTiles.add(aState.getMapTile());
-            }
+            finished(aState);
+            mNegativeTiles.put(aState.getMapTile(), networkAvailable()
+                    ? aState.getFailureReason() : NegativeTileCache.REASON_OFFLINE);
             super.mapTileRequestFailed(aState);
         }
     }
 
+    @Override
+    public void mapTileRequestDropped(final MapTileRequestState aState) {
+        // not sent to the next provider, nor remembered as unavailable
+        finished(aState);
+        super.mapTileRequestDropped(aState);
+    }
+
     @Override
     public void mapTileRequestExpiredTile(MapTileRequestState aState,
                                           CacheableBitmapDrawable aDrawable) {
         // Call through to the super first so aState.getCurrentProvider() still contains the proper
         // provider.
         super.mapTileRequestExpiredTile(aState, aDrawable);
+        mNegativeTiles.remove(aState.getMapTile());
 
         // Continue through the provider chain
         final MapTileModuleLayerBase nextProvider = findNextAppropriateProvider(aState);
         if (nextProvider != null) {
             nextProvider.loadMapTileAsync(aState);
         } else {
-            synchronized (mWorking) {
-                mWorking.remove(aState.getMapTile());
+            finished(aState);
+        }
+    }
+
+    /**
+     * Forgets a request which went through the whole provider chain.
+     */
+    private void finished(final MapTileRequestState aState) {
+        synchronized (mWorking) {
+            // Revalidations of tiles served from disk complete outside of mWorking
+            if (mWorking.get(aState.getMapTile().getKey()) == aState) {
+                mWorking.remove(aState.getMapTile().getKey());
+            }
+            if (!mPrefetches.isEmpty()) {
+                mPrefetches.remove(aState);
             }
         }
     }
@@ -274,7 +378,7 @@ public class MapTileLayerArray extends MapTileLayerBase {
     @Override
     public void setTileSource(final ITileLayer aTileSource) {
         super.setTileSource(aTileSource);
-        mUnaccessibleTiles.clear();
+        mNegativeTiles.clear();
         synchronized (mTileProviderList) {
             mTileProviderList.clear();
         }
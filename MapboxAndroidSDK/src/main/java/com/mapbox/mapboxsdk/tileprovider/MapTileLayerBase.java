@@ -13,6 +13,7 @@ import com.mapbox.mapboxsdk.geometry.BoundingBox;
 import com.mapbox.mapboxsdk.geometry.LatLng;
 import com.mapbox.mapboxsdk.tileprovider.constants.TileLayerConstants;
 import com.mapbox.mapboxsdk.tileprovider.tilesource.ITileLayer;
+import com.mapbox.mapboxsdk.tileprovider.util.SimpleInvalidationHandler;
 import com.mapbox.mapboxsdk.util.BitmapUtils;
 import uk.co.senab.bitmapcache.CacheableBitmapDrawable;
 
@@ -27,7 +28,7 @@ import uk.co.senab.bitmapcache.CacheableBitmapDrawable;
  * @author Marc Kurtz
  * @author Nicolas Gramlich
  */
-public abstract class MapTileLayerBase implements IMapTileProviderCallback, TileLayerConstants {
+public abstract class MapTileLayerBase implements IMapTileRequestDroppedCallback, TileLayerConstants {
     protected Context context;
     protected final MapTileCache mTileCache;
     private Handler mTileRequestCompleteHandler;
@@ -49,6 +50,49 @@ public abstract class MapTileLayerBase implements IMapTileProviderCallback, Tile
 
     public abstract void detach();
 
+    /**
+     * Tells this tile provider which zoom level is displayed and which tile is at the center of
+     * the screen, so that pending tile requests can be served closest to the center first and
+     * requests for zoom levels the user has left can be dropped. Does nothing by default.
+     *
+     * @param pZoom the displayed zoom level
+     * @param pCenterX the x index of the tile at the center of the screen
+     * @param pCenterY the y index of the tile at the center of the screen
+     * @param pRadius how many tiles the screen spans on each side of the center one
+     */
+    public void setViewport(final int pZoom, final int pCenterX, final int pCenterY,
+            final int pRadius) {
+    }
+
+    /**
+     * Sets how long a tile being loaded may stay more than
+     * {@link TileLayerConstants#TILE_REQUEST_VIEWPORT_MARGIN} tiles off the screen before its
+     * request is cancelled, so that the connection and the thread go to the tiles on the screen.
+     * Does nothing by default.
+     *
+     * @param pGracePeriodMs the time in milliseconds, or a negative value to never cancel them
+     */
+    public void setTileRequestCancelGracePeriod(final long pGracePeriodMs) {
+    }
+
+    /**
+     * Starts loading a tile that is not displayed yet but is expected to be soon, for instance
+     * along the path of a fling. Prefetches are loaded after the tiles being displayed and can
+     * be dropped with {@link #cancelPrefetches()}. Does nothing by default.
+     *
+     * @param pTile the tile to load
+     * @return true if a request was started for the tile
+     */
+    public boolean prefetchMapTile(final MapTile pTile) {
+        return false;
+    }
+
+    /**
+     * Drops the prefetch requests that haven't started loading yet. Does nothing by default.
+     */
+    public void cancelPrefetches() {
+    }
+
     /**
      * Gets the minimum zoom level this tile provider can provide
      *
@@ -157,7 +201,8 @@ public abstract class MapTileLayerBase implements IMapTileProviderCallback, Tile
 
     /**
      * Called by implementation class methods indicating that they have completed the request as
-     * best it can. The tile is added to the cache, and a MAPTILE_SUCCESS_ID message is sent.
+     * best it can. The tile is added to the cache, and a MAPTILE_SUCCESS_ID message is sent, or
+     * the tile is queued for the next frame if the handler is a {@link SimpleInvalidationHandler}.
      *
      * @param pState the map tile request state object
      * @param pDrawable the Drawable of the map tile
@@ -166,7 +211,10 @@ public abstract class MapTileLayerBase implements IMapTileProviderCallback, Tile
     public void mapTileRequestCompleted(final MapTileRequestState pState,
             final Drawable pDrawable) {
         // tell our caller we've finished and it should update its view
-        if (mTileRequestCompleteHandler != null) {
+        if (mTileRequestCompleteHandler instanceof SimpleInvalidationHandler) {
+            ((SimpleInvalidationHandler) mTileRequestCompleteHandler)
+                    .tileCompleted(pState.getMapTile());
+        } else if (mTileRequestCompleteHandler != null) {
             Message msg = new Message();
             msg.obj = pState.getMapTile().getTileRect();
             msg.what = MapTile.MAPTILE_SUCCESS_ID;
@@ -197,6 +245,19 @@ public abstract class MapTileLayerBase implements IMapTileProviderCallback, Tile
         }
     }
 
+    /**
+     * Called by implementation class methods indicating that they have dropped the request for a
+     * tile which isn't wanted anymore. Nothing is sent, as there is nothing to redraw.
+     *
+     * @param pState the map tile request state object
+     */
+    @Override
+    public void mapTileRequestDropped(final MapTileRequestState pState) {
+        if (DEBUG_TILE_PROVIDERS) {
+            Log.d(TAG, "MapTileLayerBase.mapTileRequestDropped(): " + pState.getMapTile());
+        }
+    }
+
     /**
      * Called by implementation class methods indicating that they have produced an expired result
      * that can be used but better results may be delivered later. The tile is added to the cache,
@@ -212,7 +273,10 @@ public abstract class MapTileLayerBase implements IMapTileProviderCallback, Tile
         putExpiredTileIntoCache(pState.getMapTile(), pDrawable.getBitmap());
 
         // tell our caller we've finished and it should update its view
-        if (mTileRequestCompleteHandler != null) {
+        if (mTileRequestCompleteHandler instanceof SimpleInvalidationHandler) {
+            ((SimpleInvalidationHandler) mTileRequestCompleteHandler)
+                    .tileCompleted(pState.getMapTile());
+        } else if (mTileRequestCompleteHandler != null) {
             mTileRequestCompleteHandler.sendEmptyMessage(MapTile.MAPTILE_SUCCESS_ID);
         }
 
@@ -264,6 +328,10 @@ public abstract class MapTileLayerBase implements IMapTileProviderCallback, Tile
         mTileRequestCompleteHandler = handler;
     }
 
+    public Handler getTileRequestCompleteHandler() {
+        return mTileRequestCompleteHandler;
+    }
+
     public void clearTileMemoryCache() {
         mTileCache.purgeMemoryCache();
     }
@@ -15,6 +15,10 @@ public class MapTileRequestState {
     private final MapTile mMapTile;
     private final IMapTileProviderCallback mCallback;
     private MapTileModuleLayerBase mCurrentProvider;
+    private volatile boolean mPrefetch;
+    private volatile int mFailureReason = NegativeTileCache.REASON_UNKNOWN;
+    private final CancellationToken mCancellationToken = new CancellationToken();
+    private long mOutOfViewportSince;
 
     /**
      * Initialize a new state to keep track of a map tile
@@ -47,7 +51,68 @@ public class MapTileRequestState {
         return mCallback;
     }
 
+    /**
+     * Whether this tile is only loaded ahead of being displayed, in which case it is loaded
+     * after the tiles that are displayed and may be cancelled.
+     *
+     * @return true if this request is a prefetch
+     */
+    public boolean isPrefetch() {
+        return mPrefetch;
+    }
+
+    public void setPrefetch(final boolean prefetch) {
+        mPrefetch = prefetch;
+    }
+
+    /**
+     * Why the last provider failed to load this tile
+     *
+     * @return one of the NegativeTileCache.REASON_ constants
+     */
+    public int getFailureReason() {
+        return mFailureReason;
+    }
+
+    public void setFailureReason(final int reason) {
+        mFailureReason = reason;
+    }
+
+    /**
+     * Get the token cancelling this request while it is being loaded
+     *
+     * @return the cancellation token
+     */
+    public CancellationToken getCancellationToken() {
+        return mCancellationToken;
+    }
+
+    /**
+     * When this request was first seen being loaded for a tile away from the screen, by the
+     * provider loading it. Only used on the main thread.
+     *
+     * @return the time in {@link android.os.SystemClock#uptimeMillis()}, or 0 if it is near the
+     *         screen
+     */
+    public long getOutOfViewportSince() {
+        return mOutOfViewportSince;
+    }
+
+    public void setOutOfViewportSince(final long since) {
+        mOutOfViewportSince = since;
+    }
+
+    /**
+     * Get the provider this request was last handed to
+     *
+     * @return the current provider, or null
+     */
+    public MapTileModuleLayerBase getCurrentProvider() {
+        return mCurrentProvider;
+    }
+
     public MapTileModuleLayerBase getNextProvider() {
+        mFailureReason = NegativeTileCache.REASON_UNKNOWN;
         mCurrentProvider = mProviderQueue.poll();
         return mCurrentProvider;
     }
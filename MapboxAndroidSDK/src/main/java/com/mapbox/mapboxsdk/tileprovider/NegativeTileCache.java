@@ -0,0 +1,207 @@
+package com.mapbox.mapboxsdk.tileprovider;
+
+import android.os.SystemClock;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Remembers the tiles that failed to load, and why, so that they aren't requested over and
+ * over again.
+ * <p/>
+ * Tiles the server doesn't have, or refuses to serve, are not requested again for
+ * {@link #PERMANENT_FAILURE_TTL_MS}. Tiles that failed because of the server or the network are
+ * retried after a delay that doubles with every failure in a row, up to
+ * {@link #MAXIMUM_RETRY_DELAY_MS}, and is randomized so that the tiles of a screen don't all
+ * come back at once. Tiles that failed while offline are retried as soon as the network is
+ * back, see {@link #removeOffline()}.
+ * <p/>
+ * At most {@link #MAXIMUM_SIZE} tiles are remembered, the oldest failures are forgotten first.
+ * It is safe to use from any thread.
+ */
+public class NegativeTileCache {
+
+    /**
+     * The tile failed for a reason that says nothing about requesting it again, for instance
+     * because it was dropped from the queue. It is not remembered.
+     */
+    public static final int REASON_UNKNOWN = 0;
+
+    /**
+     * The network was unavailable.
+     */
+    public static final int REASON_OFFLINE = 1;
+
+    /**
+     * The request timed out or the connection failed.
+     */
+    public static final int REASON_NETWORK_ERROR = 2;
+
+    /**
+     * The server answered with a 5xx or 429 status.
+     */
+    public static final int REASON_SERVER_ERROR = 3;
+
+    /**
+     * The server answered with a 404 or 410 status: the tile doesn't exist, for instance
+     * because it is outside the coverage of the source.
+     */
+    public static final int REASON_NOT_FOUND = 4;
+
+    /**
+     * The server answered with another 4xx status, e.g. because the access token was refused.
+     */
+    public static final int REASON_CLIENT_ERROR = 5;
+
+    public static final int MAXIMUM_SIZE = 1024;
+
+    public static final long PERMANENT_FAILURE_TTL_MS = 24 * 60 * 60 * 1000L;
+
+    public static final long INITIAL_RETRY_DELAY_MS = 2 * 1000L;
+
+    public static final long MAXIMUM_RETRY_DELAY_MS = 5 * 60 * 1000L;
+
+    /**
+     * The failures by {@link MapTile#getKey()}, oldest first. Any access should be synchronized
+     * on it.
+     */
+    private final LinkedHashMap<Long, Entry> mEntries =
+            new LinkedHashMap<Long, Entry>(64, 0.75f, false) {
+                @Override
+                protected boolean removeEldestEntry(final Map.Entry<Long, Entry> eldest) {
+                    if (size() > MAXIMUM_SIZE) {
+                        if (eldest.getValue().mReason == REASON_OFFLINE) {
+                            mOfflineCount--;
+                        }
+                        return true;
+                    }
+                    return false;
+                }
+            };
+
+    private final Random mRandom = new Random();
+
+    private int mOfflineCount;
+
+    /**
+     * Whether a tile shouldn't be requested now because it failed recently.
+     *
+     * @param pTile the tile
+     * @return true if the tile should not be requested
+     */
+    public boolean isBlocked(final MapTile pTile) {
+        synchronized (mEntries) {
+            if (mEntries.isEmpty()) {
+                return false;
+            }
+            final Entry entry = mEntries.get(pTile.getKey());
+            // expired entries are kept until the tile loads, to back off further if it fails again
+            return entry != null && SystemClock.elapsedRealtime() < entry.mRetryAt;
+        }
+    }
+
+    /**
+     * Remembers that a tile failed to load.
+     *
+     * @param pTile the tile
+     * @param pReason one of the REASON_ constants, {@link #REASON_UNKNOWN} is ignored
+     */
+    public void put(final MapTile pTile, final int pReason) {
+        if (pReason == REASON_UNKNOWN) {
+            return;
+        }
+        final long now = SystemClock.elapsedRealtime();
+        synchronized (mEntries) {
+            Entry entry = mEntries.remove(pTile.getKey());
+            if (entry == null) {
+                entry = new Entry();
+            } else if (entry.mReason == REASON_OFFLINE) {
+                mOfflineCount--;
+            }
+            entry.mReason = pReason;
+            entry.mFailures++;
+            entry.mRetryAt = now + retryDelay(pReason, entry.mFailures);
+            if (pReason == REASON_OFFLINE) {
+                mOfflineCount++;
+            }
+            mEntries.put(pTile.getKey(), entry);
+        }
+    }
+
+    /**
+     * Forgets a tile, once it has loaded.
+     *
+     * @param pTile the tile
+     */
+    public void remove(final MapTile pTile) {
+        synchronized (mEntries) {
+            if (mEntries.isEmpty()) {
+                return;
+            }
+            final Entry entry = mEntries.remove(pTile.getKey());
+            if (entry != null && entry.mReason == REASON_OFFLINE) {
+                mOfflineCount--;
+            }
+        }
+    }
+
+    /**
+     * @return whether some tiles failed because the network was unavailable
+     */
+    public boolean hasOffline() {
+        synchronized (mEntries) {
+            return mOfflineCount > 0;
+        }
+    }
+
+    /**
+     * Forgets the tiles that failed because the network was unavailable, so that they are
+     * requested again.
+     */
+    public void removeOffline() {
+        synchronized (mEntries) {
+            final Iterator<Entry> it = mEntries.values().iterator();
+            while (mOfflineCount > 0 && it.hasNext()) {
+                if (it.next().mReason == REASON_OFFLINE) {
+                    it.remove();
+                    mOfflineCount--;
+                }
+            }
+        }
+    }
+
+    public void clear() {
+        synchronized (mEntries) {
+            mEntries.clear();
+            mOfflineCount = 0;
+        }
+    }
+
+    public int size() {
+        synchronized (mEntries) {
+            return mEntries.size();
+        }
+    }
+
+    private long retryDelay(final int pReason, final int pFailures) {
+        switch (pReason) {
+            case REASON_OFFLINE:
+                return Long.MAX_VALUE / 2;
+            case REASON_NOT_FOUND:
+            case REASON_CLIENT_ERROR:
+                return PERMANENT_FAILURE_TTL_MS;
+            default:
+                final long delay = Math.min(MAXIMUM_RETRY_DELAY_MS,
+                        INITIAL_RETRY_DELAY_MS << Math.min(pFailures - 1, 16));
+                // between half and all of the delay
+                return delay / 2 + (long) (mRandom.nextDouble() * (delay / 2));
+        }
+    }
+
+    private static final class Entry {
+        int mReason;
+        int mFailures;
+        long mRetryAt;
+    }
+}
@@ -0,0 +1,202 @@
+package com.mapbox.mapboxsdk.tileprovider;
+
+import android.text.TextUtils;
+import com.mapbox.mapboxsdk.tileprovider.modules.TileQualityPolicy;
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.util.Locale;
+
+/**
+ * What the server said about a cached tile: its validators (ETag and Last-Modified) and how long
+ * it stays fresh, from its Cache-Control or Expires headers. Once a tile has expired, it is
+ * requested again with the validators, so that the server can answer 304 Not Modified instead
+ * of sending the same image again.
+ * <p/>
+ * When the server gives validators but no lifetime, the tile is considered fresh for a tenth of
+ * the time since it was last modified, as HTTP caches usually do, or for
+ * {@link #DEFAULT_FRESHNESS_MS}. Tiles with neither never expire, as there is no cheap way to
+ * check them.
+ * <p/>
+ * The quality the tile was downloaded at is kept as well, so that it can be downloaded again
+ * once the link allows a better one, see {@link TileQualityPolicy}.
+ */
+public class TileMetadata {
+
+    public static final long DEFAULT_FRESHNESS_MS = 24 * 60 * 60 * 1000L;
+
+    private static final long NEVER = Long.MAX_VALUE;
+
+    private String mETag;
+    private String mLastModified;
+    private long mExpiresAt = NEVER;
+    private int mQuality = TileQualityPolicy.QUALITY_UNKNOWN;
+    private boolean mNotModified;
+
+    /**
+     * @param serialized what {@link #toString()} returned, may be null
+     * @return the metadata, or null if there is none
+     */
+    public static TileMetadata parse(final String serialized) {
+        if (TextUtils.isEmpty(serialized)) {
+            return null;
+        }
+        final String[] fields = serialized.split("\n", 4);
+        if (fields.length != 4) {
+            return null;
+        }
+        final TileMetadata metadata = new TileMetadata();
+        try {
+            metadata.mQuality = Integer.parseInt(fields[0]);
+            metadata.mExpiresAt = Long.parseLong(fields[1]);
+        } catch (final NumberFormatException e) {
+            return null;
+        }
+        metadata.mLastModified = fields[2].length() > 0 ? fields[2] : null;
+        metadata.mETag = fields[3].length() > 0 ? fields[3] : null;
+        return metadata;
+    }
+
+    /**
+     * Takes everything from other metadata, e.g. that of another request for the same tile.
+     */
+    public void set(final TileMetadata other) {
+        mETag = other.mETag;
+        mLastModified = other.mLastModified;
+        mExpiresAt = other.mExpiresAt;
+        mQuality = other.mQuality;
+        mNotModified = other.mNotModified;
+    }
+
+    public String getETag() {
+        return mETag;
+    }
+
+    public String getLastModified() {
+        return mLastModified;
+    }
+
+    /**
+     * @return when the tile expires, in milliseconds since the epoch
+     */
+    public long getExpiresAt() {
+        return mExpiresAt;
+    }
+
+    /**
+     * @return the quality the tile was downloaded at, one of the {@link TileQualityPolicy}
+     *         QUALITY_ constants
+     */
+    public int getQuality() {
+        return mQuality;
+    }
+
+    public void setQuality(final int quality) {
+        mQuality = quality;
+    }
+
+    public boolean isExpired() {
+        return mExpiresAt != NEVER && System.currentTimeMillis() >= mExpiresAt;
+    }
+
+    /**
+     * @return whether the tile can be requested conditionally
+     */
+    public boolean hasValidators() {
+        return mETag != null || mLastModified != null;
+    }
+
+    /**
+     * @return whether the last response this was updated from was a 304 Not Modified
+     */
+    public boolean isNotModified() {
+        return mNotModified;
+    }
+
+    /**
+     * Makes a request conditional, so that the server only sends the tile if it changed.
+     *
+     * @param connection a connection which isn't connected yet
+     */
+    public void applyTo(final HttpURLConnection connection) {
+        if (mETag != null) {
+            connection.setRequestProperty("If-None-Match", mETag);
+        }
+        if (mLastModified != null) {
+            connection.setRequestProperty("If-Modified-Since", mLastModified);
+        }
+    }
+
+    /**
+     * Takes the validators and lifetime of a response. A 304 Not Modified may leave out the
+     * validators, in which case those of the cached tile are kept.
+     *
+     * @param connection a connection which got its response
+     */
+    public void update(final HttpURLConnection connection) throws IOException {
+        final long now = System.currentTimeMillis();
+        mNotModified = connection.getResponseCode() == HttpURLConnection.HTTP_NOT_MODIFIED;
+        final String eTag = connection.getHeaderField("ETag");
+        final String lastModified = connection.getHeaderField("Last-Modified");
+        if (!mNotModified || eTag != null) {
+            mETag = sanitize(eTag);
+        }
+        if (!mNotModified || lastModified != null) {
+            mLastModified = sanitize(lastModified);
+        }
+
+        final long date = connection.getDate() > 0 ? connection.getDate() : now;
+        final long maxAge = maxAge(connection.getHeaderField("Cache-Control"));
+        if (maxAge >= 0) {
+            mExpiresAt = now + maxAge;
+        } else if (connection.getExpiration() > 0) {
+            mExpiresAt = now + Math.max(0, connection.getExpiration() - date);
+        } else if (connection.getLastModified() > 0 && connection.getLastModified() < date) {
+            mExpiresAt = now + (date - connection.getLastModified()) / 10;
+        } else if (hasValidators()) {
+            mExpiresAt = now + DEFAULT_FRESHNESS_MS;
+        } else {
+            mExpiresAt = NEVER;
+        }
+    }
+
+    /**
+     * @return the freshness lifetime given by a Cache-Control header in milliseconds, or -1 if it
+     *         doesn't give one
+     */
+    private static long maxAge(final String cacheControl) {
+        if (cacheControl == null) {
+            return -1;
+        }
+        long maxAge = -1;
+        for (String directive : cacheControl.split(",")) {
+            directive = directive.trim().toLowerCase(Locale.US);
+            if (directive.equals("no-cache") || directive.equals("no-store")) {
+                return 0;
+            }
+            if (directive.startsWith("max-age=")) {
+                final String seconds = directive.substring("max-age=".length()).replace("\"", "");
+                try {
+                    maxAge = Long.parseLong(seconds.trim()) * 1000;
+                } catch (final NumberFormatException e) {
+                    return 0;
+                }
+            }
+        }
+        return maxAge < 0 ? -1 : maxAge;
+    }
+
+    private static String sanitize(final String header) {
+        // one field per line once serialized
+        return TextUtils.isEmpty(header) || header.indexOf('\n') >= 0 ? null : header;
+    }
+
+    /**
+     * @return the metadata, to be read back with {@link #parse(String)}
+     */
+    @Override
+    public String toString() {
+        return mQuality + "\n" + mExpiresAt + "\n"
+                + (mLastModified != null ? mLastModified : "") + "\n"
+                + (mETag != null ? mETag : "");
+    }
+}
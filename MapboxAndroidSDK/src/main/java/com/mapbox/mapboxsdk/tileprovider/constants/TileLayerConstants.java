@@ -40,5 +40,40 @@ public interface TileLayerConstants {
      */
     public static final int NUMBER_OF_TILE_DOWNLOAD_THREADS = 8;
 
+    /**
+     * bounds of the number of tiles downloaded at the same time, which adapts to the network
+     * between them starting from {@link #NUMBER_OF_TILE_DOWNLOAD_THREADS}
+     */
+    public static final int MINIMUM_TILE_DOWNLOAD_CONCURRENCY = 2;
+
+    public static final int MAXIMUM_TILE_DOWNLOAD_CONCURRENCY = 16;
+
     public static final int TILE_DOWNLOAD_MAXIMUM_QUEUE_SIZE = 40;
+
+    /**
+     * number of threads loading tiles from local databases and files
+     */
+    public static final int NUMBER_OF_TILE_FILESYSTEM_THREADS = 2;
+
+    public static final int TILE_FILESYSTEM_MAXIMUM_QUEUE_SIZE = 40;
+
+    /**
+     * Pending tile requests for zoom levels further than this from the displayed one are dropped
+     */
+    public static final int TILE_REQUEST_MAXIMUM_ZOOM_DISTANCE = 2;
+
+    /**
+     * Tiles being loaded further than this many tiles off the screen are no longer wanted
+     */
+    public static final int TILE_REQUEST_VIEWPORT_MARGIN = 2;
+
+    /**
+     * default time in ms a tile may stay unwanted before the request loading it is cancelled
+     */
+    public static final long TILE_REQUEST_CANCEL_GRACE_PERIOD_MS = 1000;
+
+    /**
+     * Minimum time in ms between two checks for tiles being loaded which are no longer wanted
+     */
+    public static final long TILE_REQUEST_CANCEL_CHECK_INTERVAL_MS = 250;
 }
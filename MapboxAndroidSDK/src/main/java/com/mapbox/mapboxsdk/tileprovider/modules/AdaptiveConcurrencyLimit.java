@@ -0,0 +1,174 @@
+package com.mapbox.mapboxsdk.tileprovider.modules;
+
+/**
+ * Limits how many tiles are fetched at the same time, adapting the limit to what the link can
+ * take (additive increase, multiplicative decrease).
+ * <p/>
+ * The lowest latency of the last {@link #BASELINE_WINDOW} to twice as many fetches is taken as
+ * the latency of an idle link, so that it follows the network getting slower, e.g. when moving
+ * from Wi-Fi to a mobile network. Every fetch that completes within {@link #LATENCY_TOLERANCE}
+ * times that baseline grows the limit by one over the limit, so by about one per round of
+ * fetches. A slower fetch means requests are queueing
+ * up somewhere and shrinks the limit a little; a timeout or connection error shrinks it by
+ * half. The limit is shrunk at most once per smoothed latency, since the fetches in flight when
+ * the link got congested all report it.
+ * <p/>
+ * Fetches that didn't go through, like tiles missing on the server, don't say anything about
+ * the link and are not reported.
+ */
+public class AdaptiveConcurrencyLimit {
+
+    /**
+     * Fetches slower than this many times the baseline latency are a sign of congestion.
+     */
+    private static final double LATENCY_TOLERANCE = 2.0;
+
+    private static final double LATENCY_BACKOFF = 0.9;
+
+    private static final double ERROR_BACKOFF = 0.5;
+
+    /**
+     * Number of fetches after which the lowest latency seen starts over. The baseline is the
+     * lowest of the current and the previous window, so it never comes from a single sample.
+     */
+    private static final int BASELINE_WINDOW = 128;
+
+    /**
+     * Weight of a new sample in the smoothed latency.
+     */
+    private static final double SMOOTHING = 1.0 / 8;
+
+    private final int mCapacity;
+    private int mMinLimit;
+    private int mMaxLimit;
+    private double mLimit;
+    private int mInFlight;
+
+    private double mWindowMinLatencyMs = -1;
+    private double mPreviousWindowMinLatencyMs = -1;
+    private int mWindowSamples;
+    private double mSmoothedLatencyMs = -1;
+    private long mLastDecreaseMs;
+
+    /**
+     * @param pMinLimit the lowest the limit can go
+     * @param pInitialLimit the limit to start with
+     * @param pMaxLimit the highest the limit can go, which can't be raised later
+     */
+    public AdaptiveConcurrencyLimit(final int pMinLimit, final int pInitialLimit,
+            final int pMaxLimit) {
+        mCapacity = Math.max(1, pMaxLimit);
+        setBounds(pMinLimit, pMaxLimit);
+        mLimit = clamp(pInitialLimit);
+    }
+
+    /**
+     * Sets the bounds the limit moves within. The maximum can't be raised over the one given when
+     * this limit was created, which the thread pool is sized for.
+     *
+     * @param pMinLimit the lowest the limit can go, at least 1
+     * @param pMaxLimit the highest the limit can go
+     */
+    public synchronized void setBounds(final int pMinLimit, final int pMaxLimit) {
+        mMaxLimit = Math.max(1, Math.min(pMaxLimit, mCapacity));
+        mMinLimit = Math.max(1, Math.min(pMinLimit, mMaxLimit));
+        mLimit = clamp(mLimit);
+    }
+
+    public synchronized int getMinLimit() {
+        return mMinLimit;
+    }
+
+    public synchronized int getMaxLimit() {
+        return mMaxLimit;
+    }
+
+    /**
+     * @return the number of fetches currently allowed at the same time
+     */
+    public synchronized int getLimit() {
+        return (int) mLimit;
+    }
+
+    /**
+     * @return the number of fetches in flight
+     */
+    public synchronized int getInFlight() {
+        return mInFlight;
+    }
+
+    /**
+     * Takes a slot for a fetch, if the limit allows another one.
+     *
+     * @return true if a slot was taken, which must be given back with {@link #release()}
+     */
+    public synchronized boolean tryAcquire() {
+        if (mInFlight >= (int) mLimit) {
+            return false;
+        }
+        mInFlight++;
+        return true;
+    }
+
+    public synchronized void release() {
+        if (mInFlight > 0) {
+            mInFlight--;
+        }
+    }
+
+    /**
+     * Reports a fetch which went through.
+     *
+     * @param pLatencyMs the time it took, from opening the connection to having read the response
+     */
+    public synchronized void onSuccess(final long pLatencyMs) {
+        final double latency = Math.max(1, pLatencyMs);
+        if (mSmoothedLatencyMs < 0) {
+            mSmoothedLatencyMs = latency;
+        } else {
+            mSmoothedLatencyMs += (latency - mSmoothedLatencyMs) * SMOOTHING;
+        }
+        if (mWindowMinLatencyMs < 0 || latency < mWindowMinLatencyMs) {
+            mWindowMinLatencyMs = latency;
+        }
+        final double baseline = mPreviousWindowMinLatencyMs < 0
+                ? mWindowMinLatencyMs : Math.min(mWindowMinLatencyMs, mPreviousWindowMinLatencyMs);
+        if (++mWindowSamples >= BASELINE_WINDOW) {
+            mPreviousWindowMinLatencyMs = mWindowMinLatencyMs;
+            mWindowMinLatencyMs = -1;
+            mWindowSamples = 0;
+        }
+
+        if (latency > baseline * LATENCY_TOLERANCE) {
+            decrease(LATENCY_BACKOFF);
+        } else {
+            mLimit = clamp(mLimit + 1 / mLimit);
+        }
+    }
+
+    /**
+     * Reports a fetch which failed because of the link, such as a timeout or a connection error.
+     */
+    public synchronized void onError() {
+        decrease(ERROR_BACKOFF);
+    }
+
+    private void decrease(final double pFactor) {
+        final long now = System.currentTimeMillis();
+        if (now - mLastDecreaseMs < mSmoothedLatencyMs) {
+            return;
+        }
+        mLastDecreaseMs = now;
+        mLimit = clamp(mLimit * pFactor);
+    }
+
+    private double clamp(final double pLimit) {
+        return Math.max(mMinLimit, Math.min(mMaxLimit, pLimit));
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format("AdaptiveConcurrencyLimit[limit=%d,inFlight=%d,min=%d,max=%d]",
+                (int) mLimit, mInFlight, mMinLimit, mMaxLimit);
+    }
+}
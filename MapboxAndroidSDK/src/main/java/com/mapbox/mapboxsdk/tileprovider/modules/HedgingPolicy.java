@@ -0,0 +1,143 @@
+package com.mapbox.mapboxsdk.tileprovider.modules;
+
+import java.util.Arrays;
+
+/**
+ * Decides when a tile download which is taking long is sent to another host as well, so that a
+ * few stuck connections don't hold the last tiles of the screen. The first response is used and
+ * the other request is cancelled, see
+ * {@link com.mapbox.mapboxsdk.tileprovider.tilesource.WebSourceTileLayer#getHedgeURL(String)}.
+ * <p/>
+ * A download is hedged once it has taken longer than a percentile of the latest ones, 95th by
+ * default, and only while hedged downloads stay under a fraction of all of them, 5% by default,
+ * so that a slow network as a whole doesn't get twice the requests. Disabled by default.
+ */
+public class HedgingPolicy {
+
+    public static final double DEFAULT_PERCENTILE = 0.95;
+
+    public static final double DEFAULT_MAX_HEDGED_FRACTION = 0.05;
+
+    /**
+     * Downloads are never hedged sooner than this, in milliseconds.
+     */
+    public static final long MINIMUM_DELAY_MS = 50;
+
+    /**
+     * Number of latest downloads the percentile is taken from.
+     */
+    private static final int WINDOW = 128;
+
+    /**
+     * Downloads to wait for before hedging the first time.
+     */
+    private static final int MIN_SAMPLES = 16;
+
+    /**
+     * Number of downloads after which the counts are halved, so that the fraction follows the
+     * latest ones.
+     */
+    private static final int COUNT_WINDOW = 1000;
+
+    private boolean mEnabled = false;
+    private double mPercentile = DEFAULT_PERCENTILE;
+    private double mMaxHedgedFraction = DEFAULT_MAX_HEDGED_FRACTION;
+
+    private final long[] mLatencies = new long[WINDOW];
+    private int mSamples;
+    private int mNext;
+    private long mDelay = -1;
+
+    private int mRequests;
+    private int mHedges;
+
+    public synchronized void setEnabled(final boolean enabled) {
+        mEnabled = enabled;
+    }
+
+    public synchronized boolean isEnabled() {
+        return mEnabled;
+    }
+
+    /**
+     * @param percentile the percentile of the latest latencies after which a download is
+     *                   hedged, between 0 and 1
+     */
+    public synchronized void setPercentile(final double percentile) {
+        mPercentile = Math.max(0, Math.min(1, percentile));
+        mDelay = -1;
+    }
+
+    public synchronized double getPercentile() {
+        return mPercentile;
+    }
+
+    /**
+     * @param fraction the largest fraction of downloads which may be hedged, between 0 and 1
+     */
+    public synchronized void setMaxHedgedFraction(final double fraction) {
+        mMaxHedgedFraction = Math.max(0, Math.min(1, fraction));
+    }
+
+    public synchronized double getMaxHedgedFraction() {
+        return mMaxHedgedFraction;
+    }
+
+    /**
+     * Reports a download which is starting.
+     */
+    public synchronized void onRequest() {
+        if (++mRequests > COUNT_WINDOW) {
+            mRequests /= 2;
+            mHedges /= 2;
+        }
+    }
+
+    /**
+     * Reports a download which got its response.
+     *
+     * @param elapsedMs the time it took, hedged or not
+     */
+    public synchronized void onResponse(final long elapsedMs) {
+        mLatencies[mNext] = elapsedMs;
+        mNext = (mNext + 1) % WINDOW;
+        mSamples = Math.min(mSamples + 1, WINDOW);
+        mDelay = -1;
+    }
+
+    /**
+     * @return how long a download may take before it is hedged in milliseconds, or -1 if it
+     *         shouldn't be, because hedging is disabled or there were too few downloads yet
+     */
+    public synchronized long getHedgeDelay() {
+        if (!mEnabled || mSamples < MIN_SAMPLES) {
+            return -1;
+        }
+        if (mDelay < 0) {
+            final long[] sorted = Arrays.copyOf(mLatencies, mSamples);
+            Arrays.sort(sorted);
+            final int index = (int) Math.ceil(mPercentile * sorted.length) - 1;
+            mDelay = Math.max(MINIMUM_DELAY_MS, sorted[Math.max(0, index)]);
+        }
+        return mDelay;
+    }
+
+    /**
+     * Takes a hedged download out of the allowance.
+     *
+     * @return true if a download can be hedged now
+     */
+    public synchronized boolean tryHedge() {
+        if (!mEnabled || mHedges + 1 > mRequests * mMaxHedgedFraction) {
+            return false;
+        }
+        mHedges++;
+        return true;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format("HedgingPolicy[delay=%d,requests=%d,hedges=%d,enabled=%b]",
+                getHedgeDelay(), mRequests, mHedges, mEnabled);
+    }
+}
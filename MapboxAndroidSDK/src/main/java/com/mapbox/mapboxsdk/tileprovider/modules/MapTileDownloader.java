@@ -1,31 +1,100 @@
 package com.mapbox.mapboxsdk.tileprovider.modules;
 
+import android.graphics.Bitmap;
 import android.graphics.drawable.Drawable;
+import android.os.Process;
 import android.util.Log;
 import com.mapbox.mapboxsdk.geometry.BoundingBox;
 import com.mapbox.mapboxsdk.geometry.LatLng;
+import com.mapbox.mapboxsdk.tileprovider.IMapTileProviderCallback;
+import com.mapbox.mapboxsdk.tileprovider.IMapTileRequestDroppedCallback;
 import com.mapbox.mapboxsdk.tileprovider.MapTile;
 import com.mapbox.mapboxsdk.tileprovider.MapTileCache;
 import com.mapbox.mapboxsdk.tileprovider.MapTileRequestState;
+import com.mapbox.mapboxsdk.tileprovider.TileMetadata;
 import com.mapbox.mapboxsdk.tileprovider.tilesource.ITileLayer;
 import com.mapbox.mapboxsdk.tileprovider.tilesource.MBTilesLayer;
 import com.mapbox.mapboxsdk.tileprovider.tilesource.TileLayer;
+import com.mapbox.mapboxsdk.tileprovider.tilesource.WebSourceTileLayer;
 import com.mapbox.mapboxsdk.util.AppUtils;
+import com.mapbox.mapboxsdk.util.BitmapUtils;
+import com.mapbox.mapboxsdk.util.LongObjectMap;
 import com.mapbox.mapboxsdk.views.MapView;
 import com.mapbox.mapboxsdk.views.util.TileLoadedListener;
 import com.mapbox.mapboxsdk.views.util.TilesLoadedListener;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicReference;
 import uk.co.senab.bitmapcache.CacheableBitmapDrawable;
 
 /**
  * The {@link MapTileDownloader} loads tiles from an HTTP server.
+ * <p/>
+ * Tiles go through two stages with their own queues and threads. A couple of threads look for
+ * them in the disk cache first, and only those which aren't there are handed to the threads
+ * downloading them, so tiles already on disk show up right away even while downloads are
+ * stuck on a slow network.
+ * <p/>
+ * Tiles on disk which are past the lifetime the server gave them are still shown right away,
+ * and checked with the server in the background with a conditional request, see
+ * {@link com.mapbox.mapboxsdk.tileprovider.TileMetadata}.
+ * <p/>
+ * The quality of the tiles can follow the throughput of the downloads, see
+ * {@link TileQualityPolicy}. Tiles downloaded at a lower quality than the screen could show are
+ * downloaded again once the link allows it, while the lower quality ones stay displayed.
+ * <p/>
+ * Downloads which take much longer than the others can be sent to another host as well, see
+ * {@link HedgingPolicy}.
  */
 public class MapTileDownloader extends MapTileModuleLayerBase {
     private static final String TAG = "MapTileDownloader";
 
+    /**
+     * A few screens worth of tiles.
+     */
+    private static final int MAXIMUM_DOWNGRADED_TILES = 256;
+
     private final AtomicReference<TileLayer> mTileSource = new AtomicReference<>();
     private final AtomicReference<MapTileCache> mTileCache = new AtomicReference<>();
 
+    private final MapTileRequestQueue mDiskPending =
+            new MapTileRequestQueue(TILE_FILESYSTEM_MAXIMUM_QUEUE_SIZE);
+    private final ExecutorService mDiskExecutor =
+            Executors.newFixedThreadPool(NUMBER_OF_TILE_FILESYSTEM_THREADS,
+                    new ConfigurablePriorityThreadFactory(Thread.NORM_PRIORITY, "diskcache"));
+
+    /**
+     * The number of disk cache loaders handed to the executor which haven't finished yet, kept
+     * at most one per thread, as for the downloading threads.
+     */
+    private final AtomicInteger mRunningDiskLoaders = new AtomicInteger();
+
+    /**
+     * Why the tiles being downloaded failed, by {@link MapTile#getKey()}. Guarded by itself.
+     */
+    private final LongObjectMap<Integer> mFailureReasons = new LongObjectMap<Integer>();
+
+    private final TileQualityPolicy mQualityPolicy = new TileQualityPolicy();
+
+    private final HedgingPolicy mHedgingPolicy = new HedgingPolicy();
+
+    /**
+     * The tiles last loaded at a lower quality than the screen could show, oldest first, to be
+     * loaded again when the quality goes up. Guarded by itself.
+     */
+    private final LinkedHashMap<Long, MapTile> mDowngradedTiles =
+            new LinkedHashMap<Long, MapTile>(64, 0.75f, false) {
+                @Override
+                protected boolean removeEldestEntry(final Map.Entry<Long, MapTile> eldest) {
+                    return size() > MAXIMUM_DOWNGRADED_TILES;
+                }
+            };
+
     private final NetworkAvailabilityCheck mNetworkAvailabilityCheck;
     private MapView mMapView;
     private boolean mUseDataConnection;
@@ -33,7 +102,9 @@ public class MapTileDownloader extends MapTileModuleLayerBase {
 
     public MapTileDownloader(final ITileLayer pTileSource, final MapTileCache pTileCache,
                              final NetworkAvailabilityCheck pNetworkAvailabilityCheck, final MapView mapView) {
-        super(NUMBER_OF_TILE_DOWNLOAD_THREADS, TILE_DOWNLOAD_MAXIMUM_QUEUE_SIZE);
+        super(TILE_DOWNLOAD_MAXIMUM_QUEUE_SIZE,
+                new AdaptiveConcurrencyLimit(MINIMUM_TILE_DOWNLOAD_CONCURRENCY,
+                        NUMBER_OF_TILE_DOWNLOAD_THREADS, MAXIMUM_TILE_DOWNLOAD_CONCURRENCY));
         mMapView = mapView;
         mUseDataConnection = true;
         if (pTileSource instanceof MBTilesLayer) {
@@ -69,6 +140,190 @@ public class MapTileDownloader extends MapTileModuleLayerBase {
         return mMapView.getTileLoadedListener();
     }
 
+    /**
+     * Looks for the tile in the disk cache, then downloads it if it isn't there.
+     */
+    @Override
+    public void loadMapTileAsync(final MapTileRequestState pState) {
+        final MapTileCache cache = mTileCache.get();
+        if (cache == null || !cache.isDiskCacheEnabled()) {
+            super.loadMapTileAsync(pState);
+            return;
+        }
+
+        final MapTileRequestState evicted = mDiskPending.offer(pState);
+        if (evicted != null) {
+            if (evicted == pState && mDiskPending.isStale(pState)) {
+                requestDropped(pState);
+            } else {
+                evicted.getCallback().mapTileRequestFailed(evicted);
+            }
+            if (evicted == pState) {
+                return;
+            }
+        }
+
+        startDiskCacheLoader();
+    }
+
+    /**
+     * Starts another disk cache loader, unless there is one running on every thread.
+     */
+    private void startDiskCacheLoader() {
+        int running;
+        do {
+            running = mRunningDiskLoaders.get();
+            if (running >= NUMBER_OF_TILE_FILESYSTEM_THREADS) {
+                return;
+            }
+        } while (!mRunningDiskLoaders.compareAndSet(running, running + 1));
+
+        try {
+            mDiskExecutor.execute(mDiskCacheLoader);
+        } catch (final RejectedExecutionException e) {
+            mRunningDiskLoaders.decrementAndGet();
+            Log.w(TAG, "RejectedExecutionException", e);
+        }
+    }
+
+    @Override
+    public void setViewport(final int pZoom, final int pCenterX, final int pCenterY,
+            final int pRadius) {
+        super.setViewport(pZoom, pCenterX, pCenterY, pRadius);
+        mDiskPending.setViewport(pZoom, pCenterX, pCenterY, pRadius);
+    }
+
+    @Override
+    public boolean cancelPending(final MapTileRequestState pState) {
+        return mDiskPending.remove(pState.getMapTile()) != null || super.cancelPending(pState);
+    }
+
+    @Override
+    protected void clearQueue() {
+        mDiskPending.clear();
+        super.clearQueue();
+    }
+
+    @Override
+    public void detach() {
+        super.detach();
+        mDiskExecutor.shutdown();
+    }
+
+    /**
+     * Called by the tile source when it fails to download a tile.
+     *
+     * @param tile the tile
+     * @param reason one of the {@link com.mapbox.mapboxsdk.tileprovider.NegativeTileCache}
+     *               REASON_ constants
+     */
+    public void onTileFailed(final MapTile tile, final int reason) {
+        synchronized (mFailureReasons) {
+            mFailureReasons.put(tile.getKey(), reason);
+        }
+    }
+
+    /**
+     * @return the policy picking the quality tiles are downloaded at, disabled by default
+     */
+    public TileQualityPolicy getQualityPolicy() {
+        return mQualityPolicy;
+    }
+
+    /**
+     * @return the policy deciding when tile downloads are hedged, disabled by default
+     */
+    public HedgingPolicy getHedgingPolicy() {
+        return mHedgingPolicy;
+    }
+
+    /**
+     * Called by the tile source when it downloaded a tile, to measure the throughput.
+     *
+     * @param bytes the size of the tile
+     * @param elapsedMs the time it took
+     */
+    public void onTileDownloaded(final long bytes, final long elapsedMs) {
+        if (mQualityPolicy.onDownload(bytes, elapsedMs)) {
+            upgradeTiles();
+        }
+    }
+
+    /**
+     * Called by the tile source with part of a tile which is still being loaded, such as the
+     * first images of a composite tile. It is displayed until the tile is loaded.
+     *
+     * @param tile the tile
+     * @param bitmap the part of the tile, which the memory cache takes over
+     */
+    public void onTilePartiallyLoaded(final MapTile tile, final Bitmap bitmap) {
+        final MapTileCache cache = mTileCache.get();
+        if (cache == null) {
+            return;
+        }
+        // expired, so that it makes way for the whole tile
+        BitmapUtils.setCacheDrawableExpired(cache.putTileInMemoryCache(tile, bitmap));
+        mMapView.postInvalidate();
+    }
+
+    /**
+     * Called by the tile source when it loaded a tile at a lower quality than the screen could
+     * show, because of the link.
+     *
+     * @param tile the tile
+     */
+    public void onTileDowngraded(final MapTile tile) {
+        synchronized (mDowngradedTiles) {
+            mDowngradedTiles.put(tile.getKey(), tile);
+        }
+    }
+
+    /**
+     * Marks the tiles loaded at a lower quality which are still in memory as expired, so that
+     * they are requested again the next time they are drawn, and displayed until then.
+     */
+    private void upgradeTiles() {
+        final ArrayList<MapTile> tiles;
+        synchronized (mDowngradedTiles) {
+            tiles = new ArrayList<MapTile>(mDowngradedTiles.values());
+            mDowngradedTiles.clear();
+        }
+        final MapTileCache cache = mTileCache.get();
+        if (cache == null || tiles.isEmpty()) {
+            return;
+        }
+        for (final MapTile tile : tiles) {
+            BitmapUtils.setCacheDrawableExpired(cache.getMapTileFromMemory(tile));
+        }
+        mMapView.postInvalidate();
+    }
+
+    /**
+     * Whether a tile should be downloaded again, because it expired or because it was
+     * downloaded at a lower quality than the link allows now.
+     *
+     * @param metadata the metadata of the tile on disk, or null
+     */
+    private boolean needsRefresh(final MapTile tile, final TileMetadata metadata) {
+        if (metadata == null) {
+            return false;
+        }
+        final TileLayer tileLayer = mTileSource.get();
+        if (metadata.getQuality() != TileQualityPolicy.QUALITY_UNKNOWN
+                && tileLayer instanceof WebSourceTileLayer) {
+            final WebSourceTileLayer webLayer = (WebSourceTileLayer) tileLayer;
+            if (metadata.getQuality()
+                    < webLayer.getTileQuality(mQualityPolicy.getQuality(), hdpi)) {
+                return true;
+            }
+            if (metadata.getQuality()
+                    < webLayer.getTileQuality(TileQualityPolicy.QUALITY_HIGH, hdpi)) {
+                onTileDowngraded(tile);
+            }
+        }
+        return metadata.isExpired();
+    }
+
     @Override
     public boolean getUsesDataConnection() {
         return mUseDataConnection;
@@ -152,19 +407,129 @@ public class MapTileDownloader extends MapTileModuleLayerBase {
         public Drawable loadTile(final MapTileRequestState aState) throws CantContinueException {
             final MapTile tile = aState.getMapTile();
 //            Log.d(TAG, "loadTile() with tile = '" + tile + "'");
-            if (mTileCache != null && mTileCache.get().containsTileInDiskCache(tile)) {
-//                Log.d(TAG, "tile found in Disk Cache, so returning it. tile = '" + tile + "'");
-                return mTileCache.get().getMapTileFromDisk(tile);
-            }
+            // the disk cache has been looked at already, see mDiskCacheLoader
             TileLayer tileLayer = mTileSource.get();
             Drawable result =
                     (tileLayer != null) ? tileLayer.getDrawableFromTile(MapTileDownloader.this,
                             tile, hdpi) : null;
+            final Integer reason;
+            synchronized (mFailureReasons) {
+                reason = mFailureReasons.remove(tile.getKey());
+            }
+            if (result == null && reason != null) {
+                aState.setFailureReason(reason);
+            }
 //            Log.d(TAG, "tileLayer.getDrawable() returning result = '" + result + "'");
             return result;
         }
     }
 
+    /**
+     * Serves the pending tiles found in the disk cache, and hands the others to the downloading
+     * threads.
+     */
+    private final Runnable mDiskCacheLoader = new Runnable() {
+        @Override
+        public void run() {
+            android.os.Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+
+            try {
+                MapTileRequestState state;
+                while ((state = mDiskPending.poll()) != null) {
+                    if (mDiskPending.isStale(state)) {
+                        requestDropped(state);
+                        continue;
+                    }
+
+                    CacheableBitmapDrawable result = null;
+                    boolean refresh = false;
+                    final MapTileCache cache = mTileCache.get();
+                    try {
+                        if (cache != null && cache.containsTileInDiskCache(state.getMapTile())) {
+                            result = cache.getMapTileFromDisk(state.getMapTile());
+                            refresh = result != null && needsRefresh(state.getMapTile(),
+                                    cache.getTileMetadata(state.getMapTile()));
+                        }
+                    } catch (final Throwable e) {
+                        Log.e(TAG, "Error reading tile from disk cache: " + state.getMapTile(), e);
+                    }
+
+                    if (result == null) {
+                        MapTileDownloader.super.loadMapTileAsync(state);
+                    } else if (BitmapUtils.isCacheDrawableExpired(result)) {
+                        // as the downloading threads do with expired tiles
+                        state.getCallback().mapTileRequestExpiredTile(state, result);
+                    } else {
+                        state.getCallback().mapTileRequestCompleted(state, result);
+                        if (refresh && isNetworkAvailable() && state.getCallback().useDataConnection()) {
+                            revalidate(state);
+                        }
+                    }
+                }
+            } finally {
+                mRunningDiskLoaders.decrementAndGet();
+            }
+
+            // a request offered while this loader was finding the queue empty may have found
+            // no room to start another one
+            if (!mDiskPending.isEmpty()) {
+                startDiskCacheLoader();
+            }
+        }
+    };
+
+    /**
+     * Checks a tile which was served from the disk cache with the server, after the tiles which
+     * are missing. The tile is only delivered again if it changed, or if it was downloaded at a
+     * better quality.
+     */
+    private void revalidate(final MapTileRequestState pState) {
+        final MapTileRequestState revalidation = new MapTileRequestState(pState.getMapTile(),
+                new MapTileModuleLayerBase[] { this }, new RevalidationCallback(pState.getCallback()));
+        revalidation.getNextProvider();
+        revalidation.setPrefetch(true);
+        super.loadMapTileAsync(revalidation);
+    }
+
+    /**
+     * Forwards the result of a revalidation to the callback of the request it was made for,
+     * unless it failed: the tile on disk is still displayed, so it isn't unavailable.
+     */
+    private static final class RevalidationCallback implements IMapTileRequestDroppedCallback {
+        private final IMapTileProviderCallback mCallback;
+
+        RevalidationCallback(final IMapTileProviderCallback callback) {
+            mCallback = callback;
+        }
+
+        @Override
+        public void mapTileRequestCompleted(final MapTileRequestState aState,
+                final Drawable aDrawable) {
+            mCallback.mapTileRequestCompleted(aState, aDrawable);
+        }
+
+        @Override
+        public void mapTileRequestFailed(final MapTileRequestState aState) {
+            // it will be checked again the next time it is read from disk
+        }
+
+        @Override
+        public void mapTileRequestDropped(final MapTileRequestState aState) {
+            // as when it fails
+        }
+
+        @Override
+        public void mapTileRequestExpiredTile(final MapTileRequestState aState,
+                final CacheableBitmapDrawable aDrawable) {
+            // the downloading threads don't produce expired tiles
+        }
+
+        @Override
+        public boolean useDataConnection() {
+            return mCallback.useDataConnection();
+        }
+    }
+
     private CacheableBitmapDrawable onTileLoaded(CacheableBitmapDrawable pDrawable) {
         return mMapView.getTileLoadedListener().onTileLoaded(pDrawable);
     }
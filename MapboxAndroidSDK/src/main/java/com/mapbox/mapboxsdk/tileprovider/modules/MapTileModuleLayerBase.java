@@ -1,21 +1,28 @@
 package com.mapbox.mapboxsdk.tileprovider.modules;
 
 import android.graphics.drawable.Drawable;
+import android.os.Handler;
+import android.os.Looper;
 import android.os.Process;
+import android.os.SystemClock;
 import android.util.Log;
 import com.mapbox.mapboxsdk.geometry.BoundingBox;
 import com.mapbox.mapboxsdk.geometry.LatLng;
+import com.mapbox.mapboxsdk.tileprovider.CancellationToken;
+import com.mapbox.mapboxsdk.tileprovider.IMapTileProviderCallback;
+import com.mapbox.mapboxsdk.tileprovider.IMapTileRequestDroppedCallback;
 import com.mapbox.mapboxsdk.tileprovider.MapTile;
 import com.mapbox.mapboxsdk.tileprovider.MapTileRequestState;
+import com.mapbox.mapboxsdk.tileprovider.NegativeTileCache;
 import com.mapbox.mapboxsdk.tileprovider.constants.TileLayerConstants;
 import com.mapbox.mapboxsdk.tileprovider.tilesource.ITileLayer;
 import com.mapbox.mapboxsdk.util.BitmapUtils;
-import java.util.HashMap;
-import java.util.LinkedHashMap;
-import java.util.Map;
+import com.mapbox.mapboxsdk.util.LongObjectMap;
+import java.util.ArrayList;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
 import uk.co.senab.bitmapcache.CacheableBitmapDrawable;
 
 /**
@@ -113,15 +120,63 @@ public abstract class MapTileModuleLayerBase implements TileLayerConstants {
 
     private final ExecutorService mExecutor;
 
-    protected final Object mQueueLockObject = new Object();
-    protected final HashMap<MapTile, MapTileRequestState> mWorking;
-    protected final LinkedHashMap<MapTile, MapTileRequestState> mPending;
+    /**
+     * Limits how many tiles are loaded at the same time, or null to load as many as there are
+     * threads.
+     */
+    private final AdaptiveConcurrencyLimit mConcurrencyLimit;
 
-    public MapTileRequestState popFirstPending() {
-        for (MapTile tile : mPending.keySet()) {
-            return mPending.remove(tile);
+    private final int mThreadPoolSize;
+
+    /**
+     * The number of loaders handed to the executor which haven't finished yet. Loaders are only
+     * started while this is under the limit, each one loading tiles until the queue is empty.
+     */
+    private final AtomicInteger mRunningLoaders = new AtomicInteger();
+
+    /**
+     * The requests being loaded, by {@link MapTile#getKey()}. Guarded by itself.
+     */
+    protected final LongObjectMap<MapTileRequestState> mWorking;
+    protected final MapTileRequestQueue mPending;
+
+    private final Handler mHandler = new Handler(Looper.getMainLooper());
+
+    private volatile long mCancelGracePeriodMs = TILE_REQUEST_CANCEL_GRACE_PERIOD_MS;
+
+    /**
+     * The requests being loaded, copied out of {@link #mWorking} to look at them on the main
+     * thread.
+     */
+    private final ArrayList<MapTileRequestState> mWorkingSnapshot =
+            new ArrayList<MapTileRequestState>();
+
+    private final Runnable mCancelOutOfViewport = new Runnable() {
+        @Override
+        public void run() {
+            cancelOutOfViewport();
         }
-        return null;
+    };
+
+    /**
+     * When the requests were last checked, and when the next check is posted for, or
+     * Long.MAX_VALUE if none is. Main thread only.
+     */
+    private long mLastCancelCheckMs;
+    private long mNextCancelCheckMs = Long.MAX_VALUE;
+
+    /**
+     * Runs the cancel actions of requests, which may close connections, off the main thread.
+     */
+    private static ExecutorService sCancelExecutor;
+
+    /**
+     * Takes the pending request that should be loaded next, see {@link MapTileRequestQueue}.
+     *
+     * @return the request, or null if there is none
+     */
+    public MapTileRequestState popFirstPending() {
+        return mPending.poll();
     }
 
     /**
@@ -130,6 +185,20 @@ public abstract class MapTileModuleLayerBase implements TileLayerConstants {
      * size must be larger than or equal to the thread pool size.
      */
     public MapTileModuleLayerBase(int pThreadPoolSize, final int pPendingQueueSize) {
+        this(pThreadPoolSize, pPendingQueueSize, null);
+    }
+
+    /**
+     * Initialize a new tile provider which adapts the number of tiles it loads at the same time
+     * with the given limit. The thread pool is sized for the highest the limit can go.
+     */
+    public MapTileModuleLayerBase(final int pPendingQueueSize,
+            final AdaptiveConcurrencyLimit pConcurrencyLimit) {
+        this(pConcurrencyLimit.getMaxLimit(), pPendingQueueSize, pConcurrencyLimit);
+    }
+
+    private MapTileModuleLayerBase(int pThreadPoolSize, final int pPendingQueueSize,
+            final AdaptiveConcurrencyLimit pConcurrencyLimit) {
         if (pPendingQueueSize < pThreadPoolSize) {
             Log.w(TAG,
                     "The pending queue size is smaller than the thread pool size. Automatically reducing the thread pool size.");
@@ -137,56 +206,216 @@ public abstract class MapTileModuleLayerBase implements TileLayerConstants {
         }
         mExecutor = Executors.newFixedThreadPool(pThreadPoolSize,
                 new ConfigurablePriorityThreadFactory(Thread.NORM_PRIORITY, getThreadGroupName()));
+        mThreadPoolSize = pThreadPoolSize;
+        mConcurrencyLimit = pConcurrencyLimit;
+
+        mWorking = new LongObjectMap<MapTileRequestState>();
+        mPending = new MapTileRequestQueue(pPendingQueueSize);
+    }
+
+    /**
+     * @return the limit of tiles loaded at the same time, or null if this provider loads as
+     *         many as it has threads
+     */
+    public AdaptiveConcurrencyLimit getConcurrencyLimit() {
+        return mConcurrencyLimit;
+    }
+
+    /**
+     * Sets the zoom level and the tile at the center of the screen, pending requests are loaded
+     * closest to it first.
+     *
+     * @param pZoom the displayed zoom level
+     * @param pCenterX the x index of the tile at the center of the screen
+     * @param pCenterY the y index of the tile at the center of the screen
+     * @param pRadius how many tiles the screen spans on each side of the center one
+     */
+    public void setViewport(final int pZoom, final int pCenterX, final int pCenterY,
+            final int pRadius) {
+        mPending.setViewport(pZoom, pCenterX, pCenterY, pRadius);
+        // the viewport changes every frame while the map moves, the requests being loaded
+        // are checked less often
+        final long due = mLastCancelCheckMs + TILE_REQUEST_CANCEL_CHECK_INTERVAL_MS;
+        if (SystemClock.uptimeMillis() >= due) {
+            cancelOutOfViewport();
+        } else if (mNextCancelCheckMs > due) {
+            postCancelOutOfViewport(due);
+        }
+    }
 
-        mWorking = new HashMap<MapTile, MapTileRequestState>();
-        mPending =
-                new LinkedHashMap<MapTile, MapTileRequestState>(pPendingQueueSize + 2, 0.1f, true) {
+    /**
+     * Sets how long a tile being loaded may stay more than {@link #TILE_REQUEST_VIEWPORT_MARGIN}
+     * tiles off the screen before its request is cancelled. Prefetches are never cancelled this
+     * way, as they are for tiles off the screen.
+     *
+     * @param pGracePeriodMs the time in milliseconds, or a negative value to never cancel them
+     */
+    public void setCancelGracePeriod(final long pGracePeriodMs) {
+        mCancelGracePeriodMs = pGracePeriodMs;
+    }
 
-                    private static final long serialVersionUID = 6455337315681858866L;
+    /**
+     * Gets the token of the request loading a tile, for the tile source to stop loading it
+     * when it is cancelled.
+     *
+     * @return the token, or null if the tile isn't being loaded
+     */
+    public CancellationToken getCancellationToken(final MapTile pTile) {
+        final MapTileRequestState state;
+        synchronized (mWorking) {
+            state = mWorking.get(pTile.getKey());
+        }
+        return state != null ? state.getCancellationToken() : null;
+    }
+
+    private static synchronized ExecutorService getCancelExecutor() {
+        if (sCancelExecutor == null) {
+            sCancelExecutor = Executors.newSingleThreadExecutor(
+                    new ConfigurablePriorityThreadFactory(Thread.NORM_PRIORITY, "tilecancel"));
+        }
+        return sCancelExecutor;
+    }
+
+    private void postCancelOutOfViewport(final long pUptimeMs) {
+        mHandler.removeCallbacks(mCancelOutOfViewport);
+        mHandler.postAtTime(mCancelOutOfViewport, pUptimeMs);
+        mNextCancelCheckMs = pUptimeMs;
+    }
 
-                    @Override
-                    protected boolean removeEldestEntry(
-                            final Map.Entry<MapTile, MapTileRequestState> pEldest) {
-                        while (size() > pPendingQueueSize) {
-                            MapTileRequestState state = popFirstPending();
-                            state.getCallback().mapTileRequestFailed(state);
-                        }
-                        return false;
+    /**
+     * Cancels the requests being loaded for tiles which have been away from the screen for
+     * longer than the grace period, and checks again when the next one would be due. Called on
+     * the main thread, the cancel actions themselves run on a background thread.
+     */
+    private void cancelOutOfViewport() {
+        final long gracePeriod = mCancelGracePeriodMs;
+        mHandler.removeCallbacks(mCancelOutOfViewport);
+        mNextCancelCheckMs = Long.MAX_VALUE;
+        mLastCancelCheckMs = SystemClock.uptimeMillis();
+        if (gracePeriod < 0) {
+            return;
+        }
+        synchronized (mWorking) {
+            if (mWorking.isEmpty()) {
+                return;
+            }
+            mWorking.values(mWorkingSnapshot);
+        }
+
+        final long now = mLastCancelCheckMs;
+        long nextCheck = Long.MAX_VALUE;
+        for (final MapTileRequestState state : mWorkingSnapshot) {
+            if (state.isPrefetch()
+                    || !mPending.isOutOfViewport(state, TILE_REQUEST_VIEWPORT_MARGIN)) {
+                state.setOutOfViewportSince(0);
+                continue;
+            }
+            if (state.getOutOfViewportSince() == 0) {
+                state.setOutOfViewportSince(now);
+            }
+            final long due = state.getOutOfViewportSince() + gracePeriod;
+            if (now < due) {
+                nextCheck = Math.min(nextCheck, due);
+            } else if (!state.getCancellationToken().isCancelled()) {
+                cancelLater(state);
+            }
+        }
+        mWorkingSnapshot.clear();
+        if (nextCheck != Long.MAX_VALUE) {
+            postCancelOutOfViewport(nextCheck);
+        }
+    }
+
+    private void cancelLater(final MapTileRequestState pState) {
+        try {
+            getCancelExecutor().execute(new Runnable() {
+                @Override
+                public void run() {
+                    if (pState.getCancellationToken().cancel() && DEBUG_TILE_PROVIDERS) {
+                        Log.d(TAG, "MapTileModuleLayerBase.cancelOutOfViewport() on provider: "
+                                + getName()
+                                + " cancelling tile: "
+                                + pState.getMapTile());
                     }
-                };
+                }
+            });
+        } catch (final RejectedExecutionException e) {
+            Log.w(TAG, "RejectedExecutionException", e);
+        }
+    }
+
+    /**
+     * Tells the callback of a request that it was dropped, or that it failed for no particular
+     * reason if the callback doesn't tell the two apart.
+     */
+    protected static void requestDropped(final MapTileRequestState pState) {
+        final IMapTileProviderCallback callback = pState.getCallback();
+        if (callback instanceof IMapTileRequestDroppedCallback) {
+            ((IMapTileRequestDroppedCallback) callback).mapTileRequestDropped(pState);
+        } else {
+            pState.setFailureReason(NegativeTileCache.REASON_UNKNOWN);
+            callback.mapTileRequestFailed(pState);
+        }
     }
 
     /**
      * Loads a map tile asynchronously, adding it to the queue and calling getTileLoader.
      */
     public void loadMapTileAsync(final MapTileRequestState pState) {
-        synchronized (mQueueLockObject) {
-/*
-                Log.d(TAG, "MapTileModuleLayerBase.loadMaptileAsync() on provider: " + getName() + " for tile: " + pState.getMapTile());
-                if (mPending.containsKey(pState.getMapTile())) {
-                    Log.d(TAG, "MapTileModuleLayerBase.loadMaptileAsync() tile already exists in request queue for modular provider. Moving to front of queue.");
-                } else {
-                    Log.d(TAG, "MapTileModuleLayerBase.loadMaptileAsync() adding tile to request queue for modular provider.");
-                }
-*/
-            // this will put the tile in the queue, or move it to the front of
-            // the queue if it's already present
-            mPending.put(pState.getMapTile(), pState);
+        // this will put the tile in the queue, or replace the pending request for it, and push
+        // out the least useful request if the queue is full
+        final MapTileRequestState evicted = mPending.offer(pState);
+        if (evicted != null) {
+            if (evicted == pState && mPending.isStale(pState)) {
+                requestDropped(pState);
+            } else {
+                evicted.getCallback().mapTileRequestFailed(evicted);
+            }
+            if (evicted == pState) {
+                return;
+            }
         }
 
+        startTileLoader();
+    }
+
+    /**
+     * Starts another loader, unless as many are running as the limit, or the thread pool,
+     * allows.
+     */
+    private void startTileLoader() {
+        final int limit = mConcurrencyLimit != null ? mConcurrencyLimit.getLimit() : mThreadPoolSize;
+        int running;
+        do {
+            running = mRunningLoaders.get();
+            if (running >= limit) {
+                return;
+            }
+        } while (!mRunningLoaders.compareAndSet(running, running + 1));
+
         try {
             mExecutor.execute(getTileLoader());
         } catch (final RejectedExecutionException e) {
+            mRunningLoaders.decrementAndGet();
             Log.w(TAG, "RejectedExecutionException", e);
         }
     }
 
+    /**
+     * Takes a request out of the pending queue if no worker has started loading it yet.
+     *
+     * @return true if the request was still pending and has been removed
+     */
+    public boolean cancelPending(final MapTileRequestState pState) {
+        return mPending.remove(pState.getMapTile()) != null;
+    }
+
     /**
      * Clears both pending and working queues.
      */
     protected void clearQueue() {
-        synchronized (mQueueLockObject) {
-            mPending.clear();
+        mPending.clear();
+        synchronized (mWorking) {
             mWorking.clear();
         }
     }
@@ -195,6 +424,7 @@ public abstract class MapTileModuleLayerBase implements TileLayerConstants {
      * Detach, we're shutting down - Stops all workers.
      */
     public void detach() {
+        mHandler.removeCallbacks(mCancelOutOfViewport);
         this.clearQueue();
         this.mExecutor.shutdown();
     }
@@ -203,15 +433,15 @@ public abstract class MapTileModuleLayerBase implements TileLayerConstants {
      * Marks a given map tile as neither being downloaded or worked on.
      */
     void removeTileFromQueues(final MapTile mapTile) {
-        synchronized (mQueueLockObject) {
-            if (DEBUG_TILE_PROVIDERS) {
-                Log.d(TAG, "MapTileModuleLayerBase.removeTileFromQueues() on provider: "
-                        + getName()
-                        + " for tile: "
-                        + mapTile);
-            }
-            mPending.remove(mapTile);
-            mWorking.remove(mapTile);
+        if (DEBUG_TILE_PROVIDERS) {
+            Log.d(TAG, "MapTileModuleLayerBase.removeTileFromQueues() on provider: "
+                    + getName()
+                    + " for tile: "
+                    + mapTile);
+        }
+        mPending.remove(mapTile);
+        synchronized (mWorking) {
+            mWorking.remove(mapTile.getKey());
         }
     }
 
@@ -240,24 +470,43 @@ public abstract class MapTileModuleLayerBase implements TileLayerConstants {
             // Do nothing by default
         }
 
-        protected MapTileRequestState nextTile() {
+        private boolean acquire() {
+            return mConcurrencyLimit == null || mConcurrencyLimit.tryAcquire();
+        }
 
-            synchronized (mQueueLockObject) {
-                // get the most recently accessed tile
-                // - the last item in the iterator that's not already being
-                // processed
-                MapTileRequestState state = popFirstPending();
-                if (state != null) {
-                    mWorking.put(state.getMapTile(), state);
+        private void release() {
+            if (mConcurrencyLimit != null) {
+                mConcurrencyLimit.release();
+            }
+        }
+
+        protected MapTileRequestState nextTile() {
+            // get the pending tile closest to the center of the screen, dropping the ones
+            // requested for zoom levels the user has left in the meantime
+            MapTileRequestState state;
+            while ((state = popFirstPending()) != null) {
+                if (mPending.isStale(state)) {
                     if (DEBUG_TILE_PROVIDERS) {
                         Log.d(TAG, "TileLoader.nextTile() on provider: "
                                 + getName()
-                                + " adding tile to working queue: "
+                                + " dropping stale tile: "
                                 + state.getMapTile());
                     }
+                    requestDropped(state);
+                    continue;
+                }
+                synchronized (mWorking) {
+                    mWorking.put(state.getMapTile().getKey(), state);
+                }
+                if (DEBUG_TILE_PROVIDERS) {
+                    Log.d(TAG, "TileLoader.nextTile() on provider: "
+                            + getName()
+                            + " adding tile to working queue: "
+                            + state.getMapTile());
                 }
                 return state;
             }
+            return null;
         }
 
         /**
@@ -303,31 +552,56 @@ public abstract class MapTileModuleLayerBase implements TileLayerConstants {
             // Make sure we're running with a background priority
             android.os.Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
 
-            onTileLoaderInit();
+            boolean drained = false;
+            try {
+                onTileLoaderInit();
+
+                MapTileRequestState state;
+                Drawable result = null;
+                // loaders over the limit stop, the others go on with the next tile
+                while (acquire()) {
+                    state = nextTile();
+                    if (state == null) {
+                        release();
+                        drained = true;
+                        break;
+                    }
+                    try {
+                        result = null;
+                        result = loadTile(state);
+                    } catch (final CantContinueException e) {
+                        Log.e(TAG, "Tile loader can't continue: " + state.getMapTile(), e);
+                        clearQueue();
+                    } catch (final Throwable e) {
+                        Log.e(TAG, "Error downloading tile: " + state.getMapTile(), e);
+                    } finally {
+                        release();
+                    }
+
+                    if (result == null) {
+                        tileLoadedFailed(state);
+                    } else if (BitmapUtils.isCacheDrawableExpired(result)) {
+                        tileLoadedExpired(state, (CacheableBitmapDrawable) result);
+                    } else {
+                        tileLoaded(state, result);
+                    }
 
-            MapTileRequestState state;
-            Drawable result = null;
-            while ((state = nextTile()) != null) {
-                try {
-                    result = null;
-                    result = loadTile(state);
-                } catch (final CantContinueException e) {
-                    Log.e(TAG, "Tile loader can't continue: " + state.getMapTile(), e);
-                    clearQueue();
-                } catch (final Throwable e) {
-                    Log.e(TAG, "Error downloading tile: " + state.getMapTile(), e);
+                    // the limit may have grown, so one more loader can start
+                    if (mConcurrencyLimit != null && !mPending.isEmpty()) {
+                        startTileLoader();
+                    }
                 }
 
-                if (result == null) {
-                    tileLoadedFailed(state);
-                } else if (BitmapUtils.isCacheDrawableExpired(result)) {
-                    tileLoadedExpired(state, (CacheableBitmapDrawable) result);
-                } else {
-                    tileLoaded(state, result);
-                }
+                onTileLoaderShutdown();
+            } finally {
+                mRunningLoaders.decrementAndGet();
             }
 
-            onTileLoaderShutdown();
+            // a request offered while this loader was finding the queue empty may have found
+            // no room to start another one
+            if (drained && !mPending.isEmpty()) {
+                startTileLoader();
+            }
         }
     }
 
@@ -0,0 +1,290 @@
+package com.mapbox.mapboxsdk.tileprovider.modules;
+
+import com.mapbox.mapboxsdk.tileprovider.MapTile;
+import com.mapbox.mapboxsdk.tileprovider.MapTileRequestState;
+import com.mapbox.mapboxsdk.tileprovider.constants.TileLayerConstants;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A bounded queue of pending tile requests that always hands out the most useful tile first.
+ * Tiles at the zoom level being displayed come before tiles of other zoom levels, and among
+ * those, tiles that are requested for display come before prefetched ones, closest to the
+ * center of the screen first. Requests for zoom levels that are more than
+ * {@link TileLayerConstants#TILE_REQUEST_MAXIMUM_ZOOM_DISTANCE} away from the displayed one
+ * are considered stale: they are refused when offered, and those that became stale while
+ * waiting are handed out ahead of everything else so that the caller can drop them.
+ * <p/>
+ * Requests live in a fixed array of slots that are claimed and released with compare-and-set,
+ * so the UI thread adding requests never waits on loader threads taking them. Requests are
+ * offered one at a time though, so that looking for a pending request for the same tile and
+ * claiming a slot are one step: two requests for a tile never take two slots.
+ */
+public class MapTileRequestQueue implements TileLayerConstants {
+
+    private static final long STALE_PRIORITY = -1;
+
+    private final AtomicReferenceArray<MapTileRequestState> mSlots;
+    private final Object mOfferLock = new Object();
+    private volatile Viewport mViewport;
+
+    public MapTileRequestQueue(final int pCapacity) {
+        mSlots = new AtomicReferenceArray<MapTileRequestState>(Math.max(1, pCapacity));
+    }
+
+    /**
+     * Set the zoom level and the tile at the center of the screen that requests are ranked
+     * against.
+     *
+     * @param pZoom the displayed zoom level
+     * @param pCenterX the x index of the tile at the center of the screen
+     * @param pCenterY the y index of the tile at the center of the screen
+     * @param pRadius how many tiles the screen spans on each side of the center one
+     */
+    public void setViewport(final int pZoom, final int pCenterX, final int pCenterY,
+            final int pRadius) {
+        final Viewport current = mViewport;
+        if (current == null || current.zoom != pZoom || current.centerX != pCenterX
+                || current.centerY != pCenterY || current.radius != pRadius) {
+            mViewport = new Viewport(pZoom, pCenterX, pCenterY, pRadius);
+        }
+    }
+
+    /**
+     * Add a request to the queue, replacing any pending request for the same tile. If the queue
+     * is full the lowest-ranked request is pushed out, which may be the offered one itself.
+     *
+     * @param pState the request to add
+     * @return the request that was pushed out of the queue, or null
+     */
+    public MapTileRequestState offer(final MapTileRequestState pState) {
+        synchronized (mOfferLock) {
+            return offerLocked(pState);
+        }
+    }
+
+    private MapTileRequestState offerLocked(final MapTileRequestState pState) {
+        final MapTile tile = pState.getMapTile();
+        // slots are only emptied by other threads, so a retry is for a slot taken in the meantime
+        while (true) {
+            final Viewport viewport = mViewport;
+            final long priority = priority(pState, viewport);
+            if (priority == STALE_PRIORITY) {
+                return pState;
+            }
+            int free = -1;
+            int worst = -1;
+            long worstPriority = Long.MIN_VALUE;
+            MapTileRequestState worstState = null;
+            boolean retry = false;
+
+            for (int i = 0; i < mSlots.length(); i++) {
+                final MapTileRequestState state = mSlots.get(i);
+                if (state == null) {
+                    if (free < 0) {
+                        free = i;
+                    }
+                    continue;
+                }
+                if (state.getMapTile().getKey() == tile.getKey()) {
+                    if (state == pState || mSlots.compareAndSet(i, state, pState)) {
+                        return null;
+                    }
+                    retry = true;
+                    break;
+                }
+                long statePriority = priority(state, viewport);
+                if (statePriority == STALE_PRIORITY) {
+                    statePriority = Long.MAX_VALUE;
+                }
+                if (statePriority > worstPriority) {
+                    worst = i;
+                    worstState = state;
+                    worstPriority = statePriority;
+                }
+            }
+            if (retry) {
+                continue;
+            }
+
+            if (free >= 0) {
+                if (mSlots.compareAndSet(free, null, pState)) {
+                    return null;
+                }
+                continue;
+            }
+
+            if (worstState == null || priority >= worstPriority) {
+                return pState;
+            }
+            if (mSlots.compareAndSet(worst, worstState, pState)) {
+                return worstState;
+            }
+        }
+    }
+
+    /**
+     * Take the highest-ranked request out of the queue. Stale requests are returned first, so
+     * callers should check them with {@link #isStale(MapTileRequestState)}.
+     *
+     * @return a request, or null if the queue is empty
+     */
+    public MapTileRequestState poll() {
+        while (true) {
+            final Viewport viewport = mViewport;
+            int best = -1;
+            long bestPriority = Long.MAX_VALUE;
+            MapTileRequestState bestState = null;
+
+            for (int i = 0; i < mSlots.length(); i++) {
+                final MapTileRequestState state = mSlots.get(i);
+                if (state == null) {
+                    continue;
+                }
+                final long priority = priority(state, viewport);
+                if (priority == STALE_PRIORITY) {
+                    best = i;
+                    bestState = state;
+                    break;
+                }
+                if (bestState == null || priority < bestPriority) {
+                    best = i;
+                    bestState = state;
+                    bestPriority = priority;
+                }
+            }
+
+            if (bestState == null) {
+                return null;
+            }
+            if (mSlots.compareAndSet(best, bestState, null)) {
+                return bestState;
+            }
+        }
+    }
+
+    /**
+     * Remove the pending request for a tile, if any.
+     *
+     * @param pTile the tile
+     * @return the removed request, or null
+     */
+    public MapTileRequestState remove(final MapTile pTile) {
+        for (int i = 0; i < mSlots.length(); i++) {
+            final MapTileRequestState state = mSlots.get(i);
+            if (state != null && state.getMapTile().getKey() == pTile.getKey()
+                    && mSlots.compareAndSet(i, state, null)) {
+                return state;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return true if there is no pending request
+     */
+    public boolean isEmpty() {
+        for (int i = 0; i < mSlots.length(); i++) {
+            if (mSlots.get(i) != null) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Remove every pending request.
+     */
+    public void clear() {
+        for (int i = 0; i < mSlots.length(); i++) {
+            mSlots.set(i, null);
+        }
+    }
+
+    /**
+     * Whether a request is for a zoom level so far from the displayed one that it is not worth
+     * loading anymore.
+     *
+     * @param pState the request
+     * @return true if the request should be dropped
+     */
+    public boolean isStale(final MapTileRequestState pState) {
+        return priority(pState, mViewport) == STALE_PRIORITY;
+    }
+
+    /**
+     * Whether a request is for a tile which is more than a given number of tiles off the screen,
+     * or for a stale zoom level, see {@link #isStale(MapTileRequestState)}.
+     *
+     * @param pState the request
+     * @param pMargin the number of tiles of the displayed zoom level around the screen
+     * @return true if the tile isn't wanted anymore, false if it is or if there is no viewport
+     */
+    public boolean isOutOfViewport(final MapTileRequestState pState, final int pMargin) {
+        final Viewport viewport = mViewport;
+        if (viewport == null) {
+            return false;
+        }
+        final MapTile pTile = pState.getMapTile();
+        final int zoomDelta = viewport.zoom - pTile.getZ();
+        if (Math.abs(zoomDelta) > TILE_REQUEST_MAXIMUM_ZOOM_DISTANCE) {
+            return true;
+        }
+
+        // as in priority(), from the center of the tile, allowing for its half size
+        final double worldSize = 1 << viewport.zoom;
+        double dx = Math.abs(Math.scalb(pTile.getX() + 0.5, zoomDelta) - (viewport.centerX + 0.5));
+        final double dy = Math.abs(Math.scalb(pTile.getY() + 0.5, zoomDelta) - (viewport.centerY + 0.5));
+        if (dx > worldSize / 2) {
+            dx = worldSize - dx;
+        }
+        return Math.max(dx, dy) - Math.scalb(0.5, zoomDelta) > viewport.radius + pMargin;
+    }
+
+    /**
+     * Rank a request against the viewport, lower is better. The zoom distance goes in the high
+     * bits, then whether the request is a prefetch, so that prefetches come after the visible
+     * tiles of the same zoom level, and the squared distance to the screen center, in tiles of
+     * the displayed zoom level, in the low bits.
+     */
+    private static long priority(final MapTileRequestState pState, final Viewport pViewport) {
+        final MapTile pTile = pState.getMapTile();
+        final long prefetch = pState.isPrefetch() ? PREFETCH_BIT : 0;
+        if (pViewport == null) {
+            return prefetch;
+        }
+        final int zoomDelta = pViewport.zoom - pTile.getZ();
+        final int zoomDistance = Math.abs(zoomDelta);
+        if (zoomDistance > TILE_REQUEST_MAXIMUM_ZOOM_DISTANCE) {
+            return STALE_PRIORITY;
+        }
+
+        // center of the tile, expressed in tiles of the displayed zoom level
+        final double worldSize = 1 << pViewport.zoom;
+        double dx = Math.abs(Math.scalb(pTile.getX() + 0.5, zoomDelta) - (pViewport.centerX + 0.5));
+        final double dy = Math.scalb(pTile.getY() + 0.5, zoomDelta) - (pViewport.centerY + 0.5);
+        // the world wraps horizontally
+        if (dx > worldSize / 2) {
+            dx = worldSize - dx;
+        }
+        final long distance = (long) Math.min(dx * dx + dy * dy, DISTANCE_MASK);
+        return ((long) zoomDistance << (DISTANCE_BITS + 1)) | prefetch | distance;
+    }
+
+    private static final int DISTANCE_BITS = 47;
+    private static final long PREFETCH_BIT = 1L << DISTANCE_BITS;
+    private static final long DISTANCE_MASK = (1L << DISTANCE_BITS) - 1;
+
+    private static final class Viewport {
+        final int zoom;
+        final int centerX;
+        final int centerY;
+        final int radius;
+
+        Viewport(final int pZoom, final int pCenterX, final int pCenterY, final int pRadius) {
+            zoom = pZoom;
+            centerX = pCenterX;
+            centerY = pCenterY;
+            radius = pRadius;
+        }
+    }
+}
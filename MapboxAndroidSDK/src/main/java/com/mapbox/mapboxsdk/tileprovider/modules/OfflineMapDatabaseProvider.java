@@ -0,0 +1,130 @@
+package com.mapbox.mapboxsdk.tileprovider.modules;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.drawable.Drawable;
+import com.mapbox.mapboxsdk.exceptions.OfflineDatabaseException;
+import com.mapbox.mapboxsdk.geometry.BoundingBox;
+import com.mapbox.mapboxsdk.geometry.LatLng;
+import com.mapbox.mapboxsdk.offline.OfflineMapDatabase;
+import com.mapbox.mapboxsdk.tileprovider.MapTile;
+import com.mapbox.mapboxsdk.tileprovider.MapTileCache;
+import com.mapbox.mapboxsdk.tileprovider.MapTileRequestState;
+import com.mapbox.mapboxsdk.tileprovider.tilesource.ITileLayer;
+import com.mapbox.mapboxsdk.util.MapboxUtils;
+
+/**
+ * The {@link OfflineMapDatabaseProvider} loads tiles from an {@link OfflineMapDatabase} saved by
+ * the {@link com.mapbox.mapboxsdk.offline.OfflineMapDownloader}. The database query and the
+ * bitmap decoding run on the loader threads, and the decoded tile is put in the memory cache only
+ * since the database already keeps it on disk.
+ */
+public class OfflineMapDatabaseProvider extends MapTileModuleLayerBase {
+    private final Context mContext;
+    private final OfflineMapDatabase mOfflineMapDatabase;
+    private final MapTileCache mTileCache;
+
+    public OfflineMapDatabaseProvider(final Context pContext,
+                                      final OfflineMapDatabase pOfflineMapDatabase,
+                                      final MapTileCache pTileCache) {
+        super(NUMBER_OF_TILE_FILESYSTEM_THREADS, TILE_FILESYSTEM_MAXIMUM_QUEUE_SIZE);
+        mContext = pContext;
+        mOfflineMapDatabase = pOfflineMapDatabase;
+        mTileCache = pTileCache;
+    }
+
+    public OfflineMapDatabase getOfflineMapDatabase() {
+        return mOfflineMapDatabase;
+    }
+
+    @Override
+    public boolean getUsesDataConnection() {
+        return false;
+    }
+
+    @Override
+    protected String getName() {
+        return "Offline Map Database Provider";
+    }
+
+    @Override
+    protected String getThreadGroupName() {
+        return "offline";
+    }
+
+    @Override
+    protected Runnable getTileLoader() {
+        return new TileLoader();
+    }
+
+    @Override
+    public float getMinimumZoomLevel() {
+        return MINIMUM_ZOOMLEVEL;
+    }
+
+    @Override
+    public float getMaximumZoomLevel() {
+        return MAXIMUM_ZOOMLEVEL;
+    }
+
+    @Override
+    public BoundingBox getBoundingBox() {
+        return null;
+    }
+
+    @Override
+    public LatLng getCenterCoordinate() {
+        return null;
+    }
+
+    @Override
+    public float getCenterZoom() {
+        return (getMaximumZoomLevel() + getMinimumZoomLevel()) / 2;
+    }
+
+    @Override
+    public int getTileSizePixels() {
+        return DEFAULT_TILE_SIZE;
+    }
+
+    @Override
+    public void setTileSource(final ITileLayer tileSource) {
+        // Tiles always come from the database
+    }
+
+    @Override
+    public ITileLayer getTileSource() {
+        return null;
+    }
+
+    @Override
+    public String getCacheKey() {
+        return "offline/" + mOfflineMapDatabase.getMapID();
+    }
+
+    protected class TileLoader extends MapTileModuleLayerBase.TileLoader {
+
+        @Override
+        public Drawable loadTile(final MapTileRequestState aState) throws CantContinueException {
+            final MapTile tile = aState.getMapTile();
+
+            // Build URL to match url in database
+            final String url = MapboxUtils.getMapTileURL(mContext,
+                    mOfflineMapDatabase.getMapID(), tile.getZ(), tile.getX(), tile.getY(),
+                    mOfflineMapDatabase.getImageQuality());
+            final byte[] data;
+            try {
+                data = mOfflineMapDatabase.dataForURL(url);
+            } catch (final OfflineDatabaseException e) {
+                throw new CantContinueException(e);
+            }
+            if (data == null || data.length == 0) {
+                // No data found, the loading tile stays displayed
+                return null;
+            }
+
+            final Bitmap bitmap = mTileCache.decodeBitmap(data, null);
+            return mTileCache.putTileInMemoryCache(tile, bitmap);
+        }
+    }
+}
@@ -0,0 +1,143 @@
+package com.mapbox.mapboxsdk.tileprovider.modules;
+
+/**
+ * Picks the quality tiles are downloaded at from the throughput of recent downloads, so that a
+ * slow link gets a slightly blurry map quickly rather than a sharp one much later.
+ * <p/>
+ * Tiles start at {@link #QUALITY_HIGH}, the quality used without this policy, and only go down
+ * once the first downloads have shown the link to be slow. The throughput is smoothed over the
+ * last downloads. The quality goes down as soon as it falls under the threshold of the current
+ * quality, and only goes back up once it is well over the threshold of the next one, so that it
+ * doesn't flip back and forth around a threshold. Which tiles each quality stands for is up to
+ * the tile source, see
+ * {@link com.mapbox.mapboxsdk.tileprovider.tilesource.WebSourceTileLayer#getTileQuality(int,
+ * boolean)}. Disabled by default.
+ */
+public class TileQualityPolicy {
+
+    /**
+     * The quality of a tile isn't known, e.g. because it was cached before it was recorded.
+     */
+    public static final int QUALITY_UNKNOWN = -1;
+
+    /**
+     * Standard resolution tiles, in a smaller image format if the source has one.
+     */
+    public static final int QUALITY_LOW = 0;
+
+    /**
+     * Standard resolution tiles.
+     */
+    public static final int QUALITY_MEDIUM = 1;
+
+    /**
+     * High resolution (@2x) tiles on high density screens.
+     */
+    public static final int QUALITY_HIGH = 2;
+
+    /**
+     * Throughput, in bytes per second, needed for {@link #QUALITY_HIGH}.
+     */
+    public static final int HIGH_QUALITY_THROUGHPUT = 96 * 1024;
+
+    /**
+     * Throughput, in bytes per second, needed for {@link #QUALITY_MEDIUM}.
+     */
+    public static final int MEDIUM_QUALITY_THROUGHPUT = 24 * 1024;
+
+    /**
+     * How far over a threshold the throughput has to be for the quality to go up.
+     */
+    private static final double UPGRADE_MARGIN = 1.5;
+
+    /**
+     * Weight of a new download in the smoothed throughput.
+     */
+    private static final double SMOOTHING = 1.0 / 4;
+
+    /**
+     * Downloads to wait for before changing the quality the first time.
+     */
+    private static final int MIN_SAMPLES = 8;
+
+    private boolean mEnabled = false;
+    private int mQuality = QUALITY_HIGH;
+    private double mBytes;
+    private double mMillis;
+    private int mSamples;
+
+    /**
+     * Sets whether the quality follows the throughput. When disabled, tiles are always
+     * downloaded at {@link #QUALITY_HIGH}.
+     */
+    public synchronized void setEnabled(final boolean enabled) {
+        mEnabled = enabled;
+    }
+
+    public synchronized boolean isEnabled() {
+        return mEnabled;
+    }
+
+    /**
+     * @return the quality tiles should be downloaded at, one of the QUALITY_ constants
+     */
+    public synchronized int getQuality() {
+        return mEnabled ? mQuality : QUALITY_HIGH;
+    }
+
+    /**
+     * @return the smoothed throughput of recent downloads in bytes per second, or -1 if there
+     *         were none yet
+     */
+    public synchronized long getThroughput() {
+        return mSamples == 0 ? -1 : (long) (mBytes * 1000 / Math.max(1, mMillis));
+    }
+
+    /**
+     * Reports a tile which was downloaded.
+     *
+     * @param bytes the size of the tile
+     * @param elapsedMs the time it took, from opening the connection to having read the tile
+     * @return true if the quality went up, in which case the tiles downloaded at a lower quality
+     *         can be downloaded again
+     */
+    public synchronized boolean onDownload(final long bytes, final long elapsedMs) {
+        if (mSamples == 0) {
+            mBytes = bytes;
+            mMillis = Math.max(1, elapsedMs);
+        } else {
+            mBytes += (bytes - mBytes) * SMOOTHING;
+            mMillis += (Math.max(1, elapsedMs) - mMillis) * SMOOTHING;
+        }
+        if (++mSamples < MIN_SAMPLES) {
+            return false;
+        }
+
+        final long throughput = getThroughput();
+        final int previous = mQuality;
+        if (throughput < threshold(mQuality)) {
+            mQuality = throughput < MEDIUM_QUALITY_THROUGHPUT ? QUALITY_LOW : QUALITY_MEDIUM;
+        } else if (mQuality < QUALITY_HIGH
+                && throughput >= threshold(mQuality + 1) * UPGRADE_MARGIN) {
+            mQuality++;
+        }
+        return mEnabled && mQuality > previous;
+    }
+
+    private static long threshold(final int quality) {
+        switch (quality) {
+            case QUALITY_HIGH:
+                return HIGH_QUALITY_THROUGHPUT;
+            case QUALITY_MEDIUM:
+                return MEDIUM_QUALITY_THROUGHPUT;
+            default:
+                return 0;
+        }
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format("TileQualityPolicy[quality=%d,throughput=%d,enabled=%b]",
+                mQuality, getThroughput(), mEnabled);
+    }
+}
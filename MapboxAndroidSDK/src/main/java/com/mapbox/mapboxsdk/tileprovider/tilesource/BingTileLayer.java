@@ -1,9 +1,13 @@
 package com.mapbox.mapboxsdk.tileprovider.tilesource;
 
 import android.os.AsyncTask;
+import android.os.SystemClock;
+import android.util.Log;
 import com.mapbox.mapboxsdk.tileprovider.MapTile;
+import com.mapbox.mapboxsdk.tileprovider.util.StreamUtils;
 import com.mapbox.mapboxsdk.util.NetworkUtils;
 import org.json.JSONArray;
+import org.json.JSONException;
 import org.json.JSONObject;
 import java.io.BufferedReader;
 import java.io.IOException;
@@ -13,6 +17,14 @@ import java.net.HttpURLConnection;
 import java.net.URL;
 import java.nio.charset.Charset;
 
+/**
+ * A tile layer for Bing Maps, whose tile URLs come from the imagery metadata service.
+ * <p/>
+ * The metadata is fetched once for all the tiles: the tile threads asking for a URL while it is
+ * being fetched wait for that one request instead of making their own. It is also kept in the
+ * {@link TileJsonStore} until it expires, so that tile URLs can be built as soon as the layer is
+ * created on the next start; expired metadata is still used while it is fetched again.
+ */
 public class BingTileLayer extends WebSourceTileLayer {
 
     public static String TAG = "BingTileLayer";
@@ -23,11 +35,42 @@ public class BingTileLayer extends WebSourceTileLayer {
 
     private static final String BASE_URL_PATTERN = "http://dev.virtualearth.net/REST/V1/Imagery/Metadata/%s?mapVersion=v1&output=json&key=%s";
 
+    /**
+     * How long metadata is kept when the service doesn't say.
+     */
+    private static final long METADATA_LIFETIME_MS = 24 * 60 * 60 * 1000L;
+
+    /**
+     * How long a tile thread waits for the metadata being fetched.
+     */
+    private static final long METADATA_TIMEOUT_MS = 15 * 1000L;
+
+    /**
+     * How long after a failed fetch the tile threads give up without fetching again.
+     */
+    private static final long METADATA_RETRY_DELAY_MS = 10 * 1000L;
+
+    private static final char[] QUADKEY_DIGITS = { '0', '1', '2', '3' };
+
     private String mBingMapKey = "";
 
     private String mStyle = IMAGERYSET_ROAD;
 
-    private boolean mHasMetadata = false;
+    /**
+     * Guards the fields below, and is notified when a fetch ends.
+     */
+    private final Object mMetadataLock = new Object();
+
+    private Metadata mMetadata;
+
+    private boolean mFetching;
+
+    /**
+     * Bumped when the style changes, so that the metadata of the previous one is dropped.
+     */
+    private int mGeneration;
+
+    private long mFailedAt;
 
     public BingTileLayer(String key) {
         super("Bing Tile Layer", BASE_URL_PATTERN, false);
@@ -38,16 +81,29 @@ public class BingTileLayer extends WebSourceTileLayer {
         this.setMinimumZoomLevel(1);
         this.setMaximumZoomLevel(22);
 
-        getMetadata();
+        loadMetadata();
     }
 
+    /**
+     * Builds the URL of a tile, waiting for the metadata if it isn't there yet. Not to be called
+     * from the main thread.
+     */
     @Override
     public String getTileURL(final MapTile aTile, boolean hdpi) {
-        if (!mHasMetadata) {
-            getMetadata();
-        }
+        final Metadata metadata = awaitMetadata();
+        return metadata != null ? metadata.getTileURL(aTile) : null;
+    }
 
-        return mUrl.replace("{quadkey}", quadTree(aTile));
+    /**
+     * Sends hedged downloads to the next subdomain given by the metadata.
+     */
+    @Override
+    protected String getHedgeURL(final String url) {
+        final Metadata metadata;
+        synchronized (mMetadataLock) {
+            metadata = mMetadata;
+        }
+        return metadata != null ? metadata.getHedgeURL(url) : null;
     }
 
     @Override
@@ -69,72 +125,179 @@ public class BingTileLayer extends WebSourceTileLayer {
 
     public TileLayer setStyle(String style) {
         if (!style.equals(mStyle)) {
-            synchronized (mStyle) {
+            synchronized (mMetadataLock) {
                 mStyle = style;
-                mHasMetadata = false;
+                mGeneration++;
+                mMetadata = null;
+                mFailedAt = 0;
             }
+            loadMetadata();
         }
-        mStyle = style;
         return this;
     }
 
-    private void getMetadata() {
-        try {
-            synchronized (this) {
-                if (mHasMetadata) {
-                    return;
+    private String getMetadataURL(final String style) {
+        return String.format(BASE_URL_PATTERN, style, mBingMapKey);
+    }
+
+    /**
+     * Takes the stored metadata of the current style, if any, and fetches it in the background
+     * unless it is still fresh.
+     */
+    private void loadMetadata() {
+        final int generation;
+        final String style;
+        synchronized (mMetadataLock) {
+            generation = mGeneration;
+            style = mStyle;
+        }
+        final Metadata stored = Metadata.fromStore(getMetadataURL(style));
+        if (stored != null) {
+            synchronized (mMetadataLock) {
+                if (generation == mGeneration && mMetadata == null) {
+                    setMetadata(stored);
                 }
-                RetrieveMetadata rm = new RetrieveMetadata(mBingMapKey, mStyle) {
-                    @Override
-                    protected void onPostExecute(Boolean success) {
-                        mHasMetadata = success == Boolean.TRUE;
-                    }
-                };
-                rm.execute();
             }
-        } catch (Exception e) {
-            e.printStackTrace();
+            if (!stored.isExpired()) {
+                return;
+            }
         }
-    }
 
-    private class RetrieveMetadata extends AsyncTask<Void, Void, Boolean> {
-        String mKey;
-        String mStyle;
+        synchronized (mMetadataLock) {
+            if (mFetching) {
+                return;
+            }
+            mFetching = true;
+        }
+        new AsyncTask<Void, Void, Void>() {
+            @Override
+            protected Void doInBackground(Void... params) {
+                fetchMetadata(generation, style);
+                return null;
+            }
+        } .execute();
+    }
 
-        public RetrieveMetadata(String key, String style) {
-            mKey = key;
-            mStyle = style;
+    /**
+     * @return the metadata of the current style, fetching it or waiting for the fetch in
+     *         progress if there is none, or null if it couldn't be had
+     */
+    private Metadata awaitMetadata() {
+        final int generation;
+        final String style;
+        synchronized (mMetadataLock) {
+            final long deadline = SystemClock.uptimeMillis() + METADATA_TIMEOUT_MS;
+            while (mMetadata == null && mFetching) {
+                final long remaining = deadline - SystemClock.uptimeMillis();
+                if (remaining <= 0) {
+                    return null;
+                }
+                try {
+                    mMetadataLock.wait(remaining);
+                } catch (final InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return null;
+                }
+            }
+            if (mMetadata != null) {
+                return mMetadata;
+            }
+            if (mFailedAt != 0
+                    && SystemClock.uptimeMillis() - mFailedAt < METADATA_RETRY_DELAY_MS) {
+                return null;
+            }
+            // This thread fetches it, the others wait for it
+            mFetching = true;
+            generation = mGeneration;
+            style = mStyle;
         }
+        return fetchMetadata(generation, style);
+    }
 
-        @Override
-        protected Boolean doInBackground(Void... params) {
-            try {
-                synchronized (BingTileLayer.this) {
-                    if (mHasMetadata) {
-                        return null;
+    /**
+     * Fetches the metadata of a style, for the thread which set {@link #mFetching}, then wakes
+     * up the threads waiting for it.
+     *
+     * @return the metadata, or null if it couldn't be fetched or the style changed
+     */
+    private Metadata fetchMetadata(final int generation, final String style) {
+        final String metadataURL = getMetadataURL(style);
+        Metadata metadata = null;
+        try {
+            metadata = requestMetadata(metadataURL);
+        } catch (Exception e) {
+            Log.e(TAG, "Error fetching Bing metadata", e);
+        } finally {
+            synchronized (mMetadataLock) {
+                mFetching = false;
+                if (generation == mGeneration) {
+                    if (metadata != null) {
+                        setMetadata(metadata);
+                        mFailedAt = 0;
+                    } else {
+                        mFailedAt = SystemClock.uptimeMillis();
                     }
-                    String url = String.format(BASE_URL_PATTERN, mStyle, mKey);
-
-                    HttpURLConnection connection = NetworkUtils.getHttpURLConnection(new URL(url));
-                    BufferedReader rd = new BufferedReader(
-                            new InputStreamReader(connection.getInputStream(), Charset.forName("UTF-8")));
-
-                    String content = readAll(rd);
+                }
+                mMetadataLock.notifyAll();
+            }
+        }
+        if (metadata == null) {
+            return null;
+        }
+        final TileJsonStore store = TileJsonStore.getDefault();
+        if (store != null) {
+            store.put(metadataURL, new TileJsonStore.Entry(metadata.toJSON().toString(), null,
+                    null));
+        }
+        synchronized (mMetadataLock) {
+            return generation == mGeneration ? metadata : null;
+        }
+    }
 
-                    String metadataUrl = getInstanceFromJSON(content).replace("{culture}", "en");
+    /**
+     * Called with {@link #mMetadataLock} held.
+     */
+    private void setMetadata(final Metadata metadata) {
+        mMetadata = metadata;
+        mUrl = metadata.mImageUrl;
+        if (metadata.mZoomMin >= 0) {
+            super.mMinimumZoomLevel = metadata.mZoomMin;
+        }
+        if (metadata.mZoomMax >= 0) {
+            super.mMaximumZoomLevel = metadata.mZoomMax;
+        }
+    }
 
-                    mUrl = metadataUrl;
+    private Metadata requestMetadata(final String url) throws Exception {
+        final HttpURLConnection connection = NetworkUtils.getHttpURLConnection(new URL(url));
+        try {
+            final int code = connection.getResponseCode();
+            if (code >= HttpURLConnection.HTTP_BAD_REQUEST) {
+                // e.g. a bad key or an exceeded quota
+                StreamUtils.closeStream(connection.getErrorStream());
+                throw new IOException("HTTP " + code);
+            }
+            BufferedReader rd = new BufferedReader(
+                    new InputStreamReader(connection.getInputStream(), Charset.forName("UTF-8")));
 
-                    return Boolean.TRUE;
-                }
-            } catch (Exception e) {
-                e.printStackTrace();
-                return Boolean.FALSE;
+            String content;
+            try {
+                content = readAll(rd);
+            } finally {
+                rd.close();
             }
+
+            final long now = System.currentTimeMillis();
+            final long expiresAt = connection.getExpiration() > now
+                    ? connection.getExpiration() : now + METADATA_LIFETIME_MS;
+            return getInstanceFromJSON(content, expiresAt);
+        } finally {
+            connection.disconnect();
         }
     }
 
-    private String getInstanceFromJSON(final String jsonContent) throws Exception {
+    private static Metadata getInstanceFromJSON(final String jsonContent, final long expiresAt)
+            throws Exception {
         if (jsonContent == null) {
             throw new Exception("JSON to parse is null");
         }
@@ -160,17 +323,15 @@ public class BingTileLayer extends WebSourceTileLayer {
 
         final JSONObject resource = resultsSet.getJSONObject(0).getJSONArray("resources").getJSONObject(0);
 
-        if (resource.has("ZoomMin")) {
-            super.mMinimumZoomLevel = (float) resource.getInt("ZoomMin");
+        final JSONArray subdomains = resource.optJSONArray("imageUrlSubdomains");
+        final String[] imageUrlSubdomains = new String[subdomains != null ? subdomains.length() : 0];
+        for (int i = 0; i < imageUrlSubdomains.length; i++) {
+            imageUrlSubdomains[i] = subdomains.getString(i);
         }
-        if (resource.has("ZoomMax")) {
-            super.mMaximumZoomLevel = (float) resource.getInt("ZoomMax");
-        }
-
-        String imageBaseUrl = resource.getString("imageUrl");
-        String imageUrl = imageBaseUrl.replace("{subdomain}", resource.getJSONArray("imageUrlSubdomains").getString(0));
 
-        return imageUrl;
+        return new Metadata(resource.getString("imageUrl").replace("{culture}", "en"),
+                imageUrlSubdomains, resource.optInt("ZoomMin", -1),
+                resource.optInt("ZoomMax", -1), expiresAt);
     }
 
     private static String readAll(Reader rd) throws IOException {
@@ -182,19 +343,126 @@ public class BingTileLayer extends WebSourceTileLayer {
         return sb.toString();
     }
 
-    private String quadTree(final MapTile tile) {
-        final StringBuilder quadKey = new StringBuilder();
-        for (int i = tile.getZ(); i > 0; i--) {
-            int digit = 0;
-            final int mask = 1 << (i - 1);
-            if ((tile.getX() & mask) != 0) {
-                digit += 1;
+    /**
+     * Appends the quadkey of a tile, one digit per zoom level.
+     */
+    static void appendQuadKey(final StringBuilder sb, final int x, final int y, final int z) {
+        for (int i = z - 1; i >= 0; i--) {
+            sb.append(QUADKEY_DIGITS[((x >> i) & 1) | (((y >> i) & 1) << 1)]);
+        }
+    }
+
+    /**
+     * The URL template of the tiles of a style, with its subdomains, split around the quadkey
+     * once so that building a tile URL only takes a single StringBuilder.
+     */
+    private static final class Metadata {
+        final String mImageUrl;
+        final String[] mSubdomains;
+        final int mZoomMin;
+        final int mZoomMax;
+        final long mExpiresAt;
+
+        /**
+         * The template before and after {quadkey}, for each subdomain.
+         */
+        private final String[] mPrefixes;
+        private final String[] mSuffixes;
+
+        Metadata(final String imageUrl, final String[] subdomains, final int zoomMin,
+                final int zoomMax, final long expiresAt) {
+            mImageUrl = imageUrl;
+            mSubdomains = subdomains;
+            mZoomMin = zoomMin;
+            mZoomMax = zoomMax;
+            mExpiresAt = expiresAt;
+
+            final int count = Math.max(1, subdomains.length);
+            mPrefixes = new String[count];
+            mSuffixes = new String[count];
+            for (int i = 0; i < count; i++) {
+                final String url = subdomains.length > 0
+                        ? imageUrl.replace("{subdomain}", subdomains[i]) : imageUrl;
+                final int quadKey = url.indexOf("{quadkey}");
+                mPrefixes[i] = quadKey >= 0 ? url.substring(0, quadKey) : url;
+                mSuffixes[i] = quadKey >= 0 ? url.substring(quadKey + "{quadkey}".length()) : "";
             }
-            if ((tile.getY() & mask) != 0) {
-                digit += 2;
+        }
+
+        boolean isExpired() {
+            return System.currentTimeMillis() >= mExpiresAt;
+        }
+
+        String getTileURL(final MapTile tile) {
+            // Neighbouring tiles go to different subdomains
+            final int i = ((tile.getX() + tile.getY()) & Integer.MAX_VALUE) % mPrefixes.length;
+            final StringBuilder sb = new StringBuilder(
+                    mPrefixes[i].length() + tile.getZ() + mSuffixes[i].length());
+            sb.append(mPrefixes[i]);
+            appendQuadKey(sb, tile.getX(), tile.getY(), tile.getZ());
+            return sb.append(mSuffixes[i]).toString();
+        }
+
+        /**
+         * @return the URL of the same tile on the next subdomain, or null if there is no other
+         */
+        String getHedgeURL(final String url) {
+            if (mPrefixes.length < 2) {
+                return null;
+            }
+            for (int i = 0; i < mPrefixes.length; i++) {
+                if (url.startsWith(mPrefixes[i]) && url.endsWith(mSuffixes[i])
+                        && url.length() >= mPrefixes[i].length() + mSuffixes[i].length()) {
+                    final int next = (i + 1) % mPrefixes.length;
+                    return mPrefixes[next]
+                            + url.substring(mPrefixes[i].length(),
+                                    url.length() - mSuffixes[i].length())
+                            + mSuffixes[next];
+                }
+            }
+            return null;
+        }
+
+        JSONObject toJSON() {
+            final JSONObject json = new JSONObject();
+            try {
+                json.put("imageUrl", mImageUrl);
+                final JSONArray subdomains = new JSONArray();
+                for (final String subdomain : mSubdomains) {
+                    subdomains.put(subdomain);
+                }
+                json.put("imageUrlSubdomains", subdomains);
+                json.put("zoomMin", mZoomMin);
+                json.put("zoomMax", mZoomMax);
+                json.put("expiresAt", mExpiresAt);
+            } catch (final JSONException e) {
+                throw new IllegalStateException(e);
+            }
+            return json;
+        }
+
+        /**
+         * @return the metadata stored for a metadata URL, or null if there is none
+         */
+        static Metadata fromStore(final String metadataURL) {
+            final TileJsonStore store = TileJsonStore.getDefault();
+            final TileJsonStore.Entry entry = store != null ? store.get(metadataURL) : null;
+            final JSONObject json = entry != null ? entry.toJSON() : null;
+            if (json == null) {
+                return null;
+            }
+            try {
+                final JSONArray subdomains = json.getJSONArray("imageUrlSubdomains");
+                final String[] imageUrlSubdomains = new String[subdomains.length()];
+                for (int i = 0; i < imageUrlSubdomains.length; i++) {
+                    imageUrlSubdomains[i] = subdomains.getString(i);
+                }
+                return new Metadata(json.getString("imageUrl"), imageUrlSubdomains,
+                        json.getInt("zoomMin"), json.getInt("zoomMax"), json.getLong("expiresAt"));
+            } catch (final JSONException e) {
+                Log.e(TAG, "Invalid stored Bing metadata", e);
+                return null;
             }
-            quadKey.append("" + digit);
         }
-        return quadKey.toString();
     }
 }
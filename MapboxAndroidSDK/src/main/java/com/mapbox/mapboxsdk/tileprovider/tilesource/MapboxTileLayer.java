@@ -2,6 +2,8 @@ package com.mapbox.mapboxsdk.tileprovider.tilesource;
 
 import android.text.TextUtils;
 import com.mapbox.mapboxsdk.constants.MapboxConstants;
+import com.mapbox.mapboxsdk.tileprovider.MapTile;
+import com.mapbox.mapboxsdk.tileprovider.modules.TileQualityPolicy;
 import com.mapbox.mapboxsdk.util.MapboxUtils;
 import com.mapbox.mapboxsdk.views.util.constants.MapViewConstants;
 import java.util.Locale;
@@ -14,6 +16,8 @@ import java.util.Locale;
 public class MapboxTileLayer extends TileJsonTileLayer implements MapViewConstants, MapboxConstants {
     private static final String TAG = "MapboxTileLayer";
     private String mId;
+    private RasterImageQuality mLowBandwidthImageQuality =
+            RasterImageQuality.MBXRasterImageQualityPNG32;
 
     /**
      * Initialize a new tile layer, directed at a hosted Mapbox tilesource.
@@ -58,4 +62,56 @@ public class MapboxTileLayer extends TileJsonTileLayer implements MapViewConstan
     public String getCacheKey() {
         return mId;
     }
+
+    /**
+     * Sets the image format tiles are downloaded in when the link is slow. The default palette
+     * PNG keeps transparency; a JPEG format is smaller still, but only fits opaque maps.
+     *
+     * @param imageQuality the format, or MBXRasterImageQualityFull to always use the one of the
+     *                     tile URL
+     */
+    public MapboxTileLayer setLowBandwidthImageQuality(final RasterImageQuality imageQuality) {
+        mLowBandwidthImageQuality = imageQuality;
+        return this;
+    }
+
+    public RasterImageQuality getLowBandwidthImageQuality() {
+        return mLowBandwidthImageQuality;
+    }
+
+    @Override
+    public int getTileQuality(final int quality, final boolean hdpi) {
+        // the low quality is the same tile in a smaller image format
+        if (quality <= TileQualityPolicy.QUALITY_LOW && mLowBandwidthImageQuality != null
+                && mLowBandwidthImageQuality != RasterImageQuality.MBXRasterImageQualityFull) {
+            return TileQualityPolicy.QUALITY_LOW;
+        }
+        return super.getTileQuality(quality, hdpi);
+    }
+
+    @Override
+    public String[] getTileURLs(final MapTile aTile, final boolean hdpi, final int quality) {
+        final String[] urls = getTileURLs(aTile, hdpi);
+        if (urls != null && quality == TileQualityPolicy.QUALITY_LOW) {
+            final String extension =
+                    MapboxUtils.qualityExtensionForImageQuality(mLowBandwidthImageQuality);
+            for (int i = 0; i < urls.length; i++) {
+                urls[i] = withExtension(urls[i], extension);
+            }
+        }
+        return urls;
+    }
+
+    /**
+     * Replaces the image format extension of a tile URL, e.g. .png by .jpg70.
+     */
+    private static String withExtension(final String url, final String extension) {
+        final int query = url.indexOf('?');
+        final int end = query < 0 ? url.length() : query;
+        final int dot = url.lastIndexOf('.', end - 1);
+        if (dot < 0 || dot < url.lastIndexOf('/', end - 1)) {
+            return url;
+        }
+        return url.substring(0, dot + 1) + extension + url.substring(end);
+    }
 }
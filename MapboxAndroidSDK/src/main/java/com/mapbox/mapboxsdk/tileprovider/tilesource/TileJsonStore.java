@@ -0,0 +1,225 @@
+package com.mapbox.mapboxsdk.tileprovider.tilesource;
+
+import android.content.Context;
+import android.util.Log;
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * Keeps the last TileJSON document of each layer on disk, along with its validators, so that a
+ * layer can be set up from it right away at the next start and only check it with the server in
+ * the background, see {@link TileJsonTileLayer}. {@link BingTileLayer} keeps its imagery metadata
+ * here as well.
+ * <p/>
+ * The default store lives in the cache directory of the application and is set up by
+ * {@link #initialize(Context)}, which {@link com.mapbox.mapboxsdk.views.MapView} calls. Layers
+ * created before that fetch their TileJSON as they used to.
+ */
+public class TileJsonStore {
+    private static final String TAG = "TileJsonStore";
+
+    private static final String DIRECTORY = "mapbox_tilejson";
+
+    private static TileJsonStore sDefault;
+
+    private final File mDirectory;
+
+    /**
+     * The documents read or written so far, by URL. Guarded by itself.
+     */
+    private final HashMap<String, Entry> mEntries = new HashMap<String, Entry>();
+
+    /**
+     * Sets up the default store, if it isn't already.
+     *
+     * @param context any context of the application
+     */
+    public static synchronized void initialize(final Context context) {
+        if (sDefault == null && context != null) {
+            sDefault = new TileJsonStore(new File(context.getCacheDir(), DIRECTORY));
+        }
+    }
+
+    /**
+     * @return the default store, or null if it isn't set up
+     */
+    public static synchronized TileJsonStore getDefault() {
+        return sDefault;
+    }
+
+    public TileJsonStore(final File directory) {
+        mDirectory = directory;
+    }
+
+    /**
+     * Gets the last document stored for a URL. Documents are small, so the first read of each
+     * from disk is quick enough for the main thread.
+     *
+     * @param url the URL of the TileJSON
+     * @return the entry, or null if there is none
+     */
+    public Entry get(final String url) {
+        synchronized (mEntries) {
+            if (mEntries.containsKey(url)) {
+                return mEntries.get(url);
+            }
+        }
+        final Entry entry = read(fileFor(url));
+        synchronized (mEntries) {
+            if (!mEntries.containsKey(url)) {
+                mEntries.put(url, entry);
+            }
+            return mEntries.get(url);
+        }
+    }
+
+    /**
+     * Stores the document of a URL. Not to be called from the main thread.
+     *
+     * @param url the URL of the TileJSON
+     * @param entry the document and its validators
+     */
+    public void put(final String url, final Entry entry) {
+        synchronized (mEntries) {
+            mEntries.put(url, entry);
+        }
+        write(fileFor(url), entry);
+    }
+
+    private File fileFor(final String url) {
+        try {
+            final byte[] digest = MessageDigest.getInstance("SHA-1").digest(url.getBytes("UTF-8"));
+            final StringBuilder name = new StringBuilder(digest.length * 2 + 5);
+            for (final byte b : digest) {
+                name.append(Character.forDigit((b >> 4) & 0xf, 16));
+                name.append(Character.forDigit(b & 0xf, 16));
+            }
+            return new File(mDirectory, name.append(".json").toString());
+        } catch (final NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        } catch (final IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static Entry read(final File file) {
+        if (!file.exists()) {
+            return null;
+        }
+        BufferedReader reader = null;
+        try {
+            reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), "UTF-8"));
+            final String eTag = reader.readLine();
+            final String lastModified = reader.readLine();
+            final StringBuilder document = new StringBuilder();
+            final char[] buffer = new char[1024];
+            for (int count; (count = reader.read(buffer)) != -1;) {
+                document.append(buffer, 0, count);
+            }
+            if (eTag == null || lastModified == null) {
+                return null;
+            }
+            return new Entry(document.toString(), eTag.length() > 0 ? eTag : null,
+                    lastModified.length() > 0 ? lastModified : null);
+        } catch (final IOException e) {
+            Log.e(TAG, "Error reading TileJSON from " + file, e);
+            return null;
+        } finally {
+            closeQuietly(reader);
+        }
+    }
+
+    private void write(final File file, final Entry entry) {
+        if (!mDirectory.exists() && !mDirectory.mkdirs()) {
+            Log.e(TAG, "can't create directory " + mDirectory);
+            return;
+        }
+        // Written next to it first, so that a crash can't leave half a document
+        final File tmp = new File(file.getPath() + ".tmp");
+        Writer writer = null;
+        try {
+            writer = new OutputStreamWriter(new FileOutputStream(tmp), "UTF-8");
+            writer.write(entry.mETag != null ? entry.mETag : "");
+            writer.write('\n');
+            writer.write(entry.mLastModified != null ? entry.mLastModified : "");
+            writer.write('\n');
+            writer.write(entry.mDocument);
+            writer.close();
+            writer = null;
+            if (!tmp.renameTo(file)) {
+                Log.e(TAG, "Error renaming " + tmp + " to " + file);
+            }
+        } catch (final IOException e) {
+            Log.e(TAG, "Error writing TileJSON to " + file, e);
+        } finally {
+            closeQuietly(writer);
+            tmp.delete();
+        }
+    }
+
+    private static void closeQuietly(final Closeable closeable) {
+        if (closeable != null) {
+            try {
+                closeable.close();
+            } catch (final IOException e) {
+                Log.e(TAG, "Error closing " + closeable, e);
+            }
+        }
+    }
+
+    /**
+     * A TileJSON document and the validators the server gave with it.
+     */
+    public static final class Entry {
+        private final String mDocument;
+        private final String mETag;
+        private final String mLastModified;
+
+        public Entry(final String document, final String eTag, final String lastModified) {
+            mDocument = document;
+            mETag = sanitize(eTag);
+            mLastModified = sanitize(lastModified);
+        }
+
+        public String getDocument() {
+            return mDocument;
+        }
+
+        public String getETag() {
+            return mETag;
+        }
+
+        public String getLastModified() {
+            return mLastModified;
+        }
+
+        /**
+         * @return the document, or null if it isn't valid JSON
+         */
+        public JSONObject toJSON() {
+            try {
+                return new JSONObject(mDocument);
+            } catch (final JSONException e) {
+                Log.e(TAG, "Invalid stored TileJSON", e);
+                return null;
+            }
+        }
+
+        private static String sanitize(final String header) {
+            // one field per line once stored
+            return header == null || header.indexOf('\n') >= 0 ? null : header;
+        }
+    }
+}
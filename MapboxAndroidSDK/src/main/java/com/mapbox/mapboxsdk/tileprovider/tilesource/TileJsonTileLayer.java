@@ -6,43 +6,43 @@ import com.mapbox.mapboxsdk.geometry.BoundingBox;
 import com.mapbox.mapboxsdk.geometry.LatLng;
 import com.mapbox.mapboxsdk.util.NetworkUtils;
 import com.mapbox.mapboxsdk.util.constants.UtilConstants;
-import com.squareup.okhttp.Cache;
 import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
 import java.io.ByteArrayOutputStream;
-import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.HttpURLConnection;
 import java.net.URL;
-import java.util.UUID;
 
 /**
  * A type of tile layer that loads tiles from the internet and metadata about itself
  * with the <a href='https://github.com/mapbox/tilejson-spec'>TileJSON</a> standard.
+ * <p/>
+ * The last TileJSON of the layer is kept in a {@link TileJsonStore}, so that the layer is set up
+ * from it as soon as it is created. It is then checked with the server in the background, and
+ * the layer is only set up again if it changed.
  */
 public class TileJsonTileLayer extends WebSourceTileLayer {
 
     private static final String TAG = "TileJsonTileLayer";
 
     private JSONObject tileJSON;
-    private Cache cache;
 
     public TileJsonTileLayer(final String pId, final String url, final boolean enableSSL) {
         super(pId, url, enableSSL);
 
-        File cacheDir =
-                new File(System.getProperty("java.io.tmpdir"), UUID.randomUUID().toString());
-        try {
-            cache = NetworkUtils.getCache(cacheDir, 1024);
-        } catch (Exception e) {
-            Log.e(TAG, "Cache creation failed.", e);
-        }
-
         String jsonURL = this.getBrandedJSONURL();
         if (jsonURL != null) {
-            fetchBrandedJSONAndInit(jsonURL);
+            final TileJsonStore store = TileJsonStore.getDefault();
+            final TileJsonStore.Entry stored = store != null ? store.get(jsonURL) : null;
+            final JSONObject storedJSON = stored != null ? stored.toJSON() : null;
+            if (storedJSON != null) {
+                initWithTileJSON(storedJSON);
+                fetchBrandedJSONAndInit(jsonURL, store, stored);
+            } else {
+                fetchBrandedJSONAndInit(jsonURL, store, null);
+            }
         }
     }
 
@@ -140,11 +140,22 @@ public class TileJsonTileLayer extends WebSourceTileLayer {
         return out.toByteArray();
     }
 
-    private void fetchBrandedJSONAndInit(String url) {
-        new RetrieveJSONTask() {
+    /**
+     * Fetches the TileJSON in the background, conditionally if there is a stored one, and sets
+     * the layer up with it unless it is the stored one.
+     *
+     * @param store the store to keep the TileJSON in, or null
+     * @param stored the TileJSON the layer was set up with, or null
+     */
+    private void fetchBrandedJSONAndInit(String url, final TileJsonStore store,
+            final TileJsonStore.Entry stored) {
+        new RetrieveJSONTask(store, stored) {
             @Override
             protected void onPostExecute(JSONObject jsonObject) {
-                initWithTileJSON(jsonObject);
+                // Keep what the layer was set up with if nothing changed or the fetch failed
+                if (stored == null || jsonObject != null) {
+                    initWithTileJSON(jsonObject);
+                }
             }
         } .execute(url);
     }
@@ -154,15 +165,54 @@ public class TileJsonTileLayer extends WebSourceTileLayer {
     }
 
     class RetrieveJSONTask extends AsyncTask<String, Void, JSONObject> {
+        private final TileJsonStore mStore;
+        private final TileJsonStore.Entry mStored;
+
+        RetrieveJSONTask() {
+            this(null, null);
+        }
+
+        /**
+         * @param store the store to keep the fetched TileJSON in, or null
+         * @param stored the stored TileJSON to check with the server, or null
+         */
+        RetrieveJSONTask(final TileJsonStore store, final TileJsonStore.Entry stored) {
+            mStore = store;
+            mStored = stored;
+        }
+
+        /**
+         * @return the TileJSON, or null if it couldn't be fetched or is the stored one
+         */
         protected JSONObject doInBackground(String... urls) {
+            HttpURLConnection connection = null;
             InputStream in = null;
             try {
                 URL url = new URL(urls[0]);
-                HttpURLConnection connection = NetworkUtils.getHttpURLConnection(url, cache);
+                connection = NetworkUtils.getHttpURLConnection(url);
+                if (mStored != null && mStored.getETag() != null) {
+                    connection.setRequestProperty("If-None-Match", mStored.getETag());
+                }
+                if (mStored != null && mStored.getLastModified() != null) {
+                    connection.setRequestProperty("If-Modified-Since", mStored.getLastModified());
+                }
+                if (mStored != null
+                        && connection.getResponseCode() == HttpURLConnection.HTTP_NOT_MODIFIED) {
+                    return null;
+                }
                 in = connection.getInputStream();
                 byte[] response = readFully(in);
                 String result = new String(response, "UTF-8");
-                return new JSONObject(result);
+                final JSONObject json = new JSONObject(result);
+                if (mStore != null) {
+                    mStore.put(urls[0], new TileJsonStore.Entry(result,
+                            connection.getHeaderField("ETag"),
+                            connection.getHeaderField("Last-Modified")));
+                }
+                if (mStored != null && result.equals(mStored.getDocument())) {
+                    return null;
+                }
+                return json;
             } catch (Exception e) {
                 e.printStackTrace();
                 return null;
@@ -174,6 +224,10 @@ public class TileJsonTileLayer extends WebSourceTileLayer {
                 } catch (IOException e) {
                     Log.e(TAG, "Error closing InputStream: " + e.toString());
                 }
+                // also releases the connection of a 304, which has no body to close
+                if (connection != null) {
+                    connection.disconnect();
+                }
             }
         }
     }
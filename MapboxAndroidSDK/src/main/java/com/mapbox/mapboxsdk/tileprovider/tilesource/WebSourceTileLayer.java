@@ -4,30 +4,70 @@ import android.graphics.Bitmap;
 import android.graphics.BitmapFactory;
 import android.graphics.Canvas;
 import android.graphics.Paint;
+import android.os.Process;
+import android.os.SystemClock;
 import android.text.TextUtils;
 import android.util.Log;
 
 import com.mapbox.mapboxsdk.constants.MapboxConstants;
+import com.mapbox.mapboxsdk.tileprovider.CancellationToken;
 import com.mapbox.mapboxsdk.tileprovider.MapTile;
 import com.mapbox.mapboxsdk.tileprovider.MapTileCache;
+import com.mapbox.mapboxsdk.tileprovider.NegativeTileCache;
+import com.mapbox.mapboxsdk.tileprovider.TileMetadata;
+import com.mapbox.mapboxsdk.tileprovider.modules.AdaptiveConcurrencyLimit;
+import com.mapbox.mapboxsdk.tileprovider.modules.ConfigurablePriorityThreadFactory;
+import com.mapbox.mapboxsdk.tileprovider.modules.HedgingPolicy;
 import com.mapbox.mapboxsdk.tileprovider.modules.MapTileDownloader;
+import com.mapbox.mapboxsdk.tileprovider.modules.TileQualityPolicy;
+import com.mapbox.mapboxsdk.tileprovider.util.StreamUtils;
+import com.mapbox.mapboxsdk.util.BitmapUtils;
 import com.mapbox.mapboxsdk.util.NetworkUtils;
 import com.mapbox.mapboxsdk.views.util.TileLoadedListener;
 import com.mapbox.mapboxsdk.views.util.TilesLoadedListener;
+import java.io.IOException;
+import java.io.InputStream;
 import java.net.HttpURLConnection;
 import java.net.URL;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
+import uk.co.senab.bitmapcache.ByteArrayPool;
 import uk.co.senab.bitmapcache.CacheableBitmapDrawable;
+import uk.co.senab.bitmapcache.PoolingByteArrayOutputStream;
 
 /**
  * An implementation of {@link TileLayer} that pulls tiles from the internet.
+ * <p/>
+ * Tiles made of several images, see {@link #getTileURLs(MapTile, boolean)}, have their images
+ * loaded at the same time and drawn over one another as they arrive. Each image is kept in the
+ * disk cache on its own, so that it is reused by the other layers made with it.
+ * <p/>
+ * Tiles made of a single image can have their downloads hedged, see {@link HedgingPolicy} and
+ * {@link #getHedgeURL(String)}.
  */
 public class WebSourceTileLayer extends TileLayer implements MapboxConstants {
     private static final String TAG = "WebSourceTileLayer";
 
+    /**
+     * Runs the downloads made besides those of the thread loading the tile: the images of
+     * composite tiles but the first one, which that thread loads itself, and hedged downloads.
+     */
+    private static ExecutorService sDownloadExecutor;
+
+    /**
+     * Starts the hedged downloads once their delay has elapsed, see {@link HedgingPolicy}.
+     */
+    private static ScheduledExecutorService sHedgeTimer;
+
     // Tracks the number of threads active in the getBitmapFromURL method.
     private AtomicInteger activeThreads = new AtomicInteger(0);
     protected boolean mEnableSSL = false;
+    private volatile boolean mProgressiveComposites = false;
 
     public WebSourceTileLayer(final String pId, final String url) {
         this(pId, url, false);
@@ -42,6 +82,34 @@ public class WebSourceTileLayer extends TileLayer implements MapboxConstants {
         return activeThreads.get() == 0;
     }
 
+    private static synchronized ExecutorService getDownloadExecutor() {
+        if (sDownloadExecutor == null) {
+            sDownloadExecutor = Executors.newFixedThreadPool(NUMBER_OF_TILE_DOWNLOAD_THREADS,
+                    new ConfigurablePriorityThreadFactory(Thread.NORM_PRIORITY, "tiledownload"));
+        }
+        return sDownloadExecutor;
+    }
+
+    private static synchronized ScheduledExecutorService getHedgeTimer() {
+        if (sHedgeTimer == null) {
+            sHedgeTimer = Executors.newSingleThreadScheduledExecutor(
+                    new ConfigurablePriorityThreadFactory(Thread.NORM_PRIORITY, "hedgetimer"));
+        }
+        return sHedgeTimer;
+    }
+
+    /**
+     * Sets whether composite tiles are displayed as their first images are drawn, before the
+     * others have arrived. Off by default.
+     */
+    public void setProgressiveComposites(final boolean progressive) {
+        mProgressiveComposites = progressive;
+    }
+
+    public boolean isProgressiveComposites() {
+        return mProgressiveComposites;
+    }
+
     @Override
     public TileLayer setURL(final String aUrl) {
         if (aUrl.contains(String.format(MAPBOX_LOCALE, "http%s://", (mEnableSSL ? "" : "s")))) {
@@ -73,6 +141,36 @@ public class WebSourceTileLayer extends TileLayer implements MapboxConstants {
         return null;
     }
 
+    /**
+     * Gets a list of Tile URLs used by this layer for a specific tile, at a given quality.
+     *
+     * @param aTile a map tile
+     * @param hdpi a boolean that indicates whether the tile should be at 2x or retina size
+     * @param quality the quality to download the tile at, see {@link #getTileQuality(int, boolean)}
+     * @return a list of tile URLS
+     */
+    public String[] getTileURLs(final MapTile aTile, boolean hdpi, int quality) {
+        return getTileURLs(aTile, hdpi);
+    }
+
+    /**
+     * The quality tiles are downloaded at when the link allows a given one. Tiles are only
+     * downloaded at high resolution on high density screens, if the source has them, and only
+     * sources with a smaller image format have a low quality.
+     *
+     * @param quality the quality the link allows, one of the {@link TileQualityPolicy} QUALITY_
+     *                constants
+     * @param hdpi whether the screen is a high density one
+     * @return the quality, at most the given one
+     */
+    public int getTileQuality(final int quality, final boolean hdpi) {
+        if (quality >= TileQualityPolicy.QUALITY_HIGH) {
+            return hdpi && mUrl != null && mUrl.contains("{2x}")
+                    ? TileQualityPolicy.QUALITY_HIGH : TileQualityPolicy.QUALITY_MEDIUM;
+        }
+        return TileQualityPolicy.QUALITY_MEDIUM;
+    }
+
     /**
      * Get a single Tile URL for a single tile.
      *
@@ -93,45 +191,35 @@ public class WebSourceTileLayer extends TileLayer implements MapboxConstants {
 
     private static final Paint compositePaint = new Paint(Paint.FILTER_BITMAP_FLAG);
 
-    private Bitmap compositeBitmaps(final Bitmap source, Bitmap dest) {
-        Canvas canvas = new Canvas(dest);
-        canvas.drawBitmap(source, 0, 0, compositePaint);
-        return dest;
-    }
-
     @Override
     public CacheableBitmapDrawable getDrawableFromTile(final MapTileDownloader downloader,
             final MapTile aTile, boolean hdpi) {
         if (downloader.isNetworkAvailable()) {
             TilesLoadedListener listener = downloader.getTilesLoadedListener();
 
-            boolean tempHDPI = hdpi;
-            if (this instanceof MapboxTileLayer) {
-                tempHDPI = false;
-            }
+            // The link may not allow the best tiles the screen could show
+            final TileQualityPolicy policy = downloader.getQualityPolicy();
+            final int quality = getTileQuality(policy.getQuality(), hdpi);
+            final boolean tempHDPI = quality == TileQualityPolicy.QUALITY_HIGH;
 
-            String[] urls = getTileURLs(aTile, tempHDPI);
+            // set when the tile leaves the screen, see MapTileModuleLayerBase#setViewport
+            final CancellationToken token = downloader.getCancellationToken(aTile);
+
+            String[] urls = getTileURLs(aTile, tempHDPI, quality);
             CacheableBitmapDrawable result = null;
-            Bitmap resultBitmap = null;
             if (urls != null) {
                 MapTileCache cache = downloader.getCache();
                 if (listener != null) {
                     listener.onTilesLoadStarted();
                 }
-                for (final String url : urls) {
-                    Bitmap bitmap = getBitmapFromURL(aTile, url, cache);
-                    if (bitmap == null) {
-                        continue;
-                    }
-                    if (resultBitmap == null) {
-                        resultBitmap = bitmap;
-                    } else {
-                        resultBitmap = compositeBitmaps(bitmap, resultBitmap);
+                if (urls.length == 1) {
+                    result = loadTile(urls[0], cache, downloader, aTile, quality, token);
+                    if (result != null
+                            && quality < getTileQuality(TileQualityPolicy.QUALITY_HIGH, hdpi)) {
+                        downloader.onTileDowngraded(aTile);
                     }
-                }
-                if (resultBitmap != null) {
-                    //get drawable by putting it into cache (memory and disk)
-                    result = cache.putTileBitmap(aTile, resultBitmap);
+                } else {
+                    result = loadCompositeTile(urls, cache, downloader, aTile, token);
                 }
                 if (checkThreadControl()) {
                     if (listener != null) {
@@ -160,26 +248,714 @@ public class WebSourceTileLayer extends TileLayer implements MapboxConstants {
      * @return the tile if valid, otherwise null
      */
     public Bitmap getBitmapFromURL(MapTile mapTile, final String url, final MapTileCache aCache) {
+        Bitmap bitmap = decodeBitmapFromURL(url, aCache, null, mapTile);
+        if (bitmap != null) {
+            aCache.putTileInMemoryCache(mapTile, bitmap);
+        }
+        return bitmap;
+    }
+
+    /**
+     * Downloads a tile made of a single image, or checks the cached one with the server if it
+     * has expired. The downloaded image is decoded and written to the disk cache as it is, from
+     * the buffer it was read into.
+     *
+     * @param quality the quality the url is for
+     * @param token the token of the request, or null
+     * @return the tile, or null if it couldn't be downloaded or the request was cancelled
+     */
+    private CacheableBitmapDrawable loadTile(final String url, final MapTileCache aCache,
+            final MapTileDownloader downloader, final MapTile tile, final int quality,
+            final CancellationToken token) {
+        TileMetadata metadata = aCache.getTileMetadata(tile);
+        if (metadata == null || metadata.getQuality() != quality) {
+            // the validators of another variant of the tile say nothing about this one
+            metadata = new TileMetadata();
+            metadata.setQuality(quality);
+        }
+        final PoolingByteArrayOutputStream data =
+                new PoolingByteArrayOutputStream(aCache.getByteArrayPool());
+        try {
+            if (downloadHedged(url, aCache, downloader, tile, metadata, data, token)) {
+                return aCache.putTileData(tile, data.getBuffer(), data.size(), metadata,
+                        decodeOptions(token));
+            }
+        } finally {
+            if (token != null) {
+                token.setCancelAction(null);
+            }
+            StreamUtils.closeStream(data);
+        }
+        if (metadata.isNotModified()) {
+            // the cached tile is still good for a while, no need to decode it again
+            aCache.putTileMetadata(tile, metadata);
+            final CacheableBitmapDrawable result = aCache.getMapTileFromMemory(tile);
+            if (result != null && !BitmapUtils.isCacheDrawableExpired(result)) {
+                return result;
+            }
+            return aCache.getMapTileFromDisk(tile);
+        }
+        return null;
+    }
+
+    /**
+     * Loads the images of a composite tile at the same time and draws them over one another, in
+     * order, as they arrive.
+     *
+     * @param token the token of the request, or null
+     * @return the tile, or null if none of its images could be loaded or the request was
+     *         cancelled
+     */
+    private CacheableBitmapDrawable loadCompositeTile(final String[] urls,
+            final MapTileCache aCache, final MapTileDownloader downloader, final MapTile tile,
+            final CancellationToken token) {
+        final CompositeTile composite = new CompositeTile(urls.length, aCache, downloader, tile);
+        // each image is loaded with its own token, cancelled along with the one of the tile
+        final CancellationToken[] tokens = new CancellationToken[urls.length];
+        for (int i = 0; i < tokens.length; i++) {
+            tokens[i] = new CancellationToken();
+        }
+        if (token != null) {
+            token.setCancelAction(new Runnable() {
+                @Override
+                public void run() {
+                    for (final CancellationToken imageToken : tokens) {
+                        imageToken.cancel();
+                    }
+                    composite.wakeUp();
+                }
+            });
+        }
+        try {
+            for (int i = 1; i < urls.length; i++) {
+                final Runnable task = composite.newTask(i, urls[i], tokens[i]);
+                try {
+                    getDownloadExecutor().execute(task);
+                } catch (final RejectedExecutionException e) {
+                    task.run();
+                }
+            }
+            composite.newTask(0, urls[0], tokens[0]).run();
+
+            final Bitmap bitmap = composite.await(token);
+            //get drawable by putting it into cache (memory and disk)
+            return bitmap != null ? aCache.putTileBitmap(tile, bitmap) : null;
+        } finally {
+            if (token != null) {
+                token.setCancelAction(null);
+            }
+        }
+    }
+
+    /**
+     * Loads one of the images of a composite tile, from the disk cache if it is there and
+     * fresh. Downloaded images are written to the disk cache as they are.
+     *
+     * @param token the token of the image, or null
+     * @return the image, or null if it couldn't be loaded
+     */
+    private Bitmap loadCompositeImage(final String url, final MapTileCache aCache,
+            final MapTileDownloader downloader, final MapTile tile,
+            final CancellationToken token) {
+        try {
+            final Bitmap cached = aCache.getComponentBitmap(url, decodeOptions(token));
+            if (cached != null) {
+                return cached;
+            }
+        } finally {
+            if (token != null) {
+                token.setCancelAction(null);
+            }
+        }
+
+        // The validators of the images aren't used, so expired ones are downloaded in full
+        final TileMetadata metadata = new TileMetadata();
+        final PoolingByteArrayOutputStream data =
+                new PoolingByteArrayOutputStream(aCache.getByteArrayPool());
+        try {
+            if (downloadFromURL(url, downloader, tile, metadata, data, token)) {
+                aCache.putComponentData(url, data.getBuffer(), data.size(), metadata);
+                return aCache.decodeBitmap(data.getBuffer(), data.size(), decodeOptions(token));
+            }
+        } finally {
+            if (token != null) {
+                token.setCancelAction(null);
+            }
+            StreamUtils.closeStream(data);
+        }
+        return null;
+    }
+
+    /**
+     * The images of a composite tile being loaded. They are drawn into the tile as soon as
+     * those under them are, by the thread which loaded the last one needed, so that the thread
+     * loading the tile only waits for the end.
+     */
+    private final class CompositeTile {
+        private final MapTileCache mCache;
+        private final MapTileDownloader mDownloader;
+        private final MapTile mTile;
+
+        // Guarded by this
+        private final Bitmap[] mImages;
+        private final boolean[] mLoaded;
+        private int mRemaining;
+        private int mDrawn;
+        private Bitmap mResult;
+        private boolean mAbandoned;
+
+        CompositeTile(final int count, final MapTileCache cache,
+                final MapTileDownloader downloader, final MapTile tile) {
+            mCache = cache;
+            mDownloader = downloader;
+            mTile = tile;
+            mImages = new Bitmap[count];
+            mLoaded = new boolean[count];
+            mRemaining = count;
+        }
+
+        Runnable newTask(final int index, final String url, final CancellationToken token) {
+            return new Runnable() {
+                @Override
+                public void run() {
+                    Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                    Bitmap bitmap = null;
+                    try {
+                        bitmap = loadCompositeImage(url, mCache, mDownloader, mTile, token);
+                    } catch (final Throwable e) {
+                        Log.e(TAG, "Error loading MapTile: " + url + ":" + e);
+                    } finally {
+                        onLoaded(index, bitmap);
+                    }
+                }
+            };
+        }
+
+        private synchronized void onLoaded(final int index, final Bitmap bitmap) {
+            mRemaining--;
+            if (mAbandoned) {
+                if (bitmap != null) {
+                    mCache.putBitmapInPool(bitmap);
+                }
+                return;
+            }
+            mImages[index] = bitmap;
+            mLoaded[index] = true;
+
+            final int drawn = mDrawn;
+            while (mDrawn < mImages.length && mLoaded[mDrawn]) {
+                draw(mImages[mDrawn]);
+                mImages[mDrawn] = null;
+                mDrawn++;
+            }
+            if (mProgressiveComposites && mDrawn > drawn && mDrawn < mImages.length
+                    && mResult != null && mDownloader != null) {
+                showPartialTile();
+            }
+            notifyAll();
+        }
+
+        private void draw(final Bitmap image) {
+            if (image == null) {
+                return;
+            }
+            if (mResult == null && image.isMutable()
+                    && image.getConfig() == Bitmap.Config.ARGB_8888) {
+                mResult = image;
+                return;
+            }
+            if (mResult == null) {
+                mResult = newBitmap(image.getWidth(), image.getHeight());
+            }
+            new Canvas(mResult).drawBitmap(image, 0, 0, compositePaint);
+            // the image has been drawn, so its memory can go to the next decode
+            mCache.putBitmapInPool(image);
+        }
+
+        private Bitmap newBitmap(final int width, final int height) {
+            final Bitmap bitmap = mCache.getBitmapFromRemoved(width, height);
+            return bitmap != null
+                    ? bitmap : Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+        }
+
+        /**
+         * Displays a copy of the images drawn so far, as the tile goes on being drawn into.
+         */
+        private void showPartialTile() {
+            final Bitmap partial = newBitmap(mResult.getWidth(), mResult.getHeight());
+            new Canvas(partial).drawBitmap(mResult, 0, 0, null);
+            mDownloader.onTilePartiallyLoaded(mTile, partial);
+        }
+
+        synchronized void wakeUp() {
+            notifyAll();
+        }
+
+        /**
+         * Waits for all the images to be drawn.
+         *
+         * @param token the token of the tile, or null
+         * @return the tile, or null if none of its images could be loaded or the request was
+         *         cancelled
+         */
+        synchronized Bitmap await(final CancellationToken token) {
+            while (mRemaining > 0 && (token == null || !token.isCancelled())) {
+                try {
+                    wait();
+                } catch (final InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+            }
+            if (mRemaining == 0 && (token == null || !token.isCancelled())) {
+                return mResult;
+            }
+            // the images still loading are handed to the pool as they arrive
+            mAbandoned = true;
+            if (mResult != null) {
+                mCache.putBitmapInPool(mResult);
+                mResult = null;
+            }
+            for (int i = 0; i < mImages.length; i++) {
+                if (mImages[i] != null) {
+                    mCache.putBitmapInPool(mImages[i]);
+                    mImages[i] = null;
+                }
+            }
+            return null;
+        }
+    }
+
+    /**
+     * A download sent to another host as well, see
+     * {@link #downloadHedged(String, MapTileCache, MapTileDownloader, MapTile,
+     * TileMetadata, PoolingByteArrayOutputStream, CancellationToken)}. The first request to get a response
+     * wins and cancels the other one; the hedged one reads into its own buffer, which the thread
+     * loading the tile takes over if it wins and which is released by its own thread otherwise.
+     * Run by the timer once the delay has elapsed, to start the hedged request.
+     */
+    private final class HedgedDownload implements Runnable {
+        final CancellationToken mPrimaryToken = new CancellationToken();
+        private final CancellationToken mHedgeToken = new CancellationToken();
+        private final String mURL;
+        private final TileMetadata mMetadata = new TileMetadata();
+        private final DownloadOutcome mOutcome = new DownloadOutcome();
+        private final ByteArrayPool mPool;
+        private final HedgingPolicy mPolicy;
+
+        // guarded by this
+        private boolean mStarted;
+        private boolean mPrimaryDone;
+        private boolean mPrimaryWon;
+        private boolean mHedgeDone;
+        private boolean mHedgeWon;
+        private boolean mHedgeRead;
+        private boolean mCancelled;
+        private PoolingByteArrayOutputStream mData;
+
+        HedgedDownload(final String url, final TileMetadata metadata, final MapTileCache aCache,
+                final HedgingPolicy policy) {
+            mURL = url;
+            mMetadata.set(metadata);
+            mPool = aCache.getByteArrayPool();
+            mPolicy = policy;
+        }
+
+        @Override
+        public void run() {
+            synchronized (this) {
+                if (mPrimaryDone || mCancelled || !mPolicy.tryHedge()) {
+                    return;
+                }
+                mStarted = true;
+                mData = new PoolingByteArrayOutputStream(mPool);
+            }
+            try {
+                getDownloadExecutor().execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        boolean read = false;
+                        try {
+                            // reported by the thread loading the tile, only if this one wins
+                            read = downloadFromURL(mURL, mMetadata, mData, mHedgeToken,
+                                    mOutcome);
+                        } finally {
+                            onHedgeDone(read);
+                        }
+                    }
+                });
+            } catch (final RejectedExecutionException e) {
+                Log.w(TAG, "Couldn't start hedged download: " + e);
+                onHedgeDone(false);
+            }
+        }
+
+        /**
+         * @param answered whether the primary request got a response
+         * @return true if its outcome is the one of the download, false if the hedged request
+         *         answered first or may still answer, see {@link #await(TileMetadata,
+         *         PoolingByteArrayOutputStream)}
+         */
+        boolean onPrimaryDone(final boolean answered) {
+            synchronized (this) {
+                mPrimaryDone = true;
+                if (mHedgeWon) {
+                    return false;
+                }
+                if (!answered) {
+                    return !mStarted || mHedgeDone;
+                }
+                mPrimaryWon = true;
+            }
+            mHedgeToken.cancel();
+            return true;
+        }
+
+        private void onHedgeDone(final boolean read) {
+            final boolean won;
+            synchronized (this) {
+                mHedgeDone = true;
+                won = !mPrimaryWon && !mCancelled && (read || mMetadata.isNotModified());
+                mHedgeWon = won;
+                mHedgeRead = read;
+                notifyAll();
+            }
+            if (won) {
+                mPrimaryToken.cancel();
+            } else {
+                StreamUtils.closeStream(mData);
+            }
+        }
+
+        /**
+         * Waits for the hedged request and takes its response if it won.
+         *
+         * @return true if its response was read into data
+         */
+        boolean await(final TileMetadata metadata, final PoolingByteArrayOutputStream data) {
+            final boolean won;
+            final boolean cancelled;
+            synchronized (this) {
+                while (!mHedgeDone && !mCancelled) {
+                    try {
+                        wait();
+                    } catch (final InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        mCancelled = true;
+                    }
+                }
+                won = mHedgeWon;
+                cancelled = mCancelled;
+            }
+            if (!won) {
+                // its own thread releases the buffer once it is done
+                mHedgeToken.cancel();
+                return false;
+            }
+            try {
+                if (cancelled) {
+                    return false;
+                }
+                // the primary request may have read part of a response before it was cancelled
+                data.reset();
+                metadata.set(mMetadata);
+                if (mHedgeRead) {
+                    data.write(mData.getBuffer(), 0, mData.size());
+                }
+                return mHedgeRead;
+            } finally {
+                StreamUtils.closeStream(mData);
+            }
+        }
+
+        /**
+         * @return how the hedged request went if it won, or null if the outcome of the download
+         *         is the one of the primary request
+         */
+        synchronized DownloadOutcome getOutcomeIfWon() {
+            return mHedgeWon ? mOutcome : null;
+        }
+
+        void cancel() {
+            synchronized (this) {
+                mCancelled = true;
+                notifyAll();
+            }
+            mPrimaryToken.cancel();
+            mHedgeToken.cancel();
+        }
+    }
+
+    /**
+     * Gets the URL of the same tile on another host, which a download taking long is sent to as
+     * well, see {@link HedgingPolicy}. By default, URLs on one of the subdomains a to d, such as
+     * those of a.tiles.mapbox.com, go to the next one.
+     *
+     * @param url the URL of the tile
+     * @return the URL on another host, or null if there is none
+     */
+    protected String getHedgeURL(final String url) {
+        final int start = url.indexOf("://") + 3;
+        if (start < 3 || url.length() <= start + 1 || url.charAt(start + 1) != '.') {
+            return null;
+        }
+        final char subdomain = url.charAt(start);
+        if (subdomain < 'a' || subdomain > 'd') {
+            return null;
+        }
+        return url.substring(0, start) + (char) ('a' + (subdomain - 'a' + 1) % 4)
+                + url.substring(start + 1);
+    }
+
+    /**
+     * Reads the response to a request for a given URL into data, as
+     * {@link #downloadFromURL(String, MapTileDownloader, MapTile, TileMetadata,
+     * PoolingByteArrayOutputStream, CancellationToken)} does. If the downloader hedges downloads
+     * and this one takes longer than its delay, the tile is requested from another host as well
+     * and the first response is used, the other request being cancelled.
+     *
+     * @param metadata the metadata of the cached tile, updated from the response which is used
+     */
+    private boolean downloadHedged(final String url, final MapTileCache aCache,
+            final MapTileDownloader downloader, final MapTile tile, final TileMetadata metadata,
+            final PoolingByteArrayOutputStream data, final CancellationToken token) {
+        final HedgingPolicy policy = downloader != null ? downloader.getHedgingPolicy() : null;
+        final String hedgeURL = policy != null && policy.isEnabled() ? getHedgeURL(url) : null;
+        if (hedgeURL == null) {
+            return downloadFromURL(url, downloader, tile, metadata, data, token);
+        }
+        policy.onRequest();
+        final long start = SystemClock.elapsedRealtime();
+        final long delay = policy.getHedgeDelay();
+        if (delay < 0) {
+            // still measuring how long downloads take
+            final boolean read = downloadFromURL(url, downloader, tile, metadata, data, token);
+            if (read || metadata.isNotModified()) {
+                policy.onResponse(SystemClock.elapsedRealtime() - start);
+            }
+            return read;
+        }
+
+        final HedgedDownload hedge = new HedgedDownload(hedgeURL, metadata, aCache, policy);
+        if (token != null) {
+            token.setCancelAction(new Runnable() {
+                @Override
+                public void run() {
+                    hedge.cancel();
+                }
+            });
+        }
+        ScheduledFuture<?> timer = null;
+        try {
+            timer = getHedgeTimer().schedule(hedge, delay, TimeUnit.MILLISECONDS);
+        } catch (final RejectedExecutionException e) {
+            Log.w(TAG, "Couldn't schedule hedged download: " + e);
+        }
+        final DownloadOutcome primaryOutcome = new DownloadOutcome();
+        boolean read = downloadFromURL(url, metadata, data, hedge.mPrimaryToken, primaryOutcome);
+        if (timer != null) {
+            timer.cancel(false);
+        }
+        if (!hedge.onPrimaryDone(read || metadata.isNotModified())) {
+            // the hedged download answered first, or may still
+            read = hedge.await(metadata, data);
+        }
+        // only the request whose outcome is used is reported, so that the other one neither
+        // fails the tile nor shrinks the concurrency limit
+        final DownloadOutcome hedgeOutcome = hedge.getOutcomeIfWon();
+        (hedgeOutcome != null ? hedgeOutcome : primaryOutcome).report(downloader, tile);
+        if (read || metadata.isNotModified()) {
+            policy.onResponse(SystemClock.elapsedRealtime() - start);
+        }
+        return read;
+    }
+
+    /**
+     * Requests a bitmap from a given URL and decodes it with aCache, reusing a pooled bitmap if
+     * there is one, without caching the result.
+     *
+     * @param downloader the downloader to report how the request went to, or null
+     */
+    private Bitmap decodeBitmapFromURL(final String url, final MapTileCache aCache,
+            final MapTileDownloader downloader, final MapTile tile) {
+        final PoolingByteArrayOutputStream data =
+                new PoolingByteArrayOutputStream(aCache.getByteArrayPool());
+        try {
+            if (downloadFromURL(url, downloader, tile, null, data, null)) {
+                return aCache.decodeBitmap(data.getBuffer(), data.size(), null);
+            }
+        } catch (final Throwable e) {
+            Log.e(TAG, "Error decoding MapTile: " + url + ":" + e);
+        } finally {
+            StreamUtils.closeStream(data);
+        }
+        return null;
+    }
+
+    /**
+     * Reads the response to a request for a given URL into data.
+     *
+     * @param downloader the downloader to report how the request went to, or null
+     * @param metadata the metadata of the cached tile, used to make the request conditional and
+     *                 updated from the response, or null
+     * @param token the token of the request, which closes the connection when cancelled, or null
+     * @return true if the response was read, false if the request failed, was cancelled or the
+     *         server answered that the cached tile is still good, see
+     *         {@link TileMetadata#isNotModified()}
+     */
+    private boolean downloadFromURL(final String url, final MapTileDownloader downloader,
+            final MapTile tile, final TileMetadata metadata,
+            final PoolingByteArrayOutputStream data, final CancellationToken token) {
+        final DownloadOutcome outcome = new DownloadOutcome();
+        try {
+            return downloadFromURL(url, metadata, data, token, outcome);
+        } finally {
+            outcome.report(downloader, tile);
+        }
+    }
+
+    /**
+     * Reads the response to a request for a given URL into data, as
+     * {@link #downloadFromURL(String, MapTileDownloader, MapTile, TileMetadata,
+     * PoolingByteArrayOutputStream, CancellationToken)} does, but only records how it went,
+     * for the caller to report once it knows whether this request is the one that counts.
+     */
+    private boolean downloadFromURL(final String url, final TileMetadata metadata,
+            final PoolingByteArrayOutputStream data, final CancellationToken token,
+            final DownloadOutcome outcome) {
         // We track the active threads here, every exit point should decrement this value.
         activeThreads.incrementAndGet();
 
-        if (TextUtils.isEmpty(url)) {
+        if (TextUtils.isEmpty(url) || (token != null && token.isCancelled())) {
             activeThreads.decrementAndGet();
-            return null;
+            return false;
         }
 
+        HttpURLConnection connection = null;
+        InputStream is = null;
         try {
-            HttpURLConnection connection = NetworkUtils.getHttpURLConnection(new URL(url));
-            Bitmap bitmap = BitmapFactory.decodeStream(connection.getInputStream());
-            if (bitmap != null) {
-                aCache.putTileInMemoryCache(mapTile, bitmap);
+            final long start = SystemClock.elapsedRealtime();
+            connection = NetworkUtils.getHttpURLConnection(new URL(url));
+            final HttpURLConnection toDisconnect = connection;
+            if (token != null) {
+                token.setCancelAction(new Runnable() {
+                    @Override
+                    public void run() {
+                        // fails the call, so the thread gets out of a blocked read
+                        toDisconnect.disconnect();
+                    }
+                });
+            }
+            if (metadata != null) {
+                metadata.applyTo(connection);
             }
-            return bitmap;
+            final int code = connection.getResponseCode();
+            if (code >= HttpURLConnection.HTTP_BAD_REQUEST) {
+                // the server answered, so this says nothing about the link
+                outcome.mFailure = failureReason(code);
+                Log.e(TAG, "Error downloading MapTile: " + url + ": HTTP " + code);
+                // the error body is closed below, which hands the connection back as well
+                is = connection.getErrorStream();
+                return false;
+            }
+            if (metadata != null) {
+                metadata.update(connection);
+            }
+            final boolean notModified = metadata != null && metadata.isNotModified();
+            // a 304 has an empty body, which is still closed below to hand the connection back
+            is = connection.getInputStream();
+            if (!notModified) {
+                // Read once into a pooled buffer, which is both decoded and cached
+                data.readFrom(is);
+            }
+            outcome.mElapsedMs = SystemClock.elapsedRealtime() - start;
+            if (!notModified) {
+                outcome.mBytes = data.size();
+            }
+            return !notModified;
+        } catch (final IOException e) {
+            if (token != null && token.isCancelled()) {
+                // not a failure of the link, nor of the tile
+                return false;
+            }
+            outcome.mFailure = NegativeTileCache.REASON_NETWORK_ERROR;
+            outcome.mLinkError = true;
+            Log.e(TAG, "Error downloading MapTile: " + url + ":" + e);
         } catch (final Throwable e) {
             Log.e(TAG, "Error downloading MapTile: " + url + ":" + e);
         } finally {
+            if (token != null) {
+                token.setCancelAction(null);
+            }
+            if (is != null) {
+                // closing the stream hands the connection back to the shared pool
+                StreamUtils.closeStream(is);
+            } else if (connection != null) {
+                // there is no body to close, e.g. after an error or a cancelled request
+                connection.disconnect();
+            }
             activeThreads.decrementAndGet();
         }
-        return null;
+        return false;
+    }
+
+    /**
+     * How a request went, to be reported to the downloader.
+     */
+    private static final class DownloadOutcome {
+        private int mFailure = NegativeTileCache.REASON_UNKNOWN;
+        private boolean mLinkError;
+        private long mElapsedMs = -1;
+        private long mBytes = -1;
+
+        /**
+         * @param downloader the downloader to report to, or null
+         */
+        void report(final MapTileDownloader downloader, final MapTile tile) {
+            if (downloader == null) {
+                return;
+            }
+            final AdaptiveConcurrencyLimit limit = downloader.getConcurrencyLimit();
+            if (limit != null && mElapsedMs >= 0) {
+                limit.onSuccess(mElapsedMs);
+            } else if (limit != null && mLinkError) {
+                limit.onError();
+            }
+            if (mBytes >= 0) {
+                downloader.onTileDownloaded(mBytes, mElapsedMs);
+            }
+            if (mFailure != NegativeTileCache.REASON_UNKNOWN) {
+                downloader.onTileFailed(tile, mFailure);
+            }
+        }
+    }
+
+    /**
+     * @return options which stop the decoder when the request is cancelled, or null if it can't
+     *         be
+     */
+    private static BitmapFactory.Options decodeOptions(final CancellationToken token) {
+        if (token == null) {
+            return null;
+        }
+        final BitmapFactory.Options opts = new BitmapFactory.Options();
+        token.setCancelAction(new Runnable() {
+            @Override
+            public void run() {
+                opts.requestCancelDecode();
+            }
+        });
+        return opts;
+    }
+
+    private static int failureReason(final int responseCode) {
+        if (responseCode == HttpURLConnection.HTTP_NOT_FOUND
+                || responseCode == HttpURLConnection.HTTP_GONE) {
+            return NegativeTileCache.REASON_NOT_FOUND;
+        }
+        if (responseCode >= HttpURLConnection.HTTP_INTERNAL_ERROR || responseCode == 429) {
+            return NegativeTileCache.REASON_SERVER_ERROR;
+        }
+        return NegativeTileCache.REASON_CLIENT_ERROR;
     }
 }
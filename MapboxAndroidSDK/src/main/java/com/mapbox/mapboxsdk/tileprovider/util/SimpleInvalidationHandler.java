@@ -1,13 +1,56 @@
 package com.mapbox.mapboxsdk.tileprovider.util;
 
+import android.annotation.TargetApi;
+import android.graphics.Rect;
+import android.os.Build;
 import android.os.Handler;
 import android.os.Message;
+import android.view.Choreographer;
 import com.mapbox.mapboxsdk.tileprovider.MapTile;
 import com.mapbox.mapboxsdk.views.MapView;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
 
+/**
+ * Redraws the map when tiles are loaded.
+ * <p/>
+ * The tiles reported through {@link #tileCompleted(MapTile)} are queued from the tile threads
+ * and handled once per frame, on the next vsync from API 16 on: only the union of their
+ * rectangles is invalidated, so that a burst of tiles costs one partial redraw instead of one
+ * full redraw each. Messages sent to this handler still invalidate the whole map.
+ */
 public class SimpleInvalidationHandler extends Handler {
+    private static final long FRAME_DELAY_MS = 16;
+
     private final MapView mView;
 
+    private final ConcurrentLinkedQueue<MapTile> mCompletedTiles =
+            new ConcurrentLinkedQueue<MapTile>();
+    private final AtomicBoolean mFrameScheduled = new AtomicBoolean();
+    private final Rect mDirty = new Rect();
+    private FrameScheduler mFrameScheduler;
+
+    private final Runnable mDrainRunnable = new Runnable() {
+        @Override
+        public void run() {
+            drainCompletedTiles();
+        }
+    };
+
+    private final Runnable mScheduleFrameRunnable = new Runnable() {
+        @Override
+        public void run() {
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN) {
+                if (mFrameScheduler == null) {
+                    mFrameScheduler = new FrameScheduler(mDrainRunnable);
+                }
+                mFrameScheduler.post();
+            } else {
+                postDelayed(mDrainRunnable, FRAME_DELAY_MS);
+            }
+        }
+    };
+
     public SimpleInvalidationHandler(final MapView pView) {
         super();
         mView = pView;
@@ -18,8 +61,65 @@ public class SimpleInvalidationHandler extends Handler {
         switch (msg.what) {
             case MapTile.MAPTILE_SUCCESS_ID:
                 mView.invalidate();
-                //                mView.invalidate((Rect) msg.obj);
                 break;
         }
     }
+
+    /**
+     * Queues a tile which was loaded, so that its part of the map is redrawn at the next frame.
+     * Can be called from any thread.
+     *
+     * @param pTile the tile, whose rectangle is the one it was last drawn at
+     */
+    public void tileCompleted(final MapTile pTile) {
+        mCompletedTiles.offer(pTile);
+        if (mFrameScheduled.compareAndSet(false, true)) {
+            // the Choreographer is the one of the main thread, so it's asked from there
+            post(mScheduleFrameRunnable);
+        }
+    }
+
+    private void drainCompletedTiles() {
+        // tiles queued from now on schedule the next frame
+        mFrameScheduled.set(false);
+
+        boolean dirty = false;
+        boolean whole = mView.isAnimating();
+        MapTile tile;
+        while ((tile = mCompletedTiles.poll()) != null) {
+            final Rect rect = tile.getTileRect();
+            if (rect == null) {
+                // never drawn, e.g. a prefetched tile
+                whole = true;
+            } else if (!dirty) {
+                mDirty.set(rect);
+            } else {
+                mDirty.union(rect);
+            }
+            dirty = true;
+        }
+        if (whole) {
+            mView.invalidate();
+        } else if (dirty) {
+            mView.invalidateMapCoordinates(mDirty);
+        }
+    }
+
+    @TargetApi(Build.VERSION_CODES.JELLY_BEAN)
+    private static final class FrameScheduler implements Choreographer.FrameCallback {
+        private final Runnable mRunnable;
+
+        FrameScheduler(final Runnable runnable) {
+            mRunnable = runnable;
+        }
+
+        void post() {
+            Choreographer.getInstance().postFrameCallback(this);
+        }
+
+        @Override
+        public void doFrame(final long frameTimeNanos) {
+            mRunnable.run();
+        }
+    }
 }
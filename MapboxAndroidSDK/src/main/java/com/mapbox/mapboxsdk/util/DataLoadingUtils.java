@@ -54,8 +54,13 @@ public class DataLoadingUtils {
         } else {
             is = new URL(url).openStream();
         }
-        BufferedReader rd = new BufferedReader(new InputStreamReader(is, Charset.forName("UTF-8")));
-        String jsonText = readAll(rd);
+        String jsonText;
+        try {
+            BufferedReader rd = new BufferedReader(new InputStreamReader(is, Charset.forName("UTF-8")));
+            jsonText = readAll(rd);
+        } finally {
+            is.close();
+        }
 
         FeatureCollection parsed = (FeatureCollection) GeoJSON.parse(jsonText);
         if (UtilConstants.DEBUGMODE) {
@@ -94,11 +99,71 @@ public class DataLoadingUtils {
         return parsed;
     }
 
+    /**
+     * Load GeoJSON from URL (in synchronous manner) and stream it into Mapbox SDK UI Objects, one
+     * feature at a time. Unlike {@link #loadGeoJSONFromUrl(String)}, the document is never held
+     * in memory as a whole, so this should be used for large files.
+     * @param url URL of GeoJSON data
+     * @param markerIcon Optional Icon to use for markers
+     * @param handler Receives the UI Objects as they are created
+     * @return Number of features read
+     * @throws IOException
+     */
+    public static int loadUIObjectsFromGeoJSONUrl(final String url, final Icon markerIcon, final GeoJSONStreamParser.UIObjectHandler handler) throws IOException {
+        if (TextUtils.isEmpty(url)) {
+            throw new NullPointerException("No GeoJSON URL passed in.");
+        }
+
+        if (UtilConstants.DEBUGMODE) {
+            Log.d(DataLoadingUtils.class.getCanonicalName(), "Mapbox SDK streaming GeoJSON URL: " + url);
+        }
+
+        InputStream is;
+        if (url.toLowerCase(Locale.US).indexOf("http") == 0) {
+            is = NetworkUtils.getHttpURLConnection(new URL(url)).getInputStream();
+        } else {
+            is = new URL(url).openStream();
+        }
+        return streamUIObjects(is, markerIcon, handler);
+    }
+
+    /**
+     * Load GeoJSON from a file in assets (in synchronous manner) and stream it into Mapbox SDK UI
+     * Objects, one feature at a time.
+     * @param context Application's Context
+     * @param fileName Name of file in assets directory
+     * @param markerIcon Optional Icon to use for markers
+     * @param handler Receives the UI Objects as they are created
+     * @return Number of features read
+     * @throws IOException
+     */
+    public static int loadUIObjectsFromGeoJSONAssets(final Context context, final String fileName, final Icon markerIcon, final GeoJSONStreamParser.UIObjectHandler handler) throws IOException {
+        if (TextUtils.isEmpty(fileName)) {
+            throw new NullPointerException("No GeoJSON File Name passed in.");
+        }
+        return streamUIObjects(context.getAssets().open(fileName), markerIcon, handler);
+    }
+
+    private static int streamUIObjects(final InputStream is, final Icon markerIcon, final GeoJSONStreamParser.UIObjectHandler handler) throws IOException {
+        int count;
+        try {
+            Reader rd = new InputStreamReader(is, Charset.forName("UTF-8"));
+            count = new GeoJSONStreamParser(markerIcon, handler).parse(rd);
+        } finally {
+            is.close();
+        }
+        if (UtilConstants.DEBUGMODE) {
+            Log.d(DataLoadingUtils.class.getCanonicalName(), "Streamed GeoJSON with " + count + " features.");
+        }
+        return count;
+    }
+
     public static String readAll(Reader rd) throws IOException {
         StringBuilder sb = new StringBuilder();
-        int cp;
-        while ((cp = rd.read()) != -1) {
-            sb.append((char) cp);
+        char[] buffer = new char[8192];
+        int n;
+        while ((n = rd.read(buffer)) != -1) {
+            sb.append(buffer, 0, n);
         }
         return sb.toString();
     }
@@ -0,0 +1,347 @@
+package com.mapbox.mapboxsdk.util;
+
+import android.graphics.Paint;
+import com.mapbox.mapboxsdk.geometry.LatLng;
+import com.mapbox.mapboxsdk.overlay.Icon;
+import com.mapbox.mapboxsdk.overlay.Marker;
+import com.mapbox.mapboxsdk.overlay.PathOverlay;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Turns a GeoJSON document into Mapbox SDK UI objects while reading it, one feature at a time.
+ * Only the feature being read is held in memory, and its coordinates are kept in flat arrays of
+ * doubles, so documents far larger than the heap can be loaded. The UI objects produced are the
+ * same as those of {@link DataLoadingUtils#createUIObjectsFromGeoJSONObjects}.
+ */
+public class GeoJSONStreamParser {
+
+    /**
+     * Receives the UI objects as the features they come from are read.
+     */
+    public interface UIObjectHandler {
+        /**
+         * @param uiObject a {@link Marker} or a {@link PathOverlay}
+         */
+        void onUIObject(Object uiObject);
+    }
+
+    private final Icon mMarkerIcon;
+    private final UIObjectHandler mHandler;
+
+    /**
+     * @param markerIcon Optional Icon to use for markers
+     * @param handler receives the UI objects
+     */
+    public GeoJSONStreamParser(final Icon markerIcon, final UIObjectHandler handler) {
+        mMarkerIcon = markerIcon;
+        mHandler = handler;
+    }
+
+    /**
+     * Read a GeoJSON FeatureCollection or Feature. The reader is not closed.
+     *
+     * @param in the GeoJSON document
+     * @return the number of features read
+     * @throws IOException if the document can't be read or isn't valid JSON
+     */
+    public int parse(final Reader in) throws IOException {
+        final JsonPullReader reader = new JsonPullReader(in);
+        int count = 0;
+        if (reader.peek() != JsonPullReader.Token.BEGIN_OBJECT) {
+            reader.skipValue();
+            return count;
+        }
+        final Feature feature = new Feature();
+        reader.beginObject();
+        while (reader.hasNext()) {
+            final String name = reader.nextName();
+            if ("features".equals(name) && reader.peek() == JsonPullReader.Token.BEGIN_ARRAY) {
+                reader.beginArray();
+                while (reader.hasNext()) {
+                    if (reader.peek() == JsonPullReader.Token.BEGIN_OBJECT) {
+                        reader.beginObject();
+                        readFeature(reader, feature);
+                        count++;
+                    } else {
+                        reader.skipValue();
+                    }
+                }
+                reader.endArray();
+            } else if (!readFeatureMember(reader, name, feature)) {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+        // a single Feature rather than a FeatureCollection
+        if (feature.hasGeometry()) {
+            emit(feature);
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * Read the members of a feature object whose opening brace has been consumed, then emit it.
+     */
+    private void readFeature(final JsonPullReader reader, final Feature feature)
+            throws IOException {
+        feature.clear();
+        while (reader.hasNext()) {
+            if (!readFeatureMember(reader, reader.nextName(), feature)) {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+        emit(feature);
+        feature.clear();
+    }
+
+    private boolean readFeatureMember(final JsonPullReader reader, final String name,
+                                      final Feature feature) throws IOException {
+        final JsonPullReader.Token token = reader.peek();
+        if ("geometry".equals(name) && token == JsonPullReader.Token.BEGIN_OBJECT) {
+            reader.beginObject();
+            while (reader.hasNext()) {
+                final String member = reader.nextName();
+                final JsonPullReader.Token memberToken = reader.peek();
+                if ("type".equals(member) && memberToken == JsonPullReader.Token.STRING) {
+                    feature.geometryType = reader.nextString();
+                } else if ("coordinates".equals(member)
+                        && memberToken == JsonPullReader.Token.BEGIN_ARRAY) {
+                    reader.beginArray();
+                    feature.coordinates = readCoordinates(reader);
+                } else {
+                    reader.skipValue();
+                }
+            }
+            reader.endObject();
+            return true;
+        } else if ("properties".equals(name) && token == JsonPullReader.Token.BEGIN_OBJECT) {
+            reader.beginObject();
+            while (reader.hasNext()) {
+                final String member = reader.nextName();
+                if ("title".equals(member)) {
+                    feature.title = readPropertyString(reader);
+                } else if ("description".equals(member)) {
+                    feature.description = readPropertyString(reader);
+                } else {
+                    reader.skipValue();
+                }
+            }
+            reader.endObject();
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Same as JSONObject.optString(): the text of a string, number or boolean, otherwise "".
+     */
+    private static String readPropertyString(final JsonPullReader reader) throws IOException {
+        switch (reader.peek()) {
+            case STRING:
+            case NUMBER:
+            case BOOLEAN:
+                return reader.nextString();
+            default:
+                reader.skipValue();
+                return "";
+        }
+    }
+
+    /**
+     * Read a coordinates array whose opening bracket has been consumed. Positions are read
+     * straight into the flat array of their parent instead of an array each.
+     */
+    private static Coordinates readCoordinates(final JsonPullReader reader) throws IOException {
+        final Coordinates result = new Coordinates();
+        if (reader.peek() == JsonPullReader.Token.NUMBER) {
+            result.depth = 1;
+            readPosition(reader, result);
+            return result;
+        }
+        result.depth = 2;
+        while (reader.hasNext()) {
+            if (reader.peek() != JsonPullReader.Token.BEGIN_ARRAY) {
+                reader.skipValue();
+                continue;
+            }
+            reader.beginArray();
+            if (reader.peek() == JsonPullReader.Token.NUMBER) {
+                readPosition(reader, result);
+            } else {
+                final Coordinates child = readCoordinates(reader);
+                result.depth = child.depth + 1;
+                if (result.children == null) {
+                    result.children = new ArrayList<Coordinates>();
+                }
+                result.children.add(child);
+            }
+        }
+        reader.endArray();
+        return result;
+    }
+
+    /**
+     * Read the longitude and latitude of a position whose opening bracket has been consumed.
+     */
+    private static void readPosition(final JsonPullReader reader, final Coordinates into)
+            throws IOException {
+        final double lon = reader.nextDouble();
+        final double lat = reader.hasNext() ? reader.nextDouble() : 0;
+        while (reader.hasNext()) {
+            // altitude
+            reader.skipValue();
+        }
+        reader.endArray();
+        into.add(lon, lat);
+    }
+
+    private void emit(final Feature feature) {
+        final String type = feature.geometryType;
+        final Coordinates coordinates = feature.coordinates;
+        if (type == null || coordinates == null) {
+            return;
+        }
+        if ("Point".equals(type) && coordinates.depth == 1) {
+            addMarkers(feature, coordinates);
+        } else if ("MultiPoint".equals(type) && coordinates.depth == 2) {
+            addMarkers(feature, coordinates);
+        } else if ("LineString".equals(type) && coordinates.depth == 2) {
+            mHandler.onUIObject(createPath(coordinates));
+        } else if ("MultiLineString".equals(type) && coordinates.depth == 3) {
+            for (final Coordinates line : coordinates.childrenOrEmpty()) {
+                mHandler.onUIObject(createPath(line));
+            }
+        } else if ("Polygon".equals(type) && coordinates.depth == 3) {
+            final PathOverlay path = createPolygonPath();
+            addRings(path, coordinates);
+            mHandler.onUIObject(path);
+        } else if ("MultiPolygon".equals(type) && coordinates.depth == 4) {
+            final PathOverlay path = createPolygonPath();
+            for (final Coordinates polygon : coordinates.childrenOrEmpty()) {
+                addRings(path, polygon);
+            }
+            mHandler.onUIObject(path);
+        }
+    }
+
+    private void addMarkers(final Feature feature, final Coordinates coordinates) {
+        for (int i = 0; i < coordinates.count; i += 2) {
+            final Marker marker = new Marker(feature.title, feature.description,
+                    new LatLng(coordinates.values[i + 1], coordinates.values[i]));
+            if (mMarkerIcon != null) {
+                marker.setIcon(mMarkerIcon);
+            }
+            mHandler.onUIObject(marker);
+        }
+    }
+
+    private static PathOverlay createPath(final Coordinates line) {
+        final PathOverlay path = new PathOverlay();
+        for (int i = 0; i < line.count; i += 2) {
+            path.addPoint(new LatLng(line.values[i + 1], line.values[i]));
+        }
+        return path;
+    }
+
+    private static PathOverlay createPolygonPath() {
+        final PathOverlay path = new PathOverlay();
+        path.getPaint().setStyle(Paint.Style.FILL);
+        return path;
+    }
+
+    private static void addRings(final PathOverlay path, final Coordinates polygon) {
+        final List<Coordinates> rings = polygon.childrenOrEmpty();
+        for (int r = 0; r < rings.size(); r++) {
+            final Coordinates ring = rings.get(r);
+            // we re-wind inner rings of GeoJSON polygons in order
+            // to render them as transparent in the canvas layer.
+
+            // first ring should have windingOrder = true,
+            // all others should have winding order == false
+            final boolean clockwise = windingOrder(ring);
+            if ((r == 0 && !clockwise) || (r != 0 && clockwise)) {
+                for (int i = 0; i < ring.count; i += 2) {
+                    path.addPoint(new LatLng(ring.values[i + 1], ring.values[i]));
+                }
+            } else {
+                for (int i = ring.count - 2; i >= 0; i -= 2) {
+                    path.addPoint(new LatLng(ring.values[i + 1], ring.values[i]));
+                }
+            }
+        }
+    }
+
+    private static boolean windingOrder(final Coordinates ring) {
+        float area = 0;
+        final int points = ring.count / 2;
+        if (points > 2) {
+            final double[] v = ring.values;
+            for (int i = 0; i < points - 1; i++) {
+                final int p1 = 2 * i;
+                final int p2 = p1 + 2;
+                area += rad(v[p2] - v[p1]) * (2 + Math.sin(rad(v[p1 + 1])) + Math.sin(rad(v[p2 + 1])));
+            }
+        }
+        return area > 0;
+    }
+
+    private static double rad(final double degrees) {
+        return degrees * Math.PI / 180f;
+    }
+
+    /**
+     * A coordinates array: a position (depth 1), a list of positions (depth 2), or a list of
+     * lower-depth coordinates. Positions are stored as longitude, latitude pairs.
+     */
+    private static final class Coordinates {
+        int depth;
+        double[] values;
+        int count;
+        List<Coordinates> children;
+
+        void add(final double lon, final double lat) {
+            if (values == null) {
+                values = new double[8];
+            } else if (count + 2 > values.length) {
+                final double[] grown = new double[values.length * 2];
+                System.arraycopy(values, 0, grown, 0, count);
+                values = grown;
+            }
+            values[count++] = lon;
+            values[count++] = lat;
+        }
+
+        List<Coordinates> childrenOrEmpty() {
+            if (children == null) {
+                return new ArrayList<Coordinates>(0);
+            }
+            return children;
+        }
+    }
+
+    /**
+     * The parts of the feature being read that end up in UI objects.
+     */
+    private static final class Feature {
+        String geometryType;
+        Coordinates coordinates;
+        String title = "";
+        String description = "";
+
+        boolean hasGeometry() {
+            return coordinates != null;
+        }
+
+        void clear() {
+            geometryType = null;
+            coordinates = null;
+            title = "";
+            description = "";
+        }
+    }
+}
@@ -0,0 +1,212 @@
+package com.mapbox.mapboxsdk.util;
+
+import com.squareup.okhttp.Cache;
+import com.squareup.okhttp.ConnectionPool;
+import com.squareup.okhttp.OkHttpClient;
+import com.squareup.okhttp.OkUrlFactory;
+import java.util.concurrent.TimeUnit;
+import javax.net.ssl.SSLSocketFactory;
+
+/**
+ * Holds the single {@link OkHttpClient} shared by every network request of the SDK: tiles,
+ * TileJSON, marker icons, GeoJSON and offline downloads. Sharing one client means sharing one
+ * connection pool, so keep-alive sockets, SPDY/HTTP2 sessions and TLS sessions are reused
+ * across all of them instead of being set up again for every request.
+ * <p/>
+ * The client can be tuned with {@link #setConfiguration(Configuration)}, which should be called
+ * before the first map is displayed. The number of requests made at once is left to the callers,
+ * e.g. to the number of tile loading threads: the connections opened through
+ * {@link OkUrlFactory} are synchronous, so the client can't queue them.
+ */
+public final class HttpClientRegistry {
+
+    private static Configuration sConfiguration = new Configuration.Builder().build();
+    private static OkHttpClient sClient;
+    private static OkUrlFactory sUrlFactory;
+
+    private HttpClientRegistry() {
+    }
+
+    /**
+     * Replace the configuration of the shared client. Requests already running keep using the
+     * previous client.
+     *
+     * @param configuration the new configuration
+     */
+    public static synchronized void setConfiguration(final Configuration configuration) {
+        if (configuration == null) {
+            throw new IllegalArgumentException("configuration must not be null");
+        }
+        sConfiguration = configuration;
+        sClient = null;
+        sUrlFactory = null;
+    }
+
+    public static synchronized Configuration getConfiguration() {
+        return sConfiguration;
+    }
+
+    /**
+     * Get the shared client, creating it first if needed.
+     *
+     * @return the shared client
+     */
+    public static synchronized OkHttpClient getClient() {
+        if (sClient == null) {
+            final Configuration config = sConfiguration;
+            final OkHttpClient client = new OkHttpClient();
+            client.setConnectionPool(new ConnectionPool(config.mMaxIdleConnections,
+                    config.mKeepAliveDurationMs));
+            client.setConnectTimeout(config.mConnectTimeoutMs, TimeUnit.MILLISECONDS);
+            client.setReadTimeout(config.mReadTimeoutMs, TimeUnit.MILLISECONDS);
+            client.setWriteTimeout(config.mWriteTimeoutMs, TimeUnit.MILLISECONDS);
+            if (config.mCache != null) {
+                client.setCache(config.mCache);
+            }
+            sClient = client;
+        }
+        return sClient;
+    }
+
+    /**
+     * Get a client that shares the connection pool of the shared client but uses its own
+     * response cache or SSL socket factory.
+     *
+     * @param cache a response cache, or null to use the shared one
+     * @param sslSocketFactory a socket factory, or null to use the default one
+     * @return a client
+     */
+    public static OkHttpClient getClient(final Cache cache,
+                                         final SSLSocketFactory sslSocketFactory) {
+        final OkHttpClient shared = getClient();
+        if (cache == null && sslSocketFactory == null) {
+            return shared;
+        }
+        final OkHttpClient client = shared.clone();
+        if (cache != null) {
+            client.setCache(cache);
+        }
+        if (sslSocketFactory != null) {
+            client.setSslSocketFactory(sslSocketFactory);
+        }
+        return client;
+    }
+
+    /**
+     * Get the URL factory backed by the shared client.
+     *
+     * @return the URL factory
+     */
+    public static synchronized OkUrlFactory getUrlFactory() {
+        if (sUrlFactory == null) {
+            sUrlFactory = new OkUrlFactory(getClient());
+        }
+        return sUrlFactory;
+    }
+
+    /**
+     * Settings of the shared client. Use a {@link Configuration.Builder} to create one.
+     */
+    public static final class Configuration {
+        private final int mMaxIdleConnections;
+        private final long mKeepAliveDurationMs;
+        private final int mConnectTimeoutMs;
+        private final int mReadTimeoutMs;
+        private final int mWriteTimeoutMs;
+        private final Cache mCache;
+
+        private Configuration(final Builder builder) {
+            mMaxIdleConnections = builder.mMaxIdleConnections;
+            mKeepAliveDurationMs = builder.mKeepAliveDurationMs;
+            mConnectTimeoutMs = builder.mConnectTimeoutMs;
+            mReadTimeoutMs = builder.mReadTimeoutMs;
+            mWriteTimeoutMs = builder.mWriteTimeoutMs;
+            mCache = builder.mCache;
+        }
+
+        public int getMaxIdleConnections() {
+            return mMaxIdleConnections;
+        }
+
+        public long getKeepAliveDurationMs() {
+            return mKeepAliveDurationMs;
+        }
+
+        public int getConnectTimeoutMs() {
+            return mConnectTimeoutMs;
+        }
+
+        public int getReadTimeoutMs() {
+            return mReadTimeoutMs;
+        }
+
+        public int getWriteTimeoutMs() {
+            return mWriteTimeoutMs;
+        }
+
+        public Cache getCache() {
+            return mCache;
+        }
+
+        /**
+         * Builder class for {@link Configuration}.
+         */
+        public static final class Builder {
+            static final int DEFAULT_MAX_IDLE_CONNECTIONS = 8;
+            static final long DEFAULT_KEEP_ALIVE_DURATION_MS = 5 * 60 * 1000;
+            static final int DEFAULT_CONNECT_TIMEOUT_MS = 15 * 1000;
+            static final int DEFAULT_READ_TIMEOUT_MS = 20 * 1000;
+            static final int DEFAULT_WRITE_TIMEOUT_MS = 20 * 1000;
+
+            private int mMaxIdleConnections = DEFAULT_MAX_IDLE_CONNECTIONS;
+            private long mKeepAliveDurationMs = DEFAULT_KEEP_ALIVE_DURATION_MS;
+            private int mConnectTimeoutMs = DEFAULT_CONNECT_TIMEOUT_MS;
+            private int mReadTimeoutMs = DEFAULT_READ_TIMEOUT_MS;
+            private int mWriteTimeoutMs = DEFAULT_WRITE_TIMEOUT_MS;
+            private Cache mCache;
+
+            /**
+             * Set the number of idle keep-alive connections kept in the pool.
+             */
+            public Builder setMaxIdleConnections(final int maxIdleConnections) {
+                mMaxIdleConnections = maxIdleConnections;
+                return this;
+            }
+
+            /**
+             * Set how long an idle connection is kept in the pool.
+             */
+            public Builder setKeepAliveDuration(final long duration, final TimeUnit unit) {
+                mKeepAliveDurationMs = unit.toMillis(duration);
+                return this;
+            }
+
+            public Builder setConnectTimeout(final long timeout, final TimeUnit unit) {
+                mConnectTimeoutMs = (int) unit.toMillis(timeout);
+                return this;
+            }
+
+            public Builder setReadTimeout(final long timeout, final TimeUnit unit) {
+                mReadTimeoutMs = (int) unit.toMillis(timeout);
+                return this;
+            }
+
+            public Builder setWriteTimeout(final long timeout, final TimeUnit unit) {
+                mWriteTimeoutMs = (int) unit.toMillis(timeout);
+                return this;
+            }
+
+            /**
+             * Set an HTTP response cache shared by all requests, or null for none.
+             */
+            public Builder setCache(final Cache cache) {
+                mCache = cache;
+                return this;
+            }
+
+            public Configuration build() {
+                return new Configuration(this);
+            }
+        }
+    }
+}
@@ -0,0 +1,469 @@
+package com.mapbox.mapboxsdk.util;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * Reads a JSON document one token at a time, without building the document in memory. This is a
+ * small subset of {@code android.util.JsonReader}, which is only available from API level 11.
+ * <p/>
+ * Objects are read with {@link #beginObject()}, then pairs of {@link #nextName()} and a value
+ * while {@link #hasNext()}, then {@link #endObject()}. Arrays are read the same way with
+ * {@link #beginArray()} and {@link #endArray()}. Values that are not needed can be skipped with
+ * {@link #skipValue()}, whatever their size.
+ */
+public class JsonPullReader implements Closeable {
+
+    /**
+     * The kinds of tokens found in a JSON document.
+     */
+    public enum Token {
+        BEGIN_ARRAY, END_ARRAY, BEGIN_OBJECT, END_OBJECT, NAME, STRING, NUMBER, BOOLEAN, NULL,
+        END_DOCUMENT
+    }
+
+    private static final int EMPTY_DOCUMENT = 0;
+    private static final int NONEMPTY_DOCUMENT = 1;
+    private static final int EMPTY_ARRAY = 2;
+    private static final int NONEMPTY_ARRAY = 3;
+    private static final int EMPTY_OBJECT = 4;
+    private static final int DANGLING_NAME = 5;
+    private static final int NONEMPTY_OBJECT = 6;
+
+    // powers of ten that are exactly representable as doubles
+    private static final double[] POWERS_OF_TEN = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11, 1e12, 1e13, 1e14, 1e15,
+            1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+
+    private final Reader mIn;
+    private final char[] mBuffer = new char[8192];
+    private int mPos;
+    private int mLimit;
+
+    private int[] mStack = new int[32];
+    private int mStackSize;
+
+    private Token mPeeked;
+    private final StringBuilder mScratch = new StringBuilder();
+
+    public JsonPullReader(final Reader in) {
+        if (in == null) {
+            throw new NullPointerException("in == null");
+        }
+        mIn = in;
+        mStack[mStackSize++] = EMPTY_DOCUMENT;
+    }
+
+    /**
+     * Get the kind of the next token without consuming it.
+     *
+     * @return the next token
+     */
+    public Token peek() throws IOException {
+        if (mPeeked != null) {
+            return mPeeked;
+        }
+        final int scope = mStack[mStackSize - 1];
+        int c;
+        switch (scope) {
+            case EMPTY_ARRAY:
+                mStack[mStackSize - 1] = NONEMPTY_ARRAY;
+                c = nextNonWhitespace();
+                if (c == ']') {
+                    return mPeeked = Token.END_ARRAY;
+                } else if (c != -1) {
+                    mPos--;
+                }
+                break;
+            case NONEMPTY_ARRAY:
+                c = nextNonWhitespace();
+                if (c == ']') {
+                    return mPeeked = Token.END_ARRAY;
+                } else if (c != ',') {
+                    throw syntaxError("Expected ',' or ']'");
+                }
+                break;
+            case EMPTY_OBJECT:
+            case NONEMPTY_OBJECT:
+                mStack[mStackSize - 1] = DANGLING_NAME;
+                c = nextNonWhitespace();
+                if (c == '}') {
+                    return mPeeked = Token.END_OBJECT;
+                }
+                if (scope == NONEMPTY_OBJECT) {
+                    if (c != ',') {
+                        throw syntaxError("Expected ',' or '}'");
+                    }
+                    c = nextNonWhitespace();
+                }
+                if (c != '"') {
+                    throw syntaxError("Expected a name");
+                }
+                return mPeeked = Token.NAME;
+            case DANGLING_NAME:
+                mStack[mStackSize - 1] = NONEMPTY_OBJECT;
+                if (nextNonWhitespace() != ':') {
+                    throw syntaxError("Expected ':'");
+                }
+                break;
+            case EMPTY_DOCUMENT:
+                mStack[mStackSize - 1] = NONEMPTY_DOCUMENT;
+                break;
+            default:
+                if (nextNonWhitespace() == -1) {
+                    return mPeeked = Token.END_DOCUMENT;
+                }
+                throw syntaxError("Expected the end of the document");
+        }
+
+        c = nextNonWhitespace();
+        switch (c) {
+            case '{':
+                return mPeeked = Token.BEGIN_OBJECT;
+            case '[':
+                return mPeeked = Token.BEGIN_ARRAY;
+            case '"':
+                return mPeeked = Token.STRING;
+            case 't':
+            case 'f':
+                mPos--;
+                return mPeeked = Token.BOOLEAN;
+            case 'n':
+                mPos--;
+                return mPeeked = Token.NULL;
+            case -1:
+                throw syntaxError("Unexpected end of document");
+            default:
+                if (c == '-' || (c >= '0' && c <= '9')) {
+                    mPos--;
+                    return mPeeked = Token.NUMBER;
+                }
+                throw syntaxError("Unexpected character '" + (char) c + "'");
+        }
+    }
+
+    public boolean hasNext() throws IOException {
+        final Token token = peek();
+        return token != Token.END_OBJECT && token != Token.END_ARRAY
+                && token != Token.END_DOCUMENT;
+    }
+
+    public void beginArray() throws IOException {
+        expect(Token.BEGIN_ARRAY);
+        push(EMPTY_ARRAY);
+    }
+
+    public void endArray() throws IOException {
+        expect(Token.END_ARRAY);
+        mStackSize--;
+    }
+
+    public void beginObject() throws IOException {
+        expect(Token.BEGIN_OBJECT);
+        push(EMPTY_OBJECT);
+    }
+
+    public void endObject() throws IOException {
+        expect(Token.END_OBJECT);
+        mStackSize--;
+    }
+
+    public String nextName() throws IOException {
+        expect(Token.NAME);
+        return readString();
+    }
+
+    /**
+     * Read a string, or the text of a number or boolean.
+     */
+    public String nextString() throws IOException {
+        final Token token = peek();
+        if (token == Token.STRING) {
+            mPeeked = null;
+            return readString();
+        } else if (token == Token.NUMBER || token == Token.BOOLEAN) {
+            mPeeked = null;
+            return readLiteral();
+        }
+        throw syntaxError("Expected a string but was " + token);
+    }
+
+    /**
+     * Read a number, or a string holding a number.
+     */
+    public double nextDouble() throws IOException {
+        final Token token = peek();
+        if (token == Token.NUMBER) {
+            mPeeked = null;
+            return readNumber();
+        } else if (token == Token.STRING) {
+            mPeeked = null;
+            try {
+                return Double.parseDouble(readString());
+            } catch (NumberFormatException e) {
+                throw syntaxError("Expected a number");
+            }
+        }
+        throw syntaxError("Expected a number but was " + token);
+    }
+
+    public boolean nextBoolean() throws IOException {
+        expect(Token.BOOLEAN);
+        final String literal = readLiteral();
+        if ("true".equals(literal)) {
+            return true;
+        } else if ("false".equals(literal)) {
+            return false;
+        }
+        throw syntaxError("Expected a boolean but was " + literal);
+    }
+
+    public void nextNull() throws IOException {
+        expect(Token.NULL);
+        if (!"null".equals(readLiteral())) {
+            throw syntaxError("Expected null");
+        }
+    }
+
+    /**
+     * Skip the next value, including all the values nested in it if it's an object or an array.
+     */
+    public void skipValue() throws IOException {
+        int depth = 0;
+        do {
+            switch (peek()) {
+                case BEGIN_ARRAY:
+                    beginArray();
+                    depth++;
+                    break;
+                case BEGIN_OBJECT:
+                    beginObject();
+                    depth++;
+                    break;
+                case END_ARRAY:
+                    endArray();
+                    depth--;
+                    break;
+                case END_OBJECT:
+                    endObject();
+                    depth--;
+                    break;
+                case NAME:
+                case STRING:
+                    mPeeked = null;
+                    skipString();
+                    break;
+                case END_DOCUMENT:
+                    return;
+                default:
+                    mPeeked = null;
+                    skipLiteral();
+                    break;
+            }
+        } while (depth > 0);
+    }
+
+    @Override
+    public void close() throws IOException {
+        mPeeked = null;
+        mStackSize = 0;
+        mIn.close();
+    }
+
+    private void expect(final Token expected) throws IOException {
+        final Token token = peek();
+        if (token != expected) {
+            throw syntaxError("Expected " + expected + " but was " + token);
+        }
+        mPeeked = null;
+    }
+
+    private void push(final int scope) {
+        if (mStackSize == mStack.length) {
+            final int[] stack = new int[mStackSize * 2];
+            System.arraycopy(mStack, 0, stack, 0, mStackSize);
+            mStack = stack;
+        }
+        mStack[mStackSize++] = scope;
+    }
+
+    private boolean fill() throws IOException {
+        mPos = 0;
+        mLimit = 0;
+        int read;
+        while ((read = mIn.read(mBuffer, 0, mBuffer.length)) == 0) {
+            continue;
+        }
+        if (read < 0) {
+            return false;
+        }
+        mLimit = read;
+        return true;
+    }
+
+    private int nextNonWhitespace() throws IOException {
+        while (mPos < mLimit || fill()) {
+            final char c = mBuffer[mPos++];
+            if (c != ' ' && c != '\n' && c != '\r' && c != '\t') {
+                return c;
+            }
+        }
+        return -1;
+    }
+
+    private char nextChar() throws IOException {
+        if (mPos == mLimit && !fill()) {
+            throw syntaxError("Unterminated string");
+        }
+        return mBuffer[mPos++];
+    }
+
+    /**
+     * Read the rest of a string whose opening quote has been consumed.
+     */
+    private String readString() throws IOException {
+        final StringBuilder sb = mScratch;
+        sb.setLength(0);
+        while (true) {
+            // copy runs of plain characters at once
+            int start = mPos;
+            while (mPos < mLimit) {
+                final char c = mBuffer[mPos];
+                if (c == '"' || c == '\\') {
+                    break;
+                }
+                mPos++;
+            }
+            sb.append(mBuffer, start, mPos - start);
+            // the end of the buffer, a closing quote or an escape
+            final char c = nextChar();
+            if (c == '"') {
+                return sb.toString();
+            } else if (c == '\\') {
+                sb.append(readEscape());
+            } else {
+                sb.append(c);
+            }
+        }
+    }
+
+    private void skipString() throws IOException {
+        while (true) {
+            final char c = nextChar();
+            if (c == '"') {
+                return;
+            } else if (c == '\\') {
+                readEscape();
+            }
+        }
+    }
+
+    private char readEscape() throws IOException {
+        final char c = nextChar();
+        switch (c) {
+            case 'u':
+                int value = 0;
+                for (int i = 0; i < 4; i++) {
+                    final int digit = Character.digit(nextChar(), 16);
+                    if (digit < 0) {
+                        throw syntaxError("Invalid unicode escape");
+                    }
+                    value = (value << 4) | digit;
+                }
+                return (char) value;
+            case 'b':
+                return '\b';
+            case 'f':
+                return '\f';
+            case 'n':
+                return '\n';
+            case 'r':
+                return '\r';
+            case 't':
+                return '\t';
+            default:
+                return c;
+        }
+    }
+
+    private static boolean isLiteral(final char c) {
+        return (c >= '0' && c <= '9') || (c >= 'a' && c <= 'z') || c == '-' || c == '+'
+                || c == '.' || c == 'E';
+    }
+
+    private String readLiteral() throws IOException {
+        final StringBuilder sb = mScratch;
+        sb.setLength(0);
+        while (mPos < mLimit || fill()) {
+            final char c = mBuffer[mPos];
+            if (!isLiteral(c)) {
+                break;
+            }
+            sb.append(c);
+            mPos++;
+        }
+        return sb.toString();
+    }
+
+    private void skipLiteral() throws IOException {
+        while ((mPos < mLimit || fill()) && isLiteral(mBuffer[mPos])) {
+            mPos++;
+        }
+    }
+
+    /**
+     * Read a number literal. Numbers with at most 15 significant digits and a small exponent,
+     * which covers coordinates, are computed exactly without going through a String.
+     */
+    private double readNumber() throws IOException {
+        final StringBuilder sb = mScratch;
+        sb.setLength(0);
+        long mantissa = 0;
+        int digits = 0;
+        int scale = 0;
+        boolean negative = false;
+        boolean fraction = false;
+        boolean simple = true;
+        boolean sawDigit = false;
+        while (mPos < mLimit || fill()) {
+            final char c = mBuffer[mPos];
+            if (!isLiteral(c)) {
+                break;
+            }
+            sb.append(c);
+            mPos++;
+            if (c >= '0' && c <= '9') {
+                sawDigit = true;
+                if (digits > 0 || c != '0') {
+                    digits++;
+                }
+                mantissa = mantissa * 10 + (c - '0');
+                if (fraction) {
+                    scale++;
+                }
+            } else if (c == '.' && !fraction) {
+                fraction = true;
+            } else if (c == '-' && sb.length() == 1) {
+                negative = true;
+            } else {
+                // exponent or malformed, leave it to the platform
+                simple = false;
+            }
+        }
+        if (simple && digits <= 15 && scale < POWERS_OF_TEN.length && sawDigit) {
+            final double value = mantissa / POWERS_OF_TEN[scale];
+            return negative ? -value : value;
+        }
+        try {
+            return Double.parseDouble(sb.toString());
+        } catch (NumberFormatException e) {
+            throw syntaxError("Malformed number " + sb);
+        }
+    }
+
+    private IOException syntaxError(final String message) {
+        return new IOException(message + " in JSON document");
+    }
+}
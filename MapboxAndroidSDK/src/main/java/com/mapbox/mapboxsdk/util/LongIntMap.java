@@ -0,0 +1,156 @@
+package com.mapbox.mapboxsdk.util;
+
+import java.util.Arrays;
+
+/**
+ * A hash map from primitive longs to primitive ints, using open addressing with linear probing
+ * so that neither keys, values nor entries are boxed. Like {@link android.util.SparseIntArray},
+ * a missing key reads as 0 unless another default is given. This class is not thread-safe.
+ */
+public class LongIntMap {
+
+    private static final int MINIMUM_CAPACITY = 8;
+
+    private long[] mKeys;
+    private int[] mValues;
+    private boolean[] mUsed;
+    private int mSize;
+    private int mMask;
+
+    public LongIntMap() {
+        this(MINIMUM_CAPACITY);
+    }
+
+    /**
+     * @param expectedSize the number of entries the map should hold without growing
+     */
+    public LongIntMap(final int expectedSize) {
+        allocate(capacityFor(expectedSize));
+    }
+
+    public int size() {
+        return mSize;
+    }
+
+    public boolean isEmpty() {
+        return mSize == 0;
+    }
+
+    public int get(final long key) {
+        return get(key, 0);
+    }
+
+    /**
+     * @return the value for the key, or valueIfKeyNotFound
+     */
+    public int get(final long key, final int valueIfKeyNotFound) {
+        final int i = slotOf(key);
+        return i < 0 ? valueIfKeyNotFound : mValues[i];
+    }
+
+    public boolean containsKey(final long key) {
+        return slotOf(key) >= 0;
+    }
+
+    public void put(final long key, final int value) {
+        int i = LongObjectMap.hash(key) & mMask;
+        while (mUsed[i]) {
+            if (mKeys[i] == key) {
+                mValues[i] = value;
+                return;
+            }
+            i = (i + 1) & mMask;
+        }
+        mKeys[i] = key;
+        mValues[i] = value;
+        mUsed[i] = true;
+        if (++mSize > (mUsed.length >> 1) + (mUsed.length >> 2)) {
+            rehash(mUsed.length << 1);
+        }
+    }
+
+    /**
+     * @return true if the key was in the map
+     */
+    public boolean remove(final long key) {
+        final int i = slotOf(key);
+        if (i < 0) {
+            return false;
+        }
+        deleteSlot(i);
+        return true;
+    }
+
+    public void clear() {
+        if (mSize > 0) {
+            Arrays.fill(mUsed, false);
+            mSize = 0;
+        }
+    }
+
+    private int slotOf(final long key) {
+        int i = LongObjectMap.hash(key) & mMask;
+        while (mUsed[i]) {
+            if (mKeys[i] == key) {
+                return i;
+            }
+            i = (i + 1) & mMask;
+        }
+        return -1;
+    }
+
+    /**
+     * Empties the slot and shifts back the following entries of its probe run, so that lookups
+     * never need tombstones.
+     */
+    private void deleteSlot(int hole) {
+        mUsed[hole] = false;
+        mSize--;
+        int i = (hole + 1) & mMask;
+        while (mUsed[i]) {
+            final int home = LongObjectMap.hash(mKeys[i]) & mMask;
+            // move the entry into the hole unless its home bucket lies cyclically in (hole, i]
+            if (((i - home) & mMask) >= ((i - hole) & mMask)) {
+                mKeys[hole] = mKeys[i];
+                mValues[hole] = mValues[i];
+                mUsed[hole] = true;
+                mUsed[i] = false;
+                hole = i;
+            }
+            i = (i + 1) & mMask;
+        }
+    }
+
+    private void rehash(final int capacity) {
+        final long[] keys = mKeys;
+        final int[] values = mValues;
+        final boolean[] used = mUsed;
+        allocate(capacity);
+        for (int i = 0; i < used.length; i++) {
+            if (used[i]) {
+                int j = LongObjectMap.hash(keys[i]) & mMask;
+                while (mUsed[j]) {
+                    j = (j + 1) & mMask;
+                }
+                mKeys[j] = keys[i];
+                mValues[j] = values[i];
+                mUsed[j] = true;
+            }
+        }
+    }
+
+    private void allocate(final int capacity) {
+        mKeys = new long[capacity];
+        mValues = new int[capacity];
+        mUsed = new boolean[capacity];
+        mMask = capacity - 1;
+    }
+
+    private static int capacityFor(final int expectedSize) {
+        int capacity = MINIMUM_CAPACITY;
+        while (capacity - (capacity >> 2) <= expectedSize) {
+            capacity <<= 1;
+        }
+        return capacity;
+    }
+}
@@ -0,0 +1,188 @@
+package com.mapbox.mapboxsdk.util;
+
+import java.util.Arrays;
+import java.util.Collection;
+
+/**
+ * A hash map from primitive longs to objects, using open addressing with linear probing so that
+ * neither keys nor entries are boxed. Null values are not supported. This class is not
+ * thread-safe.
+ *
+ * @param <V> the type of the values
+ */
+public class LongObjectMap<V> {
+
+    private static final int MINIMUM_CAPACITY = 8;
+
+    private long[] mKeys;
+    private Object[] mValues;
+    private int mSize;
+    private int mMask;
+
+    public LongObjectMap() {
+        this(MINIMUM_CAPACITY);
+    }
+
+    /**
+     * @param expectedSize the number of entries the map should hold without growing
+     */
+    public LongObjectMap(final int expectedSize) {
+        allocate(capacityFor(expectedSize));
+    }
+
+    /**
+     * Spread the bits of a long key over an int, so that keys differing only in their high bits
+     * (or only in their low bits) still land in different buckets.
+     *
+     * @param key the key
+     * @return a well-distributed hash code
+     */
+    public static int hash(final long key) {
+        // finalizer of MurmurHash3
+        long h = key;
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return (int) h;
+    }
+
+    public int size() {
+        return mSize;
+    }
+
+    public boolean isEmpty() {
+        return mSize == 0;
+    }
+
+    @SuppressWarnings("unchecked")
+    public V get(final long key) {
+        int i = hash(key) & mMask;
+        while (mValues[i] != null) {
+            if (mKeys[i] == key) {
+                return (V) mValues[i];
+            }
+            i = (i + 1) & mMask;
+        }
+        return null;
+    }
+
+    public boolean containsKey(final long key) {
+        return get(key) != null;
+    }
+
+    /**
+     * @return the previous value for the key, or null
+     */
+    @SuppressWarnings("unchecked")
+    public V put(final long key, final V value) {
+        if (value == null) {
+            throw new IllegalArgumentException("null values are not supported");
+        }
+        int i = hash(key) & mMask;
+        while (mValues[i] != null) {
+            if (mKeys[i] == key) {
+                final V old = (V) mValues[i];
+                mValues[i] = value;
+                return old;
+            }
+            i = (i + 1) & mMask;
+        }
+        mKeys[i] = key;
+        mValues[i] = value;
+        if (++mSize > (mValues.length >> 1) + (mValues.length >> 2)) {
+            rehash(mValues.length << 1);
+        }
+        return null;
+    }
+
+    /**
+     * @return the removed value, or null
+     */
+    @SuppressWarnings("unchecked")
+    public V remove(final long key) {
+        int i = hash(key) & mMask;
+        while (mValues[i] != null) {
+            if (mKeys[i] == key) {
+                final V old = (V) mValues[i];
+                deleteSlot(i);
+                return old;
+            }
+            i = (i + 1) & mMask;
+        }
+        return null;
+    }
+
+    /**
+     * Adds every value of the map to a collection.
+     *
+     * @param out the collection to add the values to
+     */
+    @SuppressWarnings("unchecked")
+    public void values(final Collection<? super V> out) {
+        for (final Object value : mValues) {
+            if (value != null) {
+                out.add((V) value);
+            }
+        }
+    }
+
+    public void clear() {
+        if (mSize > 0) {
+            Arrays.fill(mValues, null);
+            mSize = 0;
+        }
+    }
+
+    /**
+     * Empties the slot and shifts back the following entries of its probe run, so that lookups
+     * never need tombstones.
+     */
+    private void deleteSlot(int hole) {
+        mValues[hole] = null;
+        mSize--;
+        int i = (hole + 1) & mMask;
+        while (mValues[i] != null) {
+            final int home = hash(mKeys[i]) & mMask;
+            // move the entry into the hole unless its home bucket lies cyclically in (hole, i]
+            if (((i - home) & mMask) >= ((i - hole) & mMask)) {
+                mKeys[hole] = mKeys[i];
+                mValues[hole] = mValues[i];
+                mValues[i] = null;
+                hole = i;
+            }
+            i = (i + 1) & mMask;
+        }
+    }
+
+    private void rehash(final int capacity) {
+        final long[] keys = mKeys;
+        final Object[] values = mValues;
+        allocate(capacity);
+        for (int i = 0; i < values.length; i++) {
+            if (values[i] != null) {
+                int j = hash(keys[i]) & mMask;
+                while (mValues[j] != null) {
+                    j = (j + 1) & mMask;
+                }
+                mKeys[j] = keys[i];
+                mValues[j] = values[i];
+            }
+        }
+    }
+
+    private void allocate(final int capacity) {
+        mKeys = new long[capacity];
+        mValues = new Object[capacity];
+        mMask = capacity - 1;
+    }
+
+    private static int capacityFor(final int expectedSize) {
+        int capacity = MINIMUM_CAPACITY;
+        while (capacity - (capacity >> 2) <= expectedSize) {
+            capacity <<= 1;
+        }
+        return capacity;
+    }
+}
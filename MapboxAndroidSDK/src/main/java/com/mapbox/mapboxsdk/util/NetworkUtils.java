@@ -9,7 +9,6 @@ import android.content.Context;
 import android.net.ConnectivityManager;
 import android.net.NetworkInfo;
 import com.squareup.okhttp.Cache;
-import com.squareup.okhttp.OkHttpClient;
 import com.squareup.okhttp.OkUrlFactory;
 import javax.net.ssl.SSLSocketFactory;
 import java.io.File;
@@ -33,15 +32,22 @@ public class NetworkUtils {
         return getHttpURLConnection(url, cache, null);
     }
 
+    /**
+     * Open a connection through the client shared by the whole SDK, see {@link HttpClientRegistry}.
+     *
+     * @param url the url to open
+     * @param cache a response cache to use instead of the shared one, or null
+     * @param sslSocketFactory a socket factory to use instead of the default one, or null
+     * @return the connection
+     */
     public static HttpURLConnection getHttpURLConnection(final URL url, final Cache cache, final SSLSocketFactory sslSocketFactory) {
-        OkHttpClient client = new OkHttpClient();
-        if (cache != null) {
-            client.setCache(cache);
+        final OkUrlFactory factory;
+        if (cache == null && sslSocketFactory == null) {
+            factory = HttpClientRegistry.getUrlFactory();
+        } else {
+            factory = new OkUrlFactory(HttpClientRegistry.getClient(cache, sslSocketFactory));
         }
-        if (sslSocketFactory != null) {
-            client.setSslSocketFactory(sslSocketFactory);
-        }
-        HttpURLConnection connection = new OkUrlFactory(client).open(url);
+        HttpURLConnection connection = factory.open(url);
         connection.setRequestProperty("User-Agent", MapboxUtils.getUserAgent());
         return connection;
     }
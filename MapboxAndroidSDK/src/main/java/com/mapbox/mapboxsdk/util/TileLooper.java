@@ -21,6 +21,11 @@ public abstract class TileLooper {
     protected List<CacheableBitmapDrawable> mBeingUsedDrawables =
             new ArrayList<CacheableBitmapDrawable>();
 
+    // The tiles handed out during the current and the previous loop, by packed key. Tiles still
+    // visible from one frame to the next are reused instead of being allocated again.
+    private LongObjectMap<MapTile> mTiles = new LongObjectMap<MapTile>();
+    private LongObjectMap<MapTile> mPreviousTiles = new LongObjectMap<MapTile>();
+
     public final int loop(final Canvas pCanvas, final String pCacheKey, final float pZoomLevel,
             final int pTileSizePx, final Rect pViewPort, final Rect pClipRect) {
         // Calculate the amount of tiles needed for each side around the center one.
@@ -34,6 +39,7 @@ public abstract class TileLooper {
 
         final int roundedZoom = (int) Math.floor(pZoomLevel);
         final int mapTileUpperBound = 1 << roundedZoom;
+        final int layerId = MapTile.layerIdFor(pCacheKey);
         initializeLoop(pZoomLevel, pTileSizePx);
 
         int tileX, tileY;
@@ -42,16 +48,45 @@ public abstract class TileLooper {
             for (int x = mUpperLeft.x; x <= mLowerRight.x; x++) {
                 tileY = GeometryMath.mod(y, mapTileUpperBound);
                 tileX = GeometryMath.mod(x, mapTileUpperBound);
-                final MapTile tile = new MapTile(pCacheKey, roundedZoom, tileX, tileY);
+                final MapTile tile = obtainTile(pCacheKey, layerId, roundedZoom, tileX, tileY);
                 handleTile(pCanvas, pCacheKey, pTileSizePx, tile, x, y, pClipRect);
             }
         }
+        recycleTiles();
         finalizeLoop();
 
         /* return number of tiles looped */
         return  (mLowerRight.y - mUpperLeft.y) * (mLowerRight.x - mUpperLeft.x);
     }
 
+    /**
+     * @return how many tiles the current loop spans on each side of its center tile
+     */
+    protected int getRadius() {
+        return (Math.max(mLowerRight.x - mUpperLeft.x, mLowerRight.y - mUpperLeft.y) + 1) / 2;
+    }
+
+    private MapTile obtainTile(final String pCacheKey, final int pLayerId, final int pZoom,
+            final int pX, final int pY) {
+        final long key = MapTile.key(pLayerId, pZoom, pX, pY);
+        MapTile tile = mTiles.get(key);
+        if (tile == null) {
+            tile = mPreviousTiles.get(key);
+            if (tile == null) {
+                tile = new MapTile(pCacheKey, pZoom, pX, pY);
+            }
+            mTiles.put(key, tile);
+        }
+        return tile;
+    }
+
+    private void recycleTiles() {
+        final LongObjectMap<MapTile> previous = mPreviousTiles;
+        previous.clear();
+        mPreviousTiles = mTiles;
+        mTiles = previous;
+    }
+
     public abstract void initializeLoop(float pZoomLevel, int pTileSizePx);
 
     public abstract void handleTile(Canvas pCanvas, final String pCacheKey, int pTileSizePx,
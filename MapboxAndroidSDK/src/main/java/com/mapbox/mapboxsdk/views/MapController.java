@@ -246,6 +246,16 @@ public class MapController implements MapViewConstants {
         float factor = (float) Math.pow(2, targetZoom - currentZoom);
         propertiesList.add(PropertyValuesHolder.ofFloat("scale", 1.0f, factor));
 
+        // Where the map will be centered at the target zoom level: on the point when moving to
+        // it, otherwise where the point stays at the same place on the screen
+        final PointF targetCenter;
+        if (zoomAndMove) {
+            targetCenter = new PointF(p.x * factor, p.y * factor);
+        } else {
+            targetCenter = new PointF(p.x * factor + dCurrentScroll.x - p.x,
+                    p.y * factor + dCurrentScroll.y - p.y);
+        }
+
         if (zoomAndMove) {
             PointEvaluator evaluator = new PointEvaluator();
             propertiesList.add(PropertyValuesHolder.ofObject("scrollPoint", evaluator, p));
@@ -277,6 +287,9 @@ public class MapController implements MapViewConstants {
                 anim.addListener(listener);
             }
             mCurrentAnimation = anim;
+            // The frames of the animation are drawn from the tiles already in memory, so load
+            // the tiles of the target right away instead of once the animation has ended
+            mMapView.requestTilesAt(targetZoom, targetCenter);
             anim.start();
             return true;
         }
@@ -49,12 +49,14 @@ import com.mapbox.mapboxsdk.tileprovider.MapTileLayerBasic;
 import com.mapbox.mapboxsdk.tileprovider.constants.TileLayerConstants;
 import com.mapbox.mapboxsdk.tileprovider.tilesource.ITileLayer;
 import com.mapbox.mapboxsdk.tileprovider.tilesource.MapboxTileLayer;
+import com.mapbox.mapboxsdk.tileprovider.tilesource.TileJsonStore;
 import com.mapbox.mapboxsdk.tileprovider.util.SimpleInvalidationHandler;
 import com.mapbox.mapboxsdk.util.DataLoadingUtils;
 import com.mapbox.mapboxsdk.util.GeometryMath;
 import com.mapbox.mapboxsdk.util.MapboxUtils;
 import com.mapbox.mapboxsdk.util.NetworkUtils;
 import com.mapbox.mapboxsdk.util.constants.UtilConstants;
+import com.mapbox.mapboxsdk.views.util.FlingPrefetcher;
 import com.mapbox.mapboxsdk.views.util.OnMapOrientationChangeListener;
 import com.mapbox.mapboxsdk.views.util.Projection;
 import com.mapbox.mapboxsdk.views.util.TileLoadedListener;
@@ -130,6 +132,7 @@ public class MapView extends ViewGroup implements MapViewConstants, MapEventsRec
      */
     protected final Scroller mScroller;
     protected boolean mIsFlinging;
+    private final FlingPrefetcher mFlingPrefetcher = new FlingPrefetcher();
 
     private final AtomicInteger mTargetZoomLevel = new AtomicInteger();
     private final AtomicBoolean mIsAnimating = new AtomicBoolean(false);
@@ -196,6 +199,7 @@ public class MapView extends ViewGroup implements MapViewConstants, MapEventsRec
         this.mController = new MapController(this);
         this.mScroller = new Scroller(aContext);
         Projection.setTileSize(tileSizePixels);
+        TileJsonStore.initialize(aContext);
 
         if (tileProvider == null) {
             tileProvider = new MapTileLayerBasic(aContext, null, this);
@@ -293,6 +297,13 @@ public class MapView extends ViewGroup implements MapViewConstants, MapEventsRec
      */
     public void addOverlay(final Overlay overlay) {
         if (!mOverlayManager.contains(overlay)) {
+            if (overlay instanceof TilesOverlay) {
+                // tiles loaded in the background need to redraw this map
+                final MapTileLayerBase tileProvider = ((TilesOverlay) overlay).getTileProvider();
+                if (tileProvider.getTileRequestCompleteHandler() == null) {
+                    tileProvider.setTileRequestCompleteHandler(mTileRequestCompleteHandler);
+                }
+            }
             mOverlayManager.add(overlay);
             if (overlay instanceof MapListener) {
                 addListener((MapListener) overlay);
@@ -727,6 +738,28 @@ public class MapView extends ViewGroup implements MapViewConstants, MapEventsRec
         );
     }
 
+    /**
+     * Requests the tiles the map will show once it reaches the given zoom level and center, so
+     * that they load while an animation takes it there.
+     *
+     * @param zoomLevel the zoom level the map is going to
+     * @param center the center the map is going to, in map pixels at that zoom level
+     */
+    protected void requestTilesAt(final float zoomLevel, final PointF center) {
+        // the screen, bounding the rotated map if needed, around the new center
+        final Rect screenRect = getProjection().getScreenRect();
+        final float roundedZoom = (float) Math.floor(zoomLevel);
+        final int roundWorldSize_2 = Projection.mapSize(roundedZoom) >> 1;
+        final float scale = (float) Projection.mapSize(roundedZoom) / Projection.mapSize(zoomLevel);
+        final float width_2 = screenRect.width() / 2f;
+        final float height_2 = screenRect.height() / 2f;
+        final Rect viewPort = new Rect((int) (scale * (center.x - width_2)),
+                (int) (scale * (center.y - height_2)), (int) (scale * (center.x + width_2)),
+                (int) (scale * (center.y + height_2)));
+        viewPort.offset(roundWorldSize_2, roundWorldSize_2);
+        getMapOverlay().requestTiles(zoomLevel, viewPort);
+    }
+
     public Rect getIntrinsicScreenRect(Rect reuse) {
         if (reuse == null) {
             reuse = new Rect();
@@ -1718,14 +1751,34 @@ public class MapView extends ViewGroup implements MapViewConstants, MapEventsRec
                     snapItems();
                 }
                 mIsFlinging = false;
+                mFlingPrefetcher.onFlingEnded();
             } else {
+                if (mIsFlinging) {
+                    mFlingPrefetcher.onFling(this, mScroller);
+                }
                 scrollTo(mScroller.getCurrX(), mScroller.getCurrY());
             }
             postInvalidate(); // Keep on drawing until the animation has
             // finished.
+        } else {
+            // the fling, if any, was stopped before reaching its destination
+            mFlingPrefetcher.cancel();
         }
     }
 
+    /**
+     * Sets how many tiles are loaded ahead of time along the path of a fling.
+     *
+     * @param budget the maximum number of tiles requested per fling, 0 to disable prefetching
+     */
+    public void setFlingPrefetchBudget(final int budget) {
+        mFlingPrefetcher.setBudget(budget);
+    }
+
+    public int getFlingPrefetchBudget() {
+        return mFlingPrefetcher.getBudget();
+    }
+
     public void updateScrollDuringAnimation() {
         // updateScrollableAreaLimit();
         // scrollTo(getScrollX(), getScrollY());
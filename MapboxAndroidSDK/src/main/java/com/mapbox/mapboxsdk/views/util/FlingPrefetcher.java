@@ -0,0 +1,150 @@
+package com.mapbox.mapboxsdk.views.util;
+
+import android.graphics.Point;
+import android.graphics.Rect;
+import android.widget.Scroller;
+import com.mapbox.mapboxsdk.tileprovider.MapTile;
+import com.mapbox.mapboxsdk.tileprovider.MapTileLayerBase;
+import com.mapbox.mapboxsdk.util.GeometryMath;
+import com.mapbox.mapboxsdk.util.LongObjectMap;
+import com.mapbox.mapboxsdk.views.MapView;
+
+/**
+ * Requests the tiles a fling is going to show before the map gets there. The {@link Scroller}
+ * already knows where the fling will stop, so the viewport is swept from there back to where
+ * the fling started, and the tiles it covers are handed to
+ * {@link MapTileLayerBase#prefetchMapTile(MapTile)}, those around the destination first, until
+ * the budget of the fling is spent.
+ * <p/>
+ * Prefetches that haven't started loading are dropped when the fling is interrupted or
+ * replaced by another one, since the map won't go there anymore.
+ */
+public class FlingPrefetcher {
+
+    public static final int DEFAULT_BUDGET = 24;
+
+    /**
+     * Maximum number of viewports swept along the path, however long it is.
+     */
+    private static final int MAX_STEPS = 32;
+
+    private final LongObjectMap<Boolean> mSeen = new LongObjectMap<Boolean>();
+    private final Rect mViewPort = new Rect();
+    private final Point mUpperLeft = new Point();
+    private final Point mLowerRight = new Point();
+
+    private int mBudget = DEFAULT_BUDGET;
+    private MapTileLayerBase mProvider;
+    private int mFinalX;
+    private int mFinalY;
+
+    /**
+     * Sets the maximum number of tiles requested for a single fling.
+     *
+     * @param budget the number of tiles, 0 to disable prefetching
+     */
+    public void setBudget(final int budget) {
+        mBudget = Math.max(0, budget);
+    }
+
+    public int getBudget() {
+        return mBudget;
+    }
+
+    /**
+     * Called on every frame of a fling. Tiles are only requested once per fling destination.
+     *
+     * @param mapView the map being flung
+     * @param scroller the scroller animating the fling
+     */
+    public void onFling(final MapView mapView, final Scroller scroller) {
+        final int finalX = scroller.getFinalX();
+        final int finalY = scroller.getFinalY();
+        if (mProvider != null) {
+            if (finalX == mFinalX && finalY == mFinalY) {
+                return;
+            }
+            cancel();
+        }
+        final MapTileLayerBase provider = mapView.getTileProvider();
+        if (mBudget == 0 || provider == null) {
+            return;
+        }
+        mProvider = provider;
+        mFinalX = finalX;
+        mFinalY = finalY;
+
+        // The scroll position is in pixels of the displayed zoom level, tiles are indexed at
+        // the zoom level below it
+        final Projection projection = mapView.getProjection();
+        final float zoomLevel = projection.getZoomLevel();
+        final int roundedZoom = (int) Math.floor(zoomLevel);
+        final float scale = (float) Projection.mapSize(roundedZoom) / Projection.mapSize(zoomLevel);
+        final int dx = (int) ((finalX - scroller.getCurrX()) * scale);
+        final int dy = (int) ((finalY - scroller.getCurrY()) * scale);
+        GeometryMath.viewPortRectForTileDrawing(zoomLevel, projection, mViewPort);
+
+        final int tileSize = Projection.getTileSize();
+        final int steps = Math.min(MAX_STEPS,
+                (Math.max(Math.abs(dx), Math.abs(dy)) + tileSize - 1) / tileSize);
+        final int layerId = MapTile.layerIdFor(provider.getCacheKey());
+
+        // The tiles of the current viewport are requested by drawing it
+        mSeen.clear();
+        request(provider, layerId, roundedZoom, 0, 0, Integer.MAX_VALUE, false);
+
+        int budget = mBudget;
+        for (int step = steps; step > 0 && budget > 0; step--) {
+            budget = request(provider, layerId, roundedZoom, dx * step / steps, dy * step / steps,
+                    budget, true);
+        }
+        mSeen.clear();
+    }
+
+    /**
+     * Called when the fling reached its destination. Its prefetches carry on.
+     */
+    public void onFlingEnded() {
+        mProvider = null;
+    }
+
+    /**
+     * Called when the fling was interrupted. Its prefetches which haven't started are dropped.
+     */
+    public void cancel() {
+        final MapTileLayerBase provider = mProvider;
+        mProvider = null;
+        if (provider != null) {
+            provider.cancelPrefetches();
+        }
+    }
+
+    /**
+     * Goes through the tiles of the viewport moved by the given offset, like
+     * {@link com.mapbox.mapboxsdk.util.TileLooper} does, skipping those already seen.
+     *
+     * @return the budget left
+     */
+    private int request(final MapTileLayerBase provider, final int layerId, final int zoom,
+            final int offsetX, final int offsetY, int budget, final boolean prefetch) {
+        final int mapTileUpperBound = 1 << zoom;
+        Projection.pixelXYToTileXY(mViewPort.left + offsetX, mViewPort.top + offsetY, mUpperLeft);
+        mUpperLeft.offset(-1, -1);
+        Projection.pixelXYToTileXY(mViewPort.right + offsetX, mViewPort.bottom + offsetY,
+                mLowerRight);
+        mLowerRight.offset(1, 1);
+
+        for (int y = mUpperLeft.y; y <= mLowerRight.y && budget > 0; y++) {
+            for (int x = mUpperLeft.x; x <= mLowerRight.x && budget > 0; x++) {
+                final int tileX = GeometryMath.mod(x, mapTileUpperBound);
+                final int tileY = GeometryMath.mod(y, mapTileUpperBound);
+                final long key = MapTile.key(layerId, zoom, tileX, tileY);
+                if (mSeen.put(key, Boolean.TRUE) == null && prefetch && provider.prefetchMapTile(
+                        new MapTile(provider.getCacheKey(), zoom, tileX, tileY))) {
+                    budget--;
+                }
+            }
+        }
+        return budget;
+    }
+}
@@ -15,7 +15,6 @@ import com.spatialdev.osm.model.OSMElement;
 import com.spatialdev.osm.model.OSMWay;
 
 import java.util.ArrayList;
-import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -31,16 +30,14 @@ public class OSMUtil {
          */
         List<OSMWay> closedWays = ds.getClosedWays();
         for (OSMWay w : closedWays) {
-            Iterator<OSMNode> nodeIterator = w.getNodeIterator();
             PathOverlay path = new PathOverlay();
             path.setOptimizePath(false); // optimizePath does not work for polys
             Paint paint = path.getPaint();
             paint.setStyle(Paint.Style.FILL);
             paint.setARGB(85, 95, 237, 140);
-            while (nodeIterator.hasNext()) {
-                OSMNode n = nodeIterator.next();
-                LatLng latLng = n.getLatLng();
-                path.addPoint(latLng);
+            int count = w.getLinkedNodesCount();
+            for (int i = 0; i < count; i++) {
+                path.addPoint(new LatLng(w.getNodeLat(i), w.getNodeLng(i)));
             }
             uiObjects.add(path);
         }
@@ -50,13 +47,11 @@ public class OSMUtil {
          */
         List<OSMWay> openWays = ds.getOpenWays();
         for (OSMWay w : openWays) {
-            Iterator<OSMNode> nodeIterator = w.getNodeIterator();
             PathOverlay path = new PathOverlay();
             path.getPaint().setARGB(200, 209, 29, 119);
-            while (nodeIterator.hasNext()) {
-                OSMNode n = nodeIterator.next();
-                LatLng latLng = n.getLatLng();
-                path.addPoint(latLng);
+            int count = w.getLinkedNodesCount();
+            for (int i = 0; i < count; i++) {
+                path.addPoint(new LatLng(w.getNodeLat(i), w.getNodeLng(i)));
             }
             uiObjects.add(path);
         }
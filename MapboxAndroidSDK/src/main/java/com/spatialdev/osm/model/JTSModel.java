@@ -143,8 +143,7 @@ public class JTSModel {
     private void addOSMClosedWays(OSMDataSet ds) {
         List<OSMWay> closedWays = ds.getClosedWays();
         for (OSMWay closedWay : closedWays) {
-            List<OSMNode> nodes = closedWay.getNodes();
-            Coordinate[] coords = coordArrayFromNodeList(nodes);
+            Coordinate[] coords = coordArrayFromWay(closedWay);
             Polygon poly = geometryFactory.createPolygon(coords);
             closedWay.setJTSGeom(poly);
             Envelope envelope = poly.getEnvelopeInternal();
@@ -155,8 +154,7 @@ public class JTSModel {
     private void addOSMOpenWays(OSMDataSet ds) {
         List<OSMWay> openWays = ds.getOpenWays();
         for (OSMWay w : openWays) {
-            List<OSMNode> nodes = w.getNodes();
-            Coordinate[] coords = coordArrayFromNodeList(nodes);
+            Coordinate[] coords = coordArrayFromWay(w);
             LineString line = geometryFactory.createLineString(coords);
             w.setJTSGeom(line);
             Envelope envelope = line.getEnvelopeInternal();
@@ -164,14 +162,13 @@ public class JTSModel {
         }
     }
 
-    private Coordinate[] coordArrayFromNodeList(List<OSMNode> nodes) {
-        Coordinate[] coords = new Coordinate[nodes.size()];
-        int i = 0;
-        for (OSMNode node : nodes) {
-            double lat = node.getLat();
-            double lng = node.getLng();
+    private Coordinate[] coordArrayFromWay(OSMWay way) {
+        Coordinate[] coords = new Coordinate[way.getLinkedNodesCount()];
+        for (int i = 0; i < coords.length; i++) {
+            double lat = way.getNodeLat(i);
+            double lng = way.getNodeLng(i);
             Coordinate coord = new Coordinate(lng, lat);
-            coords[i++] = coord;
+            coords[i] = coord;
         }
         return coords;
     }
@@ -4,11 +4,16 @@
  */
 package com.spatialdev.osm.model;
 
+import com.mapbox.mapboxsdk.util.LongIntMap;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
 import java.util.ArrayList;
-import java.util.HashSet;
+import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.NoSuchElementException;
 import java.util.Set;
 
 
@@ -31,11 +36,24 @@ public class OSMDataSet {
     private LinkedHashMap<Long, OSMWay>      ways      = new LinkedHashMap<>();
     private LinkedHashMap<Long, OSMRelation> relations = new LinkedHashMap<>();
 
+    /**
+     * In compact mode, nodes are kept in packed arrays instead of the nodes
+     * hash, and node objects are only created when they are asked for.
+     */
+    private OSMNodeStore nodeStore;
+
+    /**
+     * The last node created in compact mode. It is kept as an object only if
+     * the parser gives it tags.
+     */
+    private OSMNode pendingNode;
+    private int pendingNodeIndex;
+
     /**
      * Gets filled with ids of nodes that are in a way. This is
      * used to construct standaloneNodes in postProcessing.
      */
-    private Set<Long> wayNodeIds = new HashSet<>();
+    private LongIntMap wayNodeIds = new LongIntMap();
 
     /**
      * When the post-processing is done, the nodes that are not
@@ -58,6 +76,21 @@ public class OSMDataSet {
     public OSMDataSet() {
     }
 
+    /**
+     * @param compact keep nodes in packed arrays rather than one object each. This
+     *                takes a fraction of the memory for large data sets, the node
+     *                objects being created the first time they are asked for.
+     */
+    public OSMDataSet(boolean compact) {
+        if (compact) {
+            nodeStore = new OSMNodeStore();
+        }
+    }
+
+    public boolean isCompact() {
+        return nodeStore != null;
+    }
+
     public void createNote(String note) {
         notes.add(note);
     }
@@ -75,6 +108,14 @@ public class OSMDataSet {
                            String uidStr,
                            String userStr) {
 
+        if (nodeStore != null) {
+            keepPendingNode();
+            pendingNodeIndex = nodeStore.add(idStr, latStr, lonStr, versionStr, timestampStr,
+                                            changesetStr, uidStr, userStr);
+            pendingNode = nodeStore.createNode(pendingNodeIndex);
+            return pendingNode;
+        }
+
         OSMNode n = new OSMNode(idStr, latStr, lonStr, versionStr, timestampStr,
                             changesetStr, uidStr, userStr);
 
@@ -89,6 +130,7 @@ public class OSMDataSet {
                           String uidStr,
                           String userStr) {
 
+        keepPendingNode();
         OSMWay w = new OSMWay(idStr, versionStr, timestampStr, changesetStr, uidStr, userStr);
         ways.put(w.getId(), w);
         return w;
@@ -101,15 +143,28 @@ public class OSMDataSet {
                                     String uidStr,
                                     String userStr) {
 
+        keepPendingNode();
         OSMRelation r = new OSMRelation(idStr, versionStr, timestampStr, changesetStr, uidStr, userStr);
         relations.put(r.getId(), r);
         return r;
     }
 
+    /**
+     * In compact mode, the node last created becomes an object for good if the
+     * parser has given it tags, otherwise it is left to the node store.
+     */
+    private void keepPendingNode() {
+        if (pendingNode != null && pendingNode.getTagCount() > 0) {
+            nodeStore.keep(pendingNodeIndex, pendingNode);
+        }
+        pendingNode = null;
+    }
+
     /**
      * Should only be called by the parser.
      */
     void postProcessing() {
+        keepPendingNode();
 
         Set<Long> wayKeys = ways.keySet();
         for (Long key : wayKeys) {
@@ -118,7 +173,11 @@ public class OSMDataSet {
              * in the Way objects.
              */
             OSMWay w = ways.get(key);
-            w.linkNodes(nodes, wayNodeIds);
+            if (nodeStore != null) {
+                w.linkNodes(nodeStore, wayNodeIds);
+            } else {
+                w.linkNodes(nodes, wayNodeIds);
+            }
 
             /**
              * If a way has the same starting node as ending node,
@@ -131,26 +190,41 @@ public class OSMDataSet {
             }
         }
 
-        Set<Long> nodeKeys = nodes.keySet();
-        for (Long key : nodeKeys) {
-            /**
-             * If a node is not in a way,
-             * put that node in standaloneNodes.
-             */
-            if (!wayNodeIds.contains(key)) {
-                OSMNode n = nodes.get(key);
-                standaloneNodes.add(n);
+        if (nodeStore != null) {
+            int count = nodeStore.size();
+            for (int i = 0; i < count; i++) {
+                if (!wayNodeIds.containsKey(nodeStore.getId(i))) {
+                    standaloneNodes.add(nodeStore.getNode(i));
+                }
+            }
+        } else {
+            Set<Long> nodeKeys = nodes.keySet();
+            for (Long key : nodeKeys) {
+                /**
+                 * If a node is not in a way,
+                 * put that node in standaloneNodes.
+                 */
+                if (!wayNodeIds.containsKey(key)) {
+                    OSMNode n = nodes.get(key);
+                    standaloneNodes.add(n);
+                }
             }
         }
+        // only needed while post-processing
+        wayNodeIds = null;
 
+        Map<Long, OSMNode> nodeMap = getNodes();
         Set<Long> relationKeys = relations.keySet();
         for (Long key : relationKeys) {
             OSMRelation r = relations.get(key);
-            r.link(nodes, ways, relations);
+            r.link(nodeMap, ways, relations);
         }
     }
 
     public int getNodeCount() {
+        if (nodeStore != null) {
+            return nodeStore.size();
+        }
         return nodes.size();
     }
 
@@ -174,9 +248,15 @@ public class OSMDataSet {
      * Returns all nodes in the data set, including those that are in and not
      * in ways.
      *
+     * In compact mode, this is a read-only view that creates the node objects
+     * as they are read.
+     *
      * @return all nodes
      */
     public Map<Long, OSMNode> getNodes() {
+        if (nodeStore != null) {
+            return new NodeStoreMap(nodeStore);
+        }
         return nodes;
     }
     /**
@@ -216,4 +296,74 @@ public class OSMDataSet {
         return relations;
     }
 
+    /**
+     * Map view of the nodes of a compact data set, in the order they were parsed.
+     */
+    private static class NodeStoreMap extends AbstractMap<Long, OSMNode> {
+
+        private final OSMNodeStore store;
+
+        NodeStoreMap(OSMNodeStore store) {
+            this.store = store;
+        }
+
+        @Override
+        public OSMNode get(Object key) {
+            int index = indexOf(key);
+            return index < 0 ? null : store.getNode(index);
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            return indexOf(key) >= 0;
+        }
+
+        @Override
+        public int size() {
+            return store.size();
+        }
+
+        private int indexOf(Object key) {
+            if (!(key instanceof Long)) {
+                return -1;
+            }
+            return store.indexOf((Long) key);
+        }
+
+        @Override
+        public Set<Entry<Long, OSMNode>> entrySet() {
+            return new AbstractSet<Entry<Long, OSMNode>>() {
+                @Override
+                public Iterator<Entry<Long, OSMNode>> iterator() {
+                    return new Iterator<Entry<Long, OSMNode>>() {
+                        private int index = 0;
+
+                        @Override
+                        public boolean hasNext() {
+                            return index < store.size();
+                        }
+
+                        @Override
+                        public Entry<Long, OSMNode> next() {
+                            if (!hasNext()) {
+                                throw new NoSuchElementException();
+                            }
+                            OSMNode node = store.getNode(index++);
+                            return new SimpleImmutableEntry<>(node.getId(), node);
+                        }
+
+                        @Override
+                        public void remove() {
+                            throw new UnsupportedOperationException();
+                        }
+                    };
+                }
+
+                @Override
+                public int size() {
+                    return store.size();
+                }
+            };
+        }
+    }
 }
@@ -92,6 +92,19 @@ public abstract class OSMElement {
         user = userStr;
     }
 
+    /**
+     * Used to create elements from values that have already been parsed,
+     * such as the nodes kept by an {@link OSMNodeStore}.
+     */
+    OSMElement(long id, long version, String timestamp, long changeset, long uid, String user) {
+        this.id = id;
+        this.version = version;
+        this.timestamp = timestamp;
+        this.changeset = changeset;
+        this.uid = uid;
+        this.user = user;
+    }
+
     void xml(XmlSerializer xmlSerializer) throws IOException {
         // set the tags for the element (all element types can have tags)
         Set<String> tagKeys = tags.keySet();
@@ -0,0 +1,228 @@
+package com.spatialdev.osm.model;
+
+import com.mapbox.mapboxsdk.util.LongIntMap;
+import com.mapbox.mapboxsdk.util.LongObjectMap;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+
+/**
+ * Keeps the nodes of a compact {@link OSMDataSet} in packed primitive arrays instead of
+ * one {@link OSMNode} object each. Nodes are addressed by their index in the store, which
+ * is the order they were parsed in.
+ *
+ * An {@link OSMNode} is only created when a node is asked for, and is then kept so that
+ * the same object is handed out every time. Nodes that carry tags are kept as objects
+ * from the start.
+ */
+class OSMNodeStore {
+
+    private static final int INITIAL_CAPACITY = 1024;
+
+    /**
+     * Marks a timestamp that is not in the usual "yyyy-MM-ddTHH:mm:ssZ" form.
+     */
+    private static final long IRREGULAR_TIMESTAMP = -1;
+
+    private final LongIntMap indices = new LongIntMap(INITIAL_CAPACITY);
+
+    private long[] ids = new long[INITIAL_CAPACITY];
+    private double[] coords = new double[2 * INITIAL_CAPACITY]; // lat, lng pairs
+    private int[] versions = new int[INITIAL_CAPACITY];
+    private long[] changesets = new long[INITIAL_CAPACITY];
+    private long[] uids = new long[INITIAL_CAPACITY];
+    private int[] users = new int[INITIAL_CAPACITY];
+    private long[] timestamps = new long[INITIAL_CAPACITY];
+    private int size = 0;
+
+    /**
+     * Timestamps that could not be packed, by node index.
+     */
+    private final LongObjectMap<String> irregularTimestamps = new LongObjectMap<>();
+
+    /**
+     * User names repeat a lot, so each one is kept once.
+     */
+    private final ArrayList<String> userNames = new ArrayList<>();
+    private final HashMap<String, Integer> userNameIndices = new HashMap<>();
+
+    /**
+     * Nodes that have been handed out as objects, by node index.
+     */
+    private final LongObjectMap<OSMNode> nodes = new LongObjectMap<>();
+
+    /**
+     * Adds a node, or replaces the node with the same id.
+     *
+     * @return the index of the node
+     */
+    int add(String idStr,
+            String latStr,
+            String lonStr,
+            String versionStr,
+            String timestampStr,
+            String changesetStr,
+            String uidStr,
+            String userStr) {
+
+        long id = Long.parseLong(idStr);
+        int i = indices.get(id, -1);
+        if (i < 0) {
+            i = size++;
+            ensureCapacity(size);
+            indices.put(id, i);
+        } else {
+            nodes.remove(i);
+            irregularTimestamps.remove(i);
+        }
+        ids[i] = id;
+        coords[2 * i] = Double.parseDouble(latStr);
+        coords[2 * i + 1] = Double.parseDouble(lonStr);
+        versions[i] = Integer.parseInt(versionStr);
+        changesets[i] = Long.parseLong(changesetStr);
+        uids[i] = Long.parseLong(uidStr);
+        users[i] = userNameIndex(userStr);
+        timestamps[i] = packTimestamp(timestampStr);
+        if (timestamps[i] == IRREGULAR_TIMESTAMP && timestampStr != null) {
+            irregularTimestamps.put(i, timestampStr);
+        }
+        return i;
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * @return the index of the node, or -1 if there is no node with this id
+     */
+    int indexOf(long id) {
+        return indices.get(id, -1);
+    }
+
+    long getId(int index) {
+        return ids[index];
+    }
+
+    double getLat(int index) {
+        return coords[2 * index];
+    }
+
+    double getLng(int index) {
+        return coords[2 * index + 1];
+    }
+
+    /**
+     * @return the node object for this index, created on the first call
+     */
+    OSMNode getNode(int index) {
+        OSMNode node = nodes.get(index);
+        if (node == null) {
+            node = createNode(index);
+            nodes.put(index, node);
+        }
+        return node;
+    }
+
+    /**
+     * Creates a new node object for this index without keeping it.
+     */
+    OSMNode createNode(int index) {
+        long packed = timestamps[index];
+        String timestamp = packed == IRREGULAR_TIMESTAMP
+                ? irregularTimestamps.get(index)
+                : unpackTimestamp(packed);
+        return new OSMNode(ids[index], coords[2 * index], coords[2 * index + 1],
+                versions[index], timestamp, changesets[index], uids[index],
+                userNames.get(users[index]));
+    }
+
+    /**
+     * Keeps a node object created by {@link #createNode(int)}, so that it is the one
+     * returned by {@link #getNode(int)} from now on.
+     */
+    void keep(int index, OSMNode node) {
+        nodes.put(index, node);
+    }
+
+    private int userNameIndex(String user) {
+        Integer index = userNameIndices.get(user);
+        if (index == null) {
+            index = userNames.size();
+            userNames.add(user);
+            userNameIndices.put(user, index);
+        }
+        return index;
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity <= ids.length) {
+            return;
+        }
+        int grown = Math.max(capacity, ids.length + (ids.length >> 1));
+        ids = copyOf(ids, grown);
+        coords = copyOf(coords, 2 * grown);
+        versions = copyOf(versions, grown);
+        changesets = copyOf(changesets, grown);
+        uids = copyOf(uids, grown);
+        users = copyOf(users, grown);
+        timestamps = copyOf(timestamps, grown);
+    }
+
+    private static long[] copyOf(long[] array, int length) {
+        long[] copy = new long[length];
+        System.arraycopy(array, 0, copy, 0, array.length);
+        return copy;
+    }
+
+    private static int[] copyOf(int[] array, int length) {
+        int[] copy = new int[length];
+        System.arraycopy(array, 0, copy, 0, array.length);
+        return copy;
+    }
+
+    private static double[] copyOf(double[] array, int length) {
+        double[] copy = new double[length];
+        System.arraycopy(array, 0, copy, 0, array.length);
+        return copy;
+    }
+
+    /**
+     * Packs a "yyyy-MM-ddTHH:mm:ssZ" timestamp into the decimal number yyyyMMddHHmmss,
+     * so that it can be restored exactly.
+     *
+     * @return the packed timestamp, or IRREGULAR_TIMESTAMP if it is in another form
+     */
+    static long packTimestamp(String timestamp) {
+        if (timestamp == null || timestamp.length() != 20
+                || timestamp.charAt(4) != '-' || timestamp.charAt(7) != '-'
+                || timestamp.charAt(10) != 'T' || timestamp.charAt(13) != ':'
+                || timestamp.charAt(16) != ':' || timestamp.charAt(19) != 'Z') {
+            return IRREGULAR_TIMESTAMP;
+        }
+        long packed = 0;
+        for (int i = 0; i < 19; i++) {
+            if (i == 4 || i == 7 || i == 10 || i == 13 || i == 16) {
+                continue;
+            }
+            char c = timestamp.charAt(i);
+            if (c < '0' || c > '9') {
+                return IRREGULAR_TIMESTAMP;
+            }
+            packed = packed * 10 + (c - '0');
+        }
+        return packed;
+    }
+
+    static String unpackTimestamp(long packed) {
+        char[] chars = "0000-00-00T00:00:00Z".toCharArray();
+        for (int i = 18; i >= 0; i--) {
+            if (i == 4 || i == 7 || i == 10 || i == 13 || i == 16) {
+                continue;
+            }
+            chars[i] = (char) ('0' + packed % 10);
+            packed /= 10;
+        }
+        return new String(chars);
+    }
+}
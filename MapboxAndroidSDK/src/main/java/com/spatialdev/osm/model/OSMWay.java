@@ -9,12 +9,16 @@ import com.spatialdev.osm.renderer.OSMPath;
 
 import org.xmlpull.v1.XmlSerializer;
 
+import com.mapbox.mapboxsdk.util.LongIntMap;
+
 import java.io.IOException;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
-import java.util.Set;
 
 public class OSMWay extends OSMElement {
 
@@ -22,10 +26,19 @@ public class OSMWay extends OSMElement {
      * As the XML document is being parsed, ways have references to nodes' IDs.
      * The node itself may not yet be parsed, so we create a list of Node IDs
      * as we parse and will then do postprocessing to create that association.
+     * After linking, only the references that could not be linked are left.
      */
-    private LinkedList<Long> nodeRefs = new LinkedList<>();
+    private long[] nodeRefs = new long[8];
+    private int nodeRefCount = 0;
 
-    private LinkedList<OSMNode> linkedNodes = new LinkedList<>();
+    private List<OSMNode> linkedNodes = new ArrayList<>(0);
+
+    /**
+     * In a compact data set, the linked nodes are indices into its node store
+     * rather than objects.
+     */
+    private OSMNodeStore nodeStore;
+    private int[] linkedNodeIndices;
 
     /**
      * If a way is in a relation, it's relation is added to this list.
@@ -63,56 +76,146 @@ public class OSMWay extends OSMElement {
     }
 
     private void setWayXmlNds(XmlSerializer xmlSerializer) throws IOException {
-        for (OSMNode node : linkedNodes) {
+        int count = getLinkedNodesCount();
+        for (int i = 0; i < count; i++) {
             xmlSerializer.startTag(null, "nd");
-            xmlSerializer.attribute(null, "ref", String.valueOf(node.getId()));
+            xmlSerializer.attribute(null, "ref", String.valueOf(getNodeId(i)));
             xmlSerializer.endTag(null, "nd");
         }
     }
 
     public void addNodeRef(long id) {
-        nodeRefs.add(id);
+        if (nodeRefCount == nodeRefs.length) {
+            long[] grown = new long[2 * nodeRefs.length];
+            System.arraycopy(nodeRefs, 0, grown, 0, nodeRefCount);
+            nodeRefs = grown;
+        }
+        nodeRefs[nodeRefCount++] = id;
     }
 
     /**
-     * Populates linked list of nodes referred to by this way.
+     * Populates list of nodes referred to by this way.
      *
-     * Takes nodes from nodes hash and puts them in the wayNodes hash
+     * Takes nodes from nodes hash and puts their ids in the wayNodes set
      * for nodes that are in the actual way.
      *
      * @param nodes
      * @return the number of node references NOT linked.
      */
-    int linkNodes(Map<Long, OSMNode> nodes, Set<Long> wayNodes) {
+    int linkNodes(Map<Long, OSMNode> nodes, LongIntMap wayNodes) {
         // first check if the way is closed before doing this processing...
         checkIfClosed();
-        LinkedList<Long> unlinkedRefs = new LinkedList<>();
-        while (nodeRefs.size() > 0) {
-            Long refId = nodeRefs.pop();
+        ArrayList<OSMNode> linked = new ArrayList<>(nodeRefCount);
+        int unlinkedCount = 0;
+        for (int i = 0; i < nodeRefCount; i++) {
+            long refId = nodeRefs[i];
             OSMNode node = nodes.get(refId);
-            wayNodes.add(refId);
+            wayNodes.put(refId, 1);
             if (node == null) {
-                unlinkedRefs.push(refId);
+                nodeRefs[unlinkedCount++] = refId;
             } else {
-                linkedNodes.push(node);
+                linked.add(node);
             }
         }
-        nodeRefs = unlinkedRefs;
-        return nodeRefs.size();
+        // nodes and unlinked refs have always been kept last to first
+        Collections.reverse(linked);
+        linkedNodes = linked;
+        reverse(nodeRefs, unlinkedCount);
+        keepUnlinkedRefs(nodeRefs, unlinkedCount);
+        return nodeRefCount;
+    }
+
+    /**
+     * Same as {@link #linkNodes(Map, LongIntMap)} for a compact data set: the
+     * way only keeps the indices of its nodes in the node store.
+     */
+    int linkNodes(OSMNodeStore store, LongIntMap wayNodes) {
+        checkIfClosed();
+        int[] linked = new int[nodeRefCount];
+        int linkedCount = 0;
+        long[] unlinked = new long[nodeRefCount];
+        int unlinkedCount = 0;
+        // walking the refs last to first keeps the order of the other linkNodes
+        for (int i = nodeRefCount - 1; i >= 0; i--) {
+            long refId = nodeRefs[i];
+            int index = store.indexOf(refId);
+            wayNodes.put(refId, 1);
+            if (index >= 0) {
+                linked[linkedCount++] = index;
+            } else {
+                unlinked[unlinkedCount++] = refId;
+            }
+        }
+        nodeStore = store;
+        linkedNodeIndices = new int[linkedCount];
+        System.arraycopy(linked, 0, linkedNodeIndices, 0, linkedCount);
+        keepUnlinkedRefs(unlinked, unlinkedCount);
+        return nodeRefCount;
+    }
+
+    private void keepUnlinkedRefs(long[] refs, int unlinkedCount) {
+        long[] unlinked = new long[unlinkedCount];
+        System.arraycopy(refs, 0, unlinked, 0, unlinkedCount);
+        nodeRefs = unlinked;
+        nodeRefCount = unlinkedCount;
+    }
+
+    private static void reverse(long[] array, int length) {
+        for (int i = 0, j = length - 1; i < j; i++, j--) {
+            long tmp = array[i];
+            array[i] = array[j];
+            array[j] = tmp;
+        }
     }
 
     public int getUnlinkedNodesCount() {
-        return nodeRefs.size();
+        return nodeRefCount;
     }
 
     public int getLinkedNodesCount() {
+        if (linkedNodeIndices != null) {
+            return linkedNodeIndices.length;
+        }
         return linkedNodes.size();
     }
 
+    /**
+     * The latitude of a linked node, without creating the node object in a
+     * compact data set.
+     *
+     * @param index position of the node in this way, as in getNodes()
+     * @return latitude
+     */
+    public double getNodeLat(int index) {
+        if (linkedNodeIndices != null) {
+            return nodeStore.getLat(linkedNodeIndices[index]);
+        }
+        return linkedNodes.get(index).getLat();
+    }
+
+    /**
+     * The longitude of a linked node, without creating the node object in a
+     * compact data set.
+     *
+     * @param index position of the node in this way, as in getNodes()
+     * @return longitude
+     */
+    public double getNodeLng(int index) {
+        if (linkedNodeIndices != null) {
+            return nodeStore.getLng(linkedNodeIndices[index]);
+        }
+        return linkedNodes.get(index).getLng();
+    }
+
+    private long getNodeId(int index) {
+        if (linkedNodeIndices != null) {
+            return nodeStore.getId(linkedNodeIndices[index]);
+        }
+        return linkedNodes.get(index).getId();
+    }
+
     private void checkIfClosed() {
-        Long firstId = nodeRefs.getFirst();
-        Long lastId = nodeRefs.getLast();
-        if (firstId.equals(lastId)) {
+        if (nodeRefCount > 0 && nodeRefs[0] == nodeRefs[nodeRefCount - 1]) {
             closed = true;
         }
     }
@@ -137,10 +240,27 @@ public class OSMWay extends OSMElement {
      * want to give a renderer all of the lat longs to paint a line...
      */
     public Iterator<OSMNode> getNodeIterator() {
-        return linkedNodes.listIterator();
+        return getNodes().listIterator();
     }
 
+    /**
+     * In a compact data set, this is a view that creates the node objects
+     * as they are read.
+     */
     public List<OSMNode> getNodes() {
+        if (linkedNodeIndices != null) {
+            return new AbstractList<OSMNode>() {
+                @Override
+                public OSMNode get(int index) {
+                    return nodeStore.getNode(linkedNodeIndices[index]);
+                }
+
+                @Override
+                public int size() {
+                    return linkedNodeIndices.length;
+                }
+            };
+        }
         return linkedNodes;
     }
 
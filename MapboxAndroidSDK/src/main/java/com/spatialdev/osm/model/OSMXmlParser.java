@@ -34,15 +34,29 @@ public class OSMXmlParser {
      * as factories creating parser instances.
      */
     public static OSMDataSet parseFromAssets(final Context context, final String fileName) throws IOException {
+        return parseFromAssets(context, fileName, false);
+    }
+
+    /**
+     * @param compact keep the nodes in packed arrays, see {@link OSMDataSet#OSMDataSet(boolean)}
+     */
+    public static OSMDataSet parseFromAssets(final Context context, final String fileName, boolean compact) throws IOException {
         if (TextUtils.isEmpty(fileName)) {
             throw new NullPointerException("No OSM XML File Name passed in.");
         }
         InputStream in = context.getAssets().open(fileName);
-        return parseFromInputStream(in);
+        return parseFromInputStream(in, compact);
     }
 
     public static OSMDataSet parseFromInputStream(InputStream in) throws IOException {
-        OSMXmlParser osmXmlParser = new OSMXmlParser();
+        return parseFromInputStream(in, false);
+    }
+
+    /**
+     * @param compact keep the nodes in packed arrays, see {@link OSMDataSet#OSMDataSet(boolean)}
+     */
+    public static OSMDataSet parseFromInputStream(InputStream in, boolean compact) throws IOException {
+        OSMXmlParser osmXmlParser = new OSMXmlParser(compact);
         try {
             osmXmlParser.parse(in);
         } catch (XmlPullParserException e) {
@@ -56,7 +70,11 @@ public class OSMXmlParser {
     }
 
     protected OSMXmlParser() {
-        ds = new OSMDataSet();
+        this(false);
+    }
+
+    protected OSMXmlParser(boolean compact) {
+        ds = new OSMDataSet(compact);
     }
 
     public OSMDataSet getDataSet() {
@@ -71,7 +89,7 @@ public class OSMXmlParser {
      */
     public void parse(InputStream in) throws XmlPullParserException, IOException {
         try {
-            parser = Xml.newPullParser();
+            parser = newPullParser();
             parser.setFeature(XmlPullParser.FEATURE_PROCESS_NAMESPACES, false);
             parser.setInput(in, null);
             parser.nextTag();
@@ -82,6 +100,14 @@ public class OSMXmlParser {
         }
     }
 
+    /**
+     * Override this in a subclass to parse with another XmlPullParser
+     * implementation, such as when running off the device.
+     */
+    protected XmlPullParser newPullParser() throws XmlPullParserException {
+        return Xml.newPullParser();
+    }
+
     private void readOsm() throws IOException, XmlPullParserException {
         parser.require(XmlPullParser.START_TAG, ns, "osm");
         while (parser.next() != XmlPullParser.END_TAG) {
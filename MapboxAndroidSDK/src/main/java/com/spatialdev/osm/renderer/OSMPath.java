@@ -7,11 +7,9 @@ import android.graphics.Rect;
 
 import com.mapbox.mapboxsdk.views.MapView;
 import com.mapbox.mapboxsdk.views.util.Projection;
-import com.spatialdev.osm.model.OSMNode;
 import com.spatialdev.osm.model.OSMElement;
 import com.spatialdev.osm.model.OSMWay;
 
-import java.util.List;
 
 /**
  * Created by Nicholas Hallahan on 1/22/15.
@@ -75,8 +73,7 @@ public abstract class OSMPath {
      * @param w Way, MapView mv
      */
     protected OSMPath(OSMWay w, MapView mv) {
-        List<OSMNode> nodes = w.getNodes();
-        projectNodes(nodes);
+        projectNodes(w);
         mapView = mv;
         paint.setAntiAlias(true);
     }
@@ -84,13 +81,12 @@ public abstract class OSMPath {
     /**
      * Do the expensive projection straight up upon construction rather than draw.
      *
-     * @param nodes
+     * @param w
      */
-    private void projectNodes(List<OSMNode> nodes) {
-        projectedPoints = new double[nodes.size()][2];
-        int i = 0;
-        for (OSMNode n : nodes) {
-            projectedPoints[i++] = Projection.latLongToPixelXY(n.getLat(), n.getLng());
+    private void projectNodes(OSMWay w) {
+        projectedPoints = new double[w.getLinkedNodesCount()][2];
+        for (int i = 0; i < projectedPoints.length; i++) {
+            projectedPoints[i] = Projection.latLongToPixelXY(w.getNodeLat(i), w.getNodeLng(i));
         }
     }
 
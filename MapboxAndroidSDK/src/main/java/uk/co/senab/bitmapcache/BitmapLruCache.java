@@ -115,6 +115,19 @@ public class BitmapLruCache {
     // flushed
     static final int DISK_CACHE_FLUSH_DELAY_SECS = 5;
 
+    // Enough for the encoded images being read by a few threads at once
+    static final int BYTE_ARRAY_POOL_MAX_SIZE = 512 * 1024;
+
+    // Bumped when the layout of the disk cache changes, which clears it
+    static final int DISK_CACHE_VERSION = 1;
+
+    // Each disk cache entry holds the compressed bitmap, then its metadata
+    static final int DISK_CACHE_VALUE_COUNT = 2;
+
+    static final int DISK_CACHE_BITMAP_INDEX = 0;
+
+    static final int DISK_CACHE_METADATA_INDEX = 1;
+
     /**
      * @throws IllegalStateException if the calling thread is the main/UI thread.
      */
@@ -137,7 +150,7 @@ public class BitmapLruCache {
         return Md5.encode(url);
     }
 
-    private File mTempDir;
+    private final ByteArrayPool mByteArrayPool = new ByteArrayPool(BYTE_ARRAY_POOL_MAX_SIZE);
 
     private Resources mResources;
 
@@ -168,7 +181,6 @@ public class BitmapLruCache {
             // Make sure we have the application context
             context = context.getApplicationContext();
 
-            mTempDir = context.getCacheDir();
             mResources = context.getResources();
         }
     }
@@ -291,6 +303,92 @@ public class BitmapLruCache {
         return result;
     }
 
+    /**
+     * Decodes the value for {@code url} in the disk cache into a plain bitmap, reusing a pooled
+     * one if possible, without adding it to the memory cache. You should not call this method
+     * from main/UI thread.
+     *
+     * @param url        - String representing the URL of the image
+     * @param decodeOpts - Options used for decoding the contents from the disk cache.
+     * @return the bitmap, or {@code null} if the disk cache is not enabled, doesn't contain
+     *         {@code url} or its value can't be decoded.
+     */
+    public Bitmap decodeFromDiskCache(final String url, final BitmapFactory.Options decodeOpts) {
+        if (null == mDiskCache) {
+            return null;
+        }
+        checkNotOnMainThread();
+        return decodeBitmap(new SnapshotInputStreamProvider(transformUrlForDiskCacheKey(url)),
+                decodeOpts);
+    }
+
+    /**
+     * Returns the metadata stored with the value for {@code url} in the disk cache. You should not
+     * call this method from main/UI thread.
+     *
+     * @param url - String representing the URL of the image
+     * @return the metadata, which is empty if none was given, or {@code null} if the disk cache is
+     *         not enabled or doesn't contain {@code url}.
+     */
+    public String getMetadataFromDiskCache(final String url) {
+        if (null != mDiskCache) {
+            checkNotOnMainThread();
+
+            DiskLruCache.Snapshot snapshot = null;
+            try {
+                snapshot = mDiskCache.get(transformUrlForDiskCacheKey(url));
+                if (null != snapshot) {
+                    return snapshot.getString(DISK_CACHE_METADATA_INDEX);
+                }
+            } catch (IOException e) {
+                Log.e(Constants.LOG_TAG, "Error reading metadata from disk cache. URL: " + url, e);
+            } finally {
+                if (null != snapshot) {
+                    snapshot.close();
+                }
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Replaces the metadata stored with the value for {@code url} in the disk cache, leaving the
+     * bitmap as it is. Nothing is stored if the disk cache doesn't contain {@code url}. You should
+     * not call this method from main/UI thread.
+     *
+     * @param url      - String representing the URL of the image
+     * @param metadata - The new metadata
+     */
+    public void putMetadataInDiskCache(final String url, final String metadata) {
+        if (null != mDiskCache) {
+            checkNotOnMainThread();
+
+            final String key = transformUrlForDiskCacheKey(url);
+            final ReentrantLock lock = getLockForDiskCacheEdit(key);
+            lock.lock();
+
+            try {
+                final DiskLruCache.Snapshot snapshot = mDiskCache.get(key);
+                if (null == snapshot) {
+                    return;
+                }
+                // Only edits the entry if it hasn't changed since the snapshot
+                final DiskLruCache.Editor editor = snapshot.edit();
+                snapshot.close();
+                if (null != editor) {
+                    editor.set(DISK_CACHE_METADATA_INDEX, null != metadata ? metadata : "");
+                    editor.commit();
+                }
+            } catch (IOException e) {
+                Log.e(Constants.LOG_TAG, "Error writing metadata to disk cache. URL: " + url, e);
+            } finally {
+                lock.unlock();
+                scheduleDiskCacheFlush();
+            }
+        }
+    }
+
     /**
      * Returns the value for {@code url} in the memory cache only. This method is safe to be called
      * from the main thread. <p /> You should check the result of this method before starting a
@@ -304,14 +402,12 @@ public class BitmapLruCache {
         CacheableBitmapDrawable result = null;
 
         if (null != mMemoryCache) {
-            synchronized (mMemoryCache) {
-                result = mMemoryCache.get(url);
+            result = mMemoryCache.get(url);
 
-                // If we get a value, but it has a invalid bitmap, remove it
-                if (null != result && !result.isBitmapValid()) {
-                    mMemoryCache.remove(url);
-                    result = null;
-                }
+            // If we get a value, but it has a invalid bitmap, remove it
+            if (null != result && !result.isBitmapValid()) {
+                mMemoryCache.remove(url, result);
+                result = null;
             }
         }
 
@@ -319,13 +415,49 @@ public class BitmapLruCache {
     }
 
 
+    /**
+     * Returns an unused {@link Bitmap.Config#ARGB_8888 ARGB_8888} bitmap of the given size from
+     * the bitmap pool, erased to transparent, or {@code null} if there is none.
+     */
     public Bitmap getBitmapFromRemoved(final int width, final int height) {
-        if (null != mMemoryCache) {
-            synchronized (mMemoryCache) {
-                return mMemoryCache.getBitmapFromRemoved(width, height);
-            }
+        return getBitmapFromPool(width, height, Bitmap.Config.ARGB_8888);
+    }
+
+    /**
+     * Returns an unused bitmap of the given size and config from the bitmap pool, erased to
+     * transparent, or {@code null} if there is none. Hand it back with {@link
+     * #putInBitmapPool(Bitmap)} if it ends up not being used.
+     */
+    public Bitmap getBitmapFromPool(final int width, final int height, final Bitmap.Config config) {
+        final BitmapPool pool = getBitmapPool();
+        return null != pool ? pool.get(width, height, config) : null;
+    }
+
+    /**
+     * @return the pool of buffers which encoded images are read into, see {@link
+     *         PoolingByteArrayOutputStream}.
+     */
+    public ByteArrayPool getByteArrayPool() {
+        return mByteArrayPool;
+    }
+
+    /**
+     * Adds a bitmap which is no longer used, and isn't referenced by any cached value, to the
+     * bitmap pool so that its memory can be reused.
+     */
+    public void putInBitmapPool(final Bitmap bitmap) {
+        final BitmapPool pool = getBitmapPool();
+        if (null != pool) {
+            pool.put(bitmap);
         }
-        return null;
+    }
+
+    /**
+     * @return the pool of bitmaps which can be reused for decoding, or {@code null} if the memory
+     *         cache is disabled or the recycle policy doesn't allow reusing bitmaps.
+     */
+    public BitmapPool getBitmapPool() {
+        return null != mMemoryCache ? mMemoryCache.getBitmapPool() : null;
     }
 
     /**
@@ -370,12 +502,25 @@ public class BitmapLruCache {
      */
     public CacheableBitmapDrawable put(final String url, final Bitmap bitmap,
             Bitmap.CompressFormat compressFormat, int compressQuality) {
+        return put(url, bitmap, compressFormat, compressQuality, null);
+    }
+
+    /**
+     * Caches {@code bitmap} for {@code url} into all enabled caches, along with {@code metadata}
+     * in the disk cache, see {@link #getMetadataFromDiskCache(String)}.
+     * <p/> If you have the disk cache enabled, you should not call this method from main/UI thread.
+     *
+     * @param metadata - Metadata stored with the bitmap in the disk cache, or {@code null}.
+     * @return CacheableBitmapDrawable which can be used to display the bitmap.
+     */
+    public CacheableBitmapDrawable put(final String url, final Bitmap bitmap,
+            Bitmap.CompressFormat compressFormat, int compressQuality, final String metadata) {
 
         CacheableBitmapDrawable d = new CacheableBitmapDrawable(url, mResources, bitmap,
                 mRecyclePolicy, CacheableBitmapDrawable.SOURCE_UNKNOWN);
 
         putInMemoryCache(url, d, compressFormat, compressQuality);
-        putInDiskCache(url, d, compressFormat, compressQuality);
+        putInDiskCache(url, d, compressFormat, compressQuality, metadata);
         return d;
     }
 
@@ -390,9 +535,7 @@ public class BitmapLruCache {
     public CacheableBitmapDrawable putInMemoryCache(final String url, final CacheableBitmapDrawable drawable,
                                                     Bitmap.CompressFormat compressFormat, int compressQuality) {
         if (null != mMemoryCache) {
-            synchronized (mMemoryCache) {
-                mMemoryCache.put(drawable);
-            }
+            mMemoryCache.put(drawable);
         }
         return drawable;
     }
@@ -416,6 +559,12 @@ public class BitmapLruCache {
 
     public CacheableBitmapDrawable putInDiskCache(final String url, final CacheableBitmapDrawable drawable,
                                                   Bitmap.CompressFormat compressFormat, int compressQuality) {
+        return putInDiskCache(url, drawable, compressFormat, compressQuality, null);
+    }
+
+    public CacheableBitmapDrawable putInDiskCache(final String url, final CacheableBitmapDrawable drawable,
+                                                  Bitmap.CompressFormat compressFormat, int compressQuality,
+                                                  final String metadata) {
 
         if (null != mDiskCache) {
             checkNotOnMainThread();
@@ -428,9 +577,10 @@ public class BitmapLruCache {
 
             try {
                 DiskLruCache.Editor editor = mDiskCache.edit(key);
-                os = editor.newOutputStream(0);
+                os = editor.newOutputStream(DISK_CACHE_BITMAP_INDEX);
                 drawable.getBitmap().compress(compressFormat, compressQuality, os);
                 os.flush();
+                editor.set(DISK_CACHE_METADATA_INDEX, null != metadata ? metadata : "");
                 editor.commit();
             } catch (IOException e) {
                 Log.e(Constants.LOG_TAG, "Error while writing to disk cache", e);
@@ -456,7 +606,7 @@ public class BitmapLruCache {
      * Caches resulting bitmap from {@code inputStream} for {@code url} into all enabled caches.
      * This version of the method should be preferred as it allows the original image contents to be
      * cached, rather than a re-compressed version. <p /> The contents of the InputStream will be
-     * copied to a temporary file, then the file will be decoded into a Bitmap. Providing the decode
+     * read into a pooled buffer, then decoded into a Bitmap. Providing the decode
      * worked: <ul> <li>If the memory cache is enabled, the decoded Bitmap will be cached to
      * memory.</li> <li>If the disk cache is enabled, the contents of the original stream will be
      * cached to disk.</li> </ul> <p/> You should not call this method from the main/UI thread.
@@ -480,8 +630,8 @@ public class BitmapLruCache {
      * <ul>
      * <li>If the memory cache is enabled, the decoded Bitmap will be cached to
      * memory.</li>
-     * <li>If the disk cache is enabled, a temporay version of the contents is
-     * copied to disk before decoding and then cached to disk.</li>
+     * <li>If the disk cache is enabled, the contents of the array will be
+     * cached to disk.</li>
      * </ul>
      * <p/>
      * You should not call this method from the main/UI thread.
@@ -494,22 +644,77 @@ public class BitmapLruCache {
      */
     public CacheableBitmapDrawable put(final String url, final byte[] data,
             final BitmapFactory.Options decodeOpts) {
+        return put(url, data, 0, data.length, decodeOpts, null);
+    }
+
+    /**
+     * Caches resulting bitmap from {@code length} bytes of {@code data} starting at {@code
+     * offset}, as {@link #put(String, byte[], BitmapFactory.Options)} does, along with {@code
+     * metadata} in the disk cache, see {@link #getMetadataFromDiskCache(String)}. The bytes are
+     * decoded straight from the array, into a pooled bitmap if there is one, and written to disk
+     * as they are.
+     * <p/>
+     * You should not call this method from the main/UI thread.
+     *
+     * @param metadata - Metadata stored with the bitmap in the disk cache, or {@code null}.
+     * @return CacheableBitmapDrawable which can be used to display the bitmap.
+     */
+    public CacheableBitmapDrawable put(final String url, final byte[] data, final int offset,
+            final int length, final BitmapFactory.Options decodeOpts, final String metadata) {
         checkNotOnMainThread();
 
-        if (null == mDiskCache) {
-            // shortcut to avoid temporary storage on disk
-            CacheableBitmapDrawable d = decodeBitmapToDrawable(new ByteArrayInputStreamProvider(data), url,
-                    decodeOpts);
-            if (null != d) {
-                if (null != mMemoryCache) {
-                    d.setCached(true);
-                    mMemoryCache.put(d.getUrl(), d);
-                }
-                return d;
-            }
+        final CacheableBitmapDrawable d = decodeBitmapToDrawable(
+                new ByteArrayInputStreamProvider(data, offset, length), url, decodeOpts);
+        if (null == d) {
+            return null;
         }
 
-        return put(url, new ByteArrayInputStream(data), decodeOpts);
+        if (null != mMemoryCache) {
+            d.setCached(true);
+            mMemoryCache.put(d.getUrl(), d);
+        }
+
+        putInDiskCache(url, data, offset, length, metadata);
+
+        return d;
+    }
+
+    /**
+     * Writes {@code length} bytes of {@code data} starting at {@code offset} to the disk cache
+     * for {@code url} as they are, along with {@code metadata}, without decoding them or adding
+     * anything to the memory cache. Read them back with {@link #decodeFromDiskCache(String,
+     * BitmapFactory.Options)}.
+     * <p/>
+     * You should not call this method from the main/UI thread.
+     *
+     * @param metadata - Metadata stored with the bitmap in the disk cache, or {@code null}.
+     */
+    public void putInDiskCache(final String url, final byte[] data, final int offset,
+            final int length, final String metadata) {
+        if (null != mDiskCache) {
+            checkNotOnMainThread();
+
+            final String key = transformUrlForDiskCacheKey(url);
+            final ReentrantLock lock = getLockForDiskCacheEdit(key);
+            lock.lock();
+
+            OutputStream os = null;
+
+            try {
+                DiskLruCache.Editor editor = mDiskCache.edit(key);
+                os = editor.newOutputStream(DISK_CACHE_BITMAP_INDEX);
+                os.write(data, offset, length);
+                os.flush();
+                editor.set(DISK_CACHE_METADATA_INDEX, null != metadata ? metadata : "");
+                editor.commit();
+            } catch (IOException e) {
+                Log.e(Constants.LOG_TAG, "Error writing to disk cache. URL: " + url, e);
+            } finally {
+                IoUtils.closeStream(os);
+                lock.unlock();
+                scheduleDiskCacheFlush();
+            }
+        }
     }
 
     /**
@@ -518,8 +723,8 @@ public class BitmapLruCache {
      * allows the original image contents to be cached, rather than a
      * re-compressed version.
      * <p />
-     * The contents of the InputStream will be copied to a temporary file, then
-     * the file will be decoded into a Bitmap, using the optional
+     * The contents of the InputStream will be read once into a pooled buffer,
+     * then decoded into a Bitmap, using the optional
      * <code>decodeOpts</code>. Providing the decode worked:
      * <ul>
      * <li>If the memory cache is enabled, the decoded Bitmap will be cached to
@@ -535,61 +740,22 @@ public class BitmapLruCache {
      * @param decodeOpts  - Options used for decoding. This does not affect what is cached in the
      *                    disk cache (if enabled).
      * @return CacheableBitmapDrawable which can be used to display the bitmap.
-     */ //todo
+     */
     public CacheableBitmapDrawable put(final String url, final InputStream inputStream,
             final BitmapFactory.Options decodeOpts) {
         if (inputStream == null) return null;
         checkNotOnMainThread();
 
-        // First we need to save the stream contents to a temporary file, so it
-        // can be read multiple times
-        File tmpFile = null;
+        final PoolingByteArrayOutputStream data = new PoolingByteArrayOutputStream(mByteArrayPool);
         try {
-            tmpFile = File.createTempFile("bitmapcache_", null, mTempDir);
-
-            // Pipe InputStream to file
-            IoUtils.copy(inputStream, tmpFile);
+            data.readFrom(inputStream);
+            return put(url, data.getBuffer(), 0, data.size(), decodeOpts, null);
         } catch (IOException e) {
-            Log.e(Constants.LOG_TAG, "Error writing to saving stream to temp file: " + url, e);
-        }
-
-        CacheableBitmapDrawable d = null;
-
-        if (null != tmpFile) {
-            // Try and decode File
-            d = decodeBitmapToDrawable(new FileInputStreamProvider(tmpFile), url, decodeOpts);
-
-            if (d != null) {
-                if (null != mMemoryCache) {
-                    d.setCached(true);
-                    synchronized (mMemoryCache) {
-                        mMemoryCache.put(d.getUrl(), d);
-                    }
-                }
-
-                if (null != mDiskCache) {
-                    final String key = transformUrlForDiskCacheKey(url);
-                    final ReentrantLock lock = getLockForDiskCacheEdit(url);
-                    lock.lock();
-
-                    try {
-                        DiskLruCache.Editor editor = mDiskCache.edit(key);
-                        IoUtils.copy(tmpFile, editor.newOutputStream(0));
-                        editor.commit();
-                    } catch (IOException e) {
-                        Log.e(Constants.LOG_TAG, "Error writing to disk cache. URL: " + url, e);
-                    } finally {
-                        lock.unlock();
-                        scheduleDiskCacheFlush();
-                    }
-                }
-            }
-
-            // Finally, delete the temporary file
-            tmpFile.delete();
+            Log.e(Constants.LOG_TAG, "Error reading stream: " + url, e);
+            return null;
+        } finally {
+            IoUtils.closeStream(data);
         }
-
-        return d;
     }
 
     /**
@@ -598,9 +764,7 @@ public class BitmapLruCache {
      */
     public void remove(String url) {
         if (null != mMemoryCache) {
-            synchronized (mMemoryCache) {
-                mMemoryCache.remove(url);
-            }
+            mMemoryCache.remove(url);
         }
 
         if (null != mDiskCache) {
@@ -620,9 +784,7 @@ public class BitmapLruCache {
      */
     public void removeFromMemoryCache(String url) {
         if (null != mMemoryCache) {
-            synchronized (mMemoryCache) {
-                mMemoryCache.remove(url);
-            }
+            mMemoryCache.remove(url);
         }
     }
 
@@ -653,17 +815,13 @@ public class BitmapLruCache {
      */
     public void trimMemory() {
         if (null != mMemoryCache) {
-            synchronized (mMemoryCache) {
-                mMemoryCache.trimMemory();
-            }
+            mMemoryCache.trimMemory();
         }
     }
 
     public void purgeMemoryCache() {
         if (null != mMemoryCache) {
-            synchronized (mMemoryCache) {
-                mMemoryCache.evictAll();
-            }
+            mMemoryCache.evictAll();
         }
     }
 
@@ -737,7 +895,7 @@ public class BitmapLruCache {
     public Bitmap decodeBitmap(InputStreamProvider ip, BitmapFactory.Options opts,
                                AtomicInteger source) {
         Bitmap bm = null;
-        InputStream is = null;
+        Bitmap inBitmap = null;
         if (source != null) {
             source.set(CacheableBitmapDrawable.SOURCE_NEW);
         }
@@ -752,38 +910,74 @@ public class BitmapLruCache {
                 if (opts.inSampleSize <= 1) {
                     opts.inSampleSize = 1;
 
-                    if (addInBitmapOptions(ip, opts) && source != null) {
+                    inBitmap = addInBitmapOptions(ip, opts);
+                    if (inBitmap != null && source != null) {
                         source.set(CacheableBitmapDrawable.SOURCE_INBITMAP);
                     }
                 }
             }
 
-            // Get InputStream for actual decode
-            is = ip.getInputStream();
-            // Decode stream
-            if (is == null && ip instanceof ByteArrayInputStreamProvider) {
-                byte[] data = ((ByteArrayInputStreamProvider) ip).array;
-                bm = BitmapFactory.decodeByteArray(data, 0, data.length, opts);
-            } else {
-                bm = BitmapFactory.decodeStream(is, null, opts);
+            try {
+                bm = decode(ip, opts);
+            } catch (IllegalArgumentException e) {
+                if (inBitmap == null) {
+                    throw e;
+                }
+                // The pooled bitmap can't hold this image, so give it back and decode into a new one
+                SDK11.addInBitmapOption(opts, null);
+                putInBitmapPool(inBitmap);
+                inBitmap = null;
+                if (source != null) {
+                    source.set(CacheableBitmapDrawable.SOURCE_NEW);
+                }
+                bm = decode(ip, opts);
             }
         } catch (Exception e) {
             Log.e(Constants.LOG_TAG, "Unable to decode stream",  e);
         } finally {
-            IoUtils.closeStream(is);
+            if (inBitmap != null) {
+                // Don't let the options decode into this bitmap again
+                SDK11.addInBitmapOption(opts, null);
+                if (bm == null) {
+                    // e.g. the decode was cancelled, the bitmap can still be reused
+                    putInBitmapPool(inBitmap);
+                }
+            }
         }
 
         return bm;
     }
 
-    private boolean addInBitmapOptions(InputStreamProvider ip, BitmapFactory.Options opts) {
+    private static Bitmap decode(InputStreamProvider ip, BitmapFactory.Options opts) {
+        // Get InputStream for actual decode
+        final InputStream is = ip.getInputStream();
+        try {
+            // Decode stream
+            if (is == null && ip instanceof ByteArrayInputStreamProvider) {
+                final ByteArrayInputStreamProvider data = (ByteArrayInputStreamProvider) ip;
+                return BitmapFactory.decodeByteArray(data.array, data.offset, data.length, opts);
+            } else {
+                return BitmapFactory.decodeStream(is, null, opts);
+            }
+        } finally {
+            IoUtils.closeStream(is);
+        }
+    }
+
+    /**
+     * Decodes the bounds of the image and, if the bitmap pool has an unused bitmap of that size,
+     * sets it as {@code inBitmap} of {@code opts}.
+     *
+     * @return the bitmap which the image will be decoded into, or {@code null} if there is none.
+     */
+    private Bitmap addInBitmapOptions(InputStreamProvider ip, BitmapFactory.Options opts) {
         // Create InputStream for decoding the bounds
         final InputStream is = ip.getInputStream();
         // Decode the bounds so we know what size Bitmap to look for
         opts.inJustDecodeBounds = true;
         if (is == null && ip instanceof ByteArrayInputStreamProvider) {
-            byte[] data = ((ByteArrayInputStreamProvider) ip).array;
-            BitmapFactory.decodeByteArray(data, 0, data.length, opts);
+            final ByteArrayInputStreamProvider data = (ByteArrayInputStreamProvider) ip;
+            BitmapFactory.decodeByteArray(data.array, data.offset, data.length, opts);
         } else {
             BitmapFactory.decodeStream(is, null, opts);
         }
@@ -795,19 +989,18 @@ public class BitmapLruCache {
         opts.inMutable = true;
 
         // Try and find Bitmap to use for inBitmap
-        synchronized (mMemoryCache) {
-            Bitmap reusableBm = mMemoryCache.getBitmapFromRemoved(opts.outWidth, opts.outHeight);
-            if (reusableBm != null) {
-                if (Constants.DEBUG) {
-                    Log.i(Constants.LOG_TAG, "Using inBitmap");
-                }
-                SDK11.addInBitmapOption(opts, reusableBm);
-                return true;
+        final Bitmap.Config config = opts.inPreferredConfig != null
+                ? opts.inPreferredConfig
+                : Bitmap.Config.ARGB_8888;
+        final Bitmap reusableBm = getBitmapFromPool(opts.outWidth, opts.outHeight, config);
+        if (reusableBm != null) {
+            if (Constants.DEBUG) {
+                Log.i(Constants.LOG_TAG, "Using inBitmap");
             }
+            SDK11.addInBitmapOption(opts, reusableBm);
         }
 
-
-        return false;
+        return reusableBm;
     }
 
     /**
@@ -835,6 +1028,8 @@ public class BitmapLruCache {
 
         static final int DEFAULT_MEM_CACHE_MAX_SIZE_MB = 3;
 
+        static final float DEFAULT_BITMAP_POOL_MEMORY_CACHE_RATIO = 1f / 4f;
+
         static final RecyclePolicy DEFAULT_RECYCLE_POLICY = RecyclePolicy.PRE_HONEYCOMB_ONLY;
 
         // Only used for Javadoc
@@ -859,6 +1054,8 @@ public class BitmapLruCache {
 
         private int mMemoryCacheMaxSize;
 
+        private int mBitmapPoolMaxSize;
+
         private RecyclePolicy mRecyclePolicy;
 
         /**
@@ -878,6 +1075,7 @@ public class BitmapLruCache {
             // Memory Cache is enabled by default, with a small maximum size
             mMemoryCacheEnabled = true;
             mMemoryCacheMaxSize = DEFAULT_MEM_CACHE_MAX_SIZE_MB * MEGABYTE;
+            mBitmapPoolMaxSize = -1;
             mRecyclePolicy = DEFAULT_RECYCLE_POLICY;
         }
 
@@ -892,7 +1090,11 @@ public class BitmapLruCache {
                 if (Constants.DEBUG) {
                     Log.d("BitmapLruCache.Builder", "Creating Memory Cache");
                 }
-                cache.setMemoryCache(new BitmapMemoryLruCache(mMemoryCacheMaxSize, mRecyclePolicy));
+                final int bitmapPoolMaxSize = mBitmapPoolMaxSize >= 0
+                        ? mBitmapPoolMaxSize
+                        : Math.round(mMemoryCacheMaxSize * DEFAULT_BITMAP_POOL_MEMORY_CACHE_RATIO);
+                cache.setMemoryCache(new BitmapMemoryLruCache(mMemoryCacheMaxSize, mRecyclePolicy,
+                        bitmapPoolMaxSize));
             }
 
             if (isValidOptionsForDiskCache()) {
@@ -901,7 +1103,8 @@ public class BitmapLruCache {
                     @Override
                     protected DiskLruCache doInBackground(Void... params) {
                         try {
-                            return DiskLruCache.open(mDiskCacheLocation, 0, 1, mDiskCacheMaxSize);
+                            return DiskLruCache.open(mDiskCacheLocation, DISK_CACHE_VERSION,
+                                    DISK_CACHE_VALUE_COUNT, mDiskCacheMaxSize);
                         } catch (IOException e) {
                             e.printStackTrace();
                             return null;
@@ -971,6 +1174,18 @@ public class BitmapLruCache {
             return this;
         }
 
+        /**
+         * Set the maximum number of bytes of the bitmaps kept for reuse after they have been
+         * removed from the Memory Cache. Defaults to a quarter of the Memory Cache maximum size.
+         * Bitmaps are only reused if the recycle policy allows it.
+         *
+         * @return This Builder object to allow for chaining of calls to set methods.
+         */
+        public Builder setBitmapPoolMaxSize(int size) {
+            mBitmapPoolMaxSize = size;
+            return this;
+        }
+
         /**
          * Sets the Memory Cache maximum size to be the default value of {@value
          * #DEFAULT_MEMORY_CACHE_HEAP_PERCENTAGE}% of heap size.
@@ -1081,9 +1296,17 @@ public class BitmapLruCache {
 
     public static class ByteArrayInputStreamProvider implements InputStreamProvider {
         final byte[] array;
+        final int offset;
+        final int length;
 
         public ByteArrayInputStreamProvider(byte[] array) {
+            this(array, 0, array.length);
+        }
+
+        public ByteArrayInputStreamProvider(byte[] array, int offset, int length) {
             this.array = array;
+            this.offset = offset;
+            this.length = length;
         }
 
         /**
@@ -1109,7 +1332,7 @@ public class BitmapLruCache {
             try {
                 DiskLruCache.Snapshot snapshot = mDiskCache.get(mKey);
                 if (snapshot != null) {
-                    return snapshot.getInputStream(0);
+                    return snapshot.getInputStream(DISK_CACHE_BITMAP_INDEX);
                 }
             } catch (IOException e) {
                 Log.e(Constants.LOG_TAG, "Could open disk cache for url: " + mKey, e);
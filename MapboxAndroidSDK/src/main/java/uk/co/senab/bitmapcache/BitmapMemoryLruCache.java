@@ -15,35 +15,75 @@
  ******************************************************************************/
 package uk.co.senab.bitmapcache;
 
-import android.graphics.Bitmap;
-import android.graphics.Color;
-import android.support.v4.util.LruCache;
 import android.util.Log;
 
-import java.lang.ref.SoftReference;
-import java.util.Collections;
-import java.util.HashSet;
+import java.util.HashMap;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.Map.Entry;
-import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
 
-final class BitmapMemoryLruCache extends LruCache<String, CacheableBitmapDrawable> {
+/**
+ * The memory cache of a {@link BitmapLruCache}. It is safe to use from any thread without
+ * external locking.
+ *
+ * <p> Reads take no lock: they look the value up in a concurrent map and only mark it as
+ * recently used. Writes lock one of {@link #SEGMENT_COUNT} segments, chosen by key, so threads
+ * inserting tiles don't wait for each other or for the UI thread. </p>
+ *
+ * <p> When the cache grows over its maximum size, the oldest value of each segment in turn is
+ * evicted, except that values read since they were last looked at get a second chance
+ * (CLOCK). This approximates least recently used order without reordering anything on
+ * reads. </p>
+ */
+final class BitmapMemoryLruCache {
 
     public static final String TAG = "BitmapMemoryLruCache";
-    private final Set<SoftReference<CacheableBitmapDrawable>> mRemovedEntries;
+
+    static final int SEGMENT_COUNT = 8;
+
+    private final ConcurrentHashMap<String, CacheEntry> mEntries;
+    private final Segment[] mSegments;
+    private final AtomicInteger mSize = new AtomicInteger();
+    private final AtomicInteger mClockHand = new AtomicInteger();
+    private volatile int mMaxSize;
+    private final BitmapPool mBitmapPool;
     private final BitmapLruCache.RecyclePolicy mRecyclePolicy;
-    private int largestValueSeenBytes;
+    private volatile int largestValueSeenBytes;
 
-    BitmapMemoryLruCache(int maxSize, BitmapLruCache.RecyclePolicy policy) {
-        super(maxSize);
+    BitmapMemoryLruCache(int maxSize, BitmapLruCache.RecyclePolicy policy, int bitmapPoolMaxSize) {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("maxSize <= 0");
+        }
+        mMaxSize = maxSize;
+
+        mEntries = new ConcurrentHashMap<String, CacheEntry>(64, 0.75f, SEGMENT_COUNT);
+        mSegments = new Segment[SEGMENT_COUNT];
+        for (int i = 0; i < SEGMENT_COUNT; i++) {
+            mSegments[i] = new Segment();
+        }
 
         mRecyclePolicy = policy;
-        mRemovedEntries = policy.canInBitmap()
-                ? Collections.synchronizedSet(new HashSet<SoftReference<CacheableBitmapDrawable>>())
+        mBitmapPool = policy.canInBitmap() && bitmapPoolMaxSize > 0
+                ? new BitmapPool(bitmapPoolMaxSize)
                 : null;
         largestValueSeenBytes = 0;
     }
 
+    /**
+     * Returns the value for {@code key}, or {@code null} if it isn't cached. Never blocks.
+     */
+    CacheableBitmapDrawable get(String key) {
+        final CacheEntry entry = mEntries.get(key);
+        if (null == entry) {
+            return null;
+        }
+        entry.mAccessed = true;
+        return entry.mValue;
+    }
+
     CacheableBitmapDrawable put(CacheableBitmapDrawable value) {
         if (null != value) {
             value.setCached(true);
@@ -54,10 +94,113 @@ final class BitmapMemoryLruCache extends LruCache<String, CacheableBitmapDrawabl
         return null;
     }
 
+    /**
+     * Caches {@code value} for {@code key}, evicting other values if needed.
+     *
+     * @return the previous value for {@code key}, if any.
+     */
+    CacheableBitmapDrawable put(String key, CacheableBitmapDrawable value) {
+        if (null == key || null == value) {
+            throw new NullPointerException("key == null || value == null");
+        }
+
+        final CacheEntry entry = new CacheEntry(key, value);
+        final Segment segment = mSegments[segmentIndex(key)];
+        final CacheEntry previous;
+        synchronized (segment) {
+            previous = segment.mQueue.remove(key);
+            segment.mQueue.put(key, entry);
+            mEntries.put(key, entry);
+            mSize.addAndGet(entry.mSize - (null != previous ? previous.mSize : 0));
+        }
+
+        if (null != previous) {
+            entryRemoved(previous.mValue);
+        }
+        trimToSize(mMaxSize, entry);
+
+        return null != previous ? previous.mValue : null;
+    }
+
+    /**
+     * Removes the value for {@code key}, if any.
+     *
+     * @return the removed value, or {@code null}.
+     */
+    CacheableBitmapDrawable remove(String key) {
+        return remove(key, null);
+    }
+
+    /**
+     * Removes the value for {@code key} only if it is {@code value}. Any value is removed if
+     * {@code value} is {@code null}.
+     *
+     * @return the removed value, or {@code null}.
+     */
+    CacheableBitmapDrawable remove(String key, CacheableBitmapDrawable value) {
+        final Segment segment = mSegments[segmentIndex(key)];
+        final CacheEntry removed;
+        synchronized (segment) {
+            final CacheEntry entry = segment.mQueue.get(key);
+            if (null == entry || (null != value && entry.mValue != value)) {
+                return null;
+            }
+            removed = segment.mQueue.remove(key);
+            mEntries.remove(key);
+            mSize.addAndGet(-removed.mSize);
+        }
+
+        entryRemoved(removed.mValue);
+        return removed.mValue;
+    }
+
+    void evictAll() {
+        trimToSize(-1, null);
+    }
+
+    /**
+     * @return a copy of the cached values by key.
+     */
+    Map<String, CacheableBitmapDrawable> snapshot() {
+        final Map<String, CacheableBitmapDrawable> snapshot =
+                new HashMap<String, CacheableBitmapDrawable>();
+        for (CacheEntry entry : mEntries.values()) {
+            snapshot.put(entry.mKey, entry.mValue);
+        }
+        return snapshot;
+    }
+
+    /**
+     * @return the number of bytes of the cached values.
+     */
+    int size() {
+        return mSize.get();
+    }
+
+    int maxSize() {
+        return mMaxSize;
+    }
+
+    void resize(int maxSize) {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("maxSize <= 0");
+        }
+        mMaxSize = maxSize;
+        trimToSize(maxSize, null);
+    }
+
     BitmapLruCache.RecyclePolicy getRecyclePolicy() {
         return mRecyclePolicy;
     }
 
+    /**
+     * @return the pool which receives the bitmaps of removed entries, or {@code null} if the
+     *         recycle policy doesn't allow reusing them.
+     */
+    BitmapPool getBitmapPool() {
+        return mBitmapPool;
+    }
+
     public void resizeMemoryForTiles(int numberOfTiles) {
         if (largestValueSeenBytes > 0 && numberOfTiles > 0) {
             float factor = numberOfTiles * 1.05f; //increase by 5%
@@ -69,82 +212,107 @@ final class BitmapMemoryLruCache extends LruCache<String, CacheableBitmapDrawabl
         }
     }
 
-    @Override
-    protected int sizeOf(String key, CacheableBitmapDrawable value) {
-        return value.getMemorySize();
+    void trimMemory() {
+        for (Entry<String, CacheableBitmapDrawable> entry : snapshot().entrySet()) {
+            CacheableBitmapDrawable value = entry.getValue();
+            if (null == value || !value.isBeingDisplayed()) {
+                remove(entry.getKey(), value);
+            }
+        }
+        if (mBitmapPool != null) {
+            mBitmapPool.evictAll();
+        }
+    }
+
+    /**
+     * Evicts values until the cache is no larger than {@code maxSize}, one from each segment in
+     * turn. Only one segment is locked at a time.
+     *
+     * @param keep - An entry which must not be evicted, or {@code null}.
+     */
+    private void trimToSize(int maxSize, CacheEntry keep) {
+        int idleSegments = 0;
+        while (mSize.get() > maxSize && idleSegments < SEGMENT_COUNT) {
+            final int hand = mClockHand.getAndIncrement() & 0x7fffffff;
+            final Segment segment = mSegments[hand % SEGMENT_COUNT];
+            final CacheEntry evicted;
+            synchronized (segment) {
+                evicted = segment.evictOne(keep);
+            }
+            if (null == evicted) {
+                idleSegments++;
+            } else {
+                idleSegments = 0;
+                entryRemoved(evicted.mValue);
+            }
+        }
     }
 
-    @Override
-    protected void entryRemoved(boolean evicted, String key, CacheableBitmapDrawable oldValue,
-            CacheableBitmapDrawable newValue) {
+    private void entryRemoved(CacheableBitmapDrawable oldValue) {
         // Notify the wrapper that it's no longer being cached
         oldValue.setCached(false);
 
-        if (mRemovedEntries != null && canUseForInBitmap(oldValue)) {
-            synchronized (mRemovedEntries) {
-                mRemovedEntries.add(new SoftReference<CacheableBitmapDrawable>(oldValue));
-            }
+        if (mBitmapPool != null) {
+            mBitmapPool.put(oldValue);
         }
     }
 
-    public Bitmap getBitmapFromRemoved(final int width, final int height) {
-        if (mRemovedEntries == null) {
-            return null;
-        }
+    private static int segmentIndex(String key) {
+        // Spread the bits, as keys of neighbouring tiles only differ in a few characters
+        int h = key.hashCode();
+        h ^= (h >>> 20) ^ (h >>> 12);
+        h ^= (h >>> 7) ^ (h >>> 4);
+        return (h & 0x7fffffff) % SEGMENT_COUNT;
+    }
 
-        Bitmap result = null;
+    private static final class CacheEntry {
 
-        synchronized (mRemovedEntries) {
-            final Iterator<SoftReference<CacheableBitmapDrawable>> it = mRemovedEntries.iterator();
+        final String mKey;
 
-            while (it.hasNext()) {
-                CacheableBitmapDrawable value = it.next().get();
+        final CacheableBitmapDrawable mValue;
 
-                if (canUseForInBitmap(value)) {
-                    if (canUseForInBitmapForSize(value, width, height) && !value.isBeingDisplayed() && !value.isReferencedByCache()) {
-                        result = value.getBitmap();
-                        SDK12.setHasAlpha(result, true);
-                        result.eraseColor(Color.TRANSPARENT);
-                        value.setReused();
-                        it.remove();
-                        break;
-                    }
-                } else {
-                    it.remove();
-                }
-            }
-        }
+        final int mSize;
 
-        return result;
-    }
+        // Set by reads, cleared when the entry is given its second chance
+        volatile boolean mAccessed;
 
-    private static boolean canUseForInBitmap(
-            CacheableBitmapDrawable candidate) {
-        return candidate != null &&
-                candidate.isBitmapValid() &&
-                candidate.isBitmapMutable();
+        CacheEntry(String key, CacheableBitmapDrawable value) {
+            mKey = key;
+            mValue = value;
+            mSize = value.getMemorySize();
+        }
     }
 
-    private static boolean canUseForInBitmapForSize(
-            CacheableBitmapDrawable candidate, int width, int height) {
-        return
-                candidate.getIntrinsicWidth() == width &&
-                candidate.getIntrinsicHeight() == height;
-    }
+    /**
+     * The entries of one segment, in the order they were inserted or given a second chance. Any
+     * access should be synchronized on the segment.
+     */
+    private final class Segment {
 
-    void trimMemory() {
-        final Set<Entry<String, CacheableBitmapDrawable>> values = snapshot().entrySet();
+        final LinkedHashMap<String, CacheEntry> mQueue = new LinkedHashMap<String, CacheEntry>();
 
-        for (Entry<String, CacheableBitmapDrawable> entry : values) {
-            CacheableBitmapDrawable value = entry.getValue();
-            if (null == value || !value.isBeingDisplayed()) {
-                remove(entry.getKey());
-            }
-        }
-        if (mRemovedEntries != null) {
-            synchronized (mRemovedEntries) {
-                mRemovedEntries.clear();
+        /**
+         * Evicts the oldest entry which hasn't been read since it was last looked at.
+         *
+         * @return the evicted entry, or {@code null} if there is none to evict.
+         */
+        CacheEntry evictOne(CacheEntry keep) {
+            // Each entry is looked at most twice: to give it its second chance, then to evict it
+            int remaining = 2 * mQueue.size();
+            while (remaining-- > 0) {
+                final Iterator<CacheEntry> it = mQueue.values().iterator();
+                final CacheEntry entry = it.next();
+                it.remove();
+                if (entry == keep || entry.mAccessed) {
+                    entry.mAccessed = false;
+                    mQueue.put(entry.mKey, entry);
+                } else {
+                    mEntries.remove(entry.mKey);
+                    mSize.addAndGet(-entry.mSize);
+                    return entry;
+                }
             }
+            return null;
         }
     }
 }
@@ -0,0 +1,224 @@
+/*******************************************************************************
+ * Copyright (c) 2013 Chris Banes.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package uk.co.senab.bitmapcache;
+
+import android.graphics.Bitmap;
+import android.graphics.Color;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+/**
+ * A pool of bitmaps which are no longer used, kept so that their memory can be reused for new
+ * bitmaps via {@link android.graphics.BitmapFactory.Options#inBitmap inBitmap} or as a drawing
+ * target, instead of allocating a new bitmap every time.
+ *
+ * <p> Bitmaps are grouped into buckets by width, height and config, so finding one of the right
+ * size takes constant time. The pool holds at most {@link #maxSize()} bytes; when it is full, the
+ * oldest bitmaps of the least recently used bucket are dropped first. </p>
+ *
+ * <p> Values evicted from the memory cache may still be displayed. They are pooled all the same,
+ * but their bitmap is only handed out once nothing displays or caches them anymore. </p>
+ */
+public final class BitmapPool {
+
+    private final LinkedHashMap<Long, ArrayDeque<Entry>> mBuckets =
+            new LinkedHashMap<Long, ArrayDeque<Entry>>(16, 0.75f, true);
+
+    private final int mMaxSize;
+
+    private int mSize;
+
+    private int mHitCount;
+
+    private int mMissCount;
+
+    /**
+     * @param maxSize - Maximum number of bytes of the pooled bitmaps.
+     */
+    BitmapPool(int maxSize) {
+        mMaxSize = maxSize;
+    }
+
+    /**
+     * Returns a pooled bitmap of the given size and config, erased to transparent, or {@code
+     * null} if there is none. The bitmap is removed from the pool.
+     */
+    public synchronized Bitmap get(int width, int height, Bitmap.Config config) {
+        final Long key = key(width, height, config);
+        final ArrayDeque<Entry> bucket = mBuckets.get(key);
+
+        if (null != bucket) {
+            // Most recently pooled first, as older values are more likely to be dropped anyway
+            final Iterator<Entry> it = bucket.descendingIterator();
+            while (it.hasNext()) {
+                final Entry entry = it.next();
+                if (!entry.isValid()) {
+                    it.remove();
+                    mSize -= entry.mSize;
+                } else if (entry.isUnused()) {
+                    it.remove();
+                    mSize -= entry.mSize;
+                    if (bucket.isEmpty()) {
+                        mBuckets.remove(key);
+                    }
+                    mHitCount++;
+                    return entry.reuse();
+                }
+            }
+            if (bucket.isEmpty()) {
+                mBuckets.remove(key);
+            }
+        }
+
+        mMissCount++;
+        return null;
+    }
+
+    /**
+     * Adds a bitmap which is no longer used to the pool. Only mutable bitmaps can be reused, so
+     * others are ignored.
+     */
+    public void put(Bitmap bitmap) {
+        if (null != bitmap && !bitmap.isRecycled() && bitmap.isMutable()) {
+            add(new Entry(bitmap, null));
+        }
+    }
+
+    /**
+     * Adds the bitmap of a value which has been removed from the memory cache to the pool.
+     */
+    void put(CacheableBitmapDrawable value) {
+        if (null != value && value.isBitmapValid() && value.isBitmapMutable()) {
+            add(new Entry(value.getBitmap(), value));
+        }
+    }
+
+    private synchronized void add(Entry entry) {
+        if (entry.mSize > mMaxSize) {
+            return;
+        }
+
+        final Bitmap bitmap = entry.mBitmap;
+        final Long key = key(bitmap.getWidth(), bitmap.getHeight(), bitmap.getConfig());
+        ArrayDeque<Entry> bucket = mBuckets.get(key);
+        if (null == bucket) {
+            bucket = new ArrayDeque<Entry>();
+            mBuckets.put(key, bucket);
+        }
+        bucket.addLast(entry);
+        mSize += entry.mSize;
+
+        trimToSize(mMaxSize);
+    }
+
+    /**
+     * Drops the oldest bitmaps of the least recently used buckets until at most {@code maxSize}
+     * bytes are pooled.
+     */
+    private void trimToSize(int maxSize) {
+        final Iterator<ArrayDeque<Entry>> buckets = mBuckets.values().iterator();
+        while (mSize > maxSize && buckets.hasNext()) {
+            final ArrayDeque<Entry> bucket = buckets.next();
+            while (mSize > maxSize && !bucket.isEmpty()) {
+                mSize -= bucket.pollFirst().mSize;
+            }
+            if (bucket.isEmpty()) {
+                buckets.remove();
+            }
+        }
+    }
+
+    /**
+     * Drops all pooled bitmaps.
+     */
+    public synchronized void evictAll() {
+        trimToSize(-1);
+    }
+
+    /**
+     * @return the number of bytes of the pooled bitmaps.
+     */
+    public synchronized int size() {
+        return mSize;
+    }
+
+    /**
+     * @return the maximum number of bytes of the pooled bitmaps.
+     */
+    public int maxSize() {
+        return mMaxSize;
+    }
+
+    /**
+     * @return the number of times {@link #get} returned a bitmap.
+     */
+    public synchronized int hitCount() {
+        return mHitCount;
+    }
+
+    /**
+     * @return the number of times {@link #get} returned {@code null}.
+     */
+    public synchronized int missCount() {
+        return mMissCount;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format("BitmapPool[size=%d,maxSize=%d,hits=%d,misses=%d]",
+                mSize, mMaxSize, mHitCount, mMissCount);
+    }
+
+    private static Long key(int width, int height, Bitmap.Config config) {
+        return ((long) width << 32) | ((long) (height & 0xffffff) << 8)
+                | (null != config ? config.ordinal() : 0xff);
+    }
+
+    private static final class Entry {
+
+        final Bitmap mBitmap;
+
+        // The value which held the bitmap in the memory cache, if any
+        final CacheableBitmapDrawable mValue;
+
+        final int mSize;
+
+        Entry(Bitmap bitmap, CacheableBitmapDrawable value) {
+            mBitmap = bitmap;
+            mValue = value;
+            mSize = bitmap.getRowBytes() * bitmap.getHeight();
+        }
+
+        boolean isValid() {
+            return null != mValue ? mValue.isBitmapValid() : !mBitmap.isRecycled();
+        }
+
+        boolean isUnused() {
+            return null == mValue || (!mValue.isBeingDisplayed() && !mValue.isReferencedByCache());
+        }
+
+        Bitmap reuse() {
+            if (null != mValue) {
+                mValue.setReused();
+            }
+            SDK12.setHasAlpha(mBitmap, true);
+            mBitmap.eraseColor(Color.TRANSPARENT);
+            return mBitmap;
+        }
+    }
+}
@@ -0,0 +1,113 @@
+/*******************************************************************************
+ * Copyright (c) 2013 Chris Banes.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package uk.co.senab.bitmapcache;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedList;
+
+/**
+ * A pool of byte arrays, so that the encoded images read from the network or from a file don't
+ * need a new buffer every time. See {@link PoolingByteArrayOutputStream}.
+ *
+ * <p> {@link #get(int)} hands out the smallest pooled array which is large enough. The pool holds
+ * at most {@link #maxSize()} bytes; when it is full, the least recently pooled arrays are dropped
+ * first. </p>
+ */
+public final class ByteArrayPool {
+
+    private static final Comparator<byte[]> BY_SIZE = new Comparator<byte[]>() {
+        @Override
+        public int compare(byte[] lhs, byte[] rhs) {
+            return lhs.length - rhs.length;
+        }
+    };
+
+    private final LinkedList<byte[]> mByLastUse = new LinkedList<byte[]>();
+
+    private final ArrayList<byte[]> mBySize = new ArrayList<byte[]>();
+
+    private final int mMaxSize;
+
+    private int mSize;
+
+    /**
+     * @param maxSize - Maximum number of bytes of the pooled arrays.
+     */
+    public ByteArrayPool(int maxSize) {
+        mMaxSize = maxSize;
+    }
+
+    /**
+     * Returns a pooled array of at least {@code length} bytes, removing it from the pool, or a new
+     * one if there is none. Its contents are undefined.
+     */
+    public synchronized byte[] get(int length) {
+        for (int i = 0; i < mBySize.size(); i++) {
+            final byte[] buffer = mBySize.get(i);
+            if (buffer.length >= length) {
+                mBySize.remove(i);
+                mByLastUse.remove(buffer);
+                mSize -= buffer.length;
+                return buffer;
+            }
+        }
+        return new byte[length];
+    }
+
+    /**
+     * Adds an array which is no longer used to the pool.
+     */
+    public synchronized void put(byte[] buffer) {
+        if (null == buffer || buffer.length > mMaxSize) {
+            return;
+        }
+        mByLastUse.add(buffer);
+        int index = Collections.binarySearch(mBySize, buffer, BY_SIZE);
+        if (index < 0) {
+            index = -index - 1;
+        }
+        mBySize.add(index, buffer);
+        mSize += buffer.length;
+
+        while (mSize > mMaxSize) {
+            final byte[] oldest = mByLastUse.removeFirst();
+            mBySize.remove(oldest);
+            mSize -= oldest.length;
+        }
+    }
+
+    /**
+     * @return the number of bytes of the pooled arrays.
+     */
+    public synchronized int size() {
+        return mSize;
+    }
+
+    /**
+     * @return the maximum number of bytes of the pooled arrays.
+     */
+    public int maxSize() {
+        return mMaxSize;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format("ByteArrayPool[size=%d,maxSize=%d,arrays=%d]",
+                mSize, mMaxSize, mBySize.size());
+    }
+}
@@ -0,0 +1,104 @@
+/*******************************************************************************
+ * Copyright (c) 2013 Chris Banes.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package uk.co.senab.bitmapcache;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * A {@link ByteArrayOutputStream} which takes its buffer from a {@link ByteArrayPool}, and gives
+ * it back when closed. The written bytes can be read with {@link #getBuffer()} and {@link
+ * #size()} without copying them, until the stream is closed.
+ */
+public final class PoolingByteArrayOutputStream extends ByteArrayOutputStream {
+
+    private static final int DEFAULT_SIZE = 8 * 1024;
+
+    private final ByteArrayPool mPool;
+
+    public PoolingByteArrayOutputStream(ByteArrayPool pool) {
+        this(pool, DEFAULT_SIZE);
+    }
+
+    /**
+     * @param pool - The pool to take the buffers from.
+     * @param size - The expected number of bytes.
+     */
+    public PoolingByteArrayOutputStream(ByteArrayPool pool, int size) {
+        mPool = pool;
+        buf = mPool.get(Math.max(size, 256));
+    }
+
+    /**
+     * Reads {@code is} to its end into this stream. {@code is} isn't closed.
+     *
+     * @return the number of bytes read
+     */
+    public int readFrom(InputStream is) throws IOException {
+        int total = 0;
+        while (true) {
+            if (count == buf.length) {
+                expand(count + 1);
+            }
+            final int read = is.read(buf, count, buf.length - count);
+            if (read == -1) {
+                return total;
+            }
+            count += read;
+            total += read;
+        }
+    }
+
+    /**
+     * @return the buffer holding the written bytes, of which there are {@link #size()}.
+     */
+    public byte[] getBuffer() {
+        return buf;
+    }
+
+    @Override
+    public synchronized void write(byte[] buffer, int offset, int len) {
+        expand(count + len);
+        super.write(buffer, offset, len);
+    }
+
+    @Override
+    public synchronized void write(int oneByte) {
+        expand(count + 1);
+        super.write(oneByte);
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (buf.length > 0) {
+            mPool.put(buf);
+            buf = new byte[0];
+        }
+        count = 0;
+        super.close();
+    }
+
+    private void expand(int minSize) {
+        if (minSize <= buf.length) {
+            return;
+        }
+        final byte[] expanded = mPool.get(Math.max(minSize, buf.length * 2));
+        System.arraycopy(buf, 0, expanded, 0, count);
+        mPool.put(buf);
+        buf = expanded;
+    }
+}
@@ -0,0 +1,138 @@
+package com.mapbox.mapboxsdk.benchmarks;
+
+import com.mapbox.mapboxsdk.clustering.ClusterItem;
+import com.mapbox.mapboxsdk.clustering.algo.IncrementalGridBasedAlgorithm;
+import com.mapbox.mapboxsdk.clustering.algo.NonHierarchicalDistanceBasedAlgorithm;
+import com.mapbox.mapboxsdk.clustering.geometry.Bounds;
+import com.mapbox.mapboxsdk.clustering.geometry.Point;
+import com.mapbox.mapboxsdk.clustering.projection.SphericalMercatorProjection;
+import com.mapbox.mapboxsdk.clustering.quadtree.PointQuadTree;
+import com.mapbox.mapboxsdk.geometry.LatLng;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * {@link PointQuadTree} searches and the clustering algorithms, over a fixed set of items.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ClusteringBenchmark {
+
+    private static final int SEARCH_COUNT = 256;
+
+    /**
+     * Items moved between two calls to getClusters in the incremental benchmark.
+     */
+    private static final int MOVED_ITEM_COUNT = 200;
+
+    @Param({"1000", "10000", "40000"})
+    public int itemCount;
+
+    @Param({"10", "14"})
+    public int zoom;
+
+    private Item[] mItems;
+    private LatLng[] mMovedPositions;
+    private int mMoveRound;
+    private PointQuadTree<Item> mQuadTree;
+    private Bounds[] mSearchBounds;
+    private NonHierarchicalDistanceBasedAlgorithm<Item> mDistanceBasedAlgorithm;
+    private IncrementalGridBasedAlgorithm<Item> mIncrementalAlgorithm;
+
+    @Setup
+    public void setUp() {
+        final Random random = new Random(SyntheticData.SEED);
+        final LatLng[] positions = SyntheticData.positions(random, itemCount);
+        mItems = new Item[itemCount];
+        mQuadTree = new PointQuadTree<Item>(0, 1, 0, 1);
+        mDistanceBasedAlgorithm = new NonHierarchicalDistanceBasedAlgorithm<Item>();
+        mIncrementalAlgorithm = new IncrementalGridBasedAlgorithm<Item>();
+        for (int i = 0; i < itemCount; i++) {
+            mItems[i] = new Item(positions[i]);
+            mQuadTree.add(mItems[i]);
+        }
+        mDistanceBasedAlgorithm.addItems(Arrays.asList(mItems));
+        mIncrementalAlgorithm.addItems(Arrays.asList(mItems));
+        mMovedPositions = SyntheticData.positions(random, MOVED_ITEM_COUNT);
+
+        // searches the size of the clustering distance at this zoom
+        final double span = NonHierarchicalDistanceBasedAlgorithm.MAX_DISTANCE_AT_ZOOM
+                / Math.pow(2, zoom) / 256;
+        mSearchBounds = new Bounds[SEARCH_COUNT];
+        for (int i = 0; i < SEARCH_COUNT; i++) {
+            final Point center = mItems[random.nextInt(itemCount)].getPoint();
+            mSearchBounds[i] = new Bounds(center.x - span / 2, center.x + span / 2,
+                    center.y - span / 2, center.y + span / 2);
+        }
+    }
+
+    @Benchmark
+    public void quadTreeSearch(final Blackhole blackhole) {
+        for (Bounds bounds : mSearchBounds) {
+            final Collection<Item> found = mQuadTree.search(bounds);
+            blackhole.consume(found);
+        }
+    }
+
+    @Benchmark
+    public Set<?> distanceBasedGetClusters() {
+        return mDistanceBasedAlgorithm.getClusters(zoom);
+    }
+
+    /**
+     * Moves a batch of items, then gets the clusters of a zoom level that is kept up to date.
+     */
+    @Benchmark
+    public Set<?> incrementalMoveAndGetClusters() {
+        final int offset = (mMoveRound++ * MOVED_ITEM_COUNT) % itemCount;
+        for (int i = 0; i < MOVED_ITEM_COUNT; i++) {
+            final Item item = mItems[(offset + i) % itemCount];
+            final LatLng previous = item.mPosition;
+            item.mPosition = mMovedPositions[i];
+            mMovedPositions[i] = previous;
+            mIncrementalAlgorithm.updateItem(item);
+        }
+        return mIncrementalAlgorithm.getClusters(zoom);
+    }
+
+    private static final class Item implements ClusterItem, PointQuadTree.Item {
+        private static final SphericalMercatorProjection PROJECTION = new SphericalMercatorProjection(1);
+
+        private LatLng mPosition;
+        private final Point mPoint;
+
+        private Item(final LatLng position) {
+            mPosition = position;
+            mPoint = PROJECTION.toPoint(position);
+        }
+
+        @Override
+        public LatLng getPosition() {
+            return mPosition;
+        }
+
+        @Override
+        public Point getPoint() {
+            return mPoint;
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package com.mapbox.mapboxsdk.benchmarks;
+
+import com.cocoahero.android.geojson.GeoJSON;
+import com.cocoahero.android.geojson.GeoJSONObject;
+import java.util.concurrent.TimeUnit;
+import org.json.JSONException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Parsing a FeatureCollection of points, lines and polygons with {@link GeoJSON#parse(String)}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class GeoJSONBenchmark {
+
+    @Param({"100", "5000"})
+    public int featureCount;
+
+    private String mJson;
+
+    @Setup
+    public void setUp() {
+        mJson = SyntheticData.geoJSON(featureCount);
+    }
+
+    @Benchmark
+    public GeoJSONObject parse() throws JSONException {
+        return GeoJSON.parse(mJson);
+    }
+}
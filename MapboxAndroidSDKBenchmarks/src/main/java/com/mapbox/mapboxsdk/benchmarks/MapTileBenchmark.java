@@ -0,0 +1,81 @@
+package com.mapbox.mapboxsdk.benchmarks;
+
+import com.mapbox.mapboxsdk.tileprovider.MapTile;
+import com.mapbox.mapboxsdk.util.LongObjectMap;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Keying tiles, for the tiles of a screen at a time: packing keys, hashing tiles and looking
+ * them up by key as the tile looper and the tile providers do.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class MapTileBenchmark {
+
+    private static final String CACHE_KEY = "mapbox.streets";
+    private static final int ZOOM = 15;
+    private static final int FIRST_X = 9370;
+    private static final int FIRST_Y = 12532;
+    private static final int TILES_PER_SIDE = 8;
+
+    private MapTile[] mTiles;
+    private LongObjectMap<MapTile> mTilesByKey;
+    private int mLayerId;
+
+    @Setup
+    public void setUp() {
+        mLayerId = MapTile.layerIdFor(CACHE_KEY);
+        mTiles = new MapTile[TILES_PER_SIDE * TILES_PER_SIDE];
+        mTilesByKey = new LongObjectMap<MapTile>(mTiles.length);
+        for (int i = 0; i < mTiles.length; i++) {
+            mTiles[i] = new MapTile(CACHE_KEY, ZOOM,
+                    FIRST_X + i % TILES_PER_SIDE, FIRST_Y + i / TILES_PER_SIDE);
+            mTilesByKey.put(mTiles[i].getKey(), mTiles[i]);
+        }
+    }
+
+    @Benchmark
+    public void packKeys(final Blackhole blackhole) {
+        for (int i = 0; i < mTiles.length; i++) {
+            blackhole.consume(MapTile.key(mLayerId, ZOOM,
+                    FIRST_X + i % TILES_PER_SIDE, FIRST_Y + i / TILES_PER_SIDE));
+        }
+    }
+
+    @Benchmark
+    public void createTiles(final Blackhole blackhole) {
+        for (int i = 0; i < mTiles.length; i++) {
+            blackhole.consume(new MapTile(CACHE_KEY, ZOOM,
+                    FIRST_X + i % TILES_PER_SIDE, FIRST_Y + i / TILES_PER_SIDE));
+        }
+    }
+
+    @Benchmark
+    public void hashCodes(final Blackhole blackhole) {
+        for (MapTile tile : mTiles) {
+            blackhole.consume(tile.hashCode());
+        }
+    }
+
+    @Benchmark
+    public void lookUpByKey(final Blackhole blackhole) {
+        for (MapTile tile : mTiles) {
+            blackhole.consume(mTilesByKey.get(tile.getKey()));
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package com.mapbox.mapboxsdk.benchmarks;
+
+import com.mapbox.mapboxsdk.constants.MapboxConstants;
+import com.mapbox.mapboxsdk.offline.OfflineMapURLGenerator;
+import com.mapbox.mapboxsdk.util.MapboxUtils;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Generating the tile URLs of an offline map region, as the offline downloader does.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class OfflineMapURLGeneratorBenchmark {
+
+    private static final double MIN_LAT = 38.80;
+    private static final double MAX_LAT = 39.00;
+    private static final double MIN_LON = -77.12;
+    private static final double MAX_LON = -76.90;
+    private static final int MIN_ZOOM = 10;
+    private static final int MAX_ZOOM = 15;
+
+    private OfflineMapURLGenerator mGenerator;
+
+    @Setup
+    public void setUp() {
+        MapboxUtils.setAccessToken("pk.benchmark");
+        mGenerator = createGenerator();
+    }
+
+    private static OfflineMapURLGenerator createGenerator() {
+        return new OfflineMapURLGenerator(MIN_LAT, MAX_LAT, MIN_LON, MAX_LON, MIN_ZOOM, MAX_ZOOM);
+    }
+
+    @Benchmark
+    public OfflineMapURLGenerator createRegion() {
+        return createGenerator();
+    }
+
+    @Benchmark
+    public void allURLs(final Blackhole blackhole) {
+        final int count = mGenerator.getURLCount();
+        for (int i = 0; i < count; i++) {
+            blackhole.consume(mGenerator.getURLForIndex(null, "mapbox.streets",
+                    MapboxConstants.RasterImageQuality.MBXRasterImageQualityFull, i));
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package com.mapbox.mapboxsdk.benchmarks;
+
+import com.mapbox.mapboxsdk.views.util.Projection;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Pixel math of {@link Projection}, for a batch of points at a time.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ProjectionBenchmark {
+
+    private static final int POINT_COUNT = 1024;
+    private static final float ZOOM = 14;
+
+    private double[] mLatitudes;
+    private double[] mLongitudes;
+    private double[] mPixelsX;
+    private double[] mPixelsY;
+
+    @Setup
+    public void setUp() {
+        final Random random = new Random(SyntheticData.SEED);
+        mLatitudes = SyntheticData.latitudes(random, POINT_COUNT);
+        mLongitudes = SyntheticData.longitudes(random, POINT_COUNT);
+        mPixelsX = new double[POINT_COUNT];
+        mPixelsY = new double[POINT_COUNT];
+        final double scale = Projection.mapSize(ZOOM) / (double) Projection.mapSize(22);
+        for (int i = 0; i < POINT_COUNT; i++) {
+            final double[] pixel = Projection.latLongToPixelXY(mLatitudes[i], mLongitudes[i]);
+            mPixelsX[i] = pixel[0] * scale;
+            mPixelsY[i] = pixel[1] * scale;
+        }
+    }
+
+    @Benchmark
+    public void latLongToPixelXY(final Blackhole blackhole) {
+        for (int i = 0; i < POINT_COUNT; i++) {
+            blackhole.consume(Projection.latLongToPixelXY(mLatitudes[i], mLongitudes[i]));
+        }
+    }
+
+    @Benchmark
+    public void pixelXYToLatLong(final Blackhole blackhole) {
+        for (int i = 0; i < POINT_COUNT; i++) {
+            blackhole.consume(Projection.pixelXYToLatLong(mPixelsX[i], mPixelsY[i], ZOOM));
+        }
+    }
+
+    @Benchmark
+    public void groundResolution(final Blackhole blackhole) {
+        for (int i = 0; i < POINT_COUNT; i++) {
+            blackhole.consume(Projection.groundResolution(mLatitudes[i], ZOOM));
+        }
+    }
+}
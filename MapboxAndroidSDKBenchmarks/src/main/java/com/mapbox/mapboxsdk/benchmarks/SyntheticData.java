@@ -0,0 +1,140 @@
+package com.mapbox.mapboxsdk.benchmarks;
+
+import com.mapbox.mapboxsdk.geometry.LatLng;
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * Fixed data sets for the benchmarks. Everything is generated from a constant seed, so that
+ * results can be compared from one run, and one version of the SDK, to the next.
+ */
+public final class SyntheticData {
+
+    public static final long SEED = 0x5EEDL;
+
+    // Around Washington, DC
+    private static final double MIN_LAT = 38.80;
+    private static final double MAX_LAT = 39.00;
+    private static final double MIN_LNG = -77.12;
+    private static final double MAX_LNG = -76.90;
+
+    private SyntheticData() {
+    }
+
+    public static double[] latitudes(final Random random, final int count) {
+        final double[] result = new double[count];
+        for (int i = 0; i < count; i++) {
+            result[i] = MIN_LAT + random.nextDouble() * (MAX_LAT - MIN_LAT);
+        }
+        return result;
+    }
+
+    public static double[] longitudes(final Random random, final int count) {
+        final double[] result = new double[count];
+        for (int i = 0; i < count; i++) {
+            result[i] = MIN_LNG + random.nextDouble() * (MAX_LNG - MIN_LNG);
+        }
+        return result;
+    }
+
+    public static LatLng[] positions(final Random random, final int count) {
+        final double[] lats = latitudes(random, count);
+        final double[] lngs = longitudes(random, count);
+        final LatLng[] result = new LatLng[count];
+        for (int i = 0; i < count; i++) {
+            result[i] = new LatLng(lats[i], lngs[i]);
+        }
+        return result;
+    }
+
+    /**
+     * A FeatureCollection with as many Points as LineStrings and Polygons together.
+     */
+    public static String geoJSON(final int featureCount) {
+        final Random random = new Random(SEED);
+        final StringBuilder json = new StringBuilder("{\"type\":\"FeatureCollection\",\"features\":[");
+        for (int i = 0; i < featureCount; i++) {
+            if (i > 0) {
+                json.append(',');
+            }
+            json.append("{\"type\":\"Feature\",\"properties\":{\"title\":\"Feature ").append(i)
+                    .append("\",\"description\":\"Synthetic\"},\"geometry\":");
+            switch (i % 4) {
+                case 0:
+                    json.append("{\"type\":\"LineString\",\"coordinates\":");
+                    appendRing(json, random, 12, false);
+                    break;
+                case 1:
+                    json.append("{\"type\":\"Polygon\",\"coordinates\":[");
+                    appendRing(json, random, 16, true);
+                    json.append(']');
+                    break;
+                default:
+                    json.append("{\"type\":\"Point\",\"coordinates\":");
+                    appendPosition(json, random);
+                    break;
+            }
+            json.append("}}");
+        }
+        return json.append("]}").toString();
+    }
+
+    private static void appendRing(final StringBuilder json, final Random random,
+                                   final int count, final boolean closed) {
+        json.append('[');
+        final int start = json.length();
+        for (int i = 0; i < count; i++) {
+            if (i > 0) {
+                json.append(',');
+            }
+            appendPosition(json, random);
+        }
+        if (closed) {
+            final String first = json.substring(start, json.indexOf("]", start) + 1);
+            json.append(',').append(first);
+        }
+        json.append(']');
+    }
+
+    private static void appendPosition(final StringBuilder json, final Random random) {
+        json.append(String.format(Locale.US, "[%.7f,%.7f]",
+                MIN_LNG + random.nextDouble() * (MAX_LNG - MIN_LNG),
+                MIN_LAT + random.nextDouble() * (MAX_LAT - MIN_LAT)));
+    }
+
+    /**
+     * An OSM XML document of nodes and of ways between them, a tenth of them closed, with
+     * a few standalone tagged nodes.
+     */
+    public static String osmXml(final int wayCount, final int nodesPerWay) {
+        final Random random = new Random(SEED);
+        final StringBuilder xml = new StringBuilder(
+                "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n<osm version=\"0.6\" generator=\"benchmark\">\n");
+        final int nodeCount = wayCount * nodesPerWay;
+        for (int id = 1; id <= nodeCount + wayCount / 10; id++) {
+            xml.append(String.format(Locale.US,
+                    "<node id=\"%d\" lat=\"%.7f\" lon=\"%.7f\" version=\"1\" "
+                            + "timestamp=\"2015-01-01T00:00:00Z\" changeset=\"1\" uid=\"%d\" user=\"user%d\"",
+                    id, MIN_LAT + random.nextDouble() * (MAX_LAT - MIN_LAT),
+                    MIN_LNG + random.nextDouble() * (MAX_LNG - MIN_LNG), id % 50, id % 50));
+            if (id > nodeCount) {
+                xml.append("><tag k=\"amenity\" v=\"cafe\"/></node>\n");
+            } else {
+                xml.append("/>\n");
+            }
+        }
+        for (int w = 0; w < wayCount; w++) {
+            xml.append("<way id=\"").append(w + 1).append("\" version=\"1\" ")
+                    .append("timestamp=\"2015-01-01T00:00:00Z\" changeset=\"1\" uid=\"1\" user=\"user1\">\n");
+            final int first = w * nodesPerWay + 1;
+            for (int n = 0; n < nodesPerWay; n++) {
+                xml.append("<nd ref=\"").append(first + n).append("\"/>\n");
+            }
+            if (w % 10 == 0) {
+                xml.append("<nd ref=\"").append(first).append("\"/>\n");
+            }
+            xml.append("<tag k=\"highway\" v=\"residential\"/>\n</way>\n");
+        }
+        return xml.append("</osm>\n").toString();
+    }
+}
@@ -0,0 +1,105 @@
+package com.spatialdev.osm.model;
+
+import com.mapbox.mapboxsdk.benchmarks.SyntheticData;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.xmlpull.mxp1.MXParser;
+import org.xmlpull.v1.XmlPullParser;
+import org.xmlpull.v1.XmlPullParserException;
+
+/**
+ * Parsing an OSM XML document, and post-processing an already parsed data set, in both
+ * storage modes. This is in the model package because postProcessing is package-private.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class OSMBenchmark {
+
+    private static final int WAY_COUNT = 2000;
+    private static final int NODES_PER_WAY = 20;
+
+    @Param({"false", "true"})
+    public boolean compact;
+
+    private byte[] mXml;
+    private OSMDataSet mUnprocessedDataSet;
+
+    @Setup
+    public void setUp() {
+        mXml = SyntheticData.osmXml(WAY_COUNT, NODES_PER_WAY).getBytes(Charset.forName("UTF-8"));
+    }
+
+    /**
+     * postProcessing links ways to their nodes only once, so each call gets a new data set,
+     * filled the way the parser does.
+     */
+    @Setup(Level.Invocation)
+    public void createUnprocessedDataSet() {
+        final Random random = new Random(SyntheticData.SEED);
+        final OSMDataSet ds = new OSMDataSet(compact);
+        final int nodeCount = WAY_COUNT * NODES_PER_WAY;
+        for (int id = 1; id <= nodeCount; id++) {
+            ds.createNode(String.valueOf(id), String.valueOf(38.8 + random.nextDouble() / 5),
+                    String.valueOf(-77.12 + random.nextDouble() / 5), "1",
+                    "2015-01-01T00:00:00Z", "1", "1", "user1");
+        }
+        for (int w = 0; w < WAY_COUNT; w++) {
+            final OSMWay way = ds.createWay(String.valueOf(w + 1), "1",
+                    "2015-01-01T00:00:00Z", "1", "1", "user1");
+            final int first = w * NODES_PER_WAY + 1;
+            for (int n = 0; n < NODES_PER_WAY; n++) {
+                way.addNodeRef(first + n);
+            }
+            if (w % 10 == 0) {
+                way.addNodeRef(first);
+            }
+        }
+        mUnprocessedDataSet = ds;
+    }
+
+    @Benchmark
+    public OSMDataSet parse() throws IOException, XmlPullParserException {
+        final JvmOSMXmlParser parser = new JvmOSMXmlParser(compact);
+        parser.parse(new ByteArrayInputStream(mXml));
+        return parser.getDataSet();
+    }
+
+    @Benchmark
+    public OSMDataSet postProcessing() {
+        mUnprocessedDataSet.postProcessing();
+        return mUnprocessedDataSet;
+    }
+
+    /**
+     * Parses with the XmlPullParser of XPP3, since Android's is not available off the device.
+     */
+    private static final class JvmOSMXmlParser extends OSMXmlParser {
+        private JvmOSMXmlParser(final boolean compact) {
+            super(compact);
+        }
+
+        @Override
+        protected XmlPullParser newPullParser() {
+            return new MXParser();
+        }
+    }
+}